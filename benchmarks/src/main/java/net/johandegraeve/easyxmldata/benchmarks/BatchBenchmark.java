@@ -0,0 +1,159 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.johandegraeve.easyxmldata.EasyXMLDataParser;
+import net.johandegraeve.easyxmldata.ParseResult;
+import net.johandegraeve.easyxmldata.XMLElement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Measures the throughput of parsing many small documents, one after the other with {@link EasyXMLDataParser#parse(String)}
+ * and concurrently with {@link EasyXMLDataParser#parseAll(Iterable)}, and of parsing one large document with
+ * {@link EasyXMLDataParser#parseParallel(String)}.<br>
+ * {@link #oneAtATime()} is the baseline : the loop as it was before the batch API, with a new SAXParserFactory and SAXParser per document
+ * and a search with Class.forName for each start tag, see {@link UncachedParser}. {@link #sequential()} runs the same loop with a 
+ * parser that reuses the pooled SAX parsers and the tag resolution cache.
+ *
+ * @author Johan Degraeve
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+
+    /**
+     * number of small documents in a batch
+     */
+    @Param({"1000"})
+    public int documents;
+
+    /**
+     * number of Node elements per small document
+     */
+    @Param({"20"})
+    public int elementsPerDocument;
+
+    /**
+     * the small documents
+     */
+    private List<String> batch;
+
+    /**
+     * one document with as many Node elements as the whole batch
+     */
+    private String largeDocument;
+
+    /**
+     * the parser
+     */
+    private EasyXMLDataParser parser;
+
+    /**
+     * generates the documents and creates the parser
+     */
+    @Setup
+    public void setup() {
+	String document = DocumentGenerator.of(elementsPerDocument, DocumentGenerator.Shape.SHALLOW, DocumentGenerator.Content.ATTRIBUTES).generate();
+	batch = new ArrayList<String>(documents);
+	for (int i = 0; i < documents; i++)
+	    batch.add(document);
+	largeDocument = DocumentGenerator.of(documents * elementsPerDocument, DocumentGenerator.Shape.SHALLOW, DocumentGenerator.Content.ATTRIBUTES).generate();
+	parser = new EasyXMLDataParser(new String[] {BatchBenchmark.class.getPackage().getName()},
+		new String[] {ParseBenchmark.KNOWN_PREFIX}, true);
+    }
+
+    /**
+     * parses the batch one document after the other
+     * @return the root elements
+     * @throws SAXParseException
+     */
+    @Benchmark
+    public List<XMLElement> sequential() throws SAXParseException {
+	List<XMLElement> returnvalue = new ArrayList<XMLElement>(batch.size());
+	for (String document : batch)
+	    returnvalue.add(parser.parse(document));
+	return returnvalue;
+    }
+
+    /**
+     * parses the batch one document after the other without any reuse, as before the batch API
+     * @return the root elements
+     * @throws SAXParseException
+     */
+    @Benchmark
+    public List<XMLElement> oneAtATime() throws SAXParseException {
+	List<XMLElement> returnvalue = new ArrayList<XMLElement>(batch.size());
+	for (String document : batch)
+	    returnvalue.add(new UncachedParser(new String[] {BatchBenchmark.class.getPackage().getName()},
+		    new String[] {ParseBenchmark.KNOWN_PREFIX}).parse(document));
+	return returnvalue;
+    }
+
+    /**
+     * parses the batch concurrently
+     * @return the results
+     * @throws InterruptedException
+     */
+    @Benchmark
+    public List<ParseResult> parseAll() throws InterruptedException {
+	return parser.parseAll(batch);
+    }
+
+    /**
+     * parses the large document with the children of the root element parsed in parallel
+     * @return the root element
+     * @throws SAXParseException
+     */
+    @Benchmark
+    public XMLElement parseParallel() throws SAXParseException {
+	return parser.parseParallel(largeDocument);
+    }
+
+    /**
+     * parses the large document in one thread, to compare with {@link #parseParallel()}
+     * @return the root element
+     * @throws SAXParseException
+     */
+    @Benchmark
+    public XMLElement parseLarge() throws SAXParseException {
+	return parser.parse(largeDocument);
+    }
+}
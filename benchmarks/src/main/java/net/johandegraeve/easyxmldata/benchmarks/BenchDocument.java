@@ -0,0 +1,42 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata.benchmarks;
+
+import net.johandegraeve.easyxmldata.DefaultXMLElement;
+import net.johandegraeve.easyxmldata.XMLElementType;
+
+/**
+ * Class found by the parser for the tag &lt;Document&gt; when using the prefix {@link ParseBenchmark#KNOWN_PREFIX},
+ * used to measure parsing with known tags.<br>
+ * Annotated, so that it is created through the generated registry.
+ *
+ * @author Johan Degraeve
+ *
+ */
+@XMLElementType(children = BenchNode.class)
+public class BenchDocument extends DefaultXMLElement {
+
+    /**
+     * constructor
+     */
+    public BenchDocument() {
+	super(DocumentGenerator.ROOT_TAG);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates synthetic XML documents of configurable size and shape for the benchmarks.<br>
+ * A document has a root element &lt;Document&gt; with a number of chains of nested &lt;Node&gt; elements. The depth of the chains
+ * defines the shape : depth 1 gives a shallow document with all nodes directly under the root, a larger depth gives a deep document.
+ * Each node gets a number of attributes and, if it is the last node of its chain, a text of a given length.<br>
+ * The output only depends on the parameters, so that runs can be compared.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public final class DocumentGenerator {
+
+    /**
+     * tag name of the root element
+     */
+    public static final String ROOT_TAG = "Document";
+
+    /**
+     * tag name of all other elements
+     */
+    public static final String NODE_TAG = "Node";
+
+    /**
+     * the words used to build texts and attribute values
+     */
+    static private final String[] WORDS = {"lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit", "sed", "do",
+	"eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore", "magna", "aliqua", "&amp;"};
+
+    /**
+     * total number of Node elements
+     */
+    private final int elementCount;
+
+    /**
+     * number of nested Node elements per chain
+     */
+    private final int depth;
+
+    /**
+     * number of attributes per Node element
+     */
+    private final int attributesPerElement;
+
+    /**
+     * approximate number of characters of text in the innermost Node of each chain
+     */
+    private final int textLength;
+
+    /**
+     * constructor
+     * @param elementCount total number of Node elements, rounded up to a multiple of depth
+     * @param depth number of nested Node elements per chain, at least 1
+     * @param attributesPerElement number of attributes per Node element
+     * @param textLength approximate number of characters of text in the innermost Node of each chain, 0 for no text
+     */
+    public DocumentGenerator(int elementCount, int depth, int attributesPerElement, int textLength) {
+	if (depth < 1)
+	    throw new IllegalArgumentException("depth should be at least 1");
+	this.elementCount = elementCount;
+	this.depth = depth;
+	this.attributesPerElement = attributesPerElement;
+	this.textLength = textLength;
+    }
+
+    /**
+     * creates a generator for a predefined shape and content
+     * @param elementCount total number of Node elements
+     * @param shape
+     * @param content
+     * @return the generator
+     */
+    public static DocumentGenerator of(int elementCount, Shape shape, Content content) {
+	return new DocumentGenerator(elementCount, shape.depth, content.attributesPerElement, content.textLength);
+    }
+
+    /**
+     * @return the document
+     */
+    public String generate() {
+	StringBuilder returnvalue = new StringBuilder(estimateSize());
+	returnvalue.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+	returnvalue.append('<').append(ROOT_TAG).append(">\n");
+	int chains = (elementCount + depth - 1) / depth;
+	int word = 0;
+	for (int chain = 0; chain < chains; chain++) {
+	    for (int level = 0; level < depth; level++) {
+		returnvalue.append('<').append(NODE_TAG);
+		for (int i = 0; i < attributesPerElement; i++) {
+		    returnvalue.append(" a").append(i).append("=\"").append(WORDS[word++ % (WORDS.length - 1)]).append(chain).append('"');
+		}
+		returnvalue.append('>');
+	    }
+	    int length = 0;
+	    while (length < textLength) {
+		String next = WORDS[word++ % WORDS.length];
+		returnvalue.append(next).append(' ');
+		length += next.length() + 1;
+	    }
+	    for (int level = 0; level < depth; level++)
+		returnvalue.append("</").append(NODE_TAG).append('>');
+	    returnvalue.append('\n');
+	}
+	returnvalue.append("</").append(ROOT_TAG).append(">\n");
+	return returnvalue.toString();
+    }
+
+    /**
+     * @return the document encoded in UTF-8
+     */
+    public byte[] generateBytes() {
+	return generate().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return rough size of the document in characters
+     */
+    private int estimateSize() {
+	long size = 64 + (long)elementCount * (13 + attributesPerElement * 16) + (long)((elementCount + depth - 1) / depth) * (textLength + 16);
+	return (int)Math.min(size, Integer.MAX_VALUE - 16);
+    }
+
+    /**
+     * shape of a document
+     */
+    public enum Shape {
+	/**
+	 * all Node elements are children of the root
+	 */
+	SHALLOW(1),
+	/**
+	 * chains of 64 nested Node elements
+	 */
+	DEEP(64);
+
+	/**
+	 * number of nested Node elements per chain
+	 */
+	final int depth;
+
+	/**
+	 * constructor
+	 * @param depth
+	 */
+	Shape(int depth) {
+	    this.depth = depth;
+	}
+    }
+
+    /**
+     * content of the Node elements
+     */
+    public enum Content {
+	/**
+	 * 8 attributes per element, no text
+	 */
+	ATTRIBUTES(8, 0),
+	/**
+	 * no attributes, about 256 characters of text per chain
+	 */
+	TEXT(0, 256);
+
+	/**
+	 * number of attributes per Node element
+	 */
+	final int attributesPerElement;
+
+	/**
+	 * characters of text per chain
+	 */
+	final int textLength;
+
+	/**
+	 * constructor
+	 * @param attributesPerElement
+	 * @param textLength
+	 */
+	Content(int attributesPerElement, int textLength) {
+	    this.attributesPerElement = attributesPerElement;
+	    this.textLength = textLength;
+	}
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import net.johandegraeve.easyxmldata.EasyXMLDataParser;
+import net.johandegraeve.easyxmldata.XMLElement;
+import net.johandegraeve.easyxmldata.XMLFeedParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Compares {@link EasyXMLDataParser#parse(java.io.InputStream)} of a complete document with feeding the same document 
+ * in chunks to an {@link XMLFeedParser}.
+ *
+ * @author Johan Degraeve
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeedBenchmark {
+
+    /**
+     * number of Node elements in the document
+     */
+    @Param({"100000"})
+    public int elements;
+
+    /**
+     * content of the elements
+     */
+    @Param({"ATTRIBUTES", "TEXT"})
+    public DocumentGenerator.Content content;
+
+    /**
+     * size of the chunks fed to the feed parser
+     */
+    @Param({"1500", "65536"})
+    public int chunkSize;
+
+    /**
+     * the document
+     */
+    private byte[] document;
+
+    /**
+     * the parser, no classes are found so the tree consists of default elements
+     */
+    private EasyXMLDataParser parser;
+
+    /**
+     * generates the document and creates the parser
+     */
+    @Setup
+    public void setup() {
+	document = DocumentGenerator.of(elements, DocumentGenerator.Shape.SHALLOW, content).generateBytes();
+	parser = new EasyXMLDataParser(new String[] {FeedBenchmark.class.getPackage().getName()},
+		new String[] {ParseBenchmark.FALLBACK_PREFIX}, true);
+    }
+
+    /**
+     * parses the complete document
+     * @return the root element
+     * @throws SAXParseException
+     */
+    @Benchmark
+    public XMLElement parse() throws SAXParseException {
+	return parser.parse(new ByteArrayInputStream(document));
+    }
+
+    /**
+     * feeds the document in chunks
+     * @return the root element
+     * @throws SAXParseException
+     */
+    @Benchmark
+    public XMLElement feed() throws SAXParseException {
+	XMLFeedParser feedParser = parser.newFeedParser();
+	for (int offset = 0; offset < document.length; offset += chunkSize)
+	    feedParser.feed(ByteBuffer.wrap(document, offset, Math.min(chunkSize, document.length - offset)));
+	return feedParser.endOfInput();
+    }
+}
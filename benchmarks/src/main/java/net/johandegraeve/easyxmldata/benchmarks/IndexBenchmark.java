@@ -0,0 +1,151 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.johandegraeve.easyxmldata.EasyXMLDataParser;
+import net.johandegraeve.easyxmldata.XMLElement;
+import net.johandegraeve.easyxmldata.XMLElementIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Compares searching all Node elements by walking the tree with {@link XMLElementIndex#findAll(String)}, and the cost of building
+ * the index : {@link EasyXMLDataParser#parseIndexed(java.io.InputStream)} against {@link EasyXMLDataParser#parse(java.io.InputStream)}.
+ *
+ * @author Johan Degraeve
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+
+    /**
+     * number of Node elements in the document
+     */
+    @Param({"100000"})
+    public int elements;
+
+    /**
+     * shape of the document
+     */
+    @Param({"SHALLOW", "DEEP"})
+    public DocumentGenerator.Shape shape;
+
+    /**
+     * the document
+     */
+    private byte[] document;
+
+    /**
+     * the parser, no classes are found so the tree consists of default elements
+     */
+    private EasyXMLDataParser parser;
+
+    /**
+     * the parsed document with its index
+     */
+    private XMLElementIndex index;
+
+    /**
+     * generates and parses the document
+     * @throws SAXParseException
+     */
+    @Setup
+    public void setup() throws SAXParseException {
+	document = DocumentGenerator.of(elements, shape, DocumentGenerator.Content.ATTRIBUTES).generateBytes();
+	parser = new EasyXMLDataParser(new String[] {IndexBenchmark.class.getPackage().getName()},
+		new String[] {ParseBenchmark.FALLBACK_PREFIX}, true);
+	index = parser.parseIndexed(new ByteArrayInputStream(document));
+    }
+
+    /**
+     * parses without index
+     * @return the root element
+     * @throws SAXParseException
+     */
+    @Benchmark
+    public XMLElement parse() throws SAXParseException {
+	return parser.parse(new ByteArrayInputStream(document));
+    }
+
+    /**
+     * parses and builds the index
+     * @return the index
+     * @throws SAXParseException
+     */
+    @Benchmark
+    public XMLElementIndex parseIndexed() throws SAXParseException {
+	return parser.parseIndexed(new ByteArrayInputStream(document));
+    }
+
+    /**
+     * finds all Node elements by walking the tree
+     * @return the elements
+     */
+    @Benchmark
+    public List<XMLElement> searchTree() {
+	ArrayList<XMLElement> returnvalue = new ArrayList<XMLElement>();
+	search(index.getRoot(), returnvalue);
+	return returnvalue;
+    }
+
+    /**
+     * finds all Node elements in the index
+     * @return the elements
+     */
+    @Benchmark
+    public List<XMLElement> searchIndex() {
+	return index.findAll(DocumentGenerator.NODE_TAG);
+    }
+
+    /**
+     * adds element and its descendants with tag name Node to found
+     * @param element
+     * @param found
+     */
+    private static void search(XMLElement element, ArrayList<XMLElement> found) {
+	if (DocumentGenerator.NODE_TAG.equals(element.getTagName()))
+	    found.add(element);
+	ArrayList<XMLElement> children = element.getChildren();
+	if (children != null)
+	    for (XMLElement child : children)
+		search(child, found);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata.benchmarks;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import net.johandegraeve.easyxmldata.EasyXMLDataParser;
+import net.johandegraeve.easyxmldata.LazyXMLElement;
+import net.johandegraeve.easyxmldata.XMLElement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Compares {@link EasyXMLDataParser#parseLazy(String)}, reading the attributes and text of a percentage of the children of the root,
+ * with {@link EasyXMLDataParser#parse(java.io.Reader)} of the same document.
+ * Run with -prof gc to compare the allocation.
+ *
+ * @author Johan Degraeve
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LazyBenchmark {
+
+    /**
+     * number of Node elements in the document
+     */
+    @Param({"10000"})
+    public int elements;
+
+    /**
+     * content of the elements
+     */
+    @Param({"ATTRIBUTES", "TEXT"})
+    public DocumentGenerator.Content content;
+
+    /**
+     * percentage of the children of the root that is read
+     */
+    @Param({"5", "100"})
+    public int percentage;
+
+    /**
+     * the document
+     */
+    private String document;
+
+    /**
+     * the parser, no classes are found so the eager tree consists of default elements, as the lazy one
+     */
+    private EasyXMLDataParser parser;
+
+    /**
+     * generates the document and creates the parser
+     */
+    @Setup
+    public void setup() {
+	document = DocumentGenerator.of(elements, DocumentGenerator.Shape.SHALLOW, content).generate();
+	parser = new EasyXMLDataParser(new String[] {LazyBenchmark.class.getPackage().getName()},
+		new String[] {ParseBenchmark.FALLBACK_PREFIX}, true);
+    }
+
+    /**
+     * parses the whole document
+     * @return the root element
+     * @throws SAXParseException
+     */
+    @Benchmark
+    public XMLElement eager() throws SAXParseException {
+	return parser.parse(new StringReader(document));
+    }
+
+    /**
+     * parses lazily and reads the attributes and text of {@link #percentage} % of the children
+     * @param blackhole
+     * @throws SAXParseException
+     */
+    @Benchmark
+    public void lazy(Blackhole blackhole) throws SAXParseException {
+	LazyXMLElement root = parser.parseLazy(document);
+	ArrayList<XMLElement> children = root.getChildren();
+	int step = 100 / percentage;
+	for (int i = 0; i < children.size(); i += step) {
+	    XMLElement child = children.get(i);
+	    blackhole.consume(child.getAttributes().getLength());
+	    blackhole.consume(child.getText());
+	}
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import net.johandegraeve.easyxmldata.EasyXMLDataParser;
+import net.johandegraeve.easyxmldata.OffHeapDocument;
+import net.johandegraeve.easyxmldata.XMLElement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Compares {@link EasyXMLDataParser#parseOffHeap(java.io.InputStream)} followed by {@link OffHeapDocument#close()} with
+ * {@link EasyXMLDataParser#parse(java.io.InputStream)} of the same document.
+ * Run with -prof gc to compare the allocation : what the eager parse allocates stays reachable as long as the tree is used, 
+ * the off-heap document keeps none of it on the heap.
+ *
+ * @author Johan Degraeve
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OffHeapBenchmark {
+
+    /**
+     * number of Node elements in the document
+     */
+    @Param({"100000"})
+    public int elements;
+
+    /**
+     * shape of the document
+     */
+    @Param({"SHALLOW", "DEEP"})
+    public DocumentGenerator.Shape shape;
+
+    /**
+     * content of the elements
+     */
+    @Param({"ATTRIBUTES", "TEXT"})
+    public DocumentGenerator.Content content;
+
+    /**
+     * the document
+     */
+    private byte[] document;
+
+    /**
+     * the parser, no classes are found so the eager tree consists of default elements
+     */
+    private EasyXMLDataParser parser;
+
+    /**
+     * generates the document and creates the parser
+     */
+    @Setup
+    public void setup() {
+	document = DocumentGenerator.of(elements, shape, content).generateBytes();
+	parser = new EasyXMLDataParser(new String[] {OffHeapBenchmark.class.getPackage().getName()},
+		new String[] {ParseBenchmark.FALLBACK_PREFIX}, true);
+    }
+
+    /**
+     * parses the document on the heap
+     * @return the root element
+     * @throws SAXParseException
+     */
+    @Benchmark
+    public XMLElement eager() throws SAXParseException {
+	return parser.parse(new ByteArrayInputStream(document));
+    }
+
+    /**
+     * parses the document outside the heap and frees it
+     * @return the number of elements
+     * @throws SAXParseException
+     */
+    @Benchmark
+    public int offHeap() throws SAXParseException {
+	OffHeapDocument offHeapDocument = parser.parseOffHeap(new ByteArrayInputStream(document));
+	try {
+	    return offHeapDocument.getNodeCount();
+	} finally {
+	    offHeapDocument.close();
+	}
+    }
+}
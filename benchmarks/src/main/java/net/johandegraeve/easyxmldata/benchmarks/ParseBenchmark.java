@@ -0,0 +1,128 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import net.johandegraeve.easyxmldata.EasyXMLDataParser;
+import net.johandegraeve.easyxmldata.ParserEngine;
+import net.johandegraeve.easyxmldata.XMLElement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Measures {@link EasyXMLDataParser#parse(java.io.InputStream)} for documents created by {@link DocumentGenerator}.<br>
+ * Parameters : shallow or deep documents, attribute-heavy or text-heavy content, tags for which a class is found (known)
+ * or not found (fallback to the default element), and the SAX or StAX engine.
+ * Run with -prof gc to get the allocation rate next to the throughput.
+ *
+ * @author Johan Degraeve
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    /**
+     * prefix of the classes {@link BenchDocument} and {@link BenchNode}
+     */
+    public static final String KNOWN_PREFIX = "Bench";
+
+    /**
+     * prefix for which no class exists, so all tags fall back to the default element
+     */
+    public static final String FALLBACK_PREFIX = "Unknown";
+
+    /**
+     * number of Node elements in the document
+     */
+    @Param({"10000"})
+    public int elements;
+
+    /**
+     * shape of the document
+     */
+    @Param({"SHALLOW", "DEEP"})
+    public DocumentGenerator.Shape shape;
+
+    /**
+     * content of the elements
+     */
+    @Param({"ATTRIBUTES", "TEXT"})
+    public DocumentGenerator.Content content;
+
+    /**
+     * true if classes are found for the tags
+     */
+    @Param({"true", "false"})
+    public boolean knownTags;
+
+    /**
+     * the engine
+     */
+    @Param({"SAX", "STAX"})
+    public ParserEngine engine;
+
+    /**
+     * the document
+     */
+    private byte[] document;
+
+    /**
+     * the parser
+     */
+    private EasyXMLDataParser parser;
+
+    /**
+     * generates the document and creates the parser
+     */
+    @Setup
+    public void setup() {
+	document = DocumentGenerator.of(elements, shape, content).generateBytes();
+	parser = new EasyXMLDataParser(new String[] {ParseBenchmark.class.getPackage().getName()},
+		new String[] {knownTags ? KNOWN_PREFIX : FALLBACK_PREFIX}, true, engine);
+    }
+
+    /**
+     * parses the document
+     * @return the root element
+     * @throws SAXParseException
+     */
+    @Benchmark
+    public XMLElement parse() throws SAXParseException {
+	return parser.parse(new ByteArrayInputStream(document));
+    }
+}
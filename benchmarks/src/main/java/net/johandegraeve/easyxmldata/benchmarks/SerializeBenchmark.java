@@ -0,0 +1,123 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.johandegraeve.easyxmldata.EasyXMLDataParser;
+import net.johandegraeve.easyxmldata.Utilities;
+import net.johandegraeve.easyxmldata.XMLElement;
+import net.johandegraeve.easyxmldata.XMLElementWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Measures {@link Utilities#createXML(XMLElement)} and {@link XMLElementWriter} for trees parsed from documents created by
+ * {@link DocumentGenerator}.
+ * Run with -prof gc to get the allocation rate next to the throughput.
+ *
+ * @author Johan Degraeve
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializeBenchmark {
+
+    /**
+     * number of Node elements in the tree
+     */
+    @Param({"10000"})
+    public int elements;
+
+    /**
+     * shape of the tree
+     */
+    @Param({"SHALLOW", "DEEP"})
+    public DocumentGenerator.Shape shape;
+
+    /**
+     * content of the elements
+     */
+    @Param({"ATTRIBUTES", "TEXT"})
+    public DocumentGenerator.Content content;
+
+    /**
+     * the tree
+     */
+    private XMLElement root;
+
+    /**
+     * output of {@link #writeToStream()}, reused
+     */
+    private ByteArrayOutputStream outputStream;
+
+    /**
+     * parses the generated document
+     * @throws SAXParseException
+     */
+    @Setup
+    public void setup() throws SAXParseException {
+	byte[] document = DocumentGenerator.of(elements, shape, content).generateBytes();
+	root = new EasyXMLDataParser(new String[] {SerializeBenchmark.class.getPackage().getName()},
+		new String[] {ParseBenchmark.KNOWN_PREFIX}, true).parse(new ByteArrayInputStream(document));
+	outputStream = new ByteArrayOutputStream(2 * document.length);
+    }
+
+    /**
+     * creates the XML as a String
+     * @return the XML
+     */
+    @Benchmark
+    public String createXML() {
+	return Utilities.createXML(root);
+    }
+
+    /**
+     * writes the XML encoded in UTF-8 to a stream
+     * @return number of bytes written
+     * @throws IOException
+     */
+    @Benchmark
+    public int writeToStream() throws IOException {
+	outputStream.reset();
+	XMLElementWriter writer = new XMLElementWriter(outputStream);
+	writer.write(root);
+	writer.flush();
+	return outputStream.size();
+    }
+}
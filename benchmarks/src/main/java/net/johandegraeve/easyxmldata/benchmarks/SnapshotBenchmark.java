@@ -0,0 +1,167 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import net.johandegraeve.easyxmldata.EasyXMLDataParser;
+import net.johandegraeve.easyxmldata.Utilities;
+import net.johandegraeve.easyxmldata.XMLElement;
+import net.johandegraeve.easyxmldata.XMLElementSnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Compares loading a tree from an {@link XMLElementSnapshot}, from memory and from a memory mapped file, with parsing the XML
+ * with {@link EasyXMLDataParser#parse(java.io.InputStream)}. The elements are instances of {@link BenchNode}.<br>
+ * The setup checks that the tree read from the snapshot gives the same XML as the parsed tree.
+ *
+ * @author Johan Degraeve
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    /**
+     * number of Node elements in the document
+     */
+    @Param({"10000"})
+    public int elements;
+
+    /**
+     * shape of the document
+     */
+    @Param({"SHALLOW", "DEEP"})
+    public DocumentGenerator.Shape shape;
+
+    /**
+     * content of the elements
+     */
+    @Param({"ATTRIBUTES", "TEXT"})
+    public DocumentGenerator.Content content;
+
+    /**
+     * the document
+     */
+    private byte[] document;
+
+    /**
+     * the parser
+     */
+    private EasyXMLDataParser parser;
+
+    /**
+     * the snapshot format
+     */
+    private XMLElementSnapshot snapshot;
+
+    /**
+     * snapshot of the parsed document
+     */
+    private byte[] snapshotBytes;
+
+    /**
+     * file with {@link #snapshotBytes}
+     */
+    private Path snapshotFile;
+
+    /**
+     * parses the document, creates the snapshot and checks the round trip
+     * @throws SAXParseException
+     * @throws IOException
+     */
+    @Setup
+    public void setup() throws SAXParseException, IOException {
+	document = DocumentGenerator.of(elements, shape, content).generateBytes();
+	parser = new EasyXMLDataParser(new String[] {SnapshotBenchmark.class.getPackage().getName()},
+		new String[] {ParseBenchmark.KNOWN_PREFIX}, true);
+	snapshot = new XMLElementSnapshot();
+	XMLElement parsed = parser.parse(new ByteArrayInputStream(document));
+	snapshotBytes = snapshot.toBytes(parsed);
+	snapshotFile = Files.createTempFile("easyxmldata", ".snapshot");
+	snapshot.write(parsed, snapshotFile);
+	String expected = Utilities.createXML(parsed);
+	if (!expected.equals(Utilities.createXML(snapshot.read(ByteBuffer.wrap(snapshotBytes))))
+		|| !expected.equals(Utilities.createXML(snapshot.read(snapshotFile))))
+	    throw new IllegalStateException("tree read from snapshot differs from parsed tree");
+    }
+
+    /**
+     * removes the snapshot file
+     * @throws IOException
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+	Files.deleteIfExists(snapshotFile);
+    }
+
+    /**
+     * parses the XML
+     * @return the root element
+     * @throws SAXParseException
+     */
+    @Benchmark
+    public XMLElement parse() throws SAXParseException {
+	return parser.parse(new ByteArrayInputStream(document));
+    }
+
+    /**
+     * reads the snapshot from memory
+     * @return the root element
+     * @throws IOException
+     */
+    @Benchmark
+    public XMLElement readSnapshot() throws IOException {
+	return snapshot.read(ByteBuffer.wrap(snapshotBytes));
+    }
+
+    /**
+     * reads the snapshot from a memory mapped file
+     * @return the root element
+     * @throws IOException
+     */
+    @Benchmark
+    public XMLElement readMappedSnapshot() throws IOException {
+	return snapshot.read(snapshotFile);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import net.johandegraeve.easyxmldata.EasyXMLDataParser;
+import net.johandegraeve.easyxmldata.ParallelTreeWalker;
+import net.johandegraeve.easyxmldata.XMLElement;
+import net.johandegraeve.easyxmldata.XMLElementVisitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+/**
+ * Compares a sequential recursive walk of a parsed tree with {@link ParallelTreeWalker#visit(XMLElement, XMLElementVisitor)},
+ * both computing the same statistic : the total length of all attribute values.
+ *
+ * @author Johan Degraeve
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeWalkBenchmark {
+
+    /**
+     * number of Node elements in the document
+     */
+    @Param({"1000000"})
+    public int elements;
+
+    /**
+     * shape of the document
+     */
+    @Param({"SHALLOW", "DEEP"})
+    public DocumentGenerator.Shape shape;
+
+    /**
+     * the parsed document
+     */
+    private XMLElement root;
+
+    /**
+     * the walker, on the common pool
+     */
+    private ParallelTreeWalker walker;
+
+    /**
+     * computes the statistic per element
+     */
+    private final XMLElementVisitor<Long> visitor = new XMLElementVisitor<Long>() {
+	public Long visit(XMLElement element, int depth) {
+	    return Long.valueOf(attributeLength(element));
+	}
+
+	public Long combine(Long first, Long second) {
+	    return Long.valueOf(first.longValue() + second.longValue());
+	}
+    };
+
+    /**
+     * generates and parses the document
+     * @throws SAXException
+     */
+    @Setup
+    public void setup() throws SAXException {
+	byte[] document = DocumentGenerator.of(elements, shape, DocumentGenerator.Content.ATTRIBUTES).generateBytes();
+	EasyXMLDataParser parser = new EasyXMLDataParser(new String[] {TreeWalkBenchmark.class.getPackage().getName()},
+		new String[] {ParseBenchmark.FALLBACK_PREFIX}, true);
+	root = parser.parse(new ByteArrayInputStream(document));
+	walker = new ParallelTreeWalker();
+    }
+
+    /**
+     * walks the tree on the calling thread
+     * @return the statistic
+     */
+    @Benchmark
+    public long sequential() {
+	return walk(root);
+    }
+
+    /**
+     * walks the tree on the common pool
+     * @return the statistic
+     * @throws SAXException
+     */
+    @Benchmark
+    public long parallel() throws SAXException {
+	return walker.visit(root, visitor).longValue();
+    }
+
+    /**
+     * @param element
+     * @return the statistic for element and its descendants
+     */
+    private static long walk(XMLElement element) {
+	long returnvalue = attributeLength(element);
+	if (element.getChildren() != null)
+	    for (XMLElement child : element.getChildren())
+		returnvalue += walk(child);
+	return returnvalue;
+    }
+
+    /**
+     * @param element
+     * @return total length of the attribute values of element
+     */
+    private static long attributeLength(XMLElement element) {
+	Attributes attributes = element.getAttributes();
+	if (attributes == null)
+	    return 0;
+	long returnvalue = 0;
+	for (int i = 0; i < attributes.getLength(); i++)
+	    returnvalue += attributes.getValue(i).length();
+	return returnvalue;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Stack;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import net.johandegraeve.easyxmldata.DefaultXMLElement;
+import net.johandegraeve.easyxmldata.XMLElement;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Parses a document the way {@link net.johandegraeve.easyxmldata.EasyXMLDataParser} did before parsers, SAX parsers and tag
+ * resolutions were reused : a new SAXParserFactory and SAXParser for each document, and for each start tag a search with
+ * Class.forName and an instance created by reflection. Used as the baseline for the one-at-a-time loop in {@link BatchBenchmark}.<br>
+ * Create one instance per document.
+ *
+ * @author Johan Degraeve
+ *
+ */
+final class UncachedParser extends DefaultHandler {
+
+    /**
+     * the packages to search, together with {@link #prefixNames}
+     */
+    private final String[] packagesNames;
+
+    /**
+     * the prefixes to use when searching for a class
+     */
+    private final String[] prefixNames;
+
+    /**
+     * open elements
+     */
+    private final Stack<XMLElement> elements = new Stack<XMLElement>();
+
+    /**
+     * text of the open elements
+     */
+    private final Stack<StringBuilder> texts = new Stack<StringBuilder>();
+
+    /**
+     * the root element, when parsing is finished
+     */
+    private XMLElement root;
+
+    /**
+     * constructor
+     * @param packagesNames
+     * @param prefixNames
+     */
+    UncachedParser(String[] packagesNames, String[] prefixNames) {
+	this.packagesNames = packagesNames;
+	this.prefixNames = prefixNames;
+    }
+
+    /**
+     * parses the document
+     * @param source the XML page
+     * @return the root element
+     * @throws SAXParseException
+     */
+    XMLElement parse(String source) throws SAXParseException {
+	try {
+	    SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+	    parser.parse(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)), this);
+	    return root;
+	} catch (Exception e) {
+	    throw new SAXParseException("Exception : \n" + 
+		    e.toString() +  "\n", null);
+	}
+    }
+
+    /**
+     * @see org.xml.sax.helpers.DefaultHandler#startElement(java.lang.String, java.lang.String, java.lang.String, org.xml.sax.Attributes)
+     */
+    @Override
+    public void startElement(String uri, String localName, String name, Attributes attributes) throws SAXException {
+	XMLElement element = null;
+	for (int i = 0; i < packagesNames.length && element == null; i++) {
+	    try {
+		element = (XMLElement)Class.forName(packagesNames[i] + "." + prefixNames[i] + name).getDeclaredConstructor().newInstance();
+	    } catch (ClassNotFoundException e) {
+		//try the next package
+	    } catch (ReflectiveOperationException e) {
+		throw new SAXException(e);
+	    }
+	}
+	if (element == null)
+	    element = new DefaultXMLElement(name);
+	element.addAttributes(attributes);
+	elements.push(element);
+	texts.push(new StringBuilder());
+    }
+
+    /**
+     * @see org.xml.sax.helpers.DefaultHandler#characters(char[], int, int)
+     */
+    @Override
+    public void characters(char[] ch, int start, int length) {
+	texts.peek().append(ch, start, length);
+    }
+
+    /**
+     * @see org.xml.sax.helpers.DefaultHandler#endElement(java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public void endElement(String uri, String localName, String name) throws SAXException {
+	XMLElement element = elements.pop();
+	String text = texts.pop().toString();
+	if (text.length() > 0) {
+	    element.addUnTrimmedText(text);
+	    text = text.trim();
+	    if (text.length() > 0)
+		element.addText(text);
+	}
+	element.complete();
+	if (elements.empty())
+	    root = element;
+	else
+	    elements.peek().addChild(element);
+    }
+}
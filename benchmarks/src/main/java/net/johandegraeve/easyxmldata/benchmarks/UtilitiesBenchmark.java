@@ -0,0 +1,202 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.johandegraeve.easyxmldata.AttributeExtractor;
+import net.johandegraeve.easyxmldata.ChildTypeValidator;
+import net.johandegraeve.easyxmldata.Utilities;
+import net.johandegraeve.easyxmldata.XMLElement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Measures {@link Utilities#verifyChildType(XMLElement, String, String[], String)}, {@link Utilities#verifyChildType(XMLElement, XMLElement)}, 
+ * {@link ChildTypeValidator}, {@link Utilities#getMandatoryAttributeValues(XMLElement, org.xml.sax.Attributes, String[])} and 
+ * {@link AttributeExtractor}, which custom
+ * {@link XMLElement}s call for every child and every element.
+ * Run with -prof gc to get the allocation rate next to the throughput.
+ *
+ * @author Johan Degraeve
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilitiesBenchmark {
+
+    /**
+     * allowed children, the class of {@link #child} matches the last one
+     */
+    private static final String[] CHILD_NAMES = {"Title", "Author", "Isbn", "Publisher", "Year", "Language", "Pages", "Node"};
+
+    /**
+     * allowed children, the class of {@link #child} matches none
+     */
+    private static final String[] OTHER_CHILD_NAMES = {"Title", "Author", "Isbn", "Publisher", "Year", "Language", "Pages", "Chapter"};
+
+    /**
+     * validator for {@link #CHILD_NAMES}
+     */
+    private static final ChildTypeValidator VALIDATOR = ChildTypeValidator.of(ParseBenchmark.KNOWN_PREFIX, CHILD_NAMES, "Book");
+
+    /**
+     * validator for {@link #OTHER_CHILD_NAMES}
+     */
+    private static final ChildTypeValidator OTHER_VALIDATOR = ChildTypeValidator.of(ParseBenchmark.KNOWN_PREFIX, OTHER_CHILD_NAMES, "Book");
+
+    /**
+     * names of the mandatory attributes
+     */
+    private static final String[] ATTRIBUTE_NAMES = {"a0", "a1", "a2", "a3", "a4", "a5", "a6", "a7"};
+
+    /**
+     * extractor for {@link #ATTRIBUTE_NAMES}
+     */
+    private static final AttributeExtractor EXTRACTOR = AttributeExtractor.of(ATTRIBUTE_NAMES);
+
+    /**
+     * reused by {@link #extractAttributes()}
+     */
+    private final String[] values = new String[ATTRIBUTE_NAMES.length];
+
+    /**
+     * the child, an instance of {@link BenchNode}
+     */
+    private XMLElement child;
+
+    /**
+     * parent of {@link #child}, an instance of {@link BenchDocument}
+     */
+    private XMLElement parent;
+
+    /**
+     * the attributes, in reverse order of {@link #ATTRIBUTE_NAMES}
+     */
+    private AttributesImpl attributes;
+
+    /**
+     * creates the child and the attributes
+     */
+    @Setup
+    public void setup() {
+	child = new BenchNode();
+	parent = new BenchDocument();
+	attributes = new AttributesImpl();
+	for (int i = ATTRIBUTE_NAMES.length - 1; i >= 0; i--)
+	    attributes.addAttribute("", ATTRIBUTE_NAMES[i], ATTRIBUTE_NAMES[i], "CDATA", "value" + i);
+    }
+
+    /**
+     * verifies a child that is allowed
+     * @return the child
+     * @throws SAXException
+     */
+    @Benchmark
+    public XMLElement verifyChildTypeAccepted() throws SAXException {
+	Utilities.verifyChildType(child, ParseBenchmark.KNOWN_PREFIX, CHILD_NAMES, "Book");
+	return child;
+    }
+
+    /**
+     * verifies a child that is allowed, with a validator
+     * @return the child
+     * @throws SAXException
+     */
+    @Benchmark
+    public XMLElement verifyChildTypeValidatorAccepted() throws SAXException {
+	VALIDATOR.verify(child);
+	return child;
+    }
+
+    /**
+     * verifies a child that is not allowed, with a validator
+     * @return the exception
+     */
+    @Benchmark
+    public SAXException verifyChildTypeValidatorRejected() {
+	try {
+	    OTHER_VALIDATOR.verify(child);
+	} catch (SAXException e) {
+	    return e;
+	}
+	throw new IllegalStateException("child should have been rejected");
+    }
+
+    /**
+     * verifies a child that is allowed, with the children declared in the annotation of the parent
+     * @return the child
+     * @throws SAXException
+     */
+    @Benchmark
+    public XMLElement verifyChildTypeAnnotated() throws SAXException {
+	Utilities.verifyChildType(parent, child);
+	return child;
+    }
+
+    /**
+     * verifies a child that is not allowed
+     * @return the exception
+     */
+    @Benchmark
+    public SAXException verifyChildTypeRejected() {
+	try {
+	    Utilities.verifyChildType(child, ParseBenchmark.KNOWN_PREFIX, OTHER_CHILD_NAMES, "Book");
+	} catch (SAXException e) {
+	    return e;
+	}
+	throw new IllegalStateException("child should have been rejected");
+    }
+
+    /**
+     * gets the values of 8 mandatory attributes
+     * @return the values
+     * @throws SAXException
+     */
+    @Benchmark
+    public String[] getMandatoryAttributeValues() throws SAXException {
+	return Utilities.getMandatoryAttributeValues(child, attributes, ATTRIBUTE_NAMES);
+    }
+
+    /**
+     * gets the values of 8 mandatory attributes with an extractor, in an array that is reused
+     * @return the values
+     * @throws SAXException
+     */
+    @Benchmark
+    public String[] extractAttributes() throws SAXException {
+	return EXTRACTOR.extract(child, attributes, values);
+    }
+}
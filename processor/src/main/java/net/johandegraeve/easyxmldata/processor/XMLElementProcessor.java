@@ -0,0 +1,339 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates the registry for classes annotated with <code>net.johandegraeve.easyxmldata.XMLElementType</code>.<br>
+ * For each package with annotated classes, a class GeneratedXMLElementRegistry is generated that implements 
+ * <code>net.johandegraeve.easyxmldata.XMLElementRegistry</code>, with per class a constructor reference, the allowed child classes
+ * and the attribute names. The registries are listed in META-INF/services/net.johandegraeve.easyxmldata.XMLElementRegistry, so that
+ * the parser finds them with ServiceLoader.<br>
+ * Classes that can not be created by the generated code (abstract, private, inner class, no accessible no-argument constructor, 
+ * not implementing XMLElement) are reported as compilation errors.<br>
+ * Use it by adding the artifact easyxmldata-processor to the annotation processor path.
+ *
+ * @author Johan Degraeve
+ *
+ */
+@SupportedAnnotationTypes(XMLElementProcessor.ANNOTATION_NAME)
+public class XMLElementProcessor extends AbstractProcessor {
+
+    /**
+     * the annotation processed
+     */
+    static final String ANNOTATION_NAME = "net.johandegraeve.easyxmldata.XMLElementType";
+
+    /**
+     * the interface implemented by the annotated classes
+     */
+    static private final String ELEMENT_NAME = "net.johandegraeve.easyxmldata.XMLElement";
+
+    /**
+     * the interface implemented by the generated registries
+     */
+    static private final String REGISTRY_NAME = "net.johandegraeve.easyxmldata.XMLElementRegistry";
+
+    /**
+     * class created by the generated registries for each annotated class
+     */
+    static private final String BINDING_NAME = "net.johandegraeve.easyxmldata.XMLElementBinding";
+
+    /**
+     * simple name of the generated registries
+     */
+    static private final String GENERATED_NAME = "GeneratedXMLElementRegistry";
+
+    /**
+     * the service file
+     */
+    static private final String SERVICE_FILE = "META-INF/services/" + REGISTRY_NAME;
+
+    /**
+     * fully qualified names of the registries generated in this compilation, sorted to keep the service file stable
+     */
+    private final Set<String> generated = new TreeSet<String>();
+
+    /**
+     * number of registries generated per package, a package with annotated classes in more than one round gets more than one registry
+     */
+    private final Map<String, Integer> registriesPerPackage = new HashMap<String, Integer>();
+
+    /**
+     * @see javax.annotation.processing.AbstractProcessor#getSupportedSourceVersion()
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+	return SourceVersion.latestSupported();
+    }
+
+    /**
+     * @see javax.annotation.processing.AbstractProcessor#process(java.util.Set, javax.annotation.processing.RoundEnvironment)
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+	if (roundEnv.processingOver()) {
+	    if (!generated.isEmpty())
+		writeServiceFile();
+	    return false;
+	}
+	TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION_NAME);
+	if (annotation == null)
+	    return false;
+
+	//annotated classes per package, sorted to generate the same source each time
+	Map<String, List<TypeElement>> perPackage = new TreeMap<String, List<TypeElement>>();
+	for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+	    if (!isValid(element))
+		continue;
+	    TypeElement type = (TypeElement)element;
+	    String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+	    List<TypeElement> types = perPackage.get(packageName);
+	    if (types == null) {
+		types = new ArrayList<TypeElement>();
+		perPackage.put(packageName, types);
+	    }
+	    types.add(type);
+	}
+	for (Map.Entry<String, List<TypeElement>> entry : perPackage.entrySet()) {
+	    Collections.sort(entry.getValue(), (a, b) -> a.getQualifiedName().toString().compareTo(b.getQualifiedName().toString()));
+	    writeRegistry(entry.getKey(), entry.getValue(), annotation);
+	}
+	return true;
+    }
+
+    /**
+     * checks that the generated code can create instances of the annotated element, reports an error if not
+     * @param element
+     * @return true if valid
+     */
+    private boolean isValid(Element element) {
+	Messager messager = processingEnv.getMessager();
+	if (element.getKind() != ElementKind.CLASS) {
+	    messager.printMessage(Diagnostic.Kind.ERROR, "XMLElementType can only be used on classes", element);
+	    return false;
+	}
+	TypeElement type = (TypeElement)element;
+	Types types = processingEnv.getTypeUtils();
+	TypeElement xmlElement = processingEnv.getElementUtils().getTypeElement(ELEMENT_NAME);
+	if (xmlElement == null || !types.isAssignable(types.erasure(type.asType()), types.erasure(xmlElement.asType()))) {
+	    messager.printMessage(Diagnostic.Kind.ERROR, type.getQualifiedName() + " does not implement " + ELEMENT_NAME, element);
+	    return false;
+	}
+	if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+	    messager.printMessage(Diagnostic.Kind.ERROR, type.getQualifiedName() + " is abstract", element);
+	    return false;
+	}
+	for (Element enclosing = type; enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+	    TypeElement enclosingType = (TypeElement)enclosing;
+	    if (enclosingType.getModifiers().contains(Modifier.PRIVATE)) {
+		messager.printMessage(Diagnostic.Kind.ERROR, enclosingType.getQualifiedName() + " is private", element);
+		return false;
+	    }
+	    if (enclosingType.getNestingKind() == NestingKind.MEMBER && !enclosingType.getModifiers().contains(Modifier.STATIC)) {
+		messager.printMessage(Diagnostic.Kind.ERROR, enclosingType.getQualifiedName() + " is an inner class, it should be static", element);
+		return false;
+	    }
+	    if (enclosingType.getNestingKind() == NestingKind.LOCAL || enclosingType.getNestingKind() == NestingKind.ANONYMOUS) {
+		messager.printMessage(Diagnostic.Kind.ERROR, enclosingType.getQualifiedName() + " is a local class", element);
+		return false;
+	    }
+	}
+	for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements()))
+	    if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE))
+		return true;
+	messager.printMessage(Diagnostic.Kind.ERROR, type.getQualifiedName() + " has no no-argument constructor that is not private", element);
+	return false;
+    }
+
+    /**
+     * generates the registry for the annotated classes of one package
+     * @param packageName
+     * @param types
+     * @param annotation
+     */
+    private void writeRegistry(String packageName, List<TypeElement> types, TypeElement annotation) {
+	Elements elements = processingEnv.getElementUtils();
+	Integer count = registriesPerPackage.get(packageName);
+	String simpleName = GENERATED_NAME + (count == null ? "" : "_" + (count + 1));
+	registriesPerPackage.put(packageName, count == null ? 1 : count + 1);
+	String qualifiedName = (packageName.length() == 0 ? "" : packageName + ".") + simpleName;
+
+	StringBuilder source = new StringBuilder();
+	if (packageName.length() > 0)
+	    source.append("package ").append(packageName).append(";\n\n");
+	source.append("/**\n * Registry of the classes annotated with XMLElementType in this package, generated by ")
+		.append(XMLElementProcessor.class.getName()).append(", do not edit.\n */\n");
+	if (elements.getTypeElement("javax.annotation.processing.Generated") != null)
+	    source.append("@javax.annotation.processing.Generated(\"").append(XMLElementProcessor.class.getName()).append("\")\n");
+	source.append("public final class ").append(simpleName).append(" implements ").append(REGISTRY_NAME).append(" {\n\n");
+	source.append("    @Override\n");
+	source.append("    public java.util.List<").append(BINDING_NAME).append("> getBindings() {\n");
+	source.append("\treturn java.util.Arrays.asList(");
+	for (int i = 0; i < types.size(); i++) {
+	    TypeElement type = types.get(i);
+	    String name = type.getQualifiedName().toString();
+	    Map<String, AnnotationValue> values = getValues(type, annotation);
+	    source.append(i == 0 ? "\n" : ",\n");
+	    source.append("\t\tnew ").append(BINDING_NAME).append("(").append(name).append(".class, ").append(name).append("::new,\n");
+	    source.append("\t\t\tnew Class<?>[] {");
+	    List<? extends AnnotationValue> children = getList(values.get("children"));
+	    for (int j = 0; j < children.size(); j++) {
+		TypeMirror child = (TypeMirror)children.get(j).getValue();
+		TypeElement childType = (TypeElement)((DeclaredType)child).asElement();
+		source.append(j == 0 ? "" : ", ").append(childType.getQualifiedName()).append(".class");
+	    }
+	    source.append("},\n");
+	    appendStrings(source, getList(values.get("mandatoryAttributes")));
+	    source.append(",\n");
+	    appendStrings(source, getList(values.get("optionalAttributes")));
+	    source.append(")");
+	}
+	source.append(");\n    }\n}\n");
+
+	try {
+	    JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, types.toArray(new Element[types.size()]));
+	    Writer writer = file.openWriter();
+	    try {
+		writer.write(source.toString());
+	    } finally {
+		writer.close();
+	    }
+	    generated.add(qualifiedName);
+	} catch (IOException e) {
+	    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "could not write " + qualifiedName + " : " + e);
+	}
+    }
+
+    /**
+     * appends a String array
+     * @param source
+     * @param strings
+     */
+    private void appendStrings(StringBuilder source, List<? extends AnnotationValue> strings) {
+	source.append("\t\t\tnew String[] {");
+	for (int j = 0; j < strings.size(); j++)
+	    source.append(j == 0 ? "" : ", ").append(processingEnv.getElementUtils().getConstantExpression(strings.get(j).getValue()));
+	source.append("}");
+    }
+
+    /**
+     * gets the values of the annotation, including the defaults
+     * @param type the annotated class
+     * @param annotation
+     * @return the values per name
+     */
+    private Map<String, AnnotationValue> getValues(TypeElement type, TypeElement annotation) {
+	Map<String, AnnotationValue> returnvalue = new HashMap<String, AnnotationValue>();
+	for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+	    if (!processingEnv.getTypeUtils().isSameType(mirror.getAnnotationType(), annotation.asType()))
+		continue;
+	    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : 
+		processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet())
+		returnvalue.put(entry.getKey().getSimpleName().toString(), entry.getValue());
+	}
+	return returnvalue;
+    }
+
+    /**
+     * @param value an array valued annotation value
+     * @return the elements, empty if value is null
+     */
+    @SuppressWarnings("unchecked")
+    static private List<? extends AnnotationValue> getList(AnnotationValue value) {
+	if (value == null)
+	    return Collections.emptyList();
+	return (List<? extends AnnotationValue>)value.getValue();
+    }
+
+    /**
+     * writes the service file, keeping the registries listed by an earlier compilation of other sources in the same output directory
+     */
+    private void writeServiceFile() {
+	Filer filer = processingEnv.getFiler();
+	Set<String> registries = new TreeSet<String>(generated);
+	try {
+	    FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+	    BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8));
+	    try {
+		String line;
+		while ((line = reader.readLine()) != null) {
+		    int comment = line.indexOf('#');
+		    line = (comment < 0 ? line : line.substring(0, comment)).trim();
+		    if (line.length() > 0)
+			registries.add(line);
+		}
+	    } finally {
+		reader.close();
+	    }
+	} catch (IOException e) {
+	    //no earlier service file
+	}
+	try {
+	    FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+	    Writer writer = file.openWriter();
+	    try {
+		for (String registry : registries)
+		    writer.write(registry + "\n");
+	    } finally {
+		writer.close();
+	    }
+	} catch (IOException e) {
+	    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "could not write " + SERVICE_FILE + " : " + e);
+	}
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+/**
+ * Gets the values of a fixed list of attributes, as {@link Utilities#getMandatoryAttributeValues(XMLElement, Attributes, String[])} and
+ * {@link Utilities#getOptionalAttributeValues(Attributes, String[], String[])} do, but prepared once instead of at each call.<br>
+ * Create one extractor per element class, typically in a static final field, and call {@link #extract(XMLElement, Attributes, String[])}
+ * in {@link XMLElement#addAttributes(Attributes)}. The attributes are read in one pass, each attribute name is looked up in a hash table
+ * built when the extractor is created, instead of searching the attributes once per name. The values are stored in an array 
+ * that can be reused : the mandatory attributes first, then the optional attributes, in the order given when creating the extractor.<br>
+ * The typed accessors convert a value without creating intermediate Strings.<br>
+ * An AttributeExtractor is immutable and can be used by several threads at the same time.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public final class AttributeExtractor {
+
+    /**
+     * the names, mandatory names first
+     */
+    private final String[] names;
+
+    /**
+     * number of mandatory names
+     */
+    private final int mandatoryCount;
+
+    /**
+     * default values of the optional names, same index as in {@link #names} minus {@link #mandatoryCount}
+     */
+    private final String[] defaultValues;
+
+    /**
+     * open addressing table on the hash code of the names, index in {@link #names} + 1, 0 for an empty slot
+     */
+    private final int[] table;
+
+    /**
+     * constructor
+     * @param names
+     * @param mandatoryCount
+     * @param defaultValues
+     */
+    private AttributeExtractor(String[] names, int mandatoryCount, String[] defaultValues) {
+	this.names = names;
+	this.mandatoryCount = mandatoryCount;
+	this.defaultValues = defaultValues;
+	int size = 4;
+	while (size < 2 * names.length)
+	    size *= 2;
+	table = new int[size];
+	for (int i = 0; i < names.length; i++) {
+	    if (names[i] == null)
+		throw new NullPointerException("attribute names should not be null");
+	    if (indexOf(names[i]) >= 0)
+		throw new IllegalArgumentException("attribute " + names[i] + " appears more than once");
+	    int slot = names[i].hashCode() & (size - 1);
+	    while (table[slot] != 0)
+		slot = (slot + 1) & (size - 1);
+	    table[slot] = i + 1;
+	}
+    }
+
+    /**
+     * creates an extractor for mandatory attributes only
+     * @param mandatoryNames the names of the attributes that must be present
+     * @return the extractor
+     * @throws IllegalArgumentException if a name appears more than once
+     */
+    public static AttributeExtractor of(String... mandatoryNames) {
+	return of(mandatoryNames, null, null);
+    }
+
+    /**
+     * creates an extractor
+     * @param mandatoryNames the names of the attributes that must be present, can be null
+     * @param optionalNames the names of the attributes that may be present, can be null
+     * @param defaultValues the values of the optional attributes that are not present, in the same order as optionalNames, can be null
+     * in which case the default value is null
+     * @return the extractor
+     * @throws IllegalArgumentException if a name appears more than once or if defaultValues does not have the same length as optionalNames
+     */
+    public static AttributeExtractor of(String[] mandatoryNames, String[] optionalNames, String[] defaultValues) {
+	int mandatoryCount = (mandatoryNames == null ? 0 : mandatoryNames.length);
+	int optionalCount = (optionalNames == null ? 0 : optionalNames.length);
+	if (defaultValues != null && defaultValues.length != optionalCount)
+	    throw new IllegalArgumentException("AttributeExtractor : optionalNames and defaultValues should have the same length");
+	String[] names = new String[mandatoryCount + optionalCount];
+	for (int i = 0; i < mandatoryCount; i++)
+	    names[i] = mandatoryNames[i];
+	for (int i = 0; i < optionalCount; i++)
+	    names[mandatoryCount + i] = optionalNames[i];
+	return new AttributeExtractor(names, mandatoryCount, defaultValues == null ? new String[optionalCount] : defaultValues.clone());
+    }
+
+    /**
+     * @return number of names, which is the length needed for the array of values
+     */
+    public int getSize() {
+	return names.length;
+    }
+
+    /**
+     * @param qName
+     * @return the index of the value of the attribute in the array filled by {@link #extract(XMLElement, Attributes, String[])}, 
+     * -1 if the extractor does not know the name
+     */
+    public int indexOf(String qName) {
+	int mask = table.length - 1;
+	for (int slot = qName.hashCode() & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+	    String name = names[table[slot] - 1];
+	    if (name == qName || name.equals(qName))
+		return table[slot] - 1;
+	}
+	return -1;
+    }
+
+    /**
+     * gets the values of the attributes, in one pass over attributes.<br>
+     * For optional attributes that are not present, the default value is stored. Attributes that the extractor does not know are ignored.
+     * @param xmlElement will be used to get the className, in case an exception needs to be generated, for the text string
+     * @param attributes to be searched in
+     * @param values the array to fill, can be null or too short in which case a new array is created
+     * @return values, or the new array, with the values in the order of the names given when creating the extractor
+     * @throws SAXException in case a mandatory attribute is not found, with the same text as 
+     * {@link Utilities#getMandatoryAttributeValues(XMLElement, Attributes, String[])}
+     */
+    public String[] extract(XMLElement xmlElement, Attributes attributes, String[] values) throws SAXException {
+	String[] returnvalue = (values == null || values.length < names.length ? new String[names.length] : values);
+	for (int i = 0; i < names.length; i++)
+	    returnvalue[i] = null;
+	int length = attributes.getLength();
+	for (int i = 0; i < length; i++) {
+	    int index = indexOf(attributes.getQName(i));
+	    if (index >= 0)
+		returnvalue[index] = attributes.getValue(i);
+	}
+	for (int i = 0; i < names.length; i++) {
+	    if (returnvalue[i] != null)
+		continue;
+	    if (i < mandatoryCount)
+		throw new SAXException("Element " + Utilities.getClassname(xmlElement.getClass()) + " is missing attribute " + names[i]);
+	    returnvalue[i] = defaultValues[i - mandatoryCount];
+	}
+	return returnvalue;
+    }
+
+    /**
+     * converts a value to an int, leading and trailing whitespace is allowed
+     * @param values the array filled by {@link #extract(XMLElement, Attributes, String[])}
+     * @param index index in values
+     * @param defaultValue returned if the value is null
+     * @return the value
+     * @throws SAXException if the value is not an int
+     */
+    public int getInt(String[] values, int index, int defaultValue) throws SAXException {
+	String value = values[index];
+	if (value == null)
+	    return defaultValue;
+	long result = parseLong(value, index, "int");
+	if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE)
+	    throw invalid(index, value, "int");
+	return (int)result;
+    }
+
+    /**
+     * converts a value to a long, leading and trailing whitespace is allowed
+     * @param values the array filled by {@link #extract(XMLElement, Attributes, String[])}
+     * @param index index in values
+     * @param defaultValue returned if the value is null
+     * @return the value
+     * @throws SAXException if the value is not a long
+     */
+    public long getLong(String[] values, int index, long defaultValue) throws SAXException {
+	String value = values[index];
+	if (value == null)
+	    return defaultValue;
+	return parseLong(value, index, "long");
+    }
+
+    /**
+     * converts a value to a double, with {@link Double#parseDouble(String)}, which allows leading and trailing whitespace
+     * @param values the array filled by {@link #extract(XMLElement, Attributes, String[])}
+     * @param index index in values
+     * @param defaultValue returned if the value is null
+     * @return the value
+     * @throws SAXException if the value is not a double
+     */
+    public double getDouble(String[] values, int index, double defaultValue) throws SAXException {
+	String value = values[index];
+	if (value == null)
+	    return defaultValue;
+	try {
+	    return Double.parseDouble(value);
+	} catch (NumberFormatException e) {
+	    throw invalid(index, value, "double");
+	}
+    }
+
+    /**
+     * converts a value to a boolean : true or 1 gives true, false or 0 gives false, as for the XML Schema type boolean, 
+     * leading and trailing whitespace is allowed
+     * @param values the array filled by {@link #extract(XMLElement, Attributes, String[])}
+     * @param index index in values
+     * @param defaultValue returned if the value is null
+     * @return the value
+     * @throws SAXException if the value is not a boolean
+     */
+    public boolean getBoolean(String[] values, int index, boolean defaultValue) throws SAXException {
+	String value = values[index];
+	if (value == null)
+	    return defaultValue;
+	int start = skipWhitespace(value);
+	int end = skipTrailingWhitespace(value, start);
+	int length = end - start;
+	if ((length == 4 && value.regionMatches(start, "true", 0, 4)) || (length == 1 && value.charAt(start) == '1'))
+	    return true;
+	if ((length == 5 && value.regionMatches(start, "false", 0, 5)) || (length == 1 && value.charAt(start) == '0'))
+	    return false;
+	throw invalid(index, value, "boolean");
+    }
+
+    /**
+     * converts a value to a constant of an enum, with {@link Enum#valueOf(Class, String)}
+     * @param <E>
+     * @param values the array filled by {@link #extract(XMLElement, Attributes, String[])}
+     * @param index index in values
+     * @param enumType the class of the enum
+     * @param defaultValue returned if the value is null
+     * @return the value
+     * @throws SAXException if the value is not the name of a constant of enumType
+     */
+    public <E extends Enum<E>> E getEnum(String[] values, int index, Class<E> enumType, E defaultValue) throws SAXException {
+	String value = values[index];
+	if (value == null)
+	    return defaultValue;
+	try {
+	    return Enum.valueOf(enumType, value);
+	} catch (IllegalArgumentException e) {
+	    throw invalid(index, value, enumType.getSimpleName());
+	}
+    }
+
+    /**
+     * parses a decimal integer, without trimming or copying
+     * @param value
+     * @param index
+     * @param type for the exception text
+     * @return the value
+     * @throws SAXException if value is not a decimal integer or too large for a long
+     */
+    private long parseLong(String value, int index, String type) throws SAXException {
+	int start = skipWhitespace(value);
+	int end = skipTrailingWhitespace(value, start);
+	if (start == end)
+	    throw invalid(index, value, type);
+	boolean negative = false;
+	char first = value.charAt(start);
+	if (first == '-' || first == '+') {
+	    negative = (first == '-');
+	    start++;
+	    if (start == end)
+		throw invalid(index, value, type);
+	}
+	//accumulate negatively, so that Long.MIN_VALUE can be parsed
+	long limit = (negative ? Long.MIN_VALUE : -Long.MAX_VALUE);
+	long multiplyLimit = limit / 10;
+	long result = 0;
+	for (int i = start; i < end; i++) {
+	    int digit = value.charAt(i) - '0';
+	    if (digit < 0 || digit > 9 || result < multiplyLimit)
+		throw invalid(index, value, type);
+	    result *= 10;
+	    if (result < limit + digit)
+		throw invalid(index, value, type);
+	    result -= digit;
+	}
+	return negative ? result : -result;
+    }
+
+    /**
+     * @param value
+     * @return index of the first character that is not XML whitespace
+     */
+    static private int skipWhitespace(String value) {
+	int i = 0;
+	while (i < value.length() && isWhitespace(value.charAt(i)))
+	    i++;
+	return i;
+    }
+
+    /**
+     * @param value
+     * @param start
+     * @return index after the last character that is not XML whitespace, at least start
+     */
+    static private int skipTrailingWhitespace(String value, int start) {
+	int i = value.length();
+	while (i > start && isWhitespace(value.charAt(i - 1)))
+	    i--;
+	return i;
+    }
+
+    /**
+     * @param c
+     * @return true if c is XML whitespace
+     */
+    static private boolean isWhitespace(char c) {
+	return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    /**
+     * @param index
+     * @param value
+     * @param type
+     * @return the exception for a value that can not be converted
+     */
+    private SAXException invalid(int index, String value, String type) {
+	return new SAXException("Attribute " + names[index] + " has an invalid " + type + " value : " + value);
+    }
+}
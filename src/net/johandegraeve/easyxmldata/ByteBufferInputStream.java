@@ -0,0 +1,155 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An InputStream that reads from a {@link ByteBuffer}, or from a file mapped in memory, without copying the content first.<br>
+ * A file is mapped in regions of at most {@link #REGION_SIZE} bytes, one region at a time, so files larger than 2 GB can be read.
+ *
+ * @author Johan Degraeve
+ *
+ */
+final class ByteBufferInputStream extends InputStream {
+
+    /**
+     * maximum size of a mapped region of a file
+     */
+    static final long REGION_SIZE = 1L << 30;
+
+    /**
+     * the buffer being read
+     */
+    private ByteBuffer current;
+
+    /**
+     * the file, null if reading from a ByteBuffer
+     */
+    private final FileChannel channel;
+
+    /**
+     * position in the file of the next region to map
+     */
+    private long nextRegion;
+
+    /**
+     * size of the file
+     */
+    private final long size;
+
+    /**
+     * constructor, reads the remaining bytes of buffer, without changing its position
+     * @param buffer
+     */
+    ByteBufferInputStream(ByteBuffer buffer) {
+	current = buffer.duplicate();
+	channel = null;
+	size = 0;
+    }
+
+    /**
+     * constructor, reads the file by mapping it in memory
+     * @param channel the file, closed by {@link #close()}
+     * @throws IOException
+     */
+    ByteBufferInputStream(FileChannel channel) throws IOException {
+	this.channel = channel;
+	size = channel.size();
+	nextRegion = 0;
+	current = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * makes sure {@link #current} has remaining bytes, mapping the next region if needed
+     * @return false if there are no bytes left
+     * @throws IOException
+     */
+    private boolean ensureRemaining() throws IOException {
+	if (current.hasRemaining())
+	    return true;
+	if (channel == null || nextRegion >= size)
+	    return false;
+	long regionSize = Math.min(REGION_SIZE, size - nextRegion);
+	current = channel.map(FileChannel.MapMode.READ_ONLY, nextRegion, regionSize);
+	nextRegion += regionSize;
+	return true;
+    }
+
+    /**
+     * @see java.io.InputStream#read()
+     */
+    @Override
+    public int read() throws IOException {
+	if (!ensureRemaining())
+	    return -1;
+	return current.get() & 0xFF;
+    }
+
+    /**
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+	if (len == 0)
+	    return 0;
+	if (!ensureRemaining())
+	    return -1;
+	int count = Math.min(len, current.remaining());
+	current.get(b, off, count);
+	return count;
+    }
+
+    /**
+     * @see java.io.InputStream#skip(long)
+     */
+    @Override
+    public long skip(long n) throws IOException {
+	long skipped = 0;
+	while (skipped < n && ensureRemaining()) {
+	    int count = (int)Math.min(n - skipped, current.remaining());
+	    current.position(current.position() + count);
+	    skipped += count;
+	}
+	return skipped;
+    }
+
+    /**
+     * @see java.io.InputStream#available()
+     */
+    @Override
+    public int available() throws IOException {
+	return current.remaining();
+    }
+
+    /**
+     * @see java.io.InputStream#close()
+     */
+    @Override
+    public void close() throws IOException {
+	current = ByteBuffer.allocate(0);
+	nextRegion = size;
+	if (channel != null)
+	    channel.close();
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Verifies the class of children, as {@link Utilities#verifyChildType(XMLElement, String[], String[], String)} does, but prepared once 
+ * instead of at each call.<br>
+ * Create one validator per parent class, typically in a static final field, and call {@link #verify(XMLElement)} in 
+ * {@link XMLElement#addChild(XMLElement)}. The result per child class is remembered in a {@link ClassValue}, so that verifying a child
+ * of a class seen before does not compare class names and does not allocate. A child that is not allowed gets the same exception 
+ * text as with {@link Utilities#verifyChildType(XMLElement, String[], String[], String)}.<br>
+ * A ChildTypeValidator is immutable and can be used by several threads at the same time.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public final class ChildTypeValidator {
+
+    /**
+     * simple class names of the allowed children, tag prefix + child name, null if the children are given as classes
+     */
+    private final String[] allowedNames;
+
+    /**
+     * the allowed classes, null if the children are given as names
+     */
+    private final Class<?>[] allowedClasses;
+
+    /**
+     * false if no children are allowed at all
+     */
+    private final boolean childrenAllowed;
+
+    /**
+     * the text of the exception thrown for a child that is not allowed
+     */
+    private final String message;
+
+    /**
+     * per child class, true if allowed
+     */
+    private final ClassValue<Boolean> accepted = new ClassValue<Boolean>() {
+	@Override
+	protected Boolean computeValue(Class<?> type) {
+	    return Boolean.valueOf(compute(type));
+	}
+    };
+
+    /**
+     * constructor
+     * @param allowedNames
+     * @param allowedClasses
+     * @param childrenAllowed
+     * @param message
+     */
+    private ChildTypeValidator(String[] allowedNames, Class<?>[] allowedClasses, boolean childrenAllowed, String message) {
+	this.allowedNames = allowedNames;
+	this.allowedClasses = allowedClasses;
+	this.childrenAllowed = childrenAllowed;
+	this.message = message;
+    }
+
+    /**
+     * creates a validator that accepts the same children as {@link Utilities#verifyChildType(XMLElement, String[], String[], String)}
+     * @param tagPrefixes tagPrefixes + childNames form the names of allowed children for the parentName, tagPrefix can be null,
+     * tagPrefixes and childNames should have the same length
+     * @param childNames tagPrefix + childNames form the names of allowed children for the parentName, if null no children are allowed
+     * @param parentName the parentName, used in the exception text
+     * @return the validator
+     * @throws IllegalArgumentException if childNames and tagPrefixes do not have the same length
+     */
+    public static ChildTypeValidator of(String[] tagPrefixes, String[] childNames, String parentName) {
+	if (childNames == null)
+	    return new ChildTypeValidator(null, null, false, "No children allowed for element of type" + parentName);
+	if (tagPrefixes == null || childNames.length != tagPrefixes.length)
+	    throw new IllegalArgumentException("ChildTypeValidator : childNames and tagPrefixes should have the same length");
+	String[] allowedNames = new String[childNames.length];
+	for (int i = 0; i < childNames.length; i++)
+	    allowedNames[i] = tagPrefixes[i] + childNames[i];
+	return new ChildTypeValidator(allowedNames, null, true, invalidChildMessage(childNames, parentName));
+    }
+
+    /**
+     * creates a validator that accepts the same children as {@link Utilities#verifyChildType(XMLElement, String, String[], String)}
+     * @param tagPrefix tagPrefix + childNames form the names of allowed children for the parentName, tagPrefix can be null
+     * @param childNames tagPrefix + childNames form the names of allowed children for the parentName, if null no children are allowed
+     * @param parentName the parentName, used in the exception text
+     * @return the validator
+     */
+    public static ChildTypeValidator of(String tagPrefix, String[] childNames, String parentName) {
+	String[] tagPrefixes = null;
+	if (childNames != null) {
+	    tagPrefixes = new String[childNames.length];
+	    for (int i = 0; i < childNames.length; i++)
+		tagPrefixes[i] = tagPrefix;
+	}
+	return of(tagPrefixes, childNames, parentName);
+    }
+
+    /**
+     * creates a validator that accepts children of the given classes, compared by identity, subclasses are not accepted
+     * @param parentName the parentName, used in the exception text
+     * @param childTypes the allowed classes, if empty no children are allowed
+     * @return the validator
+     */
+    public static ChildTypeValidator ofClasses(String parentName, Class<?>... childTypes) {
+	if (childTypes == null || childTypes.length == 0)
+	    return new ChildTypeValidator(null, null, false, "No children allowed for element of type" + parentName);
+	String[] names = new String[childTypes.length];
+	for (int i = 0; i < childTypes.length; i++)
+	    names[i] = Utilities.getClassname(childTypes[i]);
+	return new ChildTypeValidator(null, childTypes.clone(), true, invalidChildMessage(names, parentName));
+    }
+
+    /**
+     * @param child
+     * @return true if child is allowed
+     * @throws NullPointerException if child is null
+     */
+    public boolean accepts(XMLElement child) {
+	return childrenAllowed && accepted.get(child.getClass()).booleanValue();
+    }
+
+    /**
+     * verifies that child is allowed
+     * @param child the child
+     * @throws SAXException if child is not allowed, with explanation text that lists the allowed children
+     * @throws NullPointerException if child is null and children are allowed
+     */
+    public void verify(XMLElement child) throws SAXException {
+	if (!childrenAllowed) {
+	    if (child != null)
+		throw new SAXException(message);
+	    return;
+	}
+	if (!accepted.get(child.getClass()).booleanValue())
+	    throw new SAXException(message);
+    }
+
+    /**
+     * @param type
+     * @return true if type is allowed
+     */
+    private boolean compute(Class<?> type) {
+	if (allowedClasses != null) {
+	    for (int i = 0; i < allowedClasses.length; i++)
+		if (allowedClasses[i] == type)
+		    return true;
+	    return false;
+	}
+	String name = Utilities.getClassname(type);
+	for (int i = 0; i < allowedNames.length; i++)
+	    if (allowedNames[i].equals(name))
+		return true;
+	return false;
+    }
+
+    /**
+     * creates the exception text, same as the one of {@link Utilities#verifyChildType(XMLElement, String[], String[], String)}
+     * @param childNames
+     * @param parentName
+     * @return the text
+     */
+    static String invalidChildMessage(String[] childNames, String parentName) {
+	StringBuilder exceptionString = new StringBuilder();
+	exceptionString.append("Invalid childname for " + parentName +
+		".\n");
+	if (childNames.length > 0) 
+	    if (!((childNames.length == 1) && (childNames[0].equalsIgnoreCase("")))){
+		exceptionString.append("Allowed children are :\n");
+		for (int i =  0; i < childNames.length; i++) {
+		    exceptionString.append(childNames[i] + "\n");
+		}
+	    }    
+	return exceptionString.toString();
+    }
+}
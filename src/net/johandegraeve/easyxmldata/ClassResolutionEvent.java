@@ -0,0 +1,49 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event for the search of the class for a tag that was not yet in the {@link TagResolutionCache}.<br>
+ * The duration of the event is the time spent in Class.forName and in binding the class.
+ *
+ * @author Johan Degraeve
+ *
+ */
+@Name("net.johandegraeve.easyxmldata.ClassResolution")
+@Label("XML Tag Class Resolution")
+@Category({"easyxmldata"})
+@Description("Search of the class for a tag that was not yet cached")
+@StackTrace(false)
+final class ClassResolutionEvent extends Event {
+
+    @Label("Tag Name")
+    String tagName;
+
+    @Label("Class Name")
+    @Description("Class found for the tag, null if none")
+    String className;
+}
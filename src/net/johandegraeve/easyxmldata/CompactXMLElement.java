@@ -0,0 +1,109 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.ArrayList;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+/**
+ * A {@link DefaultXMLElement} that uses less memory, created by {@link EasyXMLDataParser} for unknown tags.<br>
+ * <ul>
+ * <li>the list of children is only created when the first child is added, so leaves don't have one</li>
+ * <li>attributes are stored as one array of names and values, see {@link PackedAttributes}, elements without attributes share one instance</li>
+ * <li>tag names and attribute names are interned in the symbol table of the parse, so all elements share one String per name</li>
+ * </ul>
+ * The attributes returned by {@link #getAttributes()} are read only.<br>
+ * As {@link #addText(String)} does nothing, the text mode is {@link TextMode#UNTRIMMED}; subclasses that override addText 
+ * must also override {@link #getTextMode()}.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public class CompactXMLElement extends DefaultXMLElement implements TextModeAware {
+
+    /**
+     * constructor
+     * @param tagName
+     */
+    public CompactXMLElement(String tagName) {
+	super(tagName, null);
+    }
+
+    /**
+     * stores the attributes in a {@link PackedAttributes}, interning the names
+     * @param attributes
+     * @param symbols symbol table of the parse
+     */
+    /*package private */ void addAttributes(Attributes attributes, SymbolTable symbols) {
+	myAttributes = PackedAttributes.copyOf(attributes, symbols);
+    }
+
+    /**
+     * stores a read only copy of the attributes
+     * @see net.johandegraeve.easyxmldata.DefaultXMLElement#addAttributes(org.xml.sax.Attributes)
+     */
+    @Override
+    public void addAttributes(Attributes attributes) throws SAXException {
+	myAttributes = PackedAttributes.copyOf(attributes, null);
+    }
+
+    /**
+     * Adds child to local XMLElementList, creates the list for the first child
+     * @see net.johandegraeve.easyxmldata.DefaultXMLElement#addChild(net.johandegraeve.easyxmldata.XMLElement)
+     */
+    @Override
+    public void addChild(XMLElement child) throws SAXException {
+	if (XMLElementList == null)
+	    XMLElementList = new ArrayList<XMLElement>(4);
+	XMLElementList.add(child);
+    }
+
+    /**
+     * only untrimmed text is used
+     * @see net.johandegraeve.easyxmldata.TextModeAware#getTextMode()
+     */
+    public TextMode getTextMode() {
+	return TextMode.UNTRIMMED;
+    }
+
+    /**
+     * get XMLElement
+     * @param index
+     * @return the XML element
+     * @throws IndexOutOfBoundsException if there's no child with this index
+     */
+    @Override
+    public XMLElement getXMLElement(int index) {
+	if (XMLElementList == null)
+	    throw new IndexOutOfBoundsException("Index: " + index + ", Size: 0");
+	return XMLElementList.get(index);
+    }
+
+    /**
+     * get the number of children
+     * @return the size
+     */
+    @Override
+    public int getSize() {
+	return XMLElementList == null ? 0 : XMLElementList.size();
+    }
+}
@@ -27,6 +27,7 @@ import org.xml.sax.helpers.AttributesImpl;
 
 /**
  * Will be used for unrecognized tags, ie tags for which no corresponding class can be instantiated.<br>
+ * The parser creates instances of the subclass {@link CompactXMLElement}, which uses less memory.<br>
  *
  * @author Johan Degraeve
  *
@@ -36,20 +37,20 @@ public class DefaultXMLElement implements XMLElement {
     /**
      * the attributes, if any
      */
-    private Attributes myAttributes;
+    /*package private */ Attributes myAttributes;
     /**
      * list of XMLElement children, if any
      */
-    private ArrayList<XMLElement> XMLElementList;
+    /*package private */ ArrayList<XMLElement> XMLElementList;
     /**
      * the text if any, trimmed
      */
-    private String theText;
+    /*package private */ String theText;
 
     /**
      * tag name as read from XML
      */
-    private String tagName;
+    /*package private */ String tagName;
 
     /**
      * read the tag name
@@ -139,6 +140,16 @@ public class DefaultXMLElement implements XMLElement {
 	this.tagName = tagName;
     }
     
+    /**
+     * constructor for subclasses that manage the list of children themselves
+     * @param tagName
+     * @param children the list of children, can be null
+     */
+    /*package private */ DefaultXMLElement(String tagName, ArrayList<XMLElement> children) {
+	this.tagName = tagName;
+	XMLElementList = children;
+    }
+    
     /**
      * constructor
      * @param newElement
@@ -23,26 +23,49 @@ import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.util.Stack;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 
 import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
-import org.xml.sax.SAXNotRecognizedException;
-import org.xml.sax.SAXNotSupportedException;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
 
 
 /**
  * To parse an XML page<br>
- * Extends {@link org.xml.sax.helpers.DefaultHandler} and overrides it methods to allow parsing an XML document.<br>
+ * An EasyXMLDataParser holds the configuration : which packages and prefixes to search for classes corresponding to tags,
+ * and what to do with unknown tags. The configuration does not change after construction (except for 
+ * factories added with {@link #registerFactory(String, Supplier)}), and the state of a parse is kept in a separate handler
+ * per call, so one instance can be shared by several threads calling the parse methods at the same time.<br>
+ * The underlying {@link SAXParser}s are taken from a pool and reused.<br>
+ * <br>
+ * Extends {@link org.xml.sax.helpers.DefaultHandler} so that an instance can still be given to a SAX parser directly, the 
+ * overridden methods forward to one handler owned by this instance; used that way an instance can not be shared between threads.<br>
  *
  * @author Johan Degraeve
  *
@@ -50,53 +73,57 @@ import org.xml.sax.helpers.DefaultHandler;
 public class EasyXMLDataParser  extends DefaultHandler {
     
     /**
-     * the root node retrieved from the XML page
+     * maximum number of documents parsed at the same time by {@link #parseAll(Iterable)}
      */
-    private XMLElement rootFromXML = null;
-    
+    public static final int DEFAULT_BATCH_CONCURRENCY = 4 * Runtime.getRuntime().availableProcessors();
+
     /**
-     * Used to maintain the nodes being read from the XML file. As soon as a valid opening tag is encountered, a node will be added.<br>
-     * When an end tag is encountered, a node is removed.  
+     * the names off the packages to search for a class with the same name as a tag found in an XML document.
+     * The field is used together with prefixNames : class to search will be packageNames[i] + prefixNames[i]
      */
-    private Stack<XMLElement> XMLObjectStack;
+    private final String[] packagesNames;
     
     /**
-     * Used to keep the characters belonging to a node.  
+     * the names of the prefixes to use when searching for a class
      */
-    private Stack<StringBuilder> stringBuilderStack;
+    private final String[] prefixNames;
     
     /**
-     * Used together with {@link #XMLObjectStack}. To remember the prefixName used to find a class 
-     * When an end tag is encountered, a node is removed.  
+     * if true then unknown tags will be treated as {@link CompactXMLElement}, if false then when unknown tag is encountered, an exception 
+     * will be thrown. (unknown tag = corresponding class could not be created)
      */
-    //private Stack<String> prefixNameStack;
-    
+    private final boolean ignoreUnknownTags;
+
     /**
-     * the names off the packages to search for a class with the same name as a tag found in an XML document.
-     * The field is used together with prefixNames : class to search will be packageNames[i] + prefixNames[i]
+     * remembers for each tag the class found for it in {@link #packagesNames}/{@link #prefixNames}, null if packagesNames = null
      */
-    private String[] packagesNames;
-    
+    private final TagResolutionCache tagResolutionCache;
+
     /**
-     * the names of the prefixes to use when searching for a class
+     * factories registered with {@link #registerFactory(String, Supplier)}, per tag name
      */
-    private String[] prefixNames;
-    
+    private final ConcurrentMap<String, ElementFactory> registeredFactories = new ConcurrentHashMap<String, ElementFactory>();
+
     /**
-     * the locate an event, see {@link org.xml.sax.Locator}
+     * the engine used to parse
      */
-    private Locator locator;
+    private final ParserEngine engine;
 
     /**
-     * if true then unknown tags will be treated as {@link DefaultXMLElement}, if false then when unknown tag is encountered, an exception 
-     * will be thrown. (unknown tag = corresponding class could not be created)
+     * the metrics of all parses, null if not enabled, see {@link #setMetricsEnabled(boolean)}.<br>
+     * Access to the content is synchronized on the object itself
+     */
+    private volatile ParseStatistics metrics;
+
+    /**
+     * shares equal subtrees, null if not enabled, see {@link #setInterner(XMLElementInterner)}
      */
-    private boolean ignoreUnknownTags;
+    private volatile XMLElementInterner interner;
 
     /**
-     * prefix name used for pushing on prefixname stack when creating defaultXMLElement
+     * the handler used when this instance itself is given as handler to a SAX parser
      */
-    //private String defaultPrefixname = "QDFI67HJDHFJ234";
+    private XMLElementHandler documentHandler;
     
     /**
      * constructor<br>
@@ -104,18 +131,36 @@ public class EasyXMLDataParser  extends DefaultHandler {
      * if packageNames and prefixNames are both null then the value of ignoreUnknownTags will be set to true no matter the input value.
      * @param packagesNames list of packagesNames to search for classes with same name as tags found
      * @param prefixNames list of prefixnames , by which founds tags should be prefixed while searching for classes
-     * @param ignoreUnknownTags if true then if tags are found in the XML for which no corresponding class is found, a DefaultXMLELement will be created.
+     * @param ignoreUnknownTags if true then if tags are found in the XML for which no corresponding class is found, a {@link CompactXMLElement} will be created.
      */
     public EasyXMLDataParser (String[] packagesNames, String[] prefixNames, boolean ignoreUnknownTags) {
-	this.packagesNames = packagesNames;
-	this.prefixNames = prefixNames;
+	this(packagesNames, prefixNames, ignoreUnknownTags, ParserEngine.SAX);
+    }
+    
+    /**
+     * constructor<br>
+     * packageNames and prefixNames can both be null but if one of them is not null then both should be not null.<br>
+     * if packageNames and prefixNames are both null then the value of ignoreUnknownTags will be set to true no matter the input value.
+     * @param packagesNames list of packagesNames to search for classes with same name as tags found
+     * @param prefixNames list of prefixnames , by which founds tags should be prefixed while searching for classes
+     * @param ignoreUnknownTags if true then if tags are found in the XML for which no corresponding class is found, a {@link CompactXMLElement} will be created.
+     * @param engine the underlying parser to use, both engines create the same trees
+     */
+    public EasyXMLDataParser (String[] packagesNames, String[] prefixNames, boolean ignoreUnknownTags, ParserEngine engine) {
+	if (engine == null)
+	    throw new NullPointerException("engine should not be null");
+	this.engine = engine;
 	if (packagesNames == null && prefixNames != null)
 	    throw new NullPointerException("packageNames and prefixNames should either be both null or both non null");
 	if (packagesNames != null && prefixNames == null)
 	    throw new NullPointerException("packageNames and prefixNames should either be both null or both non null");
+	this.packagesNames = (packagesNames == null ? null : packagesNames.clone());
+	this.prefixNames = (prefixNames == null ? null : prefixNames.clone());
 	this.ignoreUnknownTags = ignoreUnknownTags;
 	if (packagesNames == null || prefixNames == null)
-	    ignoreUnknownTags = true;
+	    tagResolutionCache = null;
+	else
+	    tagResolutionCache = TagResolutionCache.getInstance(packagesNames, prefixNames);
     }
     
     /**
@@ -128,6 +173,102 @@ public class EasyXMLDataParser  extends DefaultHandler {
 	this(packagesNames, prefixNames,true);
     }
     
+    /**
+     * get the engine used to parse
+     * @return the engine
+     */
+    public ParserEngine getEngine() {
+	return engine;
+    }
+    
+    /**
+     * get the cache used to find the class corresponding to a tag, shared with other parsers that use the same package and prefix names
+     * @return the cache, null if this parser was created with packagesNames = null
+     */
+    public TagResolutionCache getTagResolutionCache() {
+	return tagResolutionCache;
+    }
+    
+    /**
+     * registers the supplier to use to create the element for a tag.<br>
+     * A registered supplier takes precedence over the search for a class in the package names and prefix names, and 
+     * is also used if this parser was created with packagesNames = null.<br>
+     * Can be called while other threads are parsing, the supplier is used from the next start tag on.
+     * @param tagName the tag name as found in the XML document
+     * @param supplier creates a new instance each time it is called
+     */
+    public void registerFactory(String tagName, Supplier<? extends XMLElement> supplier) {
+	registeredFactories.put(tagName, ElementFactory.forSupplier(supplier));
+    }
+    
+    /**
+     * Tries to create a class with the same name as the Tag found in the XML page.<br>
+     * Searches through the list of packages/prefixes defined in {@link #packagesNames} and {@link #prefixNames} :
+     * For example if packagesNames[i] = &quot;mypackagename&quot;, prefixNames[i] = &quot;myPrefix&quot; then
+     * an attempt will be made to create a class &quot;mypackagename.myPrefix<i>name</i>&quot;<br>
+     * The list of package names and prefix names will be tried until creation of a class was successful. If no class could be 
+     * created with any of the combination of packagename and prefix, then the local field ignoreUnknownTags is used. If true, a
+     * {@link CompactXMLElement} will be created. If false, an exception will be thrown.<br>
+     * The result of the search is remembered in the {@link TagResolutionCache}, so the search is done only once per tag name.<br>
+     * @param tagName the tag name
+     * @param locator used in exceptions, can be null
+     * @param symbols used to intern the tag name of a {@link CompactXMLElement}
+     * @param statistics if not null, time spent searching the class and in the constructor is added to it
+     * @return the new element, addAttributes not yet called
+     * @throws SAXParseException if the tag is unknown and unknown tags are not ignored, or if the class can not be instantiated
+     */
+    /*package private */ XMLElement newElement(String tagName, Locator locator, SymbolTable symbols, ParseStatistics statistics) throws SAXParseException {
+        ElementFactory factory = null;
+        
+        if (!registeredFactories.isEmpty())
+            factory = registeredFactories.get(tagName);
+        
+        //find the class of type packagename.prefixname+name, with packagename each of the list in packagenames, 
+        //prefixname the corresponding prefix. 
+        //which means, if the tag found is for instance "book", then go through the list of packages and prefixes and
+        //try to find an EasyXMLData class of type packagename.prefixesbook
+        if (factory == null && tagResolutionCache != null) {
+            if (statistics == null)
+        	factory = tagResolutionCache.resolve(tagName, null);
+            else {
+        	long start = System.nanoTime();
+        	factory = tagResolutionCache.resolve(tagName, statistics);
+        	statistics.resolutionNanos += System.nanoTime() - start;
+            }
+        }
+        
+        if (factory == null) {
+	    if (tagResolutionCache != null && !ignoreUnknownTags) {
+		SAXParseException ex = new SAXParseException(
+			"Unknown tag received : " +
+			tagName +
+			".", 
+			locator);
+		throw ex;
+	    }
+	    return new CompactXMLElement(symbols.addSymbol(tagName));
+        }
+        
+	if (!factory.isInstantiable()) {
+	    SAXParseException ex = new SAXParseException(
+		    "Tag : " +
+		    tagName +
+		    " found but corresponding class " +
+		    factory.getElementClass().getName() +
+		    (factory.isInaccessible() ? 
+			    " does not allow access to no-argument constructor" : 
+			    " can not be instantiated with a no-argument constructor"), 
+		    locator);
+	    throw ex;
+	}
+	if (statistics == null)
+	    return factory.newElement();
+	long start = System.nanoTime();
+	XMLElement returnvalue = factory.newElement();
+	statistics.addCallbackTime(returnvalue.getClass(), System.nanoTime() - start);
+	return returnvalue;
+    }
+    
     /**
      * Opens the InputStream
      * @param feedUrl
@@ -142,78 +283,229 @@ public class EasyXMLDataParser  extends DefaultHandler {
     }
     
     /**
-     * @see org.xml.sax.helpers.DefaultHandler#characters(char[], int, int)
+     * parses the source with the handler, with a parser from the {@link SAXParserPool} or with the {@link StAXEngine}
+     * @param source the source, any stream in it is closed when parsing ends
+     * @param handler new handler
+     * @return the XMLElement  populated with the contents of the XML page, null if parsing was stopped by a {@link XMLElementCallback}
+     * @throws SAXParseException
      */
-    @Override
-    public void characters(char[] ch, int start, int length)
-            throws SAXException {
-        super.characters(ch, start, length);
-        stringBuilderStack.peek().append(ch, start, length);
+    private XMLElement parse(InputSource source, XMLElementHandler handler) throws SAXParseException {
+	SAXParser parser = null;
+	ParseStatistics totals = metrics;
+	ParseEvent event = new ParseEvent();
+	ParseStatistics statistics = null;
+	if (totals != null || event.isEnabled()) {
+	    statistics = new ParseStatistics();
+	    statistics.count(source);
+	    handler.setStatistics(statistics);
+	    event.begin();
+	}
+	try {
+	    if (engine == ParserEngine.STAX) {
+		StAXEngine.parse(source, handler);
+	    } else {
+		parser = SAXParserPool.acquire();
+		parser.parse(source, handler);
+	    }
+	    return handler.getRoot();
+	} catch (XMLElementHandler.ParsingStoppedException e) {
+	    return null;
+	} catch (Exception e) {
+	    event.failed = true;
+	    throw new SAXParseException("Exception : \n" + 
+		    e.toString() +  "\n", handler.getLocator());
+	} finally {
+	    if (parser != null)
+		SAXParserPool.release(parser);
+	    close(source);
+	    if (statistics != null)
+		addStatistics(totals, statistics, event, source);
+	}
     }
 
     /**
-     * checks if end tag corresponds to current open element, if not throws SAXParseException<br>
-     * Calls  {@link XMLElement#addText}, {XMLElement#addUnTrimmedText}, {@link XMLElement#complete} and {@link XMLElement#addChild} of the corresponding 
-     * open element.<br>
-     * @see org.xml.sax.helpers.DefaultHandler#endElement(java.lang.String, java.lang.String, java.lang.String)
+     * adds the statistics of one parse to the metrics and commits the event
+     * @param totals the metrics when the parse started, null if not enabled
+     * @param statistics
+     * @param event
+     * @param source
      */
-    @Override
-    public void endElement(String uri, String localName, String name)
-            throws SAXException {
-	super.endElement(uri, localName, name);
-	String textToAdd;
-	
-	try {
-	    //add text from the builder
-	    textToAdd = stringBuilderStack.peek().toString();
-	    if (textToAdd != null)
-		if (textToAdd.length() > 0) {
-		    XMLObjectStack.peek().addUnTrimmedText(textToAdd);
-		    textToAdd = textToAdd.trim();
-		    if (textToAdd.length() > 0)
-			XMLObjectStack.peek().addText(textToAdd);
-		}
-	    
-	    //complete the object parsing
-	    XMLObjectStack.peek().complete();
-	    
-	    //add the child to the parent
-	    if (!XMLObjectStack.empty()) {
-		if (XMLObjectStack.size() > 1) {
-		    XMLElement popped = XMLObjectStack.pop();
-		    //prefixNameStack.pop();
-		    XMLObjectStack.peek().addChild(popped);
-		}    
+    private void addStatistics(ParseStatistics totals, ParseStatistics statistics, ParseEvent event, InputSource source) {
+	statistics.finish();
+	if (totals != null) {
+	    synchronized (totals) {
+		totals.add(statistics);
 	    }
-	    
-	    //remove the StringBuilder from the stack
-	    stringBuilderStack.pop();
-	    
-	    
-	} catch (SAXException e) {
-	    //instance of EasyXMLData class may throw an exception because it doesn't like the text, or because complete() failed
-	    //or maybe, because it doesn't like the child
-	    throw new SAXParseException(e.getMessage(), locator, e);
 	}
-        
+	if (event.shouldCommit()) {
+	    event.set(statistics);
+	    event.systemId = source.getSystemId();
+	    event.engine = engine.name();
+	    event.commit();
+	}
     }
 
     /**
-     * parses the xml which is located at the URL and return the result in a XMLElement 
+     * enables or disables the collection of metrics.<br>
+     * When enabled, each parse with this parser counts elements per tag, time spent in the code of the element classes, 
+     * time and misses of searching classes for tags, bytes and characters read and the maximum depth. The totals are 
+     * available with {@link #getMetrics()}. Collecting costs two calls to System.nanoTime() per call to the element classes,
+     * when disabled the cost is one check per element.<br>
+     * The same counters are also reported per parse in the JDK Flight Recorder event net.johandegraeve.easyxmldata.Parse, when a
+     * recording enables it, and each class search that is not answered from the cache in the event net.johandegraeve.easyxmldata.ClassResolution.
+     * @param enabled if false, the metrics collected so far are discarded
+     */
+    public synchronized void setMetricsEnabled(boolean enabled) {
+	if (!enabled)
+	    metrics = null;
+	else if (metrics == null)
+	    metrics = new ParseStatistics();
+    }
+
+    /**
+     * @return true if metrics are collected, see {@link #setMetricsEnabled(boolean)}
+     */
+    public boolean isMetricsEnabled() {
+	return metrics != null;
+    }
+
+    /**
+     * enables or disables sharing of equal subtrees.<br>
+     * With an interner, each {@link CompactXMLElement} and each {@link ImmutableXMLElement} that is completed is replaced by 
+     * an equal element completed before, if any, so that repeated subtrees are kept in memory once. The same interner can be 
+     * used by several parsers, to share subtrees between documents. See {@link XMLElementInterner} for the restrictions, 
+     * and for the number of elements and bytes saved.<br>
+     * Applies to parses started after the call.
+     * @param interner the interner, null to disable
+     */
+    public void setInterner(XMLElementInterner interner) {
+	this.interner = interner;
+    }
+
+    /**
+     * @return the interner used to share equal subtrees, null if not enabled, see {@link #setInterner(XMLElementInterner)}
+     */
+    public XMLElementInterner getInterner() {
+	return interner;
+    }
+
+    /**
+     * get the metrics collected since they were enabled or reset, see {@link #setMetricsEnabled(boolean)}.<br>
+     * Parses that are running are added when they finish.
+     * @return a snapshot of the metrics, null if metrics are not enabled
+     */
+    public ParseMetrics getMetrics() {
+	ParseStatistics totals = metrics;
+	if (totals == null)
+	    return null;
+	synchronized (totals) {
+	    return new ParseMetrics(totals);
+	}
+    }
+
+    /**
+     * restarts the collection of metrics, if enabled
+     */
+    public synchronized void resetMetrics() {
+	if (metrics != null)
+	    metrics = new ParseStatistics();
+    }
+    
+    /**
+     * closes the stream or reader in the source, if any, ignoring exceptions
+     * @param source
+     */
+    static void close(InputSource source) {
+	try {
+	    if (source.getByteStream() != null)
+		source.getByteStream().close();
+	    if (source.getCharacterStream() != null)
+		source.getCharacterStream().close();
+	} catch (IOException e) {
+	    //nothing to do
+	}
+    }
+
+    /**
+     * creates a new handler in streaming mode
+     * @param selector
+     * @param callback
+     * @return the handler
+     */
+    private XMLElementHandler newStreamingHandler(XMLElementSelector selector, XMLElementCallback callback) {
+	if (selector == null || callback == null)
+	    throw new NullPointerException("selector and callback should not be null");
+	XMLElementHandler handler = new XMLElementHandler(this);
+	handler.setStreaming(selector, callback);
+	return handler;
+    }
+
+    /**
+     * creates a new handler in selective mode
+     * @param selection
+     * @param flat
+     * @return the handler
+     */
+    private XMLElementHandler newSelectiveHandler(XMLPathSelection selection, boolean flat) {
+	if (selection == null)
+	    throw new NullPointerException("selection should not be null");
+	XMLElementHandler handler = new XMLElementHandler(this);
+	handler.setSelection(selection, flat);
+	return handler;
+    }
+
+    /**
+     * creates the input for the xml located at the URL
      * @param url
-     * @return the XMLElement  populated with the contents of the XML page
-     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     * @return the input
+     * @throws SAXParseException
      */
-    public XMLElement parse(URL url) throws SAXParseException {
-	SAXParserFactory factory = SAXParserFactory.newInstance();
+    static private InputSource toInputSource(URL url) throws SAXParseException {
+	try {
+	    return new InputSource(getInputStream(url));
+	} catch (Exception e) {
+	    throw new SAXParseException("Exception : \n" + 
+		    e.toString() +  "\n", null);
+	}
+    }
+
+    /**
+     * creates the input for an XML page or a string representing a URL<br>
+     * a check is made to see if the first non-whitespace character is a <, in which case it is assumed to be XML. 
+     * Otherwise an attempt is made to open it as a URL
+     * @param source the XML page or a string representing the URL
+     * @param charsetName in case the source is XML (and not a URL), then the source will be converted to byte array using the specified charsetName
+     * @return the input
+     * @throws SAXParseException
+     */
+    static private InputSource toInputSource(String source, String charsetName) throws SAXParseException {
+	BufferedInputStream inputStream;
+	int counter = 0;
+
         try {
-            SAXParser parser = factory.newSAXParser();
-            parser.parse(getInputStream(url), this);
-            return rootFromXML;
+            if (source != null)
+        	while (source.charAt(counter) == ' ') 
+        	    counter ++;
+            if (source !=null && source.charAt(counter) != '<') {
+        	inputStream = new BufferedInputStream(getInputStream(new URL(source)));
+            } else {
+        	inputStream = new BufferedInputStream(new ByteArrayInputStream(source.getBytes(charsetName)));
+            }
         } catch (Exception e) {
             throw new SAXParseException("Exception : \n" + 
-        	    e.toString() +  "\n", locator);
+        	    e.toString() +  "\n", null);
         } 
+        return new InputSource(inputStream);
+    }
+
+    /**
+     * parses the xml which is located at the URL and return the result in a XMLElement 
+     * @param url
+     * @return the XMLElement  populated with the contents of the XML page
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElement parse(URL url) throws SAXParseException {
+	return parse(toInputSource(url), new XMLElementHandler(this));
     }
 
     /**
@@ -238,37 +530,858 @@ public class EasyXMLDataParser  extends DefaultHandler {
      * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
      */
     public XMLElement parse(String source, String charsetName) throws SAXParseException {
-	BufferedInputStream inputStream;
-	int counter = 0;
-	SAXParserFactory factory = SAXParserFactory.newInstance();
+	return parse(toInputSource(source, charsetName), new XMLElementHandler(this));
+    }
 
-        try {
-            SAXParser parser = factory.newSAXParser();
-            
-            if (source != null)
-        	while (source.charAt(counter) == ' ') 
-        	    counter ++;
-            if (source !=null && source.charAt(counter) != '<') {
-        	inputStream = new BufferedInputStream(getInputStream(new URL(source)));
-            } else {
-        	inputStream = new BufferedInputStream(new ByteArrayInputStream(source.getBytes(charsetName)));
-            }
-            parser.parse(inputStream, this);
-            return rootFromXML;
-        } catch (Exception e) {
-            throw new SAXParseException("Exception : \n" + 
-        	    e.toString() +  "\n", locator);
-        } 
+    /**
+     * parses the xml read from the stream and return the result in a XMLElement<br>
+     * The encoding is taken from the XML declaration, UTF-8 if none.
+     * @param inputStream the XML page, closed when parsing ends
+     * @return the XMLElement  populated with the contents of the XML page
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElement parse(InputStream inputStream) throws SAXParseException {
+	return parse(toInputSource(inputStream), new XMLElementHandler(this));
     }
 
+    /**
+     * parses the xml read from the reader and return the result in a XMLElement<br>
+     * An encoding in the XML declaration is ignored, the characters are used as they are.
+     * @param reader the XML page, closed when parsing ends
+     * @return the XMLElement  populated with the contents of the XML page
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElement parse(Reader reader) throws SAXParseException {
+	if (reader == null)
+	    throw new SAXParseException("Exception : \n" + 
+		    new NullPointerException("reader should not be null").toString() +  "\n", null);
+	return parse(new InputSource(reader), new XMLElementHandler(this));
+    }
+
+    /**
+     * parses the xml in the file and return the result in a XMLElement<br>
+     * The file is mapped in memory and read directly from there, so even files of several GB are never copied as a whole
+     * into a byte array or String. The encoding is taken from the XML declaration, UTF-8 if none.
+     * @param path the file
+     * @return the XMLElement  populated with the contents of the XML page
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElement parse(Path path) throws SAXParseException {
+	return parse(toMappedInputSource(path), new XMLElementHandler(this));
+    }
+
+    /**
+     * parses the xml in the remaining bytes of the buffer and return the result in a XMLElement<br>
+     * The bytes are read directly from the buffer, the position of the buffer is not changed. 
+     * The encoding is taken from the XML declaration, UTF-8 if none.
+     * @param buffer the XML page, can be a direct or mapped buffer
+     * @return the XMLElement  populated with the contents of the XML page
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElement parse(ByteBuffer buffer) throws SAXParseException {
+	if (buffer == null)
+	    throw new SAXParseException("Exception : \n" + 
+		    new NullPointerException("buffer should not be null").toString() +  "\n", null);
+	return parse(new InputSource(new ByteBufferInputStream(buffer)), new XMLElementHandler(this));
+    }
+
+    /**
+     * parses the xml lazily : the document is indexed in one pass, elements, attributes and text are created when they are read.<br>
+     * Use this for large documents of which only a few parts are used, see {@link LazyXMLElement}. The elements are not instances
+     * of the classes configured in this parser, unless they are materialized with {@link LazyXMLElement#materialize()}.
+     * Document type declarations are not supported.
+     * @param source the XML page, not a URL
+     * @return the root element
+     * @throws SAXParseException if the document is not well formed or contains a document type declaration
+     */
+    public LazyXMLElement parseLazy(String source) throws SAXParseException {
+	if (source == null)
+	    throw new SAXParseException("Exception : \n" + 
+		    new NullPointerException("source should not be null").toString() +  "\n", null);
+	return new LazyXMLElement(LazyDocument.index(source, this), 0);
+    }
+
+    /**
+     * parses the xml and builds an index on the elements, by tag name and by path, see {@link XMLElementIndex}
+     * @param source the XML page or a string representing the URL, see {@link #parse(String)}
+     * @return the index, {@link XMLElementIndex#getRoot()} is the root element
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElementIndex parseIndexed(String source) throws SAXParseException {
+	return parseIndexed(toInputSource(source, Charset.defaultCharset().displayName()));
+    }
+
+    /**
+     * parses the xml read from the stream and builds an index on the elements, see {@link #parseIndexed(String)}
+     * @param inputStream the XML page, closed when parsing ends
+     * @return the index
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElementIndex parseIndexed(InputStream inputStream) throws SAXParseException {
+	return parseIndexed(toInputSource(inputStream));
+    }
+
+    /**
+     * parses the xml in the file and builds an index on the elements, see {@link #parseIndexed(String)}.<br>
+     * The file is mapped in memory, see {@link #parse(Path)}.
+     * @param path the file
+     * @return the index
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElementIndex parseIndexed(Path path) throws SAXParseException {
+	return parseIndexed(toMappedInputSource(path));
+    }
+
+    /**
+     * parses and builds an index
+     * @param source
+     * @return the index
+     * @throws SAXParseException
+     */
+    private XMLElementIndex parseIndexed(InputSource source) throws SAXParseException {
+	XMLElementHandler handler = new XMLElementHandler(this);
+	XMLElementIndex.Builder builder = new XMLElementIndex.Builder();
+	handler.setIndex(builder);
+	parse(source, handler);
+	XMLElementIndex returnvalue = builder.build();
+	if (returnvalue == null)
+	    throw new SAXParseException("Exception : \nno root element\n", null);
+	return returnvalue;
+    }
+
+    /**
+     * parses the xml into a document stored outside the heap, see {@link OffHeapDocument}.<br>
+     * Use this for very large documents, of which the elements would take much heap and make garbage collection slow. 
+     * The elements are not instances of the classes configured in this parser, no classes are searched for the tags.
+     * Close the document when done, to free the memory.
+     * @param inputStream the XML page, closed when parsing ends
+     * @return the document
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public OffHeapDocument parseOffHeap(InputStream inputStream) throws SAXParseException {
+	return parseOffHeap(toInputSource(inputStream));
+    }
+
+    /**
+     * parses the xml in the file into a document stored outside the heap, see {@link #parseOffHeap(InputStream)}.<br>
+     * The file is mapped in memory, see {@link #parse(Path)}.
+     * @param path the file
+     * @return the document
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public OffHeapDocument parseOffHeap(Path path) throws SAXParseException {
+	return parseOffHeap(toMappedInputSource(path));
+    }
+
+    /**
+     * parses the xml into a document stored outside the heap, see {@link #parseOffHeap(InputStream)}
+     * @param source the XML page or a string representing the URL, see {@link #parse(String)}
+     * @return the document
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public OffHeapDocument parseOffHeap(String source) throws SAXParseException {
+	return parseOffHeap(toInputSource(source, Charset.defaultCharset().displayName()));
+    }
+
+    /**
+     * parses into a document stored outside the heap, the document is freed if the parsing fails
+     * @param source
+     * @return the document
+     * @throws SAXParseException
+     */
+    private OffHeapDocument parseOffHeap(InputSource source) throws SAXParseException {
+	OffHeapDocument.Builder builder = new OffHeapDocument.Builder(this);
+	boolean done = false;
+	try {
+	    parse(source, builder);
+	    OffHeapDocument returnvalue = builder.getDocument();
+	    if (returnvalue.getNodeCount() == 0)
+		throw new SAXParseException("Exception : \nno root element\n", null);
+	    done = true;
+	    return returnvalue;
+	} finally {
+	    if (!done)
+		builder.discard();
+	}
+    }
+
+    /**
+     * parses the xml selectively : only the elements selected by the expressions and their descendants are created, other elements 
+     * are skipped without searching a class or storing text for them.<br>
+     * The result is a pruned tree : the selected elements keep their position, each ancestor of a selected element is a 
+     * {@link CompactXMLElement} with the tag name and attributes of the original element, and elements without selected descendants are left out.
+     * The root element is always returned, also if nothing is selected. A selected element that has selected descendants 
+     * contains them as normal children.
+     * @param source the XML page or a string representing the URL, see {@link #parse(String)}
+     * @param selection selects the elements to create
+     * @return the pruned tree
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElement parseSelected(String source, XMLPathSelection selection) throws SAXParseException {
+	return parse(toInputSource(source, Charset.defaultCharset().displayName()), newSelectiveHandler(selection, false));
+    }
+
+    /**
+     * parses the xml read from the stream selectively, see {@link #parseSelected(String, XMLPathSelection)}
+     * @param inputStream the XML page, closed when parsing ends
+     * @param selection selects the elements to create
+     * @return the pruned tree
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElement parseSelected(InputStream inputStream, XMLPathSelection selection) throws SAXParseException {
+	return parse(toInputSource(inputStream), newSelectiveHandler(selection, false));
+    }
+
+    /**
+     * parses the xml in the file selectively, see {@link #parseSelected(String, XMLPathSelection)}.<br>
+     * The file is mapped in memory, see {@link #parse(Path)}.
+     * @param path the file
+     * @param selection selects the elements to create
+     * @return the pruned tree
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElement parseSelected(Path path, XMLPathSelection selection) throws SAXParseException {
+	return parse(toMappedInputSource(path), newSelectiveHandler(selection, false));
+    }
+
+    /**
+     * parses the xml selectively, see {@link #parseSelected(String, XMLPathSelection)}, and returns the selected elements 
+     * without their ancestors.<br>
+     * A selected element that is a descendant of another selected element is not in the list, it is a child in the subtree
+     * of that other element.
+     * @param source the XML page or a string representing the URL, see {@link #parse(String)}
+     * @param selection selects the elements to create
+     * @return the selected elements in document order, empty if none
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public List<XMLElement> parseMatches(String source, XMLPathSelection selection) throws SAXParseException {
+	XMLElementHandler handler = newSelectiveHandler(selection, true);
+	parse(toInputSource(source, Charset.defaultCharset().displayName()), handler);
+	return handler.getMatches();
+    }
+
+    /**
+     * parses the xml read from the stream selectively, see {@link #parseMatches(String, XMLPathSelection)}
+     * @param inputStream the XML page, closed when parsing ends
+     * @param selection selects the elements to create
+     * @return the selected elements in document order, empty if none
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public List<XMLElement> parseMatches(InputStream inputStream, XMLPathSelection selection) throws SAXParseException {
+	XMLElementHandler handler = newSelectiveHandler(selection, true);
+	parse(toInputSource(inputStream), handler);
+	return handler.getMatches();
+    }
+
+    /**
+     * parses the xml in the file selectively, see {@link #parseMatches(String, XMLPathSelection)}.<br>
+     * The file is mapped in memory, see {@link #parse(Path)}.
+     * @param path the file
+     * @param selection selects the elements to create
+     * @return the selected elements in document order, empty if none
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public List<XMLElement> parseMatches(Path path, XMLPathSelection selection) throws SAXParseException {
+	XMLElementHandler handler = newSelectiveHandler(selection, true);
+	parse(toMappedInputSource(path), handler);
+	return handler.getMatches();
+    }
+
+    /**
+     * parses the xml read from the stream in streaming mode, see {@link #stream(URL, XMLElementSelector, XMLElementCallback)}
+     * @param inputStream the XML page, closed when parsing ends
+     * @param selector selects the elements to hand over to the callback
+     * @param callback receives the selected elements, can stop the parsing
+     * @return the root element, without the selected elements, null if the root element itself was selected or if the callback stopped the parsing
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElement stream(InputStream inputStream, XMLElementSelector selector, XMLElementCallback callback) throws SAXParseException {
+	XMLElementHandler handler = newStreamingHandler(selector, callback);
+	return parse(toInputSource(inputStream), handler);
+    }
+
+    /**
+     * parses the xml in the file in streaming mode, see {@link #stream(URL, XMLElementSelector, XMLElementCallback)}.<br>
+     * The file is mapped in memory, see {@link #parse(Path)}.
+     * @param path the file
+     * @param selector selects the elements to hand over to the callback
+     * @param callback receives the selected elements, can stop the parsing
+     * @return the root element, without the selected elements, null if the root element itself was selected or if the callback stopped the parsing
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElement stream(Path path, XMLElementSelector selector, XMLElementCallback callback) throws SAXParseException {
+	XMLElementHandler handler = newStreamingHandler(selector, callback);
+	return parse(toMappedInputSource(path), handler);
+    }
+
+    /**
+     * parses the xml which is located at the URL in streaming mode.<br>
+     * Each element for which the selector returns true is handed over to the callback as soon as its end tag is reached and
+     * {@link XMLElement#complete()} is called. The element is not added to its parent, so memory use is limited to the 
+     * elements not yet completed, instead of the complete document.
+     * @param url
+     * @param selector selects the elements to hand over to the callback
+     * @param callback receives the selected elements, can stop the parsing
+     * @return the root element, without the selected elements, null if the root element itself was selected or if the callback stopped the parsing
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElement stream(URL url, XMLElementSelector selector, XMLElementCallback callback) throws SAXParseException {
+	XMLElementHandler handler = newStreamingHandler(selector, callback);
+	return parse(toInputSource(url), handler);
+    }
+
+    /**
+     * parses the xml which is in the supplied String parameter in streaming mode, see {@link #stream(URL, XMLElementSelector, XMLElementCallback)}
+     * @param source the XML page or a string representing the URL, see {@link #parse(String)}
+     * @param selector selects the elements to hand over to the callback
+     * @param callback receives the selected elements, can stop the parsing
+     * @return the root element, without the selected elements, null if the root element itself was selected or if the callback stopped the parsing
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElement stream(String source, XMLElementSelector selector, XMLElementCallback callback) throws SAXParseException {
+	return stream(source, Charset.defaultCharset().displayName(), selector, callback);
+    }
+
+    /**
+     * parses the xml which is in the supplied String parameter in streaming mode, see {@link #stream(URL, XMLElementSelector, XMLElementCallback)}
+     * @param source the XML page or a string representing the URL, see {@link #parse(String, String)}
+     * @param charsetName in case the source is XML (and not a URL), then the source will be converted to byte array using the specified charsetName
+     * @param selector selects the elements to hand over to the callback
+     * @param callback receives the selected elements, can stop the parsing
+     * @return the root element, without the selected elements, null if the root element itself was selected or if the callback stopped the parsing
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElement stream(String source, String charsetName, XMLElementSelector selector, XMLElementCallback callback) throws SAXParseException {
+	XMLElementHandler handler = newStreamingHandler(selector, callback);
+	return parse(toInputSource(source, charsetName), handler);
+    }
+
+    /**
+     * creates a parser for a document that arrives in chunks, see {@link XMLFeedParser}.<br>
+     * The elements are created as with {@link #parse(InputStream)}, as soon as the chunks that contain them have been fed.
+     * @return the feed parser, for one document
+     * @throws SAXParseException if the handler can not be initialised
+     */
+    public XMLFeedParser newFeedParser() throws SAXParseException {
+	return new XMLFeedParser(this);
+    }
+
+    /**
+     * opens a cursor that pulls the elements one by one from the xml read from the stream, see {@link XMLElementCursor}.<br>
+     * The cursor reads with a {@link javax.xml.stream.XMLStreamReader}, whatever the engine of this parser. The elements read
+     * with {@link XMLElementCursor#readElement()} are created as with {@link #parse(InputStream)}.
+     * @param inputStream the XML page, closed when the cursor is closed
+     * @return the cursor, positioned before the root element
+     * @throws SAXParseException if the stream can not be read
+     */
+    public XMLElementCursor openCursor(InputStream inputStream) throws SAXParseException {
+	return new XMLElementCursor(this, toInputSource(inputStream));
+    }
+
+    /**
+     * opens a cursor that pulls the elements one by one from the xml in the file, see {@link #openCursor(InputStream)}.<br>
+     * The file is mapped in memory, as with {@link #parse(Path)}.
+     * @param path the file
+     * @return the cursor, positioned before the root element
+     * @throws SAXParseException if the file can not be read
+     */
+    public XMLElementCursor openCursor(Path path) throws SAXParseException {
+	return new XMLElementCursor(this, toMappedInputSource(path));
+    }
+
+    /**
+     * creates a publisher of the elements at a depth in the xml read from the stream, see {@link XMLElementPublisher}.<br>
+     * Parsing starts when a subscriber subscribes, on a virtual thread if the Java version supports them, otherwise on a new thread.
+     * @param inputStream the XML page, closed when parsing ends
+     * @param depth depth of the elements to publish, the root element has depth 0, its children depth 1, ..
+     * @return the publisher
+     */
+    public XMLElementPublisher publish(InputStream inputStream, int depth) {
+	return publish(inputStream, XMLElementSelector.forDepth(depth), PublisherExecutor.INSTANCE);
+    }
+
+    /**
+     * creates a publisher of the elements at a depth in the file, see {@link #publish(InputStream, int)}.<br>
+     * The file is mapped in memory when parsing starts, see {@link #parse(Path)}.
+     * @param path the file
+     * @param depth depth of the elements to publish, the root element has depth 0, its children depth 1, ..
+     * @return the publisher
+     */
+    public XMLElementPublisher publish(Path path, int depth) {
+	return publish(path, XMLElementSelector.forDepth(depth), PublisherExecutor.INSTANCE);
+    }
+
+    /**
+     * creates a publisher of the elements in the xml read from the stream, see {@link XMLElementPublisher}
+     * @param inputStream the XML page, closed when parsing ends
+     * @param selector selects the elements to publish
+     * @param executor parses the document when a subscriber subscribes, the parsing thread waits when the subscriber has no demand
+     * @return the publisher
+     */
+    public XMLElementPublisher publish(final InputStream inputStream, final XMLElementSelector selector, Executor executor) {
+	if (inputStream == null || selector == null)
+	    throw new NullPointerException("inputStream and selector should not be null");
+	return new XMLElementPublisher(executor, new XMLElementPublisher.Source() {
+	    public void parse(XMLElementCallback callback) throws SAXParseException {
+		stream(inputStream, selector, callback);
+	    }
+	});
+    }
+
+    /**
+     * creates a publisher of the elements in the file, see {@link XMLElementPublisher}.<br>
+     * The file is mapped in memory when parsing starts, see {@link #parse(Path)}.
+     * @param path the file
+     * @param selector selects the elements to publish
+     * @param executor parses the document when a subscriber subscribes, the parsing thread waits when the subscriber has no demand
+     * @return the publisher
+     */
+    public XMLElementPublisher publish(final Path path, final XMLElementSelector selector, Executor executor) {
+	if (path == null || selector == null)
+	    throw new NullPointerException("path and selector should not be null");
+	return new XMLElementPublisher(executor, new XMLElementPublisher.Source() {
+	    public void parse(XMLElementCallback callback) throws SAXParseException {
+		stream(path, selector, callback);
+	    }
+	});
+    }
+
+    /**
+     * holds the executor used by {@link EasyXMLDataParser#publish(InputStream, int)}, created when first used
+     */
+    static private final class PublisherExecutor {
+
+	/**
+	 * virtual threads if supported, otherwise a new daemon thread per task
+	 */
+	static final Executor INSTANCE = createExecutor();
+
+	/**
+	 * @return the executor
+	 */
+	static private Executor createExecutor() {
+	    Executor returnvalue = newVirtualThreadExecutor();
+	    if (returnvalue != null)
+		return returnvalue;
+	    return new Executor() {
+		public void execute(Runnable command) {
+		    Thread thread = new Thread(command, "XMLElementPublisher");
+		    thread.setDaemon(true);
+		    thread.start();
+		}
+	    };
+	}
+    }
+
+    /**
+     * parses the xml in the supplied String in parallel, using the common {@link ForkJoinPool}, see {@link #parseParallel(String, ForkJoinPool)}
+     * @param source the XML page, not a URL
+     * @return the XMLElement  populated with the contents of the XML page
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElement parseParallel(String source) throws SAXParseException {
+	return parseParallel(source, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * parses the xml in the supplied String in parallel.<br>
+     * The document is scanned for the children of the root element, without parsing them. Groups of children are parsed on the pool,
+     * then the root element is parsed and the children are added to it with {@link XMLElement#addChild(XMLElement)}, in the order
+     * of the document, before the root's text is added and {@link XMLElement#complete()} is called. Elements below the root are
+     * created and completed exactly as with {@link #parse(String)}, but on several threads, so XMLElement classes 
+     * must not share state without synchronization.<br>
+     * Documents with a document type declaration (which may declare entities used in the children), and documents with
+     * less than two children are parsed sequentially.<br>
+     * The line and column numbers in exceptions for errors in children are relative to the group of children being parsed.
+     * @param source the XML page, not a URL
+     * @param pool the pool to use
+     * @return the XMLElement  populated with the contents of the XML page
+     * @throws SAXParseException is important to catch because it contains details about why and where the parsing failed
+     */
+    public XMLElement parseParallel(String source, ForkJoinPool pool) throws SAXParseException {
+	if (source == null)
+	    throw new SAXParseException("Exception : \n" + 
+		    new NullPointerException("source should not be null").toString() +  "\n", null);
+	TopLevelSplitter splitter = TopLevelSplitter.split(source);
+	if (splitter == null || splitter.getChildCount() < 2)
+	    return parse(new InputSource(new StringReader(source)), new XMLElementHandler(this));
+
+	XMLElement[] children = new XMLElement[splitter.getChildCount()];
+	int groupSize = Math.max(1, children.length / (4 * pool.getParallelism()));
+	try {
+	    pool.invoke(new ParallelParseTask(source, splitter, children, 0, children.length, groupSize));
+	} catch (ParallelParseException e) {
+	    //the exception may have been wrapped again when crossing threads
+	    Throwable cause = e.getCause();
+	    while (!(cause instanceof SAXParseException))
+		cause = cause.getCause();
+	    throw (SAXParseException)cause;
+	}
+
+	XMLElementHandler handler = new XMLElementHandler(this);
+	handler.setRootChildren(children);
+	return parse(new InputSource(new StringReader(splitter.getSkeleton())), handler);
+    }
+
+    /**
+     * parses a group of children of the root element
+     * @param source the document
+     * @param splitter the children found in the document
+     * @param children to store the result
+     * @param from index of the first child
+     * @param to index of the last child + 1
+     * @throws SAXParseException
+     */
+    private void parseChildren(String source, TopLevelSplitter splitter, XMLElement[] children, int from, int to) throws SAXParseException {
+	StringBuilder fragment = new StringBuilder(splitter.getChildEnd(to - 1) - splitter.getChildStart(from) + 32);
+	fragment.append("<fragment>");
+	for (int i = from; i < to; i++)
+	    fragment.append(source, splitter.getChildStart(i), splitter.getChildEnd(i));
+	fragment.append("</fragment>");
+
+	XMLElementHandler handler = new XMLElementHandler(this);
+	handler.setFragment();
+	XMLElement container = parse(new InputSource(new StringReader(fragment.toString())), handler);
+	ArrayList<XMLElement> parsed = container.getChildren();
+	if (parsed == null || parsed.size() != to - from)
+	    throw new SAXParseException("Exception : \nchildren of the root element could not be split correctly\n", null);
+	for (int i = from; i < to; i++)
+	    children[i] = parsed.get(i - from);
+    }
+
+    /**
+     * splits the children of the root element in groups and parses them
+     */
+    private final class ParallelParseTask extends RecursiveAction {
+
+	/**
+	 * serial version
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * the document
+	 */
+	private final String source;
+
+	/**
+	 * the children found in the document
+	 */
+	private final TopLevelSplitter splitter;
+
+	/**
+	 * the result
+	 */
+	private final XMLElement[] children;
+
+	/**
+	 * index of the first child to parse
+	 */
+	private final int from;
+
+	/**
+	 * index of the last child to parse + 1
+	 */
+	private final int to;
+
+	/**
+	 * number of children below which the children are parsed in one go
+	 */
+	private final int groupSize;
+
+	/**
+	 * constructor
+	 * @param source
+	 * @param splitter
+	 * @param children
+	 * @param from
+	 * @param to
+	 * @param groupSize
+	 */
+	ParallelParseTask(String source, TopLevelSplitter splitter, XMLElement[] children, int from, int to, int groupSize) {
+	    this.source = source;
+	    this.splitter = splitter;
+	    this.children = children;
+	    this.from = from;
+	    this.to = to;
+	    this.groupSize = groupSize;
+	}
+
+	/**
+	 * @see java.util.concurrent.RecursiveAction#compute()
+	 */
+	@Override
+	protected void compute() {
+	    if (to - from <= groupSize) {
+		try {
+		    parseChildren(source, splitter, children, from, to);
+		} catch (SAXParseException e) {
+		    throw new ParallelParseException(e);
+		}
+		return;
+	    }
+	    int middle = (from + to) >>> 1;
+	    invokeAll(new ParallelParseTask(source, splitter, children, from, middle, groupSize),
+		    new ParallelParseTask(source, splitter, children, middle, to, groupSize));
+	}
+    }
+
+    /**
+     * carries a SAXParseException out of a {@link ParallelParseTask}
+     */
+    static private final class ParallelParseException extends RuntimeException {
+
+	/**
+	 * serial version
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * constructor
+	 * @param cause
+	 */
+	ParallelParseException(SAXParseException cause) {
+	    super(cause);
+	}
+    }
+
+    /**
+     * parses a batch of documents concurrently, see {@link #parseAll(Iterable, Executor, int)}.<br>
+     * Uses virtual threads when running on a Java version that supports them, otherwise the common {@link ForkJoinPool}, with
+     * at most {@link #DEFAULT_BATCH_CONCURRENCY} documents parsed at the same time.
+     * @param inputs the documents
+     * @return the results, in the same order as the inputs
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public List<ParseResult> parseAll(Iterable<?> inputs) throws InterruptedException {
+	ExecutorService virtualThreads = newVirtualThreadExecutor();
+	if (virtualThreads == null)
+	    return parseAll(inputs, ForkJoinPool.commonPool(), DEFAULT_BATCH_CONCURRENCY);
+	try {
+	    return parseAll(inputs, virtualThreads, DEFAULT_BATCH_CONCURRENCY);
+	} finally {
+	    virtualThreads.shutdown();
+	}
+    }
+
+    /**
+     * parses a batch of documents concurrently, see {@link #parseAll(Iterable)}
+     * @param inputs the documents, the stream is consumed
+     * @return the results, in the same order as the inputs
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public List<ParseResult> parseAll(Stream<?> inputs) throws InterruptedException {
+	return parseAll(toIterable(inputs));
+    }
+
+    /**
+     * parses a batch of documents concurrently, see {@link #parseAll(Iterable, Executor, int)}
+     * @param inputs the documents, the stream is consumed
+     * @param executor executes the parsing of each document
+     * @param maxConcurrency maximum number of documents parsed at the same time
+     * @return the results, in the same order as the inputs
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public List<ParseResult> parseAll(Stream<?> inputs, Executor executor, int maxConcurrency) throws InterruptedException {
+	return parseAll(toIterable(inputs), executor, maxConcurrency);
+    }
+
+    /**
+     * parses a batch of documents concurrently.<br>
+     * Each input can be
+     * <ul>
+     * <li>a String : XML page or a string representing a URL, as in {@link #parse(String)}</li>
+     * <li>a byte array : XML page, the encoding is taken from the XML declaration</li>
+     * <li>a {@link ByteBuffer} : XML page in the remaining bytes, as in {@link #parse(ByteBuffer)}</li>
+     * <li>a {@link Path} : file with an XML page</li>
+     * <li>a {@link URL}</li>
+     * </ul>
+     * The configuration of this parser is shared by all documents, each document gets its own handler and pooled SAX parser.
+     * At most maxConcurrency documents are parsed at the same time, the calling thread waits before taking the next input
+     * from inputs, so inputs can be a lazy collection. The method returns when all documents are parsed.<br>
+     * A failure for one document does not stop the others, it is reported in the corresponding {@link ParseResult}.
+     * @param inputs the documents
+     * @param executor executes the parsing of each document
+     * @param maxConcurrency maximum number of documents parsed at the same time
+     * @return the results, in the same order as the inputs
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public List<ParseResult> parseAll(Iterable<?> inputs, Executor executor, int maxConcurrency) throws InterruptedException {
+	if (maxConcurrency < 1)
+	    throw new IllegalArgumentException("maxConcurrency should be at least 1");
+	final Semaphore permits = new Semaphore(maxConcurrency);
+	//one slot per input, written by the thread that parses the input
+	ArrayList<ParseResult[]> slots = new ArrayList<ParseResult[]>();
+
+	for (final Object input : inputs) {
+	    permits.acquire();
+	    final ParseResult[] slot = new ParseResult[1];
+	    slots.add(slot);
+	    try {
+		executor.execute(new Runnable() {
+		    public void run() {
+			try {
+			    slot[0] = parseInput(input);
+			} finally {
+			    permits.release();
+			}
+		    }
+		});
+	    } catch (RuntimeException e) {
+		//for instance RejectedExecutionException
+		slot[0] = new ParseResult(null, new SAXParseException("Exception : \n" + 
+			e.toString() +  "\n", null));
+		permits.release();
+	    }
+	}
+
+	//wait until all documents are parsed
+	permits.acquire(maxConcurrency);
+	permits.release(maxConcurrency);
+
+	ArrayList<ParseResult> returnvalue = new ArrayList<ParseResult>(slots.size());
+	for (ParseResult[] slot : slots)
+	    returnvalue.add(slot[0]);
+	return returnvalue;
+    }
+
+    /**
+     * parses one input of a batch
+     * @param input
+     * @return the result, never null
+     */
+    private ParseResult parseInput(Object input) {
+	try {
+	    XMLElement root;
+	    if (input instanceof String)
+		root = parse((String)input);
+	    else if (input instanceof byte[])
+		root = parse(new InputSource(new ByteArrayInputStream((byte[])input)), new XMLElementHandler(this));
+	    else if (input instanceof ByteBuffer)
+		root = parse((ByteBuffer)input);
+	    else if (input instanceof Path)
+		root = parse(toInputSource((Path)input), new XMLElementHandler(this));
+	    else if (input instanceof URL)
+		root = parse((URL)input);
+	    else
+		throw new SAXParseException("Exception : \nunsupported input type " + 
+			(input == null ? "null" : input.getClass().getName()) + "\n", null);
+	    return new ParseResult(root, null);
+	} catch (SAXParseException e) {
+	    return new ParseResult(null, e);
+	} catch (RuntimeException e) {
+	    return new ParseResult(null, new SAXParseException("Exception : \n" + 
+		    e.toString() +  "\n", null));
+	}
+    }
+
+    /**
+     * creates the input for a stream
+     * @param inputStream
+     * @return the input
+     * @throws SAXParseException if inputStream is null
+     */
+    static private InputSource toInputSource(InputStream inputStream) throws SAXParseException {
+	if (inputStream == null)
+	    throw new SAXParseException("Exception : \n" + 
+		    new NullPointerException("inputStream should not be null").toString() +  "\n", null);
+	return new InputSource(inputStream);
+    }
+
+    /**
+     * creates the input for a file that is mapped in memory
+     * @param path
+     * @return the input
+     * @throws SAXParseException
+     */
+    static private InputSource toMappedInputSource(Path path) throws SAXParseException {
+	try {
+	    InputSource returnvalue = new InputSource(new ByteBufferInputStream(FileChannel.open(path, StandardOpenOption.READ)));
+	    returnvalue.setSystemId(path.toUri().toString());
+	    return returnvalue;
+	} catch (Exception e) {
+	    throw new SAXParseException("Exception : \n" + 
+		    e.toString() +  "\n", null);
+	}
+    }
+
+    /**
+     * creates the input for a file
+     * @param path
+     * @return the input
+     * @throws SAXParseException
+     */
+    static private InputSource toInputSource(Path path) throws SAXParseException {
+	try {
+	    InputSource returnvalue = new InputSource(new BufferedInputStream(Files.newInputStream(path)));
+	    returnvalue.setSystemId(path.toUri().toString());
+	    return returnvalue;
+	} catch (Exception e) {
+	    throw new SAXParseException("Exception : \n" + 
+		    e.toString() +  "\n", null);
+	}
+    }
+
+    /**
+     * @param stream
+     * @return an Iterable that iterates once over the stream
+     */
+    static private Iterable<?> toIterable(final Stream<?> stream) {
+	return new Iterable<Object>() {
+	    public Iterator<Object> iterator() {
+		@SuppressWarnings("unchecked")
+		Iterator<Object> returnvalue = (Iterator<Object>)stream.iterator();
+		return returnvalue;
+	    }
+	};
+    }
+
+    /**
+     * creates an executor that starts a virtual thread per task, if the Java version supports it
+     * @return the executor, null if virtual threads are not supported
+     */
+    static private ExecutorService newVirtualThreadExecutor() {
+	try {
+	    return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+	} catch (Exception e) {
+	    return null;
+	}
+    }
+
+    /**
+     * get the handler used when this instance is given as handler to a SAX parser, creates it if needed
+     * @return the handler
+     */
+    private XMLElementHandler getDocumentHandler() {
+	if (documentHandler == null)
+	    documentHandler = new XMLElementHandler(this);
+	return documentHandler;
+    }
     
-    
+    /**
+     * @see org.xml.sax.helpers.DefaultHandler#characters(char[], int, int)
+     */
+    @Override
+    public void characters(char[] ch, int start, int length)
+            throws SAXException {
+        getDocumentHandler().characters(ch, start, length);
+    }
+
+    /**
+     * @see org.xml.sax.helpers.DefaultHandler#endElement(java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public void endElement(String uri, String localName, String name)
+            throws SAXException {
+	getDocumentHandler().endElement(uri, localName, name);
+    }
+
     /** 
      * @see org.xml.sax.helpers.DefaultHandler#setDocumentLocator(org.xml.sax.Locator)
      */
     @Override 
     public void setDocumentLocator (Locator locator) {
-	this.locator = locator;
+	getDocumentHandler().setDocumentLocator(locator);
     }
 
     /**
@@ -277,112 +1390,32 @@ public class EasyXMLDataParser  extends DefaultHandler {
      */
     @Override
     public void startDocument() throws SAXException {
-        super.startDocument();
-	XMLObjectStack = new Stack<XMLElement>();
-	//prefixNameStack = new Stack<String>();
-	stringBuilderStack = new Stack<StringBuilder>();
+	getDocumentHandler().startDocument();
     }
     
     /**
-     * Tries to create a class with the same name as the Tag found in the XML page.<br>
-     * Searches through the list of packages/prefixes defined in {@link #packagesNames} and {@link #prefixNames} :
-     * For example if packagesNames[i] = &quot;mypackagename&quot;, prefixNames[i] = &quot;myPrefix&quot; then
-     * an attempt will be made to create a class &quot;mypackagename.myPrefix<i>name</i>&quot;<br>
-     * The list of package names and prefix names will be tried until creation of a class was successful. If no class could be 
-     * created with any of the combination of packagename and prefix, then the local field ignoreUnknownTags is used. If true, a
-     * {@link DefaultXMLElement} will be created. If false, an exception will be thrown.<br><br>
-     * Calls {@link XMLElement#addAttributes(Attributes)}<br>
      * @see org.xml.sax.helpers.DefaultHandler#startElement(java.lang.String, java.lang.String, java.lang.String, org.xml.sax.Attributes)
-     * @throws SAXException will contain a {@link org.xml.sax.Locator}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public void startElement(String uri, String localName, String name,
         Attributes attributes) throws SAXException {
-        super.startElement(uri, localName, name, attributes);
-        
-        Class clsHandler = null;
-        String tagName = name;
-        if (tagName == null)
-            tagName = localName;
-        if (tagName.length() == 0)
-            tagName = localName;
-        stringBuilderStack.push(new StringBuilder());
-        
-        try {
-            //try to create an easyxmldata instance of type packagename.prefixname+name, with packagename
-            //each of the list in packagenames, prefixname the corresponding prefix. If it fails, throws exception
-            //which means, if the tag found is for instance "book", then go through the list of packages and prefixes and
-            //try to instantiate an EasyXMLData instance of type packagename.prefixesbook
-	    for (int i = 0;i < packagesNames.length; i++) {
-	         try {
-	             
-	    	clsHandler = Class.forName(packagesNames[i] + "." + prefixNames[i] + tagName);
-	    	try {
-	    	    XMLObjectStack.push((XMLElement)clsHandler.newInstance());
-	    	} catch (InstantiationException e) {
-	    	    e.printStackTrace();
-	    	} catch (IllegalAccessException e) {
-	    	    SAXParseException ex = new SAXParseException(
-	    		    "Tag : " +
-	    		    tagName +
-	    	    	    " found but corresponding class " +
-	    	    	    clsHandler.getName() +
-	    	    	    " does not allow access to no-argument constructor", 
-	    	    	    locator);
-	    	    throw ex;
-	    	}
-	    	//if following code is execute then it means the class was successfully created
-	    	//so no need to go through the rest of the packageNames
-	    	i = packagesNames.length;
-	                 
-	            try {
-	    	    XMLObjectStack.peek().addAttributes(attributes);
-	    	} catch (SAXException e) {
-	    	    //instance of EasyXMLData class may throw an exception because it doesn't like the attributes
-	    	    throw new SAXParseException(e.getMessage(), locator, e);
-	    	}
-	        } catch (ClassNotFoundException e) {
-	    	if (i == (packagesNames.length - 1)) {
-	    	    if (!ignoreUnknownTags) {
-	    		SAXParseException ex = new SAXParseException(
-	    			"Unknown tag received : " +
-	    			tagName +
-	    			".", 
-	    			locator);
-	    		throw ex;
-	    	    } else {
-	    		XMLObjectStack.push(new DefaultXMLElement().setTagName(tagName)).addAttributes(attributes);
-	    	    }
-	    	}
-	        }
-	    }
-	} catch (NullPointerException e) {
-	    // packagenames = null, ignore unknown tags
-	    XMLObjectStack.push(new DefaultXMLElement().setTagName(tagName)).addAttributes(attributes);
-	}
+	getDocumentHandler().startElement(uri, localName, name, attributes);
     }
     
     /**
-     * Here's where finally {@link #rootFromXML} is assigned to the XMLElement of on top of the stack
-     * {@link #XMLObjectStack}
      * @see org.xml.sax.helpers.DefaultHandler#endDocument()
      */
     @Override
     public void endDocument() {
-	if (XMLObjectStack.size() > 0) {
-	    rootFromXML = XMLObjectStack.peek();
-	}
+	getDocumentHandler().endDocument();
     }
     
     /**
-     * overriding this because I'm interested in whitespace characters
      * @see org.xml.sax.helpers.DefaultHandler#ignorableWhitespace(char[], int, int)
      */
     @Override
     public void ignorableWhitespace(char[] ch, int start, int length)
             throws SAXException {
-        super.ignorableWhitespace(ch, start, length);
-        stringBuilderStack.peek().append(ch, start, length);
+        getDocumentHandler().ignorableWhitespace(ch, start, length);
     }
 }
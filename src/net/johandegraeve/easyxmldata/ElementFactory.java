@@ -0,0 +1,193 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.function.Supplier;
+
+/**
+ * Creates instances of one {@link XMLElement} class.<br>
+ * The no-argument constructor of the class is looked up once, when the factory is created, and bound to a
+ * {@link Supplier} generated with {@link LambdaMetafactory}, so that creating an instance costs the same as a plain <code>new</code>.
+ * If the class can not be bound that way (for instance because it is not visible to the class loader of this package), a
+ * {@link MethodHandle} is used instead.<br>
+ * If the class has no accessible no-argument constructor, the factory remembers why, and {@link EasyXMLDataParser} reports it
+ * each time the corresponding tag is found.
+ *
+ * @author Johan Degraeve
+ *
+ */
+final class ElementFactory {
+
+    /**
+     * the class of the elements created, null for factories created with {@link #forSupplier(Supplier)}
+     */
+    private final Class<?> elementClass;
+
+    /**
+     * creates the elements, null if the class can not be instantiated
+     */
+    private final Supplier<? extends XMLElement> supplier;
+
+    /**
+     * true if the class has a no-argument constructor which is not accessible
+     */
+    private final boolean inaccessible;
+
+    /**
+     * constructor
+     * @param elementClass
+     * @param supplier
+     * @param inaccessible
+     */
+    private ElementFactory(Class<?> elementClass, Supplier<? extends XMLElement> supplier, boolean inaccessible) {
+	this.elementClass = elementClass;
+	this.supplier = supplier;
+	this.inaccessible = inaccessible;
+    }
+
+    /**
+     * creates a factory for a supplier registered by the user
+     * @param supplier
+     * @return the factory
+     */
+    static ElementFactory forSupplier(Supplier<? extends XMLElement> supplier) {
+	if (supplier == null)
+	    throw new NullPointerException("supplier should not be null");
+	return new ElementFactory(null, supplier, false);
+    }
+
+    /**
+     * creates a factory for a class found in an {@link XMLElementRegistry}
+     * @param binding
+     * @return the factory
+     */
+    static ElementFactory forBinding(XMLElementBinding binding) {
+	return new ElementFactory(binding.getElementClass(), binding.getSupplier(), false);
+    }
+
+    /**
+     * creates a factory for a class found by {@link TagResolutionCache}
+     * @param elementClass
+     * @return the factory
+     * @throws ClassCastException if elementClass does not implement {@link XMLElement}
+     */
+    static ElementFactory forClass(Class<?> elementClass) {
+	if (!XMLElement.class.isAssignableFrom(elementClass))
+	    throw new ClassCastException(elementClass.getName() + " does not implement " + XMLElement.class.getName());
+	if (elementClass.isInterface() || Modifier.isAbstract(elementClass.getModifiers()))
+	    return new ElementFactory(elementClass, null, false);
+
+	MethodHandles.Lookup lookup = MethodHandles.lookup();
+	MethodHandle constructor;
+	try {
+	    constructor = lookup.findConstructor(elementClass, MethodType.methodType(void.class));
+	} catch (NoSuchMethodException e) {
+	    return new ElementFactory(elementClass, null, false);
+	} catch (IllegalAccessException e) {
+	    return new ElementFactory(elementClass, null, true);
+	}
+
+	try {
+	    CallSite site = LambdaMetafactory.metafactory(
+		    lookup,
+		    "get",
+		    MethodType.methodType(Supplier.class),
+		    MethodType.methodType(Object.class),
+		    constructor,
+		    MethodType.methodType(elementClass));
+	    @SuppressWarnings("unchecked")
+	    Supplier<? extends XMLElement> supplier = (Supplier<? extends XMLElement>)site.getTarget().invoke();
+	    return new ElementFactory(elementClass, supplier, false);
+	} catch (Throwable e) {
+	    //class not visible from this class loader, fall back to the method handle
+	    return new ElementFactory(elementClass, new MethodHandleSupplier(constructor), false);
+	}
+    }
+
+    /**
+     * creates a new instance
+     * @return the new instance, null if the class can not be instantiated, see {@link #isInstantiable()}
+     */
+    XMLElement newElement() {
+	return supplier == null ? null : supplier.get();
+    }
+
+    /**
+     * @return true if {@link #newElement()} will return an instance
+     */
+    boolean isInstantiable() {
+	return supplier != null;
+    }
+
+    /**
+     * @return true if the class has a no-argument constructor that is not accessible
+     */
+    boolean isInaccessible() {
+	return inaccessible;
+    }
+
+    /**
+     * @return the class of the created elements, null if the factory was created with a supplier
+     */
+    Class<?> getElementClass() {
+	return elementClass;
+    }
+
+    /**
+     * Supplier that calls a constructor through a {@link MethodHandle}
+     */
+    static private final class MethodHandleSupplier implements Supplier<XMLElement> {
+
+	/**
+	 * the constructor, with return type {@link XMLElement}
+	 */
+	private final MethodHandle constructor;
+
+	/**
+	 * constructor
+	 * @param constructor
+	 */
+	MethodHandleSupplier(MethodHandle constructor) {
+	    this.constructor = constructor.asType(MethodType.methodType(XMLElement.class));
+	}
+
+	/**
+	 * @see java.util.function.Supplier#get()
+	 */
+	public XMLElement get() {
+	    try {
+		return (XMLElement)constructor.invokeExact();
+	    } catch (RuntimeException e) {
+		throw e;
+	    } catch (Error e) {
+		throw e;
+	    } catch (Throwable e) {
+		throw new UndeclaredThrowableException(e);
+	    }
+	}
+    }
+}
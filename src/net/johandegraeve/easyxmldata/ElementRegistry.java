@@ -0,0 +1,108 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * The bindings of all {@link XMLElementRegistry}s on the classpath, loaded once with {@link ServiceLoader}.<br>
+ * A registry that can not be loaded is ignored, the classes it contains are then found with Class.forName as before.
+ *
+ * @author Johan Degraeve
+ *
+ */
+final class ElementRegistry {
+
+    /**
+     * bindings per class
+     */
+    private final IdentityHashMap<Class<?>, XMLElementBinding> byClass = new IdentityHashMap<Class<?>, XMLElementBinding>();
+
+    /**
+     * bindings per fully qualified class name, as built by {@link TagResolutionCache}
+     */
+    private final HashMap<String, XMLElementBinding> byClassName = new HashMap<String, XMLElementBinding>();
+
+    /**
+     * constructor, loads the registries
+     */
+    private ElementRegistry() {
+	Iterator<XMLElementRegistry> registries = ServiceLoader.load(XMLElementRegistry.class).iterator();
+	while (true) {
+	    ArrayList<XMLElementBinding> bindings = new ArrayList<XMLElementBinding>();
+	    try {
+		if (!registries.hasNext())
+		    break;
+		for (XMLElementBinding binding : registries.next().getBindings()) {
+		    //a registry with a null binding or class is ignored like a registry that throws
+		    if (binding.getElementClass() == null)
+			throw new NullPointerException("binding without class");
+		    bindings.add(binding);
+		}
+	    } catch (ServiceConfigurationError | RuntimeException | LinkageError e) {
+		//ignore this registry completely, try the next one
+		continue;
+	    }
+	    for (XMLElementBinding binding : bindings) {
+		byClass.put(binding.getElementClass(), binding);
+		byClassName.put(binding.getElementClass().getName(), binding);
+	    }
+	}
+    }
+
+    /**
+     * @return the registry, loaded at first call
+     */
+    static ElementRegistry getInstance() {
+	return Holder.INSTANCE;
+    }
+
+    /**
+     * @param className fully qualified class name
+     * @return the binding, null if the class is not in a registry
+     */
+    XMLElementBinding forClassName(String className) {
+	return byClassName.isEmpty() ? null : byClassName.get(className);
+    }
+
+    /**
+     * @param elementClass
+     * @return the binding, null if the class is not in a registry
+     */
+    XMLElementBinding forClass(Class<?> elementClass) {
+	return byClass.isEmpty() ? null : byClass.get(elementClass);
+    }
+
+    /**
+     * holds the instance, so that the registries are only loaded when needed
+     */
+    static private final class Holder {
+
+	/**
+	 * the only instance
+	 */
+	static final ElementRegistry INSTANCE = new ElementRegistry();
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+/**
+ * Marks an {@link XMLElement} class whose instances can be shared between several places in a tree, see {@link XMLElementInterner}.<br>
+ * By implementing this interface, a class promises that, once {@link XMLElement#complete()} has been called, an instance does not change
+ * anymore, and that two instances of the class with the same tag name, attributes, text and children are interchangeable. The parser 
+ * can then replace an instance by an equal one created before, so that repeated subtrees are kept in memory once.
+ * 
+ * @author Johan Degraeve
+ *
+ */
+public interface ImmutableXMLElement extends XMLElement {
+}
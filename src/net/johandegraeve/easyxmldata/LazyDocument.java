@@ -0,0 +1,658 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.LocatorImpl;
+
+/**
+ * Structural index of an XML document, used by {@link LazyXMLElement}.<br>
+ * One pass over the document records per element the offsets of its start tag, content and end, its depth, its next sibling
+ * and its tag name. Tag names are interned, so the index costs a few ints per element and no objects. Text and attributes 
+ * are decoded from the document only when asked for.<br>
+ * The pass checks that tags are properly nested, that end tags match start tags, that tag names are XML names, that all 
+ * characters are allowed in XML, and the content of comments, processing instructions and text, like the SAX parser does.
+ * Attribute syntax and entity references are only checked when decoded. Document type declarations are not supported, as entities declared in them would not be known.
+ *
+ * @author Johan Degraeve
+ *
+ */
+final class LazyDocument {
+
+    /**
+     * the document
+     */
+    private final String source;
+
+    /**
+     * the parser used by {@link #materialize(int)}
+     */
+    private final EasyXMLDataParser parser;
+
+    /**
+     * interns tag names and attribute names
+     */
+    private final SymbolTable symbols = new SymbolTable();
+
+    /**
+     * number of elements
+     */
+    private int count;
+
+    /**
+     * offset of the '&lt;' of the start tag, per element in document order
+     */
+    private int[] starts;
+
+    /**
+     * offset just after the start tag
+     */
+    private int[] contentStarts;
+
+    /**
+     * offset of the end tag, equal to the content start for an empty element tag
+     */
+    private int[] contentEnds;
+
+    /**
+     * offset just after the element
+     */
+    private int[] ends;
+
+    /**
+     * index of the next sibling, -1 if none
+     */
+    private int[] nextSiblings;
+
+    /**
+     * depth, 0 for the root element
+     */
+    private int[] depths;
+
+    /**
+     * interned tag names
+     */
+    private String[] tags;
+
+    /**
+     * constructor
+     * @param source
+     * @param parser
+     */
+    private LazyDocument(String source, EasyXMLDataParser parser) {
+	this.source = source;
+	this.parser = parser;
+	//most elements have a start and an end tag, so half the number of '<' is a good estimate of the number of elements
+	int markup = 0;
+	for (int pos = source.indexOf('<'); pos >= 0; pos = source.indexOf('<', pos + 1))
+	    markup++;
+	int capacity = Math.max(16, markup / 2 + 1);
+	starts = new int[capacity];
+	contentStarts = new int[capacity];
+	contentEnds = new int[capacity];
+	ends = new int[capacity];
+	nextSiblings = new int[capacity];
+	depths = new int[capacity];
+	tags = new String[capacity];
+    }
+
+    /**
+     * builds the index of a document
+     * @param source the document
+     * @param parser used to materialize elements
+     * @return the index
+     * @throws SAXParseException if the document is not well formed or contains a document type declaration
+     */
+    static LazyDocument index(String source, EasyXMLDataParser parser) throws SAXParseException {
+	LazyDocument returnvalue = new LazyDocument(source, parser);
+	returnvalue.scan();
+	return returnvalue;
+    }
+
+    /**
+     * @return number of elements
+     */
+    int getCount() {
+	return count;
+    }
+
+    /**
+     * @param element
+     * @return the tag name
+     */
+    String getTagName(int element) {
+	return tags[element];
+    }
+
+    /**
+     * @param element
+     * @return the depth, 0 for the root element
+     */
+    int getDepth(int element) {
+	return depths[element];
+    }
+
+    /**
+     * @param element
+     * @return index of the first child, -1 if none
+     */
+    int getFirstChild(int element) {
+	int next = element + 1;
+	return (next < count && depths[next] == depths[element] + 1) ? next : -1;
+    }
+
+    /**
+     * @param element
+     * @return index of the next sibling, -1 if none
+     */
+    int getNextSibling(int element) {
+	return nextSiblings[element];
+    }
+
+    /**
+     * @param element
+     * @return the source of the element, from its start tag up to and including its end tag
+     */
+    String getSource(int element) {
+	return source.substring(starts[element], ends[element]);
+    }
+
+    /**
+     * parses the element with the parser, so that instances of the configured classes are created
+     * @param element
+     * @return the parsed element
+     * @throws SAXParseException
+     */
+    XMLElement materialize(int element) throws SAXParseException {
+	return parser.parse(new StringReader(getSource(element)));
+    }
+
+    /**
+     * decodes the text directly in the element, ie without the text of the children, with entity and character references 
+     * replaced, CDATA sections unwrapped, comments and processing instructions removed and line ends normalized
+     * @param element
+     * @return the text, empty string if none
+     * @throws IllegalStateException if an entity reference is not valid
+     */
+    String getText(int element) {
+	int from = contentStarts[element];
+	int child = getFirstChild(element);
+	int to = (child < 0 ? contentEnds[element] : starts[child]);
+	if (child < 0 && isPlain(from, to, false))
+	    return source.substring(from, to);
+	StringBuilder returnvalue = new StringBuilder(to - from);
+	while (true) {
+	    decode(from, to, returnvalue, false);
+	    if (child < 0)
+		return returnvalue.toString();
+	    from = ends[child];
+	    child = nextSiblings[child];
+	    to = (child < 0 ? contentEnds[element] : starts[child]);
+	}
+    }
+
+    /**
+     * decodes the attributes of the element
+     * @param element
+     * @return the attributes
+     * @throws IllegalStateException if the attributes are not well formed or an attribute is specified twice
+     */
+    PackedAttributes getAttributes(int element) {
+	int pos = starts[element] + 1 + tags[element].length();
+	String[] namesAndValues = new String[8];
+	int length = 0;
+	while (true) {
+	    pos = skipWhitespace(pos);
+	    char c = source.charAt(pos);
+	    if (c == '>' || c == '/')
+		break;
+	    int nameStart = pos;
+	    int nameEnd = XMLChars.nameEnd(source, pos, source.length());
+	    pos = skipWhitespace(nameEnd);
+	    if (nameEnd == nameStart || source.charAt(pos) != '=')
+		throw invalid("Attribute name or '=' expected in element type \"" + tags[element] + "\".", pos);
+	    pos = skipWhitespace(pos + 1);
+	    char quote = source.charAt(pos);
+	    if (quote != '"' && quote != '\'')
+		throw invalid("Open quote is expected for attribute in element type \"" + tags[element] + "\".", pos);
+	    int valueEnd = source.indexOf(quote, pos + 1);
+	    if (length + 2 > namesAndValues.length)
+		namesAndValues = Arrays.copyOf(namesAndValues, 2 * namesAndValues.length);
+	    String name = symbols.addSymbol(source, nameStart, nameEnd - nameStart);
+	    for (int i = 0; i < length; i += 2)
+		if (namesAndValues[i].equals(name))
+		    throw invalid("Attribute \"" + name + "\" was already specified for element \"" + tags[element] + "\".", nameStart);
+	    namesAndValues[length++] = name;
+	    if (isPlain(pos + 1, valueEnd, true))
+		namesAndValues[length++] = source.substring(pos + 1, valueEnd);
+	    else {
+		StringBuilder value = new StringBuilder(valueEnd - pos - 1);
+		decode(pos + 1, valueEnd, value, true);
+		namesAndValues[length++] = value.toString();
+	    }
+	    pos = valueEnd + 1;
+	}
+	return PackedAttributes.of(length == namesAndValues.length ? namesAndValues : Arrays.copyOf(namesAndValues, length));
+    }
+
+    /**
+     * scans the document and fills the index
+     * @throws SAXParseException
+     */
+    private void scan() throws SAXParseException {
+	int length = source.length();
+	int pos = 0;
+	if (length > 0 && source.charAt(0) == '\uFEFF')
+	    pos++;
+
+	//prolog
+	pos = skipMisc(pos);
+	if (pos >= length)
+	    throw error("Premature end of file.", pos);
+	if (source.charAt(pos) != '<')
+	    throw error("Content is not allowed in prolog.", pos);
+	if (source.startsWith("<!", pos))
+	    throw error("Document type declarations are not supported when parsing lazily.", pos);
+
+	int[] open = new int[16];
+	int[] lastChild = new int[16];
+	int depth = -1;
+	while (true) {
+	    if (source.startsWith("</", pos)) {
+		if (depth < 0)
+		    throw error("The markup in the document following the root element must be well-formed.", pos);
+		int element = open[depth];
+		String tag = tags[element];
+		int nameEnd = pos + 2 + tag.length();
+		if (!source.startsWith(tag, pos + 2) || nameEnd >= length || (source.charAt(nameEnd) != '>' && !isWhitespace(source.charAt(nameEnd))))
+		    throw error("The element type \"" + tag + "\" must be terminated by the matching end-tag \"</" + tag + ">\".", pos);
+		int end = skipWhitespace(nameEnd);
+		if (source.charAt(end) != '>')
+		    throw error("The end-tag for element type \"" + tag + "\" must end with a '>' delimiter.", end);
+		contentEnds[element] = pos;
+		ends[element] = end + 1;
+		pos = end + 1;
+		if (--depth < 0)
+		    break;
+	    } else if (source.startsWith("<!--", pos)) {
+		pos = skipComment(pos);
+	    } else if (source.startsWith("<![CDATA[", pos)) {
+		int end = skipPast(pos + 9, "]]>");
+		checkChars(pos + 9, end - 3, "the CDATA section");
+		pos = end;
+	    } else if (source.startsWith("<?", pos)) {
+		pos = skipProcessingInstruction(pos);
+	    } else if (source.startsWith("<!", pos)) {
+		throw error("The markup in the document preceding the root element must be well-formed.", pos);
+	    } else {
+		int nameEnd = XMLChars.nameEnd(source, pos + 1, length);
+		if (nameEnd == pos + 1)
+		    throw error("The content of elements must consist of well-formed character data or markup.", pos);
+		String tag = symbols.addSymbol(source, pos + 1, nameEnd - pos - 1);
+		char c = (nameEnd < length ? source.charAt(nameEnd) : 0);
+		if (!isWhitespace(c) && c != '/' && c != '>')
+		    throw error("Element type \"" + tag + "\" must be followed by either attribute specifications, \">\" or \"/>\".", nameEnd);
+		int end = skipTag(nameEnd, tag);
+		boolean empty = source.charAt(end - 2) == '/';
+		int element = add(pos, tag, depth + 1);
+		contentStarts[element] = end;
+		if (depth >= 0) {
+		    if (lastChild[depth] >= 0)
+			nextSiblings[lastChild[depth]] = element;
+		    lastChild[depth] = element;
+		}
+		if (empty) {
+		    contentEnds[element] = end;
+		    ends[element] = end;
+		    if (depth < 0) {
+			pos = end;
+			break;
+		    }
+		} else {
+		    if (++depth == open.length) {
+			open = Arrays.copyOf(open, 2 * depth);
+			lastChild = Arrays.copyOf(lastChild, 2 * depth);
+		    }
+		    open[depth] = element;
+		    lastChild[depth] = -1;
+		}
+		pos = end;
+	    }
+	    pos = skipText(pos);
+	    if (pos < 0)
+		throw error("XML document structures must start and end within the same entity.", length);
+	}
+
+	//epilog
+	pos = skipMisc(pos);
+	if (pos < length)
+	    throw error("Content is not allowed in trailing section.", pos);
+    }
+
+    /**
+     * adds an element to the index
+     * @param start
+     * @param tag
+     * @param depth
+     * @return index of the element
+     */
+    private int add(int start, String tag, int depth) {
+	if (count == starts.length) {
+	    int newLength = 2 * count;
+	    starts = Arrays.copyOf(starts, newLength);
+	    contentStarts = Arrays.copyOf(contentStarts, newLength);
+	    contentEnds = Arrays.copyOf(contentEnds, newLength);
+	    ends = Arrays.copyOf(ends, newLength);
+	    nextSiblings = Arrays.copyOf(nextSiblings, newLength);
+	    depths = Arrays.copyOf(depths, newLength);
+	    tags = Arrays.copyOf(tags, newLength);
+	}
+	starts[count] = start;
+	tags[count] = tag;
+	depths[count] = depth;
+	nextSiblings[count] = -1;
+	return count++;
+    }
+
+    /**
+     * skips whitespace, comments and processing instructions
+     * @param pos
+     * @return offset of the first other character
+     * @throws SAXParseException if a comment or processing instruction is not closed or not well formed
+     */
+    private int skipMisc(int pos) throws SAXParseException {
+	int length = source.length();
+	while (true) {
+	    pos = skipWhitespace(pos);
+	    if (source.startsWith("<?", pos))
+		pos = skipProcessingInstruction(pos);
+	    else if (source.startsWith("<!--", pos))
+		pos = skipComment(pos);
+	    else
+		return Math.min(pos, length);
+	}
+    }
+
+    /**
+     * skips a comment
+     * @param pos offset of the "&lt;!--"
+     * @return the offset just after the comment
+     * @throws SAXParseException if the comment is not closed, contains "--" or a character that is not allowed
+     */
+    private int skipComment(int pos) throws SAXParseException {
+	int end = skipPast(pos + 4, "-->") - 3;
+	for (int i = pos + 4; i < end; i++) {
+	    char c = source.charAt(i);
+	    //a '-' before the "-->" makes "--" as well
+	    if (c == '-' && (i + 1 == end || source.charAt(i + 1) == '-'))
+		throw error("The string \"--\" is not permitted within comments.", i);
+	    if (!XMLChars.isChar(c))
+		throw invalidChar(c, "the comment", i);
+	}
+	return end + 3;
+    }
+
+    /**
+     * skips a processing instruction or the XML declaration
+     * @param pos offset of the "&lt;?"
+     * @return the offset just after the processing instruction
+     * @throws SAXParseException if it is not closed, the target is not a name or a character is not allowed
+     */
+    private int skipProcessingInstruction(int pos) throws SAXParseException {
+	int end = skipPast(pos + 2, "?>") - 2;
+	int targetEnd = XMLChars.nameEnd(source, pos + 2, end);
+	if (targetEnd == pos + 2)
+	    throw error("The processing instruction must begin with the name of the target.", pos);
+	if (targetEnd < end && !isWhitespace(source.charAt(targetEnd)))
+	    throw error("White space is required between the processing instruction target and data.", targetEnd);
+	//only the XML declaration, at the very start, may have target xml
+	boolean atStart = pos == 0 || (pos == 1 && source.charAt(0) == '\uFEFF');
+	if (targetEnd - pos == 5 && !atStart && source.regionMatches(true, pos + 2, "xml", 0, 3))
+	    throw error("The processing instruction target matching \"[xX][mM][lL]\" is not allowed.", pos);
+	checkChars(targetEnd, end, "the processing instruction");
+	return end + 2;
+    }
+
+    /**
+     * checks the text in an element up to the next markup
+     * @param pos
+     * @return offset of the next '&lt;', -1 if none
+     * @throws SAXParseException if the text contains "]]&gt;" or a character that is not allowed
+     */
+    private int skipText(int pos) throws SAXParseException {
+	int length = source.length();
+	for (int i = pos; i < length; i++) {
+	    char c = source.charAt(i);
+	    if (c == '<')
+		return i;
+	    if (c == '>' && i >= pos + 2 && source.charAt(i - 1) == ']' && source.charAt(i - 2) == ']')
+		throw error("The character sequence \"]]>\" must not appear in content unless used to mark the end of a CDATA section.", i - 2);
+	    if (!XMLChars.isChar(c))
+		throw invalidChar(c, "the element content of the document", i);
+	}
+	return -1;
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @param where description of the construct, for the message
+     * @throws SAXParseException if a character between from and to is not allowed in XML
+     */
+    private void checkChars(int from, int to, String where) throws SAXParseException {
+	for (int i = from; i < to; i++)
+	    if (!XMLChars.isChar(source.charAt(i)))
+		throw invalidChar(source.charAt(i), where, i);
+    }
+
+    /**
+     * @param c
+     * @param where
+     * @param offset
+     * @return the exception for a character that is not allowed in XML
+     */
+    private SAXParseException invalidChar(char c, String where, int offset) {
+	return error("An invalid XML character (Unicode: 0x" + Integer.toHexString(c) + ") was found in " + where + ".", offset);
+    }
+
+    /**
+     * @param from
+     * @param terminator
+     * @return the offset just after the terminator
+     * @throws SAXParseException if the terminator is not found
+     */
+    private int skipPast(int from, String terminator) throws SAXParseException {
+	int index = source.indexOf(terminator, from);
+	if (index < 0)
+	    throw error("XML document structures must start and end within the same entity.", source.length());
+	return index + terminator.length();
+    }
+
+    /**
+     * skips the rest of a start tag, taking into account quoted attribute values
+     * @param from offset after the tag name
+     * @param tag
+     * @return the offset just after the '&gt;'
+     * @throws SAXParseException if the tag is not closed or contains a character that is not allowed
+     */
+    private int skipTag(int from, String tag) throws SAXParseException {
+	int length = source.length();
+	char quote = 0;
+	for (int i = from; i < length; i++) {
+	    char c = source.charAt(i);
+	    if (!XMLChars.isChar(c))
+		throw invalidChar(c, "the start tag of element \"" + tag + "\"", i);
+	    if (quote != 0) {
+		if (c == quote)
+		    quote = 0;
+	    } else if (c == '"' || c == '\'') {
+		quote = c;
+	    } else if (c == '>') {
+		return i + 1;
+	    } else if (c == '<') {
+		break;
+	    }
+	}
+	throw error("Element type must be followed by either attribute specifications, \">\" or \"/>\".", from);
+    }
+
+    /**
+     * @param pos
+     * @return offset of the first non whitespace character from pos, or the length of the source
+     */
+    private int skipWhitespace(int pos) {
+	int length = source.length();
+	while (pos < length && isWhitespace(source.charAt(pos)))
+	    pos++;
+	return pos;
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @param attribute true for an attribute value
+     * @return true if the range can be used as it is, without decoding
+     */
+    private boolean isPlain(int from, int to, boolean attribute) {
+	for (int i = from; i < to; i++) {
+	    char c = source.charAt(i);
+	    if (c == '&' || c == '<' || c == '\r' || (attribute && (c == '\n' || c == '\t')))
+		return false;
+	}
+	return true;
+    }
+
+    /**
+     * appends the decoded characters of a range
+     * @param from
+     * @param to
+     * @param out
+     * @param attribute true for an attribute value : whitespace characters are replaced by a space
+     * @throws IllegalStateException if an entity reference is not valid
+     */
+    private void decode(int from, int to, StringBuilder out, boolean attribute) {
+	int i = from;
+	while (i < to) {
+	    char c = source.charAt(i);
+	    if (c == '<') {
+		if (source.startsWith("<![CDATA[", i)) {
+		    int end = source.indexOf("]]>", i + 9);
+		    for (int j = i + 9; j < end; j++) {
+			char d = source.charAt(j);
+			if (d == '\r') {
+			    out.append('\n');
+			    if (j + 1 < end && source.charAt(j + 1) == '\n')
+				j++;
+			} else
+			    out.append(d);
+		    }
+		    i = end + 3;
+		} else if (source.startsWith("<!--", i)) {
+		    i = source.indexOf("-->", i + 4) + 3;
+		} else {
+		    //processing instruction
+		    i = source.indexOf("?>", i + 2) + 2;
+		}
+	    } else if (c == '&') {
+		int end = source.indexOf(';', i);
+		if (end < 0 || end >= to)
+		    throw invalid("The entity reference must end with the ';' delimiter.", i);
+		appendReference(i + 1, end, out);
+		i = end + 1;
+	    } else if (c == '\r') {
+		out.append(attribute ? ' ' : '\n');
+		i += (i + 1 < to && source.charAt(i + 1) == '\n') ? 2 : 1;
+	    } else {
+		out.append(attribute && (c == '\n' || c == '\t') ? ' ' : c);
+		i++;
+	    }
+	}
+    }
+
+    /**
+     * appends the character of an entity or character reference
+     * @param from offset after the '&amp;'
+     * @param to offset of the ';'
+     * @param out
+     * @throws IllegalStateException if the reference is not valid
+     */
+    private void appendReference(int from, int to, StringBuilder out) {
+	if (source.charAt(from) == '#') {
+	    int codePoint = XMLChars.characterReference(source, from, to);
+	    if (codePoint < 0)
+		throw invalid("Invalid character reference.", from - 1);
+	    if (!XMLChars.isChar(codePoint))
+		throw invalid("Character reference \"&" + source.substring(from, to) + "\" is an invalid XML character.", from - 1);
+	    out.appendCodePoint(codePoint);
+	    return;
+	}
+	switch (source.substring(from, to)) {
+	case "amp": out.append('&'); break;
+	case "lt": out.append('<'); break;
+	case "gt": out.append('>'); break;
+	case "quot": out.append('"'); break;
+	case "apos": out.append('\''); break;
+	default:
+	    throw invalid("The entity \"" + source.substring(from, to) + "\" was referenced, but not declared.", from - 1);
+	}
+    }
+
+    /**
+     * creates an exception with the line and column of an offset
+     * @param message
+     * @param offset
+     * @return the exception
+     */
+    private SAXParseException error(String message, int offset) {
+	LocatorImpl locator = new LocatorImpl();
+	int line = 1;
+	int lineStart = 0;
+	for (int i = 0; i < offset && i < source.length(); i++) {
+	    if (source.charAt(i) == '\n') {
+		line++;
+		lineStart = i + 1;
+	    }
+	}
+	locator.setLineNumber(line);
+	locator.setColumnNumber(offset - lineStart + 1);
+	return new SAXParseException(message, locator);
+    }
+
+    /**
+     * creates the exception for an error found while decoding, when a checked exception can not be thrown
+     * @param message
+     * @param offset
+     * @return the exception, with a {@link SAXParseException} as cause
+     */
+    private IllegalStateException invalid(String message, int offset) {
+	return new IllegalStateException(message, error(message, offset));
+    }
+
+    /**
+     * @param c
+     * @return true if c is XML whitespace
+     */
+    static private boolean isWhitespace(char c) {
+	return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.ArrayList;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * A read only element of a document parsed with {@link EasyXMLDataParser#parseLazy(String)}.<br>
+ * The document is indexed once, and elements, attributes and text are only created when asked for : {@link #getChildren()} 
+ * creates the LazyXMLElements of the direct children, {@link #getAttributes()} and {@link #getText()} decode the attributes and the 
+ * text of this element from the document. Each result is kept, so asking twice costs nothing. Reading a few branches of a large 
+ * document only costs the index and those branches.<br>
+ * The elements behave as {@link CompactXMLElement}s created for unknown tags : the text is untrimmed, the attributes are never null.
+ * No classes are searched for the tags, no methods of custom classes are called. To get a branch as instances of the classes 
+ * configured in the parser, call {@link #materialize()}.<br>
+ * Errors in attributes or entity references are found when decoding, and are thrown as an IllegalStateException with a 
+ * {@link SAXParseException} as cause.<br>
+ * A lazy tree is not thread safe.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public final class LazyXMLElement implements XMLElement {
+
+    /**
+     * the index of the document
+     */
+    private final LazyDocument document;
+
+    /**
+     * index of this element in {@link #document}
+     */
+    private final int index;
+
+    /**
+     * the children, null if not yet asked for
+     */
+    private ArrayList<XMLElement> children;
+
+    /**
+     * the attributes, null if not yet asked for
+     */
+    private Attributes attributes;
+
+    /**
+     * the text, null if not yet asked for
+     */
+    private String text;
+
+    /**
+     * constructor
+     * @param document
+     * @param index
+     */
+    LazyXMLElement(LazyDocument document, int index) {
+	this.document = document;
+	this.index = index;
+    }
+
+    /**
+     * @see net.johandegraeve.easyxmldata.XMLElement#getTagName()
+     */
+    public String getTagName() {
+	return document.getTagName(index);
+    }
+
+    /**
+     * decodes the attributes the first time
+     * @return the attributes, empty if the element has no attributes
+     * @throws IllegalStateException if the attributes are not well formed
+     * @see net.johandegraeve.easyxmldata.XMLElement#getAttributes()
+     */
+    public Attributes getAttributes() {
+	if (attributes == null)
+	    attributes = document.getAttributes(index);
+	return attributes;
+    }
+
+    /**
+     * decodes the text the first time
+     * @return the untrimmed text directly in this element, null if none
+     * @throws IllegalStateException if an entity reference is not valid
+     * @see net.johandegraeve.easyxmldata.XMLElement#getText()
+     */
+    public String getText() {
+	if (text == null)
+	    text = document.getText(index);
+	return text.length() == 0 ? null : text;
+    }
+
+    /**
+     * creates the children the first time, their attributes, text and children are not yet created
+     * @return the children, null if no children
+     * @see net.johandegraeve.easyxmldata.XMLElement#getChildren()
+     */
+    public ArrayList<XMLElement> getChildren() {
+	if (children == null) {
+	    children = new ArrayList<XMLElement>(getSize());
+	    for (int child = document.getFirstChild(index); child >= 0; child = document.getNextSibling(child))
+		children.add(new LazyXMLElement(document, child));
+	}
+	return children.isEmpty() ? null : children;
+    }
+
+    /**
+     * get child element
+     * @param index
+     * @return the child
+     * @throws IndexOutOfBoundsException if there's no child with this index
+     */
+    public XMLElement getXMLElement(int index) {
+	ArrayList<XMLElement> list = getChildren();
+	if (list == null)
+	    throw new IndexOutOfBoundsException("Index: " + index + ", Size: 0");
+	return list.get(index);
+    }
+
+    /**
+     * get the number of children, without creating them
+     * @return the size
+     */
+    public int getSize() {
+	if (children != null)
+	    return children.size();
+	int returnvalue = 0;
+	for (int child = document.getFirstChild(index); child >= 0; child = document.getNextSibling(child))
+	    returnvalue++;
+	return returnvalue;
+    }
+
+    /**
+     * @return the depth of this element, 0 for the root element
+     */
+    public int getDepth() {
+	return document.getDepth(index);
+    }
+
+    /**
+     * get the XML of this element as it is in the document
+     * @return the source, from the start tag up to and including the end tag
+     */
+    public String getSource() {
+	return document.getSource(index);
+    }
+
+    /**
+     * parses this element and its descendants with the parser that created the document, so that the result consists of
+     * the classes configured in the parser, with all their methods called as in {@link EasyXMLDataParser#parse(String)}
+     * @return the parsed element
+     * @throws SAXParseException
+     */
+    public XMLElement materialize() throws SAXParseException {
+	return document.materialize(index);
+    }
+
+    /**
+     * not supported, a LazyXMLElement is read only
+     * @throws UnsupportedOperationException
+     * @see net.johandegraeve.easyxmldata.XMLElement#addAttributes(org.xml.sax.Attributes)
+     */
+    public void addAttributes(Attributes attributes) throws SAXException {
+	throw new UnsupportedOperationException("LazyXMLElement is read only");
+    }
+
+    /**
+     * not supported, a LazyXMLElement is read only
+     * @throws UnsupportedOperationException
+     * @see net.johandegraeve.easyxmldata.XMLElement#addChild(net.johandegraeve.easyxmldata.XMLElement)
+     */
+    public void addChild(XMLElement child) throws SAXException {
+	throw new UnsupportedOperationException("LazyXMLElement is read only");
+    }
+
+    /**
+     * not supported, a LazyXMLElement is read only
+     * @throws UnsupportedOperationException
+     * @see net.johandegraeve.easyxmldata.XMLElement#addText(java.lang.String)
+     */
+    public void addText(String text) throws SAXException {
+	throw new UnsupportedOperationException("LazyXMLElement is read only");
+    }
+
+    /**
+     * not supported, a LazyXMLElement is read only
+     * @throws UnsupportedOperationException
+     * @see net.johandegraeve.easyxmldata.XMLElement#addUnTrimmedText(java.lang.String)
+     */
+    public void addUnTrimmedText(String text) throws SAXException {
+	throw new UnsupportedOperationException("LazyXMLElement is read only");
+    }
+
+    /**
+     * doesn't do anything
+     * @see net.johandegraeve.easyxmldata.XMLElement#complete()
+     */
+    public void complete() throws SAXException {
+    }
+
+    /**
+     * @see net.johandegraeve.easyxmldata.XMLElement#preserveSpaces()
+     * This implementation returns true;
+     */
+    public boolean preserveSpaces() {
+	return true;
+    }
+}
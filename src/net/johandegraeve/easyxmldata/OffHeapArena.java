@@ -0,0 +1,302 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Memory outside the heap, made of direct {@link ByteBuffer}s, addressed with a long.<br>
+ * The memory is a list of chunks of at most {@link #CHUNK_SIZE} bytes. Only the last chunk grows, by doubling, until it is full, after
+ * which a new chunk is started, so that the number of buffers stays small and a small document does not reserve much memory. 
+ * Records written with the int and long methods must not cross the end of a chunk : {@link #allocate(int)} with a size that 
+ * divides {@link #CHUNK_SIZE} takes care of that. Characters are stored as UTF-16, a sequence of characters can span several chunks.<br>
+ * {@link #free()} releases the memory immediately when the JDK allows it (through sun.misc.Unsafe.invokeCleaner), otherwise the
+ * buffers are left to the garbage collector.<br>
+ * An OffHeapArena is not thread safe.
+ *
+ * @author Johan Degraeve
+ *
+ */
+final class OffHeapArena {
+
+    /**
+     * number of bits of the offset in a chunk
+     */
+    static private final int CHUNK_BITS = 30;
+
+    /**
+     * maximum size of a chunk
+     */
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    /**
+     * initial size of a chunk
+     */
+    static private final int INITIAL_SIZE = 1 << 16;
+
+    /**
+     * the chunks, all full except the last one
+     */
+    private ByteBuffer[] chunks = new ByteBuffer[4];
+
+    /**
+     * per chunk, its content as characters, for bulk copies without creating a view each time
+     */
+    private CharBuffer[] charViews = new CharBuffer[4];
+
+    /**
+     * number of chunks
+     */
+    private int chunkCount;
+
+    /**
+     * bytes used in the last chunk
+     */
+    private int used;
+
+    /**
+     * constructor
+     */
+    OffHeapArena() {
+	chunks[0] = allocateDirect(INITIAL_SIZE);
+	charViews[0] = view(chunks[0]);
+	chunkCount = 1;
+    }
+
+    /**
+     * reserves bytes at the end
+     * @param size number of bytes, at most {@link #CHUNK_SIZE}
+     * @return the address of the first byte
+     */
+    long allocate(int size) {
+	ensureRoom(size);
+	long returnvalue = address(chunkCount - 1, used);
+	used += size;
+	return returnvalue;
+    }
+
+    /**
+     * appends characters, they can span several chunks
+     * @param chars
+     * @param offset
+     * @param length
+     * @return the address of the first character
+     */
+    long putChars(char[] chars, int offset, int length) {
+	ensureRoom(Math.min(2 * length, CHUNK_SIZE));
+	long returnvalue = address(chunkCount - 1, used);
+	while (length > 0) {
+	    if (used == CHUNK_SIZE)
+		ensureRoom(Math.min(2 * length, CHUNK_SIZE));
+	    int count = Math.min(length, (chunks[chunkCount - 1].capacity() - used) / 2);
+	    charViews[chunkCount - 1].put(used / 2, chars, offset, count);
+	    used += 2 * count;
+	    offset += count;
+	    length -= count;
+	}
+	return returnvalue;
+    }
+
+    /**
+     * reads characters written with {@link #putChars(char[], int, int)}
+     * @param address
+     * @param length number of characters
+     * @return the characters as a String
+     */
+    String getString(long address, int length) {
+	char[] chars = new char[length];
+	int chunkIndex = (int)(address >>> CHUNK_BITS);
+	int offset = (int)(address & (CHUNK_SIZE - 1));
+	int done = 0;
+	while (done < length) {
+	    int count = Math.min(length - done, (CHUNK_SIZE - offset) / 2);
+	    charViews[chunkIndex].get(offset / 2, chars, done, count);
+	    done += count;
+	    chunkIndex++;
+	    offset = 0;
+	}
+	return new String(chars);
+    }
+
+    /**
+     * @param address
+     * @return the int at address
+     */
+    int getInt(long address) {
+	return chunks[(int)(address >>> CHUNK_BITS)].getInt((int)(address & (CHUNK_SIZE - 1)));
+    }
+
+    /**
+     * @param address
+     * @param value
+     */
+    void putInt(long address, int value) {
+	chunks[(int)(address >>> CHUNK_BITS)].putInt((int)(address & (CHUNK_SIZE - 1)), value);
+    }
+
+    /**
+     * @param address
+     * @return the long at address
+     */
+    long getLong(long address) {
+	return chunks[(int)(address >>> CHUNK_BITS)].getLong((int)(address & (CHUNK_SIZE - 1)));
+    }
+
+    /**
+     * @param address
+     * @param value
+     */
+    void putLong(long address, long value) {
+	chunks[(int)(address >>> CHUNK_BITS)].putLong((int)(address & (CHUNK_SIZE - 1)), value);
+    }
+
+    /**
+     * @return number of bytes reserved outside the heap
+     */
+    long getCapacity() {
+	long returnvalue = 0;
+	for (int i = 0; i < chunkCount; i++)
+	    returnvalue += chunks[i].capacity();
+	return returnvalue;
+    }
+
+    /**
+     * releases the memory, the arena can not be used anymore
+     */
+    void free() {
+	for (int i = 0; i < chunkCount; i++) {
+	    Cleaner.free(chunks[i]);
+	    chunks[i] = null;
+	    charViews[i] = null;
+	}
+	chunkCount = 0;
+    }
+
+    /**
+     * makes sure the last chunk has room for size bytes, growing it or starting a new chunk
+     * @param size at most {@link #CHUNK_SIZE}
+     */
+    private void ensureRoom(int size) {
+	ByteBuffer last = chunks[chunkCount - 1];
+	if (used + size <= last.capacity())
+	    return;
+	if (used + size <= CHUNK_SIZE) {
+	    //grow the last chunk
+	    int capacity = last.capacity();
+	    while (capacity < used + size)
+		capacity *= 2;
+	    ByteBuffer grown = allocateDirect(capacity);
+	    ByteBuffer source = last.duplicate();
+	    source.position(0).limit(used);
+	    grown.put(source);
+	    grown.clear();
+	    Cleaner.free(last);
+	    chunks[chunkCount - 1] = grown;
+	    charViews[chunkCount - 1] = view(grown);
+	    return;
+	}
+	//the rest of the last chunk stays unused, so that a record does not cross the end of a chunk
+	if (chunkCount == chunks.length) {
+	    chunks = Arrays.copyOf(chunks, 2 * chunkCount);
+	    charViews = Arrays.copyOf(charViews, 2 * chunkCount);
+	}
+	int capacity = INITIAL_SIZE;
+	while (capacity < size)
+	    capacity *= 2;
+	chunks[chunkCount] = allocateDirect(capacity);
+	charViews[chunkCount] = view(chunks[chunkCount]);
+	chunkCount++;
+	used = 0;
+    }
+
+    /**
+     * @param chunkIndex
+     * @param offset
+     * @return the address
+     */
+    static private long address(int chunkIndex, int offset) {
+	return ((long)chunkIndex << CHUNK_BITS) + offset;
+    }
+
+    /**
+     * @param chunk
+     * @return the content of chunk as characters, character i at byte offset 2 * i
+     */
+    static private CharBuffer view(ByteBuffer chunk) {
+	return chunk.duplicate().order(ByteOrder.nativeOrder()).asCharBuffer();
+    }
+
+    /**
+     * @param capacity
+     * @return a direct buffer in native byte order
+     */
+    static private ByteBuffer allocateDirect(int capacity) {
+	return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * frees direct buffers with sun.misc.Unsafe.invokeCleaner, if available
+     */
+    static private final class Cleaner {
+
+	/**
+	 * bound to invokeCleaner of the Unsafe instance, null if not available
+	 */
+	static private final MethodHandle INVOKE_CLEANER = find();
+
+	/**
+	 * @return the method handle, null if not available
+	 */
+	static private MethodHandle find() {
+	    try {
+		Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+		Field field = unsafeClass.getDeclaredField("theUnsafe");
+		field.setAccessible(true);
+		return MethodHandles.lookup()
+			.findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+			.bindTo(field.get(null));
+	    } catch (Throwable e) {
+		//not available, the garbage collector will free the buffers
+		return null;
+	    }
+	}
+
+	/**
+	 * frees a direct buffer, or does nothing if not possible
+	 * @param buffer
+	 */
+	static void free(ByteBuffer buffer) {
+	    if (INVOKE_CLEANER == null || buffer == null)
+		return;
+	    try {
+		INVOKE_CLEANER.invokeExact(buffer);
+	    } catch (Throwable e) {
+		//leave it to the garbage collector
+	    }
+	}
+    }
+}
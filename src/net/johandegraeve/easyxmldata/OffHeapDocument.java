@@ -0,0 +1,412 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.xml.sax.Attributes;
+
+/**
+ * A parsed document stored outside the heap, see {@link EasyXMLDataParser#parseOffHeap(java.io.InputStream)}.<br>
+ * Elements, attributes and text are stored in {@link java.nio.ByteBuffer#allocateDirect(int) direct buffers}, elements are identified
+ * by an int, 0 for the root element. The heap only holds this object, a few buffers, and the distinct tag and attribute names, 
+ * whatever the number of elements, so that a very large document does not make garbage collection slower.<br>
+ * The elements are read through {@link OffHeapXMLElement}s, flyweights that only hold the document and the id : they are created
+ * when asked for and read the attributes and text from the buffers each time.<br>
+ * {@link #close()} frees the buffers immediately, where the JDK allows it. After that the elements of the document can not be read anymore.<br>
+ * An OffHeapDocument can be read by several threads at the same time, but must not be closed while it is read.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public final class OffHeapDocument implements Closeable {
+
+    /**
+     * size of an element in {@link #nodes} : name, first child, next sibling, number of attributes, first attribute, length of text,
+     * address of text
+     */
+    static private final int NODE_SIZE = 32;
+
+    /**
+     * size of an attribute in {@link #attributes} : name, length of value, address of value
+     */
+    static private final int ATTRIBUTE_SIZE = 16;
+
+    /**
+     * the elements, null when closed
+     */
+    private volatile OffHeapArena nodes;
+
+    /**
+     * the attributes
+     */
+    private OffHeapArena attributes;
+
+    /**
+     * the text of elements and the values of attributes
+     */
+    private OffHeapArena chars;
+
+    /**
+     * the tag and attribute names, the ids of names are indexes in this array
+     */
+    private String[] names;
+
+    /**
+     * number of elements
+     */
+    private int nodeCount;
+
+    /**
+     * constructor
+     */
+    private OffHeapDocument() {
+	nodes = new OffHeapArena();
+	attributes = new OffHeapArena();
+	chars = new OffHeapArena();
+    }
+
+    /**
+     * get the root element
+     * @return the root element, a flyweight with id 0
+     * @throws IllegalStateException if the document is closed
+     */
+    public OffHeapXMLElement getRoot() {
+	arena();
+	return new OffHeapXMLElement(this, 0);
+    }
+
+    /**
+     * @return the number of elements
+     */
+    public int getNodeCount() {
+	return nodeCount;
+    }
+
+    /**
+     * @return number of bytes reserved outside the heap, 0 when closed
+     */
+    public long getOffHeapSize() {
+	OffHeapArena arena = nodes;
+	return arena == null ? 0 : arena.getCapacity() + attributes.getCapacity() + chars.getCapacity();
+    }
+
+    /**
+     * @return true if {@link #close()} was called
+     */
+    public boolean isClosed() {
+	return nodes == null;
+    }
+
+    /**
+     * frees the memory used by the document, calling it a second time does nothing
+     * @see java.io.Closeable#close()
+     */
+    public void close() {
+	OffHeapArena arena = nodes;
+	if (arena == null)
+	    return;
+	nodes = null;
+	arena.free();
+	attributes.free();
+	chars.free();
+    }
+
+    /**
+     * @return the elements
+     * @throws IllegalStateException if the document is closed
+     */
+    private OffHeapArena arena() {
+	OffHeapArena returnvalue = nodes;
+	if (returnvalue == null)
+	    throw new IllegalStateException("OffHeapDocument is closed");
+	return returnvalue;
+    }
+
+    /**
+     * @param id
+     * @return the tag name of element id
+     */
+    String getTagName(int id) {
+	return names[arena().getInt(address(id))];
+    }
+
+    /**
+     * @param id
+     * @return the first child of element id, -1 if none
+     */
+    int getFirstChild(int id) {
+	return arena().getInt(address(id) + 4);
+    }
+
+    /**
+     * @param id
+     * @return the next sibling of element id, -1 if none
+     */
+    int getNextSibling(int id) {
+	return arena().getInt(address(id) + 8);
+    }
+
+    /**
+     * @param id
+     * @return the attributes of element id, empty if none
+     */
+    Attributes getAttributes(int id) {
+	OffHeapArena arena = arena();
+	long address = address(id);
+	int count = arena.getInt(address + 12);
+	if (count == 0)
+	    return PackedAttributes.EMPTY;
+	long first = arena.getInt(address + 16) & 0xFFFFFFFFL;
+	String[] namesAndValues = new String[2 * count];
+	for (int i = 0; i < count; i++) {
+	    long attribute = (first + i) * ATTRIBUTE_SIZE;
+	    namesAndValues[2 * i] = names[attributes.getInt(attribute)];
+	    namesAndValues[2 * i + 1] = chars.getString(attributes.getLong(attribute + 8), attributes.getInt(attribute + 4));
+	}
+	return PackedAttributes.of(namesAndValues);
+    }
+
+    /**
+     * @param id
+     * @return the untrimmed text directly in element id, null if none
+     */
+    String getText(int id) {
+	OffHeapArena arena = arena();
+	long address = address(id);
+	int length = arena.getInt(address + 20);
+	return length == 0 ? null : chars.getString(arena.getLong(address + 24), length);
+    }
+
+    /**
+     * @param id
+     * @return the address of element id in {@link #nodes}
+     */
+    static private long address(int id) {
+	return (long)id * NODE_SIZE;
+    }
+
+    /**
+     * Receives the events of the parser and stores the elements in a new document.<br>
+     * Extends {@link XMLElementHandler} so that it can be used with both engines, the pooled SAX parsers and the metrics, but none 
+     * of the methods of the superclass that create elements are called.
+     */
+    static final class Builder extends XMLElementHandler {
+
+	/**
+	 * the document being built
+	 */
+	private final OffHeapDocument document = new OffHeapDocument();
+
+	/**
+	 * id per name
+	 */
+	private final HashMap<String, Integer> nameIds = new HashMap<String, Integer>();
+
+	/**
+	 * the names in order of id
+	 */
+	private final ArrayList<String> nameList = new ArrayList<String>();
+
+	/**
+	 * the ids of the open elements
+	 */
+	private int[] open = new int[64];
+
+	/**
+	 * per open element, the id of its last child so far, -1 if none
+	 */
+	private int[] lastChild = new int[64];
+
+	/**
+	 * number of open elements
+	 */
+	private int depth;
+
+	/**
+	 * number of attributes stored
+	 */
+	private long attributeCount;
+
+	/**
+	 * collects the text of the open elements
+	 */
+	private final TextBuffer textBuffer = new TextBuffer();
+
+	/**
+	 * to copy attribute values
+	 */
+	private char[] scratch = new char[256];
+
+	/**
+	 * constructor
+	 * @param configuration the parser
+	 */
+	Builder(EasyXMLDataParser configuration) {
+	    super(configuration);
+	}
+
+	/**
+	 * @return the document, after the parsing ended without errors
+	 */
+	OffHeapDocument getDocument() {
+	    document.names = nameList.toArray(new String[nameList.size()]);
+	    return document;
+	}
+
+	/**
+	 * frees the document, when the parsing failed
+	 */
+	void discard() {
+	    document.close();
+	}
+
+	/**
+	 * @see net.johandegraeve.easyxmldata.XMLElementHandler#startDocument()
+	 */
+	@Override
+	public void startDocument() {
+	}
+
+	/**
+	 * @see net.johandegraeve.easyxmldata.XMLElementHandler#endDocument()
+	 */
+	@Override
+	public void endDocument() {
+	}
+
+	/**
+	 * @see net.johandegraeve.easyxmldata.XMLElementHandler#isInElement()
+	 */
+	@Override
+	boolean isInElement() {
+	    return depth > 0;
+	}
+
+	/**
+	 * @see net.johandegraeve.easyxmldata.XMLElementHandler#startElement(java.lang.String, java.lang.String, java.lang.String, org.xml.sax.Attributes)
+	 */
+	@Override
+	public void startElement(String uri, String localName, String name, Attributes attrs) {
+	    String tagName = (name == null || name.length() == 0 ? localName : name);
+	    OffHeapArena nodes = document.nodes;
+	    int id = document.nodeCount;
+	    if (id == Integer.MAX_VALUE)
+		throw new IllegalStateException("too many elements for an OffHeapDocument");
+	    long address = nodes.allocate(NODE_SIZE);
+	    document.nodeCount++;
+	    nodes.putInt(address, nameId(tagName));
+	    nodes.putInt(address + 4, -1);
+	    nodes.putInt(address + 8, -1);
+	    nodes.putInt(address + 12, attrs.getLength());
+	    nodes.putInt(address + 16, (int)attributeCount);
+	    nodes.putInt(address + 20, 0);
+	    nodes.putLong(address + 24, 0);
+	    for (int i = 0; i < attrs.getLength(); i++)
+		addAttribute(attrs.getQName(i), attrs.getValue(i));
+
+	    //link to the parent
+	    if (depth > 0) {
+		int previous = lastChild[depth - 1];
+		if (previous < 0)
+		    nodes.putInt(address(open[depth - 1]) + 4, id);
+		else
+		    nodes.putInt(address(previous) + 8, id);
+		lastChild[depth - 1] = id;
+	    }
+	    if (depth == open.length) {
+		open = Arrays.copyOf(open, 2 * depth);
+		lastChild = Arrays.copyOf(lastChild, 2 * depth);
+	    }
+	    open[depth] = id;
+	    lastChild[depth] = -1;
+	    depth++;
+	    textBuffer.startElement(TextMode.UNTRIMMED);
+	}
+
+	/**
+	 * @see net.johandegraeve.easyxmldata.XMLElementHandler#endElement(java.lang.String, java.lang.String, java.lang.String)
+	 */
+	@Override
+	public void endElement(String uri, String localName, String name) {
+	    int start = textBuffer.getStart();
+	    int end = textBuffer.getEnd();
+	    if (end > start) {
+		long address = address(open[depth - 1]);
+		document.nodes.putInt(address + 20, end - start);
+		document.nodes.putLong(address + 24, document.chars.putChars(textBuffer.getChars(), start, end - start));
+	    }
+	    textBuffer.endElement();
+	    depth--;
+	}
+
+	/**
+	 * @see net.johandegraeve.easyxmldata.XMLElementHandler#characters(char[], int, int)
+	 */
+	@Override
+	public void characters(char[] ch, int start, int length) {
+	    textBuffer.append(ch, start, length);
+	}
+
+	/**
+	 * @see net.johandegraeve.easyxmldata.XMLElementHandler#ignorableWhitespace(char[], int, int)
+	 */
+	@Override
+	public void ignorableWhitespace(char[] ch, int start, int length) {
+	    textBuffer.append(ch, start, length);
+	}
+
+	/**
+	 * stores an attribute
+	 * @param qName
+	 * @param value
+	 */
+	private void addAttribute(String qName, String value) {
+	    if (attributeCount == 0xFFFFFFFFL)
+		throw new IllegalStateException("too many attributes for an OffHeapDocument");
+	    long address = document.attributes.allocate(ATTRIBUTE_SIZE);
+	    attributeCount++;
+	    int length = value.length();
+	    if (scratch.length < length)
+		scratch = new char[Math.max(length, 2 * scratch.length)];
+	    value.getChars(0, length, scratch, 0);
+	    document.attributes.putInt(address, nameId(qName));
+	    document.attributes.putInt(address + 4, length);
+	    document.attributes.putLong(address + 8, length == 0 ? 0 : document.chars.putChars(scratch, 0, length));
+	}
+
+	/**
+	 * @param name
+	 * @return the id of name, assigned at first occurrence
+	 */
+	private int nameId(String name) {
+	    Integer returnvalue = nameIds.get(name);
+	    if (returnvalue == null) {
+		returnvalue = Integer.valueOf(nameList.size());
+		nameIds.put(name, returnvalue);
+		nameList.add(name);
+	    }
+	    return returnvalue.intValue();
+	}
+    }
+}
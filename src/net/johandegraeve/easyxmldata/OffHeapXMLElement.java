@@ -0,0 +1,199 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.ArrayList;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+/**
+ * A read only view on an element of an {@link OffHeapDocument}.<br>
+ * An OffHeapXMLElement only holds the document and the id of the element, everything else is read from the document at each call :
+ * {@link #getChildren()} creates new views on the children, {@link #getAttributes()} and {@link #getText()} create new objects with
+ * the content stored outside the heap. Two views on the same element are equal.<br>
+ * The elements behave as {@link CompactXMLElement}s created for unknown tags : the text is untrimmed, the attributes are never null.<br>
+ * All methods throw an IllegalStateException once the document is closed.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public final class OffHeapXMLElement implements XMLElement {
+
+    /**
+     * the document
+     */
+    private final OffHeapDocument document;
+
+    /**
+     * id of the element in {@link #document}
+     */
+    private final int id;
+
+    /**
+     * constructor
+     * @param document
+     * @param id
+     */
+    OffHeapXMLElement(OffHeapDocument document, int id) {
+	this.document = document;
+	this.id = id;
+    }
+
+    /**
+     * @return the id of the element in its document, 0 for the root element, ids follow the order of the start tags
+     */
+    public int getId() {
+	return id;
+    }
+
+    /**
+     * @see net.johandegraeve.easyxmldata.XMLElement#getTagName()
+     */
+    public String getTagName() {
+	return document.getTagName(id);
+    }
+
+    /**
+     * @return the attributes, empty if the element has no attributes
+     * @see net.johandegraeve.easyxmldata.XMLElement#getAttributes()
+     */
+    public Attributes getAttributes() {
+	return document.getAttributes(id);
+    }
+
+    /**
+     * @return the untrimmed text directly in this element, null if none
+     * @see net.johandegraeve.easyxmldata.XMLElement#getText()
+     */
+    public String getText() {
+	return document.getText(id);
+    }
+
+    /**
+     * @return views on the children, null if no children
+     * @see net.johandegraeve.easyxmldata.XMLElement#getChildren()
+     */
+    public ArrayList<XMLElement> getChildren() {
+	int child = document.getFirstChild(id);
+	if (child < 0)
+	    return null;
+	ArrayList<XMLElement> returnvalue = new ArrayList<XMLElement>();
+	for (; child >= 0; child = document.getNextSibling(child))
+	    returnvalue.add(new OffHeapXMLElement(document, child));
+	return returnvalue;
+    }
+
+    /**
+     * get child element, without creating views on the other children
+     * @param index
+     * @return the child
+     * @throws IndexOutOfBoundsException if there's no child with this index
+     */
+    public XMLElement getXMLElement(int index) {
+	int child = document.getFirstChild(id);
+	for (int i = 0; i < index && child >= 0; i++)
+	    child = document.getNextSibling(child);
+	if (index < 0 || child < 0)
+	    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + getSize());
+	return new OffHeapXMLElement(document, child);
+    }
+
+    /**
+     * get the number of children, without creating them
+     * @return the size
+     */
+    public int getSize() {
+	int returnvalue = 0;
+	for (int child = document.getFirstChild(id); child >= 0; child = document.getNextSibling(child))
+	    returnvalue++;
+	return returnvalue;
+    }
+
+    /**
+     * not supported, an OffHeapXMLElement is read only
+     * @throws UnsupportedOperationException
+     * @see net.johandegraeve.easyxmldata.XMLElement#addAttributes(org.xml.sax.Attributes)
+     */
+    public void addAttributes(Attributes attributes) throws SAXException {
+	throw new UnsupportedOperationException("OffHeapXMLElement is read only");
+    }
+
+    /**
+     * not supported, an OffHeapXMLElement is read only
+     * @throws UnsupportedOperationException
+     * @see net.johandegraeve.easyxmldata.XMLElement#addChild(net.johandegraeve.easyxmldata.XMLElement)
+     */
+    public void addChild(XMLElement child) throws SAXException {
+	throw new UnsupportedOperationException("OffHeapXMLElement is read only");
+    }
+
+    /**
+     * not supported, an OffHeapXMLElement is read only
+     * @throws UnsupportedOperationException
+     * @see net.johandegraeve.easyxmldata.XMLElement#addText(java.lang.String)
+     */
+    public void addText(String text) throws SAXException {
+	throw new UnsupportedOperationException("OffHeapXMLElement is read only");
+    }
+
+    /**
+     * not supported, an OffHeapXMLElement is read only
+     * @throws UnsupportedOperationException
+     * @see net.johandegraeve.easyxmldata.XMLElement#addUnTrimmedText(java.lang.String)
+     */
+    public void addUnTrimmedText(String text) throws SAXException {
+	throw new UnsupportedOperationException("OffHeapXMLElement is read only");
+    }
+
+    /**
+     * doesn't do anything
+     * @see net.johandegraeve.easyxmldata.XMLElement#complete()
+     */
+    public void complete() throws SAXException {
+    }
+
+    /**
+     * @see net.johandegraeve.easyxmldata.XMLElement#preserveSpaces()
+     * This implementation returns true;
+     */
+    public boolean preserveSpaces() {
+	return true;
+    }
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+	if (!(obj instanceof OffHeapXMLElement))
+	    return false;
+	OffHeapXMLElement other = (OffHeapXMLElement)obj;
+	return document == other.document && id == other.id;
+    }
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+	return 31 * System.identityHashCode(document) + id;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import org.xml.sax.Attributes;
+
+/**
+ * An immutable {@link Attributes} implementation that stores names and values in one array : name0, value0, name1, value1, ...<br>
+ * As the parsers used by {@link EasyXMLDataParser} are not namespace aware, the URI of an attribute is always the empty string
+ * and the local name equals the qualified name, so they are not stored. The type is only stored if it's not &quot;CDATA&quot;
+ * for one of the attributes, which only happens when a DTD declares attribute types.
+ *
+ * @author Johan Degraeve
+ *
+ */
+final class PackedAttributes implements Attributes {
+
+    /**
+     * attributes without any attribute
+     */
+    static final PackedAttributes EMPTY = new PackedAttributes(new String[0], null);
+
+    /**
+     * the default type of an attribute
+     */
+    static private final String CDATA = "CDATA";
+
+    /**
+     * names and values
+     */
+    private final String[] namesAndValues;
+
+    /**
+     * types, null if all types are CDATA
+     */
+    private final String[] types;
+
+    /**
+     * constructor
+     * @param namesAndValues
+     * @param types
+     */
+    private PackedAttributes(String[] namesAndValues, String[] types) {
+	this.namesAndValues = namesAndValues;
+	this.types = types;
+    }
+
+    /**
+     * creates attributes of type CDATA
+     * @param namesAndValues name0, value0, name1, value1, ... not copied
+     * @return the attributes
+     */
+    static PackedAttributes of(String[] namesAndValues) {
+	return namesAndValues.length == 0 ? EMPTY : new PackedAttributes(namesAndValues, null);
+    }
+
+    /**
+     * copies attributes
+     * @param attributes the attributes to copy
+     * @param symbols to intern the names, can be null
+     * @return the copy
+     */
+    static PackedAttributes copyOf(Attributes attributes, SymbolTable symbols) {
+	int length = (attributes == null ? 0 : attributes.getLength());
+	if (length == 0)
+	    return EMPTY;
+	String[] namesAndValues = new String[2 * length];
+	String[] types = null;
+	for (int i = 0; i < length; i++) {
+	    String name = attributes.getQName(i);
+	    namesAndValues[2 * i] = (symbols == null ? name : symbols.addSymbol(name));
+	    namesAndValues[2 * i + 1] = attributes.getValue(i);
+	    String type = attributes.getType(i);
+	    if (!CDATA.equals(type)) {
+		if (types == null) {
+		    types = new String[length];
+		    for (int j = 0; j < length; j++)
+			types[j] = CDATA;
+		}
+		types[i] = type;
+	    }
+	}
+	return new PackedAttributes(namesAndValues, types);
+    }
+
+    /**
+     * @see org.xml.sax.Attributes#getLength()
+     */
+    public int getLength() {
+	return namesAndValues.length >> 1;
+    }
+
+    /**
+     * @see org.xml.sax.Attributes#getURI(int)
+     */
+    public String getURI(int index) {
+	return (index < 0 || index >= getLength()) ? null : "";
+    }
+
+    /**
+     * @see org.xml.sax.Attributes#getLocalName(int)
+     */
+    public String getLocalName(int index) {
+	return getQName(index);
+    }
+
+    /**
+     * @see org.xml.sax.Attributes#getQName(int)
+     */
+    public String getQName(int index) {
+	return (index < 0 || index >= getLength()) ? null : namesAndValues[2 * index];
+    }
+
+    /**
+     * @see org.xml.sax.Attributes#getType(int)
+     */
+    public String getType(int index) {
+	if (index < 0 || index >= getLength())
+	    return null;
+	return types == null ? CDATA : types[index];
+    }
+
+    /**
+     * @see org.xml.sax.Attributes#getValue(int)
+     */
+    public String getValue(int index) {
+	return (index < 0 || index >= getLength()) ? null : namesAndValues[2 * index + 1];
+    }
+
+    /**
+     * @see org.xml.sax.Attributes#getIndex(java.lang.String, java.lang.String)
+     */
+    public int getIndex(String uri, String localName) {
+	return "".equals(uri) ? getIndex(localName) : -1;
+    }
+
+    /**
+     * @see org.xml.sax.Attributes#getIndex(java.lang.String)
+     */
+    public int getIndex(String qName) {
+	for (int i = 0; i < namesAndValues.length; i += 2)
+	    if (namesAndValues[i].equals(qName))
+		return i >> 1;
+	return -1;
+    }
+
+    /**
+     * @see org.xml.sax.Attributes#getType(java.lang.String, java.lang.String)
+     */
+    public String getType(String uri, String localName) {
+	return getType(getIndex(uri, localName));
+    }
+
+    /**
+     * @see org.xml.sax.Attributes#getType(java.lang.String)
+     */
+    public String getType(String qName) {
+	return getType(getIndex(qName));
+    }
+
+    /**
+     * @see org.xml.sax.Attributes#getValue(java.lang.String, java.lang.String)
+     */
+    public String getValue(String uri, String localName) {
+	return getValue(getIndex(uri, localName));
+    }
+
+    /**
+     * @see org.xml.sax.Attributes#getValue(java.lang.String)
+     */
+    public String getValue(String qName) {
+	return getValue(getIndex(qName));
+    }
+}
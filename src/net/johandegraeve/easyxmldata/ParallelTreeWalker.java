@@ -0,0 +1,431 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Walks a tree of XMLElements on a {@link ForkJoinPool}, with an {@link XMLElementVisitor} or an {@link XMLElementTransformer}.<br>
+ * The tree is walked through {@link XMLElement#getChildren()}. A list of children longer than the threshold is split in two halves,
+ * one of which is handed over to the pool, until the parts are not longer than the threshold; the children in a part are walked
+ * one after the other, each of them again splitting its own children if there are more than the threshold. The results are combined
+ * in document order, whatever thread computed them, so a walk gives the same result as a sequential one.<br>
+ * Parallelism comes from elements with many children : a tree in which no element has more children than the threshold
+ * is walked on one thread.<br>
+ * The tree must not be modified during the walk. A ParallelTreeWalker can be used by several threads at the same time.
+ * 
+ * @author Johan Degraeve
+ *
+ */
+public final class ParallelTreeWalker {
+
+    /**
+     * threshold used by {@link #ParallelTreeWalker()}
+     */
+    public static final int DEFAULT_THRESHOLD = 256;
+
+    /**
+     * the pool
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * maximum number of children walked in one task
+     */
+    private final int threshold;
+
+    /**
+     * creates a walker on the common {@link ForkJoinPool} with threshold {@link #DEFAULT_THRESHOLD}
+     */
+    public ParallelTreeWalker() {
+	this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * creates a walker
+     * @param pool the pool to use
+     * @param threshold maximum number of children walked in one task, lists of children that are longer are split
+     * @throws IllegalArgumentException if threshold is smaller than 1
+     */
+    public ParallelTreeWalker(ForkJoinPool pool, int threshold) {
+	if (pool == null)
+	    throw new NullPointerException("pool should not be null");
+	if (threshold < 1)
+	    throw new IllegalArgumentException("threshold should be at least 1 : " + threshold);
+	this.pool = pool;
+	this.threshold = threshold;
+    }
+
+    /**
+     * @return the pool
+     */
+    public ForkJoinPool getPool() {
+	return pool;
+    }
+
+    /**
+     * @return the threshold
+     */
+    public int getThreshold() {
+	return threshold;
+    }
+
+    /**
+     * visits root and all its descendants, and combines the results in document order
+     * @param root the element to start from, it gets depth 0
+     * @param visitor
+     * @return the combined result of all elements
+     * @throws SAXException thrown by the visitor, the walk stops as soon as possible
+     */
+    public <R> R visit(XMLElement root, XMLElementVisitor<R> visitor) throws SAXException {
+	return invoke(new VisitTask<R>(visitor, Collections.singletonList(root), 0, 1, 0));
+    }
+
+    /**
+     * transforms root and all its descendants, bottom-up
+     * @param root the element to start from, it gets depth 0
+     * @param transformer
+     * @return the result for root
+     * @throws SAXException thrown by the transformer, the walk stops as soon as possible
+     */
+    public <R> R transform(XMLElement root, XMLElementTransformer<R> transformer) throws SAXException {
+	return invoke(new TransformTask<R>(transformer, root, 0));
+    }
+
+    /**
+     * runs a task on the pool
+     * @param task
+     * @return the result
+     * @throws SAXException
+     */
+    private <R> R invoke(RecursiveTask<R> task) throws SAXException {
+	try {
+	    return pool.invoke(task);
+	} catch (WalkException e) {
+	    //the exception may have been wrapped again when crossing threads
+	    Throwable cause = e.getCause();
+	    while (!(cause instanceof SAXException))
+		cause = cause.getCause();
+	    throw (SAXException)cause;
+	}
+    }
+
+    /**
+     * @param element
+     * @return the children of element, null if none
+     */
+    static private List<XMLElement> childrenOf(XMLElement element) {
+	ArrayList<XMLElement> returnvalue = element.getChildren();
+	return (returnvalue == null || returnvalue.isEmpty()) ? null : returnvalue;
+    }
+
+    /**
+     * visits a range of siblings and their descendants
+     */
+    private final class VisitTask<R> extends RecursiveTask<R> {
+
+	/**
+	 * serial version
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * the visitor
+	 */
+	private final XMLElementVisitor<R> visitor;
+
+	/**
+	 * the siblings
+	 */
+	private final List<XMLElement> siblings;
+
+	/**
+	 * index of the first sibling to visit
+	 */
+	private final int from;
+
+	/**
+	 * index of the last sibling to visit + 1
+	 */
+	private final int to;
+
+	/**
+	 * depth of the siblings
+	 */
+	private final int depth;
+
+	/**
+	 * constructor
+	 * @param visitor
+	 * @param siblings
+	 * @param from
+	 * @param to
+	 * @param depth
+	 */
+	VisitTask(XMLElementVisitor<R> visitor, List<XMLElement> siblings, int from, int to, int depth) {
+	    this.visitor = visitor;
+	    this.siblings = siblings;
+	    this.from = from;
+	    this.to = to;
+	    this.depth = depth;
+	}
+
+	/**
+	 * @see java.util.concurrent.RecursiveTask#compute()
+	 */
+	@Override
+	protected R compute() {
+	    try {
+		return visitRange(siblings, from, to, depth);
+	    } catch (SAXException e) {
+		throw new WalkException(e);
+	    }
+	}
+
+	/**
+	 * visits a range of siblings, splitting it if it is longer than the threshold
+	 * @param elements
+	 * @param first
+	 * @param last index of the last sibling + 1
+	 * @param elementDepth
+	 * @return the combined result
+	 * @throws SAXException
+	 */
+	private R visitRange(List<XMLElement> elements, int first, int last, int elementDepth) throws SAXException {
+	    if (last - first > threshold) {
+		int middle = (first + last) >>> 1;
+		VisitTask<R> second = new VisitTask<R>(visitor, elements, middle, last, elementDepth);
+		second.fork();
+		R returnvalue = visitRange(elements, first, middle, elementDepth);
+		return visitor.combine(returnvalue, second.join());
+	    }
+	    R returnvalue = visitSubtree(elements.get(first), elementDepth);
+	    for (int i = first + 1; i < last; i++)
+		returnvalue = visitor.combine(returnvalue, visitSubtree(elements.get(i), elementDepth));
+	    return returnvalue;
+	}
+
+	/**
+	 * visits an element and its descendants
+	 * @param element
+	 * @param elementDepth
+	 * @return the combined result
+	 * @throws SAXException
+	 */
+	private R visitSubtree(XMLElement element, int elementDepth) throws SAXException {
+	    R returnvalue = visitor.visit(element, elementDepth);
+	    List<XMLElement> children = childrenOf(element);
+	    if (children == null)
+		return returnvalue;
+	    return visitor.combine(returnvalue, visitRange(children, 0, children.size(), elementDepth + 1));
+	}
+    }
+
+    /**
+     * transforms an element and its descendants
+     */
+    private final class TransformTask<R> extends RecursiveTask<R> {
+
+	/**
+	 * serial version
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * the transformer
+	 */
+	private final XMLElementTransformer<R> transformer;
+
+	/**
+	 * the element
+	 */
+	private final XMLElement element;
+
+	/**
+	 * depth of the element
+	 */
+	private final int depth;
+
+	/**
+	 * constructor
+	 * @param transformer
+	 * @param element
+	 * @param depth
+	 */
+	TransformTask(XMLElementTransformer<R> transformer, XMLElement element, int depth) {
+	    this.transformer = transformer;
+	    this.element = element;
+	    this.depth = depth;
+	}
+
+	/**
+	 * @see java.util.concurrent.RecursiveTask#compute()
+	 */
+	@Override
+	protected R compute() {
+	    try {
+		return transformSubtree(transformer, element, depth);
+	    } catch (SAXException e) {
+		throw new WalkException(e);
+	    }
+	}
+    }
+
+    /**
+     * transforms a range of siblings and stores the results
+     */
+    private final class TransformRangeTask<R> extends RecursiveTask<Void> {
+
+	/**
+	 * serial version
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * the transformer
+	 */
+	private final XMLElementTransformer<R> transformer;
+
+	/**
+	 * the siblings
+	 */
+	private final List<XMLElement> siblings;
+
+	/**
+	 * the results, per sibling
+	 */
+	private final Object[] results;
+
+	/**
+	 * index of the first sibling to transform
+	 */
+	private final int from;
+
+	/**
+	 * index of the last sibling to transform + 1
+	 */
+	private final int to;
+
+	/**
+	 * depth of the siblings
+	 */
+	private final int depth;
+
+	/**
+	 * constructor
+	 * @param transformer
+	 * @param siblings
+	 * @param results
+	 * @param from
+	 * @param to
+	 * @param depth
+	 */
+	TransformRangeTask(XMLElementTransformer<R> transformer, List<XMLElement> siblings, Object[] results, int from, int to, int depth) {
+	    this.transformer = transformer;
+	    this.siblings = siblings;
+	    this.results = results;
+	    this.from = from;
+	    this.to = to;
+	    this.depth = depth;
+	}
+
+	/**
+	 * @see java.util.concurrent.RecursiveTask#compute()
+	 */
+	@Override
+	protected Void compute() {
+	    try {
+		transformRange(transformer, siblings, results, from, to, depth);
+	    } catch (SAXException e) {
+		throw new WalkException(e);
+	    }
+	    return null;
+	}
+    }
+
+    /**
+     * transforms an element after its children
+     * @param transformer
+     * @param element
+     * @param depth
+     * @return the result
+     * @throws SAXException
+     */
+    private <R> R transformSubtree(XMLElementTransformer<R> transformer, XMLElement element, int depth) throws SAXException {
+	List<XMLElement> children = childrenOf(element);
+	if (children == null)
+	    return transformer.transform(element, depth, Collections.<R>emptyList());
+	Object[] results = new Object[children.size()];
+	transformRange(transformer, children, results, 0, results.length, depth + 1);
+	@SuppressWarnings("unchecked")
+	List<R> childResults = (List<R>)Collections.unmodifiableList(Arrays.asList(results));
+	return transformer.transform(element, depth, childResults);
+    }
+
+    /**
+     * transforms a range of siblings, splitting it if it is longer than the threshold
+     * @param transformer
+     * @param siblings
+     * @param results to store the result per sibling
+     * @param from
+     * @param to index of the last sibling + 1
+     * @param depth
+     * @throws SAXException
+     */
+    private <R> void transformRange(XMLElementTransformer<R> transformer, List<XMLElement> siblings, Object[] results, 
+	    int from, int to, int depth) throws SAXException {
+	if (to - from > threshold) {
+	    int middle = (from + to) >>> 1;
+	    TransformRangeTask<R> second = new TransformRangeTask<R>(transformer, siblings, results, middle, to, depth);
+	    second.fork();
+	    transformRange(transformer, siblings, results, from, middle, depth);
+	    second.join();
+	    return;
+	}
+	for (int i = from; i < to; i++)
+	    results[i] = transformSubtree(transformer, siblings.get(i), depth);
+    }
+
+    /**
+     * carries a SAXException out of a task
+     */
+    static private final class WalkException extends RuntimeException {
+
+	/**
+	 * serial version
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * constructor
+	 * @param cause
+	 */
+	WalkException(SAXException cause) {
+	    super(cause);
+	}
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event for the parsing of one document by an {@link EasyXMLDataParser}.<br>
+ * The duration of the event is the time of the parse. When the event is enabled in a recording, the same counters are collected
+ * as for {@link EasyXMLDataParser#setMetricsEnabled(boolean)}, also if metrics are not enabled.
+ *
+ * @author Johan Degraeve
+ *
+ */
+@Name("net.johandegraeve.easyxmldata.Parse")
+@Label("XML Parse")
+@Category({"easyxmldata"})
+@Description("Parsing of one XML document")
+@StackTrace(false)
+final class ParseEvent extends Event {
+
+    @Label("System Id")
+    String systemId;
+
+    @Label("Engine")
+    String engine;
+
+    @Label("Elements")
+    long elementCount;
+
+    @Label("Max Depth")
+    int maxDepth;
+
+    @Label("Bytes Read")
+    @DataAmount
+    long byteCount;
+
+    @Label("Characters Read")
+    long charCount;
+
+    @Label("Text Characters")
+    long textCharCount;
+
+    @Label("Class Resolution Time")
+    @Timespan
+    long resolutionTime;
+
+    @Label("Class Resolution Misses")
+    long resolutionMisses;
+
+    @Label("Element Code Time")
+    @Description("Time spent in constructors, addAttributes, addText, addUnTrimmedText, addChild and complete of the element classes")
+    @Timespan
+    long callbackTime;
+
+    @Label("Failed")
+    boolean failed;
+
+    /**
+     * copies the counters of one parse
+     * @param statistics
+     */
+    void set(ParseStatistics statistics) {
+	elementCount = statistics.elementCount;
+	maxDepth = statistics.maxDepth;
+	byteCount = statistics.byteCount;
+	charCount = statistics.charCount;
+	textCharCount = statistics.textCharCount;
+	resolutionTime = statistics.resolutionNanos;
+	resolutionMisses = statistics.resolutionMisses;
+	callbackTime = statistics.totalCallbackNanos;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Snapshot of the metrics collected by an {@link EasyXMLDataParser} since metrics were enabled or reset, 
+ * see {@link EasyXMLDataParser#setMetricsEnabled(boolean)}.<br>
+ * Times are measured with System.nanoTime() and include the time spent in the code of the element classes : their constructor,
+ * {@link XMLElement#addAttributes(org.xml.sax.Attributes)}, {@link XMLElement#addText(String)}, {@link XMLElement#addUnTrimmedText(String)},
+ * {@link XMLElement#addChild(XMLElement)} (counted for the parent) and {@link XMLElement#complete()}.
+ * The difference between the total parse time as seen by the caller and these times is the time spent in the XML parser itself.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public final class ParseMetrics {
+
+    /**
+     * number of documents parsed
+     */
+    private final long parseCount;
+
+    /**
+     * number of elements
+     */
+    private final long elementCount;
+
+    /**
+     * tag name to number of elements
+     */
+    private final Map<String, Long> elementCounts;
+
+    /**
+     * class name to nanoseconds spent in the code of the class
+     */
+    private final Map<String, Long> callbackNanos;
+
+    /**
+     * nanoseconds spent searching the class for tags
+     */
+    private final long resolutionNanos;
+
+    /**
+     * number of tags that were not found in the {@link TagResolutionCache}
+     */
+    private final long resolutionMisses;
+
+    /**
+     * bytes read
+     */
+    private final long byteCount;
+
+    /**
+     * characters read
+     */
+    private final long charCount;
+
+    /**
+     * characters of text
+     */
+    private final long textCharCount;
+
+    /**
+     * maximum depth
+     */
+    private final int maxDepth;
+
+    /**
+     * constructor, takes a copy of the statistics
+     * @param statistics
+     */
+    ParseMetrics(ParseStatistics statistics) {
+	parseCount = statistics.parseCount;
+	elementCount = statistics.elementCount;
+	TreeMap<String, Long> counts = new TreeMap<String, Long>();
+	for (Map.Entry<String, long[]> entry : statistics.elementCounts.entrySet())
+	    counts.put(entry.getKey(), entry.getValue()[0]);
+	elementCounts = Collections.unmodifiableMap(counts);
+	TreeMap<String, Long> nanos = new TreeMap<String, Long>();
+	for (Map.Entry<Class<?>, long[]> entry : statistics.callbackNanos.entrySet())
+	    nanos.merge(entry.getKey().getName(), entry.getValue()[0], Long::sum);
+	callbackNanos = Collections.unmodifiableMap(nanos);
+	resolutionNanos = statistics.resolutionNanos;
+	resolutionMisses = statistics.resolutionMisses;
+	byteCount = statistics.byteCount;
+	charCount = statistics.charCount;
+	textCharCount = statistics.textCharCount;
+	maxDepth = statistics.maxDepth;
+    }
+
+    /**
+     * @return number of documents parsed, for {@link EasyXMLDataParser#parseParallel(String)} each part parsed separately is counted
+     */
+    public long getParseCount() {
+	return parseCount;
+    }
+
+    /**
+     * @return total number of elements
+     */
+    public long getElementCount() {
+	return elementCount;
+    }
+
+    /**
+     * @return number of elements per tag name, sorted by tag name
+     */
+    public Map<String, Long> getElementCounts() {
+	return elementCounts;
+    }
+
+    /**
+     * @return nanoseconds spent in the code of each element class, per class name, sorted by class name
+     */
+    public Map<String, Long> getCallbackNanos() {
+	return callbackNanos;
+    }
+
+    /**
+     * @return nanoseconds spent searching the class for a tag, cache lookups included
+     */
+    public long getResolutionNanos() {
+	return resolutionNanos;
+    }
+
+    /**
+     * @return number of tags that were not yet in the {@link TagResolutionCache}, and needed a search with Class.forName
+     */
+    public long getResolutionMisses() {
+	return resolutionMisses;
+    }
+
+    /**
+     * @return number of bytes read from byte input (URLs, Strings, streams, files, buffers)
+     */
+    public long getByteCount() {
+	return byteCount;
+    }
+
+    /**
+     * @return number of characters read from character input (Readers)
+     */
+    public long getCharCount() {
+	return charCount;
+    }
+
+    /**
+     * @return number of characters of text received from the XML parser, whitespace included
+     */
+    public long getTextCharCount() {
+	return textCharCount;
+    }
+
+    /**
+     * @return maximum nesting depth of the elements, the root element has depth 1
+     */
+    public int getMaxDepth() {
+	return maxDepth;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+	return "ParseMetrics[parses=" + parseCount + 
+		", elements=" + elementCount + 
+		", maxDepth=" + maxDepth + 
+		", bytes=" + byteCount + 
+		", chars=" + charCount + 
+		", textChars=" + textCharCount + 
+		", resolutionNanos=" + resolutionNanos + 
+		", resolutionMisses=" + resolutionMisses + 
+		", elementCounts=" + elementCounts + 
+		", callbackNanos=" + callbackNanos + "]";
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import org.xml.sax.SAXParseException;
+
+/**
+ * The result of parsing one document in a batch, see {@link EasyXMLDataParser#parseAll(Iterable)} : either the root element or the 
+ * exception that made the parsing fail.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public final class ParseResult {
+
+    /**
+     * the root element, null if parsing failed
+     */
+    private final XMLElement element;
+
+    /**
+     * the exception, null if parsing succeeded
+     */
+    private final SAXParseException exception;
+
+    /**
+     * constructor
+     * @param element
+     * @param exception
+     */
+    ParseResult(XMLElement element, SAXParseException exception) {
+	this.element = element;
+	this.exception = exception;
+    }
+
+    /**
+     * @return true if parsing succeeded
+     */
+    public boolean isSuccess() {
+	return exception == null;
+    }
+
+    /**
+     * get the root element
+     * @return the root element, null if parsing failed
+     */
+    public XMLElement getElement() {
+	return element;
+    }
+
+    /**
+     * get the exception
+     * @return the exception that made the parsing fail, null if parsing succeeded
+     */
+    public SAXParseException getException() {
+	return exception;
+    }
+
+    /**
+     * get the root element, or throw the exception if parsing failed
+     * @return the root element
+     * @throws SAXParseException if parsing failed
+     */
+    public XMLElement get() throws SAXParseException {
+	if (exception != null)
+	    throw exception;
+	return element;
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.xml.sax.InputSource;
+
+/**
+ * Counters collected while parsing, see {@link EasyXMLDataParser#setMetricsEnabled(boolean)}.<br>
+ * One instance is filled by the handler of one parse, and then added to the totals of the parser with {@link #add(ParseStatistics)}.
+ * Not thread safe, the totals are guarded by the parser.
+ *
+ * @author Johan Degraeve
+ *
+ */
+final class ParseStatistics {
+
+    /**
+     * number of parses
+     */
+    long parseCount;
+
+    /**
+     * number of elements
+     */
+    long elementCount;
+
+    /**
+     * tag name to number of elements
+     */
+    final Map<String, long[]> elementCounts = new HashMap<String, long[]>();
+
+    /**
+     * element class to time in nanoseconds spent in its constructor, addAttributes, addText, addUnTrimmedText, addChild and complete
+     */
+    final Map<Class<?>, long[]> callbackNanos = new HashMap<Class<?>, long[]>();
+
+    /**
+     * total of {@link #callbackNanos}
+     */
+    long totalCallbackNanos;
+
+    /**
+     * time in nanoseconds spent searching the class for a tag
+     */
+    long resolutionNanos;
+
+    /**
+     * number of tags that were not yet in the {@link TagResolutionCache}
+     */
+    long resolutionMisses;
+
+    /**
+     * bytes read from byte streams
+     */
+    long byteCount;
+
+    /**
+     * characters read from character streams
+     */
+    long charCount;
+
+    /**
+     * characters of text received from the parser
+     */
+    long textCharCount;
+
+    /**
+     * maximum nesting depth, the root element has depth 1
+     */
+    int maxDepth;
+
+    /**
+     * the counting stream or reader of the input, see {@link #count(InputSource)}
+     */
+    private Counting input;
+
+    /**
+     * records the start of an element
+     * @param tagName
+     * @param depth depth of the element, the root element has depth 1
+     */
+    void elementStarted(String tagName, int depth) {
+	elementCount++;
+	long[] count = elementCounts.get(tagName);
+	if (count == null)
+	    elementCounts.put(tagName, count = new long[1]);
+	count[0]++;
+	if (depth > maxDepth)
+	    maxDepth = depth;
+    }
+
+    /**
+     * records time spent in code of an element class
+     * @param elementClass
+     * @param nanos
+     */
+    void addCallbackTime(Class<?> elementClass, long nanos) {
+	long[] time = callbackNanos.get(elementClass);
+	if (time == null)
+	    callbackNanos.put(elementClass, time = new long[1]);
+	time[0] += nanos;
+	totalCallbackNanos += nanos;
+    }
+
+    /**
+     * replaces the stream or reader of source by one that counts the bytes or characters read
+     * @param source
+     * @return source
+     */
+    InputSource count(InputSource source) {
+	if (source.getByteStream() != null) {
+	    CountingInputStream counting = new CountingInputStream(source.getByteStream());
+	    source.setByteStream(counting);
+	    input = counting;
+	} else if (source.getCharacterStream() != null) {
+	    CountingReader counting = new CountingReader(source.getCharacterStream());
+	    source.setCharacterStream(counting);
+	    input = counting;
+	}
+	return source;
+    }
+
+    /**
+     * to call when the parse is finished, takes over the counts of the input
+     */
+    void finish() {
+	parseCount++;
+	if (input instanceof CountingInputStream)
+	    byteCount += input.getCount();
+	else if (input != null)
+	    charCount += input.getCount();
+	input = null;
+    }
+
+    /**
+     * adds the counters of other to this
+     * @param other
+     */
+    void add(ParseStatistics other) {
+	parseCount += other.parseCount;
+	elementCount += other.elementCount;
+	for (Map.Entry<String, long[]> entry : other.elementCounts.entrySet()) {
+	    long[] count = elementCounts.get(entry.getKey());
+	    if (count == null)
+		elementCounts.put(entry.getKey(), count = new long[1]);
+	    count[0] += entry.getValue()[0];
+	}
+	for (Map.Entry<Class<?>, long[]> entry : other.callbackNanos.entrySet())
+	    addCallbackTime(entry.getKey(), entry.getValue()[0]);
+	resolutionNanos += other.resolutionNanos;
+	resolutionMisses += other.resolutionMisses;
+	byteCount += other.byteCount;
+	charCount += other.charCount;
+	textCharCount += other.textCharCount;
+	maxDepth = Math.max(maxDepth, other.maxDepth);
+    }
+
+    /**
+     * a stream or reader that counts what is read
+     */
+    private interface Counting {
+
+	/**
+	 * @return number of bytes or characters read
+	 */
+	long getCount();
+    }
+
+    /**
+     * counts the bytes read
+     */
+    static private final class CountingInputStream extends FilterInputStream implements Counting {
+
+	/**
+	 * bytes read
+	 */
+	private long count;
+
+	/**
+	 * constructor
+	 * @param in
+	 */
+	CountingInputStream(InputStream in) {
+	    super(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+	    int returnvalue = in.read();
+	    if (returnvalue >= 0)
+		count++;
+	    return returnvalue;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+	    int returnvalue = in.read(b, off, len);
+	    if (returnvalue > 0)
+		count += returnvalue;
+	    return returnvalue;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+	    long returnvalue = in.skip(n);
+	    count += returnvalue;
+	    return returnvalue;
+	}
+
+	@Override
+	public boolean markSupported() {
+	    return false;
+	}
+
+	public long getCount() {
+	    return count;
+	}
+    }
+
+    /**
+     * counts the characters read
+     */
+    static private final class CountingReader extends FilterReader implements Counting {
+
+	/**
+	 * characters read
+	 */
+	private long count;
+
+	/**
+	 * constructor
+	 * @param in
+	 */
+	CountingReader(Reader in) {
+	    super(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+	    int returnvalue = in.read();
+	    if (returnvalue >= 0)
+		count++;
+	    return returnvalue;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+	    int returnvalue = in.read(cbuf, off, len);
+	    if (returnvalue > 0)
+		count += returnvalue;
+	    return returnvalue;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+	    long returnvalue = in.skip(n);
+	    count += returnvalue;
+	    return returnvalue;
+	}
+
+	@Override
+	public boolean markSupported() {
+	    return false;
+	}
+
+	public long getCount() {
+	    return count;
+	}
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+/**
+ * The XML parser used underneath an {@link EasyXMLDataParser}.<br>
+ * Both engines create the same {@link XMLElement} trees and call the methods of {@link XMLElement} in the same order.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public enum ParserEngine {
+
+    /**
+     * a {@link javax.xml.parsers.SAXParser}, pushing events to the parser, this is the default
+     */
+    SAX,
+
+    /**
+     * a {@link javax.xml.stream.XMLStreamReader}, from which the parser pulls events. The parse methods still build the whole tree,
+     * to pull the elements one by one and skip subtrees use {@link EasyXMLDataParser#openCursor(java.io.InputStream)}
+     */
+    STAX
+}
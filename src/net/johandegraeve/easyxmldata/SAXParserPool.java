@@ -0,0 +1,101 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.SAXException;
+
+/**
+ * A bounded pool of {@link SAXParser}s, shared by all {@link EasyXMLDataParser}s.<br>
+ * The {@link SAXParserFactory} is looked up only once. A parser taken with {@link #acquire()} is used by one thread
+ * at a time, and after use it is reset and given back with {@link #release(SAXParser)}. If the pool is empty a new
+ * parser is created, if the pool is full a released parser is dropped.
+ *
+ * @author Johan Degraeve
+ *
+ */
+final class SAXParserPool {
+
+    /**
+     * maximum number of idle parsers kept in the pool
+     */
+    static final int MAX_IDLE = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    /**
+     * the factory, SAXParserFactory is not guaranteed to be thread safe so access is synchronized on it
+     */
+    static private final SAXParserFactory factory = SAXParserFactory.newInstance();
+
+    /**
+     * the idle parsers
+     */
+    static private final ConcurrentLinkedQueue<SAXParser> idle = new ConcurrentLinkedQueue<SAXParser>();
+
+    /**
+     * number of parsers in {@link #idle}, ConcurrentLinkedQueue.size() is not a constant time operation
+     */
+    static private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * no instances
+     */
+    private SAXParserPool() {
+    }
+
+    /**
+     * takes a parser from the pool, or creates a new one if the pool is empty
+     * @return the parser
+     * @throws ParserConfigurationException
+     * @throws SAXException
+     */
+    static SAXParser acquire() throws ParserConfigurationException, SAXException {
+	SAXParser returnvalue = idle.poll();
+	if (returnvalue != null) {
+	    idleCount.decrementAndGet();
+	    return returnvalue;
+	}
+	synchronized (factory) {
+	    return factory.newSAXParser();
+	}
+    }
+
+    /**
+     * resets the parser and gives it back to the pool
+     * @param parser a parser obtained with {@link #acquire()}, not used anymore by the caller
+     */
+    static void release(SAXParser parser) {
+	try {
+	    parser.reset();
+	} catch (UnsupportedOperationException e) {
+	    //parser can not be reused
+	    return;
+	}
+	if (idleCount.incrementAndGet() <= MAX_IDLE)
+	    idle.offer(parser);
+	else
+	    idleCount.decrementAndGet();
+    }
+}
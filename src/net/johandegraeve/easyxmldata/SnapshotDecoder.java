@@ -0,0 +1,294 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Decodes one tree for {@link XMLElementSnapshot}.
+ *
+ * @author Johan Degraeve
+ *
+ */
+final class SnapshotDecoder {
+
+    /**
+     * the snapshot
+     */
+    private final XMLElementSnapshot snapshot;
+
+    /**
+     * the bytes, position 0 is the start of the snapshot
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * the name table
+     */
+    private String[] names;
+
+    /**
+     * the kind of each class, see {@link SnapshotEncoder#KIND_DEFAULT}
+     */
+    private int[] kinds;
+
+    /**
+     * the factory of each class of kind {@link SnapshotEncoder#KIND_REPLAY}
+     */
+    private ElementFactory[] factories;
+
+    /**
+     * the codec of each class of kind {@link SnapshotEncoder#KIND_CODEC}
+     */
+    private XMLElementCodec<?>[] codecs;
+
+    /**
+     * to copy strings out of a buffer without array
+     */
+    private byte[] scratch = new byte[256];
+
+    /**
+     * constructor
+     * @param snapshot
+     * @param buffer
+     */
+    SnapshotDecoder(XMLElementSnapshot snapshot, ByteBuffer buffer) {
+	this.snapshot = snapshot;
+	this.buffer = buffer;
+    }
+
+    /**
+     * decodes the tree
+     * @return the root element
+     * @throws IOException
+     */
+    XMLElement decode() throws IOException {
+	try {
+	    for (int i = 0; i < XMLElementSnapshot.MAGIC.length; i++)
+		if (buffer.get() != XMLElementSnapshot.MAGIC[i])
+		    throw new IOException("not a snapshot or not a supported version");
+	    names = new String[readLength()];
+	    for (int i = 0; i < names.length; i++)
+		names[i] = readString(readLength());
+	    int classCount = readLength();
+	    kinds = new int[classCount];
+	    factories = new ElementFactory[classCount];
+	    codecs = new XMLElementCodec<?>[classCount];
+	    for (int i = 0; i < classCount; i++) {
+		String className = readString(readLength());
+		kinds[i] = readVarint();
+		if (kinds[i] == SnapshotEncoder.KIND_CODEC) {
+		    codecs[i] = snapshot.getCodec(className);
+		    if (codecs[i] == null)
+			throw new IOException("no codec registered for " + className);
+		} else if (kinds[i] == SnapshotEncoder.KIND_REPLAY) {
+		    factories[i] = factoryFor(className);
+		}
+	    }
+	    XMLElement returnvalue = readElement();
+	    if (buffer.hasRemaining())
+		throw new IOException("unexpected data after the root element");
+	    return returnvalue;
+	} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+	    throw new IOException("snapshot is truncated or corrupt", e);
+	}
+    }
+
+    /**
+     * reads an element and its descendants
+     * @return the element
+     * @throws IOException
+     */
+    private XMLElement readElement() throws IOException {
+	int classIndex = readVarint();
+	int kind = kinds[classIndex];
+	try {
+	    switch (kind) {
+	    case SnapshotEncoder.KIND_DEFAULT:
+	    case SnapshotEncoder.KIND_COMPACT: {
+		String tagName = names[readVarint()];
+		DefaultXMLElement element = (kind == SnapshotEncoder.KIND_DEFAULT ? new DefaultXMLElement(tagName) : new CompactXMLElement(tagName));
+		element.myAttributes = readAttributes();
+		element.theText = readText();
+		int childCount = readLength();
+		if (childCount > 0 && element.XMLElementList == null)
+		    element.XMLElementList = new ArrayList<XMLElement>(childCount);
+		for (int i = 0; i < childCount; i++)
+		    element.XMLElementList.add(readElement());
+		return element;
+	    }
+	    case SnapshotEncoder.KIND_CODEC: {
+		int length = readLength();
+		ByteBuffer slice = buffer.slice();
+		slice.limit(length);
+		buffer.position(buffer.position() + length);
+		XMLElement element = codecs[classIndex].read(new DataInputStream(new ByteBufferInputStream(slice)));
+		addChildren(element);
+		element.complete();
+		return element;
+	    }
+	    case SnapshotEncoder.KIND_REPLAY: {
+		XMLElement element = factories[classIndex].newElement();
+		PackedAttributes attributes = readAttributes();
+		element.addAttributes(attributes == null ? PackedAttributes.EMPTY : attributes);
+		String text = readText();
+		addChildren(element);
+		if (text != null)
+		    addText(element, text);
+		element.complete();
+		return element;
+	    }
+	    default:
+		throw new IOException("unknown element kind " + kind);
+	    }
+	} catch (SAXException e) {
+	    throw new IOException(e.getMessage(), e);
+	}
+    }
+
+    /**
+     * reads the children and adds them to the element
+     * @param element
+     * @throws IOException
+     * @throws SAXException
+     */
+    private void addChildren(XMLElement element) throws IOException, SAXException {
+	int childCount = readLength();
+	for (int i = 0; i < childCount; i++)
+	    element.addChild(readElement());
+    }
+
+    /**
+     * gives the text to the element, as {@link XMLElementHandler} does
+     * @param element
+     * @param text
+     * @throws SAXException
+     */
+    static private void addText(XMLElement element, String text) throws SAXException {
+	TextMode mode = (element instanceof TextModeAware ? ((TextModeAware)element).getTextMode() : TextMode.BOTH);
+	if (mode == TextMode.BOTH || mode == TextMode.UNTRIMMED)
+	    element.addUnTrimmedText(text);
+	if (mode == TextMode.BOTH || mode == TextMode.TRIMMED) {
+	    String trimmed = text.trim();
+	    if (trimmed.length() > 0)
+		element.addText(trimmed);
+	}
+    }
+
+    /**
+     * @param className
+     * @return the factory for the class
+     * @throws IOException if the class is not found, is not an XMLElement or can not be instantiated
+     */
+    static private ElementFactory factoryFor(String className) throws IOException {
+	Class<?> found;
+	try {
+	    //the class is not initialized before it is known to be an XMLElement, a snapshot can name any class
+	    found = Class.forName(className, false, SnapshotDecoder.class.getClassLoader());
+	} catch (ClassNotFoundException e) {
+	    throw new IOException("class " + className + " not found", e);
+	}
+	if (!XMLElement.class.isAssignableFrom(found))
+	    throw new IOException("class " + className + " is not an XMLElement");
+	ElementFactory returnvalue = ElementFactory.forClass(found);
+	if (!returnvalue.isInstantiable())
+	    throw new IOException("class " + className + " can not be instantiated with a no-argument constructor");
+	return returnvalue;
+    }
+
+    /**
+     * @return the attributes, null if null was written
+     * @throws IOException
+     */
+    private PackedAttributes readAttributes() throws IOException {
+	int length = readLength() - 1;
+	if (length < 0)
+	    return null;
+	String[] namesAndValues = new String[2 * length];
+	for (int i = 0; i < namesAndValues.length; i += 2) {
+	    namesAndValues[i] = names[readVarint()];
+	    namesAndValues[i + 1] = readString(readLength());
+	}
+	return PackedAttributes.of(namesAndValues);
+    }
+
+    /**
+     * @return the text, null if null was written
+     * @throws IOException
+     */
+    private String readText() throws IOException {
+	int length = readLength() - 1;
+	return length < 0 ? null : readString(length);
+    }
+
+    /**
+     * @param length number of bytes
+     * @return the string decoded from UTF-8
+     */
+    private String readString(int length) {
+	String returnvalue;
+	if (buffer.hasArray()) {
+	    if (length > buffer.remaining())
+		throw new BufferUnderflowException();
+	    returnvalue = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+	    buffer.position(buffer.position() + length);
+	} else {
+	    if (length > scratch.length)
+		scratch = new byte[Math.max(length, 2 * scratch.length)];
+	    buffer.get(scratch, 0, length);
+	    returnvalue = new String(scratch, 0, length, StandardCharsets.UTF_8);
+	}
+	return returnvalue;
+    }
+
+    /**
+     * reads a count or a length, which can not be larger than the number of bytes left, as each item takes at least one byte
+     * @return the count or length
+     * @throws IOException if the value is negative or larger than the number of bytes left
+     */
+    private int readLength() throws IOException {
+	int returnvalue = readVarint();
+	if (returnvalue < 0 || returnvalue > buffer.remaining())
+	    throw new IOException("snapshot is truncated or corrupt, invalid length " + (returnvalue & 0xFFFFFFFFL));
+	return returnvalue;
+    }
+
+    /**
+     * @return an unsigned variable length integer
+     * @throws IOException if the integer is too long
+     */
+    private int readVarint() throws IOException {
+	int returnvalue = 0;
+	for (int shift = 0; shift < 35; shift += 7) {
+	    byte b = buffer.get();
+	    returnvalue |= (b & 0x7F) << shift;
+	    if (b >= 0)
+		return returnvalue;
+	}
+	throw new IOException("snapshot is corrupt, invalid integer");
+    }
+}
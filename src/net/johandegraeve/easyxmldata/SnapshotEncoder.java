@@ -0,0 +1,312 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+
+/**
+ * Encodes one tree for {@link XMLElementSnapshot}.<br>
+ * The tree is written first, collecting the names and classes, then the header and the tables are put in front of it.
+ *
+ * @author Johan Degraeve
+ *
+ */
+final class SnapshotEncoder {
+
+    /**
+     * the element is a {@link DefaultXMLElement}
+     */
+    static final int KIND_DEFAULT = 0;
+
+    /**
+     * the element is a {@link CompactXMLElement}, or an element of a class that can not be instantiated
+     */
+    static final int KIND_COMPACT = 1;
+
+    /**
+     * the element is written with its codec
+     */
+    static final int KIND_CODEC = 2;
+
+    /**
+     * the element is created with its no-argument constructor and receives attributes, children and text as when parsing
+     */
+    static final int KIND_REPLAY = 3;
+
+    /**
+     * the snapshot
+     */
+    private final XMLElementSnapshot snapshot;
+
+    /**
+     * the names, with their index
+     */
+    private final Map<String, Integer> names = new HashMap<String, Integer>();
+
+    /**
+     * the names in order of their index
+     */
+    private final ArrayList<String> nameList = new ArrayList<String>();
+
+    /**
+     * the classes, with their index in {@link #classList}
+     */
+    private final Map<Class<?>, Integer> classes = new IdentityHashMap<Class<?>, Integer>();
+
+    /**
+     * the classes in order of their index
+     */
+    private final ArrayList<Class<?>> classList = new ArrayList<Class<?>>();
+
+    /**
+     * the kind of each class in {@link #classList}
+     */
+    private final ArrayList<Integer> kindList = new ArrayList<Integer>();
+
+    /**
+     * the bytes written
+     */
+    private byte[] bytes = new byte[8192];
+
+    /**
+     * number of bytes in {@link #bytes}
+     */
+    private int size;
+
+    /**
+     * collects the output of codecs
+     */
+    private ByteArrayOutputStream codecBytes;
+
+    /**
+     * writes to {@link #codecBytes}
+     */
+    private DataOutputStream codecOutput;
+
+    /**
+     * constructor
+     * @param snapshot
+     */
+    SnapshotEncoder(XMLElementSnapshot snapshot) {
+	this.snapshot = snapshot;
+    }
+
+    /**
+     * encodes the tree
+     * @param root
+     * @return the snapshot
+     * @throws IOException if a codec fails
+     */
+    byte[] encode(XMLElement root) throws IOException {
+	if (root == null)
+	    throw new NullPointerException("root should not be null");
+	writeElement(root);
+	byte[] tree = bytes;
+	int treeSize = size;
+
+	bytes = new byte[Math.max(256, nameList.size() * 16)];
+	size = 0;
+	writeBytes(XMLElementSnapshot.MAGIC, 0, XMLElementSnapshot.MAGIC.length);
+	writeVarint(nameList.size());
+	for (String name : nameList)
+	    writeString(name);
+	writeVarint(classList.size());
+	for (int i = 0; i < classList.size(); i++) {
+	    writeString(classList.get(i).getName());
+	    writeVarint(kindList.get(i));
+	}
+	writeBytes(tree, 0, treeSize);
+	return Arrays.copyOf(bytes, size);
+    }
+
+    /**
+     * writes an element and its descendants
+     * @param element
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    private void writeElement(XMLElement element) throws IOException {
+	Integer classIndex = classes.get(element.getClass());
+	if (classIndex == null)
+	    classIndex = addClass(element.getClass());
+	writeVarint(classIndex);
+	int kind = kindList.get(classIndex);
+
+	ArrayList<XMLElement> children;
+	if (kind == KIND_CODEC) {
+	    if (codecBytes == null) {
+		codecBytes = new ByteArrayOutputStream();
+		codecOutput = new DataOutputStream(codecBytes);
+	    }
+	    codecBytes.reset();
+	    ((XMLElementCodec<XMLElement>)snapshot.getCodec(element.getClass())).write(element, codecOutput);
+	    codecOutput.flush();
+	    writeVarint(codecBytes.size());
+	    byte[] written = codecBytes.toByteArray();
+	    writeBytes(written, 0, written.length);
+	    children = element.getChildren();
+	} else if (kind == KIND_DEFAULT || (kind == KIND_COMPACT && element instanceof DefaultXMLElement)) {
+	    DefaultXMLElement defaultElement = (DefaultXMLElement)element;
+	    writeName(defaultElement.tagName);
+	    writeAttributes(defaultElement.myAttributes);
+	    writeText(defaultElement.theText);
+	    children = defaultElement.XMLElementList;
+	} else {
+	    if (kind == KIND_COMPACT)
+		writeName(element.getTagName());
+	    writeAttributes(element.getAttributes());
+	    writeText(element.getText());
+	    children = element.getChildren();
+	}
+
+	int childCount = (children == null ? 0 : children.size());
+	writeVarint(childCount);
+	for (int i = 0; i < childCount; i++)
+	    writeElement(children.get(i));
+    }
+
+    /**
+     * adds a class to the class table
+     * @param elementClass
+     * @return the index
+     */
+    private int addClass(Class<?> elementClass) {
+	int kind;
+	if (elementClass == DefaultXMLElement.class)
+	    kind = KIND_DEFAULT;
+	else if (elementClass == CompactXMLElement.class)
+	    kind = KIND_COMPACT;
+	else if (snapshot.getCodec(elementClass) != null)
+	    kind = KIND_CODEC;
+	else if (ElementFactory.forClass(elementClass).isInstantiable())
+	    kind = KIND_REPLAY;
+	else
+	    kind = KIND_COMPACT;
+	int returnvalue = classList.size();
+	classList.add(elementClass);
+	kindList.add(kind);
+	classes.put(elementClass, returnvalue);
+	return returnvalue;
+    }
+
+    /**
+     * writes attributes : number of attributes + 1, 0 if null, followed by the index of the name and the value of each attribute
+     * @param attributes
+     */
+    private void writeAttributes(Attributes attributes) {
+	if (attributes == null) {
+	    writeVarint(0);
+	    return;
+	}
+	int length = attributes.getLength();
+	writeVarint(length + 1);
+	for (int i = 0; i < length; i++) {
+	    writeName(attributes.getQName(i));
+	    writeString(attributes.getValue(i));
+	}
+    }
+
+    /**
+     * writes a text : length + 1 and the text, 0 if null
+     * @param text
+     */
+    private void writeText(String text) {
+	if (text == null)
+	    writeVarint(0);
+	else
+	    writeString(text, 1);
+    }
+
+    /**
+     * writes the index of a name, adding it to the table if needed
+     * @param name
+     */
+    private void writeName(String name) {
+	Integer index = names.get(name);
+	if (index == null) {
+	    index = nameList.size();
+	    names.put(name, index);
+	    nameList.add(name);
+	}
+	writeVarint(index);
+    }
+
+    /**
+     * writes a string : length in UTF-8 and the UTF-8 bytes
+     * @param s
+     */
+    private void writeString(String s) {
+	writeString(s, 0);
+    }
+
+    /**
+     * writes a string : length in UTF-8 + lengthOffset and the UTF-8 bytes
+     * @param s
+     * @param lengthOffset
+     */
+    private void writeString(String s, int lengthOffset) {
+	byte[] encoded = s.getBytes(StandardCharsets.UTF_8);
+	writeVarint(encoded.length + lengthOffset);
+	writeBytes(encoded, 0, encoded.length);
+    }
+
+    /**
+     * writes an unsigned variable length integer, 7 bits per byte, least significant first
+     * @param value
+     */
+    private void writeVarint(int value) {
+	ensureCapacity(5);
+	while ((value & ~0x7F) != 0) {
+	    bytes[size++] = (byte)((value & 0x7F) | 0x80);
+	    value >>>= 7;
+	}
+	bytes[size++] = (byte)value;
+    }
+
+    /**
+     * @param b
+     * @param offset
+     * @param length
+     */
+    private void writeBytes(byte[] b, int offset, int length) {
+	ensureCapacity(length);
+	System.arraycopy(b, offset, bytes, size, length);
+	size += length;
+    }
+
+    /**
+     * grows {@link #bytes} if needed
+     * @param extra
+     */
+    private void ensureCapacity(int extra) {
+	if (size + extra > bytes.length)
+	    bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + extra));
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stream.StreamSource;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Parses a document with an {@link XMLStreamReader} and feeds the events to an {@link XMLElementHandler}, the same handler
+ * as used with the SAX engine, so the resulting tree and the calls to the {@link XMLElement} methods are identical.<br>
+ * The reader is not namespace aware, like the SAX parser used by {@link EasyXMLDataParser} : tag and attribute names are 
+ * the qualified names as found in the document, and namespace declarations are passed as attributes.
+ *
+ * @author Johan Degraeve
+ *
+ */
+final class StAXEngine {
+
+    /**
+     * the factory, XMLInputFactory is not guaranteed to be thread safe so access is synchronized on it
+     */
+    static private final XMLInputFactory factory = createFactory();
+
+    /**
+     * no instances
+     */
+    private StAXEngine() {
+    }
+
+    /**
+     * creates and configures the factory
+     * @return the factory
+     */
+    static private XMLInputFactory createFactory() {
+	XMLInputFactory returnvalue = XMLInputFactory.newInstance();
+	returnvalue.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+	returnvalue.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+	return returnvalue;
+    }
+
+    /**
+     * creates a reader for the source
+     * @param source
+     * @return the reader
+     * @throws XMLStreamException
+     */
+    static XMLStreamReader createReader(InputSource source) throws XMLStreamException {
+	synchronized (factory) {
+	    if (source.getCharacterStream() != null)
+		return factory.createXMLStreamReader(source.getCharacterStream());
+	    if (source.getByteStream() != null) {
+		if (source.getEncoding() != null)
+		    return factory.createXMLStreamReader(source.getByteStream(), source.getEncoding());
+		return factory.createXMLStreamReader(source.getByteStream());
+	    }
+	    return factory.createXMLStreamReader(new StreamSource(source.getSystemId()));
+	}
+    }
+
+    /**
+     * parses the source, and calls the methods of the handler as a SAX parser would do
+     * @param source the source, the caller must close any stream in it
+     * @param handler
+     * @throws XMLStreamException when the document is not well formed
+     * @throws SAXException thrown by the handler
+     */
+    static void parse(InputSource source, XMLElementHandler handler) throws XMLStreamException, SAXException {
+	XMLStreamReader reader = createReader(source);
+	AttributesImpl attributes = new AttributesImpl();
+	try {
+	    handler.setDocumentLocator(locatorOf(reader));
+	    handler.startDocument();
+	    while (reader.hasNext())
+		handleEvent(reader, reader.next(), attributes, handler);
+	    handler.endDocument();
+	} finally {
+	    reader.close();
+	}
+    }
+
+    /**
+     * calls the methods of the handler for the element at which the reader is positioned and its content, up to and including
+     * the end tag of the element
+     * @param reader positioned at a start tag, positioned at the matching end tag when returning
+     * @param attributes reused for the attributes
+     * @param handler
+     * @throws XMLStreamException when the document is not well formed
+     * @throws SAXException thrown by the handler
+     */
+    static void parseElement(XMLStreamReader reader, AttributesImpl attributes, XMLElementHandler handler) throws XMLStreamException, SAXException {
+	int depth = 0;
+	int event = reader.getEventType();
+	while (true) {
+	    handleEvent(reader, event, attributes, handler);
+	    if (event == XMLStreamConstants.START_ELEMENT)
+		depth++;
+	    else if (event == XMLStreamConstants.END_ELEMENT && --depth == 0)
+		return;
+	    event = reader.next();
+	}
+    }
+
+    /**
+     * copies the attributes of the start tag at which the reader is positioned
+     * @param reader
+     * @param attributes cleared and filled
+     */
+    static void getAttributes(XMLStreamReader reader, AttributesImpl attributes) {
+	attributes.clear();
+	for (int i = 0; i < reader.getAttributeCount(); i++) {
+	    //like the SAX parser, local name = qualified name
+	    String qName = qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i));
+	    attributes.addAttribute("", qName, qName, reader.getAttributeType(i), reader.getAttributeValue(i));
+	}
+    }
+
+    /**
+     * @param reader
+     * @return a locator that returns the current location of the reader
+     */
+    static Locator locatorOf(final XMLStreamReader reader) {
+	return new Locator() {
+	    public String getPublicId() {
+		return reader.getLocation().getPublicId();
+	    }
+	    public String getSystemId() {
+		return reader.getLocation().getSystemId();
+	    }
+	    public int getLineNumber() {
+		return reader.getLocation().getLineNumber();
+	    }
+	    public int getColumnNumber() {
+		return reader.getLocation().getColumnNumber();
+	    }
+	};
+    }
+
+    /**
+     * calls the method of the handler for one event
+     * @param reader
+     * @param event the current event of the reader
+     * @param attributes reused for the attributes
+     * @param handler
+     * @throws SAXException thrown by the handler
+     */
+    static private void handleEvent(XMLStreamReader reader, int event, AttributesImpl attributes, XMLElementHandler handler) throws SAXException {
+	switch (event) {
+	case XMLStreamConstants.START_ELEMENT:
+	    getAttributes(reader, attributes);
+	    handler.startElement("", "", reader.getLocalName(), attributes);
+	    break;
+	case XMLStreamConstants.END_ELEMENT:
+	    handler.endElement("", "", reader.getLocalName());
+	    break;
+	case XMLStreamConstants.CHARACTERS:
+	case XMLStreamConstants.CDATA:
+	case XMLStreamConstants.SPACE:
+	    if (handler.isInElement())
+		handler.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+	    break;
+	default:
+	    //comments, processing instructions, DTD : nothing to do
+	}
+    }
+
+    /**
+     * @param prefix
+     * @param localName
+     * @return prefix:localName, or localName if there's no prefix
+     */
+    static private String qualifiedName(String prefix, String localName) {
+	if (prefix == null || prefix.length() == 0)
+	    return localName;
+	return prefix + ":" + localName;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+/**
+ * Interns strings that occur many times in a document, like tag names and attribute names, so that all elements share
+ * one String instance per name.<br>
+ * A symbol table is used by one parse at a time and is not thread safe. Unlike String.intern() the strings are not kept
+ * after the table is not referenced anymore.<br>
+ * Symbols can be added from a String or from a range in a char array or String, in which case no String is created if the symbol is
+ * already in the table.
+ *
+ * @author Johan Degraeve
+ *
+ */
+final class SymbolTable {
+
+    /**
+     * the symbols, open addressing with linear probing, length is a power of 2
+     */
+    private String[] symbols = new String[256];
+
+    /**
+     * number of symbols in the table
+     */
+    private int count;
+
+    /**
+     * get the symbol with the same content as s, adds s if not yet in the table
+     * @param s
+     * @return the symbol, null if s is null
+     */
+    String addSymbol(String s) {
+	if (s == null)
+	    return null;
+	int mask = symbols.length - 1;
+	int index = s.hashCode() & mask;
+	String symbol;
+	while ((symbol = symbols[index]) != null) {
+	    if (symbol.equals(s))
+		return symbol;
+	    index = (index + 1) & mask;
+	}
+	insert(index, s);
+	return s;
+    }
+
+    /**
+     * get the symbol with the same content as the range of characters, adds it if not yet in the table
+     * @param ch
+     * @param start
+     * @param length
+     * @return the symbol
+     */
+    String addSymbol(char[] ch, int start, int length) {
+	int hash = 0;
+	for (int i = start; i < start + length; i++)
+	    hash = 31 * hash + ch[i];
+	int mask = symbols.length - 1;
+	int index = hash & mask;
+	String symbol;
+	while ((symbol = symbols[index]) != null) {
+	    if (symbol.length() == length && symbol.hashCode() == hash && equals(symbol, ch, start))
+		return symbol;
+	    index = (index + 1) & mask;
+	}
+	symbol = new String(ch, start, length);
+	insert(index, symbol);
+	return symbol;
+    }
+
+    /**
+     * get the symbol with the same content as the range of characters in source, adds it if not yet in the table
+     * @param source
+     * @param start
+     * @param length
+     * @return the symbol
+     */
+    String addSymbol(String source, int start, int length) {
+	int hash = 0;
+	for (int i = start; i < start + length; i++)
+	    hash = 31 * hash + source.charAt(i);
+	int mask = symbols.length - 1;
+	int index = hash & mask;
+	String symbol;
+	while ((symbol = symbols[index]) != null) {
+	    if (symbol.length() == length && symbol.hashCode() == hash && source.regionMatches(start, symbol, 0, length))
+		return symbol;
+	    index = (index + 1) & mask;
+	}
+	symbol = source.substring(start, start + length);
+	insert(index, symbol);
+	return symbol;
+    }
+
+    /**
+     * @return the number of symbols in the table
+     */
+    int size() {
+	return count;
+    }
+
+    /**
+     * @param symbol
+     * @param ch
+     * @param start
+     * @return true if symbol has the same characters as ch starting from start, for the length of symbol
+     */
+    static private boolean equals(String symbol, char[] ch, int start) {
+	for (int i = 0; i < symbol.length(); i++)
+	    if (symbol.charAt(i) != ch[start + i])
+		return false;
+	return true;
+    }
+
+    /**
+     * stores a new symbol at a free index, and grows the table if it's more than half full
+     * @param index
+     * @param symbol
+     */
+    private void insert(int index, String symbol) {
+	symbols[index] = symbol;
+	if (++count * 2 > symbols.length) {
+	    String[] old = symbols;
+	    symbols = new String[2 * old.length];
+	    int mask = symbols.length - 1;
+	    for (int i = 0; i < old.length; i++) {
+		if (old[i] != null) {
+		    int newIndex = old[i].hashCode() & mask;
+		    while (symbols[newIndex] != null)
+			newIndex = (newIndex + 1) & mask;
+		    symbols[newIndex] = old[i];
+		}
+	    }
+	}
+    }
+}
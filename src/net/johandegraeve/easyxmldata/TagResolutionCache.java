@@ -0,0 +1,244 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the result of searching a class for a tag name, as done by {@link EasyXMLDataParser}.<br>
+ * There is one cache per combination of package names and prefix names, shared by all parsers created with
+ * the same lists. The cache remembers both tags for which a class was found and tags for which no class was found
+ * (ie tags that will be handled as a {@link CompactXMLElement} or refused), so that after the first occurrence of a tag
+ * the resolution costs one map lookup, without calling Class.forName and without building class name strings.<br>
+ * Each class found is bound once to an {@link ElementFactory}, so that creating instances does not need reflection.<br>
+ * <br>
+ * The number of tags remembered per cache is limited to {@link #MAX_ENTRIES}, to avoid that documents with
+ * an unlimited number of different tag names fill up memory. Tags beyond that limit are still resolved, but not remembered.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public final class TagResolutionCache {
+
+    /**
+     * maximum number of tag names remembered per cache
+     */
+    public static final int MAX_ENTRIES = 10000;
+
+    /**
+     * the caches, one per combination of package names and prefix names
+     */
+    static private final ConcurrentMap<ConfigurationKey, TagResolutionCache> caches =
+	new ConcurrentHashMap<ConfigurationKey, TagResolutionCache>();
+
+    /**
+     * stored in {@link #resolved} for tags for which no class was found, because ConcurrentHashMap does not accept null values
+     */
+    static private final Object NOT_FOUND = new Object();
+
+    /**
+     * the names of the packages to search in, together with {@link #prefixNames}
+     */
+    private final String[] packagesNames;
+
+    /**
+     * the names of the prefixes to use when searching for a class
+     */
+    private final String[] prefixNames;
+
+    /**
+     * tag name to {@link ElementFactory}, or to {@link #NOT_FOUND}
+     */
+    private final ConcurrentMap<String, Object> resolved = new ConcurrentHashMap<String, Object>();
+
+    /**
+     * number of resolutions answered from the cache, a LongAdder because all parsers with the same configuration update it
+     * for each start tag
+     */
+    private final LongAdder hitCount = new LongAdder();
+
+    /**
+     * number of resolutions that needed a search with Class.forName
+     */
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * constructor
+     * @param packagesNames
+     * @param prefixNames
+     */
+    private TagResolutionCache(String[] packagesNames, String[] prefixNames) {
+	this.packagesNames = packagesNames;
+	this.prefixNames = prefixNames;
+    }
+
+    /**
+     * get the cache shared by all parsers that use the same package names and prefix names
+     * @param packagesNames list of packagesNames, not null
+     * @param prefixNames list of prefixNames, not null, same length as packagesNames
+     * @return the cache
+     */
+    static TagResolutionCache getInstance(String[] packagesNames, String[] prefixNames) {
+	ConfigurationKey key = new ConfigurationKey(packagesNames.clone(), prefixNames.clone());
+	TagResolutionCache returnvalue = caches.get(key);
+	if (returnvalue == null) {
+	    returnvalue = new TagResolutionCache(key.packagesNames, key.prefixNames);
+	    TagResolutionCache existing = caches.putIfAbsent(key, returnvalue);
+	    if (existing != null)
+		returnvalue = existing;
+	}
+	return returnvalue;
+    }
+
+    /**
+     * searches the class for a tag.<br>
+     * For each package name/prefix name, an attempt is made to load the class packagesNames[i] + &quot;.&quot; + prefixNames[i] + tagName,
+     * the first one found is used. The result is remembered, also if no class is found.<br>
+     * A class that is in an {@link XMLElementRegistry} is taken from the registry, without Class.forName and without reflection.<br>
+     * A search that is not answered from the cache is reported as a {@link ClassResolutionEvent}.
+     * @param tagName the tag name as found in the XML document
+     * @param statistics if not null, a miss is counted in it
+     * @return the factory for the class, null if no class was found for any of the package names/prefix names
+     * @throws ClassCastException if the class found does not implement {@link XMLElement}
+     */
+    ElementFactory resolve(String tagName, ParseStatistics statistics) {
+	Object cached = resolved.get(tagName);
+	if (cached != null) {
+	    hitCount.increment();
+	    return (cached == NOT_FOUND ? null : (ElementFactory)cached);
+	}
+	missCount.increment();
+	if (statistics != null)
+	    statistics.resolutionMisses++;
+	ClassResolutionEvent event = new ClassResolutionEvent();
+	event.begin();
+
+	ElementRegistry registry = ElementRegistry.getInstance();
+	ElementFactory returnvalue = null;
+	Class<?> found = null;
+	for (int i = 0; i < packagesNames.length && found == null; i++) {
+	    String className = packagesNames[i] + "." + prefixNames[i] + tagName;
+	    XMLElementBinding binding = registry.forClassName(className);
+	    if (binding != null) {
+		found = binding.getElementClass();
+		returnvalue = ElementFactory.forBinding(binding);
+		break;
+	    }
+	    try {
+		found = Class.forName(className);
+	    } catch (ClassNotFoundException e) {
+		//try the next package
+	    }
+	}
+	if (returnvalue == null && found != null)
+	    returnvalue = ElementFactory.forClass(found);
+	if (event.shouldCommit()) {
+	    event.tagName = tagName;
+	    event.className = (found == null ? null : found.getName());
+	    event.commit();
+	}
+	if (resolved.size() < MAX_ENTRIES)
+	    resolved.put(tagName, returnvalue == null ? NOT_FOUND : returnvalue);
+	return returnvalue;
+    }
+
+    /**
+     * get the number of resolutions answered from the cache, since creation or since last call to {@link #clear()}.<br>
+     * Resolutions done while the count is taken may or may not be included.
+     * @return the number of hits
+     */
+    public long getHitCount() {
+	return hitCount.sum();
+    }
+
+    /**
+     * get the number of resolutions that were not yet in the cache and needed a search through the packages,
+     * since creation or since last call to {@link #clear()}
+     * @return the number of misses
+     */
+    public long getMissCount() {
+	return missCount.sum();
+    }
+
+    /**
+     * get the number of tag names currently remembered
+     * @return the size
+     */
+    public int getSize() {
+	return resolved.size();
+    }
+
+    /**
+     * forgets all resolved tags and resets the counters, for instance when classes have been added to the classpath
+     */
+    public void clear() {
+	resolved.clear();
+	hitCount.reset();
+	missCount.reset();
+    }
+
+    /**
+     * key for {@link TagResolutionCache#caches}, compares the content of the arrays
+     */
+    static private final class ConfigurationKey {
+
+	/**
+	 * the package names
+	 */
+	private final String[] packagesNames;
+
+	/**
+	 * the prefix names
+	 */
+	private final String[] prefixNames;
+
+	/**
+	 * constructor
+	 * @param packagesNames
+	 * @param prefixNames
+	 */
+	ConfigurationKey(String[] packagesNames, String[] prefixNames) {
+	    this.packagesNames = packagesNames;
+	    this.prefixNames = prefixNames;
+	}
+
+	/**
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+	    return 31 * Arrays.hashCode(packagesNames) + Arrays.hashCode(prefixNames);
+	}
+
+	/**
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+	    if (!(obj instanceof ConfigurationKey))
+		return false;
+	    ConfigurationKey other = (ConfigurationKey)obj;
+	    return Arrays.equals(packagesNames, other.packagesNames) && Arrays.equals(prefixNames, other.prefixNames);
+	}
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.Arrays;
+
+/**
+ * Collects the text of the open elements of a document in one growable char array.<br>
+ * The text of an element is always contiguous in the array : when a child starts, its text is appended after the text 
+ * received so far by the parent, and when the child ends its text is removed, so the parent continues where it was.
+ * So there is one buffer for the whole document instead of one StringBuilder per element, and no String is created
+ * for elements without text.<br>
+ * Per open element, the {@link TextMode} is kept : text for elements with mode {@link TextMode#NONE} is not stored.
+ *
+ * @author Johan Degraeve
+ *
+ */
+final class TextBuffer {
+
+    /**
+     * the text of the open elements
+     */
+    private char[] chars = new char[256];
+
+    /**
+     * number of characters used in {@link #chars}
+     */
+    private int length;
+
+    /**
+     * per open element, the offset of its text in {@link #chars}
+     */
+    private int[] starts = new int[32];
+
+    /**
+     * per open element, the text mode
+     */
+    private TextMode[] modes = new TextMode[32];
+
+    /**
+     * number of open elements
+     */
+    private int depth;
+
+    /**
+     * a new element is opened
+     * @param mode the text mode of the element
+     */
+    void startElement(TextMode mode) {
+	if (depth == starts.length) {
+	    starts = Arrays.copyOf(starts, 2 * depth);
+	    modes = Arrays.copyOf(modes, 2 * depth);
+	}
+	starts[depth] = length;
+	modes[depth] = mode;
+	depth++;
+    }
+
+    /**
+     * the current element is closed, its text is removed
+     */
+    void endElement() {
+	depth--;
+	length = starts[depth];
+    }
+
+    /**
+     * adds text to the current element, ignored if there's no open element or if the current element has text mode {@link TextMode#NONE}
+     * @param ch
+     * @param start
+     * @param count
+     */
+    void append(char[] ch, int start, int count) {
+	if (depth == 0 || modes[depth - 1] == TextMode.NONE)
+	    return;
+	if (length + count > chars.length)
+	    chars = Arrays.copyOf(chars, Math.max(2 * chars.length, length + count));
+	System.arraycopy(ch, start, chars, length, count);
+	length += count;
+    }
+
+    /**
+     * @return the text mode of the current element
+     */
+    TextMode getMode() {
+	return modes[depth - 1];
+    }
+
+    /**
+     * @return the array holding the text, valid until the next call to {@link #append(char[], int, int)}
+     */
+    char[] getChars() {
+	return chars;
+    }
+
+    /**
+     * @return offset in {@link #getChars()} of the text of the current element
+     */
+    int getStart() {
+	return starts[depth - 1];
+    }
+
+    /**
+     * @return offset in {@link #getChars()} just after the text of the current element
+     */
+    int getEnd() {
+	return length;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+/**
+ * Which text an {@link XMLElement} wants to receive, see {@link TextModeAware}.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public enum TextMode {
+
+    /**
+     * neither {@link XMLElement#addText(String)} nor {@link XMLElement#addUnTrimmedText(String)} is called, the text is not even kept
+     */
+    NONE,
+
+    /**
+     * only {@link XMLElement#addText(String)} is called
+     */
+    TRIMMED,
+
+    /**
+     * only {@link XMLElement#addUnTrimmedText(String)} is called
+     */
+    UNTRIMMED,
+
+    /**
+     * both {@link XMLElement#addUnTrimmedText(String)} and {@link XMLElement#addText(String)} are called, this is what happens
+     * for elements that do not implement {@link TextModeAware}
+     */
+    BOTH
+}
@@ -0,0 +1,38 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+/**
+ * Can be implemented by an {@link XMLElement} to tell the parser which text it wants to receive.<br>
+ * By default the parser calls both {@link XMLElement#addUnTrimmedText(String)} and {@link XMLElement#addText(String)}, which
+ * means creating two Strings for elements with text surrounded by whitespace. An element that only uses one of both, or that has 
+ * no text at all, can implement this interface so that the parser does not create the Strings it doesn't need.
+ * 
+ * @author Johan Degraeve
+ *
+ */
+public interface TextModeAware {
+
+    	/**
+    	 * called by the parser right after the element is created, before {@link XMLElement#addAttributes(org.xml.sax.Attributes)}
+    	 * @return the text the element wants to receive
+    	 */
+    	public TextMode getTextMode();
+}
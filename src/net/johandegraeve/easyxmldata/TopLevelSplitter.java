@@ -0,0 +1,258 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.Arrays;
+
+/**
+ * Finds the children of the root element in an XML document, without parsing them.<br>
+ * The scan knows about comments, CDATA sections, processing instructions, quoted attribute values and nested elements
+ * (also with the same name as the child), so that a '&lt;' or '&gt;' inside any of these does not break the splitting.
+ * It does not check whether the document is well formed, that is left to the parser that parses the parts.<br>
+ * The result is the list of child ranges, and the skeleton : the document with everything in it except the children of the root element,
+ * each child replaced by an empty comment.
+ *
+ * @author Johan Degraeve
+ *
+ */
+final class TopLevelSplitter {
+
+    /**
+     * replaces each child in the skeleton, it is ignored by the parser but keeps the text on both sides apart as in the document
+     */
+    static private final String CHILD_PLACEHOLDER = "<!---->";
+
+    /**
+     * the document
+     */
+    private final String source;
+
+    /**
+     * start offsets of the children
+     */
+    private int[] childStarts = new int[64];
+
+    /**
+     * end offsets (exclusive) of the children
+     */
+    private int[] childEnds = new int[64];
+
+    /**
+     * number of children found
+     */
+    private int childCount;
+
+    /**
+     * the root element without its children
+     */
+    private final StringBuilder skeleton = new StringBuilder();
+
+    /**
+     * constructor
+     * @param source the document
+     */
+    private TopLevelSplitter(String source) {
+	this.source = source;
+    }
+
+    /**
+     * splits the document
+     * @param source the document
+     * @return the splitter with the results, null if the document can not be split : it contains a document type declaration
+     * (entities declared in it would not be known when parsing the children separately), the root element is empty or
+     * the document is not well formed.
+     */
+    static TopLevelSplitter split(String source) {
+	TopLevelSplitter returnvalue = new TopLevelSplitter(source);
+	return returnvalue.scan() ? returnvalue : null;
+    }
+
+    /**
+     * @return number of children of the root element
+     */
+    int getChildCount() {
+	return childCount;
+    }
+
+    /**
+     * @param index
+     * @return start offset of the child in the document
+     */
+    int getChildStart(int index) {
+	return childStarts[index];
+    }
+
+    /**
+     * @param index
+     * @return end offset (exclusive) of the child in the document
+     */
+    int getChildEnd(int index) {
+	return childEnds[index];
+    }
+
+    /**
+     * @return the document, with all its content except the children of the root element, which are replaced by an empty comment
+     */
+    String getSkeleton() {
+	return skeleton.toString();
+    }
+
+    /**
+     * scans the document
+     * @return false if the document can not be split
+     */
+    private boolean scan() {
+	int length = source.length();
+	int pos = 0;
+	if (length > 0 && source.charAt(0) == '\uFEFF')
+	    pos++;
+
+	//prolog
+	while (true) {
+	    while (pos < length && isWhitespace(source.charAt(pos)))
+		pos++;
+	    if (pos >= length || source.charAt(pos) != '<')
+		return false;
+	    if (source.startsWith("<?", pos)) {
+		pos = skipPast(pos + 2, "?>");
+	    } else if (source.startsWith("<!--", pos)) {
+		pos = skipPast(pos + 4, "-->");
+	    } else if (source.startsWith("<!", pos)) {
+		//DOCTYPE
+		return false;
+	    } else
+		break;
+	    if (pos < 0)
+		return false;
+	}
+
+	//root start tag, the prolog is kept in the skeleton so that it is checked when the skeleton is parsed
+	pos = skipTag(pos);
+	if (pos < 0 || source.charAt(pos - 2) == '/')
+	    return false;
+	skeleton.append(source, 0, pos);
+
+	int depth = 0;
+	int childStart = -1;
+	int gapStart = pos;
+	while (true) {
+	    pos = source.indexOf('<', pos);
+	    if (pos < 0)
+		return false;
+	    if (source.startsWith("<!--", pos)) {
+		pos = skipPast(pos + 4, "-->");
+	    } else if (source.startsWith("<![CDATA[", pos)) {
+		pos = skipPast(pos + 9, "]]>");
+	    } else if (source.startsWith("<?", pos)) {
+		pos = skipPast(pos + 2, "?>");
+	    } else if (source.startsWith("<!", pos)) {
+		return false;
+	    } else if (source.startsWith("</", pos)) {
+		pos = skipTag(pos);
+		if (pos < 0)
+		    return false;
+		if (depth == 0) {
+		    //end tag of the root, what follows is kept in the skeleton so that it is checked when the skeleton is parsed
+		    skeleton.append(source, gapStart, length);
+		    return true;
+		}
+		depth--;
+		if (depth == 0) {
+		    addChild(childStart, pos);
+		    gapStart = pos;
+		}
+	    } else {
+		int tagStart = pos;
+		pos = skipTag(pos);
+		if (pos < 0)
+		    return false;
+		boolean empty = source.charAt(pos - 2) == '/';
+		if (depth == 0) {
+		    //an empty comment in place of the child, so that the text before and after it can not merge into a line end or "]]>"
+		    skeleton.append(source, gapStart, tagStart).append(CHILD_PLACEHOLDER);
+		    childStart = tagStart;
+		    if (empty) {
+			addChild(childStart, pos);
+			gapStart = pos;
+		    }
+		}
+		if (!empty)
+		    depth++;
+	    }
+	    if (pos < 0)
+		return false;
+	}
+    }
+
+    /**
+     * records a child
+     * @param start
+     * @param end
+     */
+    private void addChild(int start, int end) {
+	if (childCount == childStarts.length) {
+	    childStarts = Arrays.copyOf(childStarts, 2 * childCount);
+	    childEnds = Arrays.copyOf(childEnds, 2 * childCount);
+	}
+	childStarts[childCount] = start;
+	childEnds[childCount] = end;
+	childCount++;
+    }
+
+    /**
+     * @param from
+     * @param terminator
+     * @return the offset just after the terminator, -1 if not found
+     */
+    private int skipPast(int from, String terminator) {
+	int index = source.indexOf(terminator, from);
+	return index < 0 ? -1 : index + terminator.length();
+    }
+
+    /**
+     * skips a start or end tag, taking into account quoted attribute values
+     * @param from offset of the '&lt;'
+     * @return the offset just after the '&gt;', -1 if not found
+     */
+    private int skipTag(int from) {
+	int length = source.length();
+	char quote = 0;
+	for (int i = from + 1; i < length; i++) {
+	    char c = source.charAt(i);
+	    if (quote != 0) {
+		if (c == quote)
+		    quote = 0;
+	    } else if (c == '"' || c == '\'') {
+		quote = c;
+	    } else if (c == '>') {
+		return i + 1;
+	    }
+	}
+	return -1;
+    }
+
+    /**
+     * @param c
+     * @return true if c is XML whitespace
+     */
+    static private boolean isWhitespace(char c) {
+	return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+}
@@ -19,6 +19,7 @@
  */
 package net.johandegraeve.easyxmldata;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 import org.xml.sax.Attributes;
@@ -38,6 +39,15 @@ public class Utilities {
      */
     @SuppressWarnings("unchecked")
     static public String getClassname (Class c) {
+	    return classnames.get(c);
+    }
+
+    /**
+     * the class name without the package name per class, so that it is computed once per class
+     */
+    static private final ClassValue<String> classnames = new ClassValue<String>() {
+	@Override
+	protected String computeValue(Class<?> c) {
 	    String FQClassName = c.getName();
 	    int firstChar;
 	    firstChar = FQClassName.lastIndexOf ('.') + 1;
@@ -45,26 +55,13 @@ public class Utilities {
 	      FQClassName = FQClassName.substring ( firstChar );
 	      }
 	    return FQClassName;
-    }
-
-    /**
-     * make the start to be used for creating an XML : &lt; ..the tag name ..&gt;<br>
-     * @param tag
-     * @param indent
-     * @return string
-     */
-    static private String makeStartTag(String tag, int indent) {
-	StringBuilder returnvalue = new StringBuilder();
-	for (int i = 0;i < indent;i++) {
-	    returnvalue.append(" ");
 	}
-	returnvalue.append( "<" + tag  + ">\n");
-	return returnvalue.toString();
-    }
-  
+    };
+
     /**
      * For each qName in attributeqNames, search in attributes if it's found and return the value.<br>
      * If qName is not found, then a SAXParseException will be thrown with Locator = null.<br>
+     * For attributes read for each element of a class, an {@link AttributeExtractor} created once is faster.<br>
      * @param xmlElement will be used to get the className, to be used in case an Exception needs to be generated, for the text string
      * @param attributes to be searched in
      * @param attributeqNames the list of mandatory attributes
@@ -111,27 +108,10 @@ public class Utilities {
 	return returnvalue;
     }
     
-    /**
-     * useful for building the XML for an Element with attributes.<br>
-     * @param attributes
-     * @return list of attributesName=&quot;attribute value&quot; separated by blanks
-     */
-    static private String attributesToString(Attributes attributes) {
-	StringBuilder returnvalue = new StringBuilder();
-	for (int i = 0; i < attributes.getLength(); i++) {
-	    returnvalue.append(
-		    " " + 
-		    attributes.getQName(i) + 
-		    "=\"" + 
-		    attributes.getValue(i) +
-		    "\"");
-	}
-	return returnvalue.toString();
-    }
-    
     /**
      * to verify if a certain child type is allowed, if none of the childNames is allowed, then a SAXException is thrown<br>
      * Throwing an exception is the actual return value of this method.<br>
+     * For a check done for each child of each element of a class, a {@link ChildTypeValidator} created once is faster.
      * @param child the child
      * @param tagPrefixes tagPrefixes + childNames form the names of allowed children for the parentName, tagPrefix can be null,
      * tagPrefixes and childNames should have the same length
@@ -149,25 +129,30 @@ public class Utilities {
 	if (childNames == null) {
 	    if (child != null)
 		throw new SAXException("No children allowed for element of type" + parentName);
-	} else
-	for (int i = 0; i < tagPrefixes.length; i++) {
-	    if (Utilities.getClassname(child.getClass()).equals(
-		tagPrefixes[i] +
-		childNames[i]))
-		return;
+	} else {
+	    String classname = Utilities.getClassname(child.getClass());
+	    for (int i = 0; i < tagPrefixes.length; i++) {
+		if (matches(classname, tagPrefixes[i], childNames[i]))
+		    return;
+	    }
 	}
 	//non of the childNames matched the child class name
-	StringBuilder exceptionString = new StringBuilder();
-	exceptionString.append("Invalid childname for " + parentName +
-		".\n");
-	if (childNames.length > 0) 
-	    if (!((childNames.length == 1) && (childNames[0].equalsIgnoreCase("")))){
-		exceptionString.append("Allowed children are :\n");
-		for (int i =  0; i < tagPrefixes.length; i++) {
-		    exceptionString.append(childNames[i] + "\n");
-		}
-	    }    
-	throw new SAXException(exceptionString.toString());
+	throw new SAXException(ChildTypeValidator.invalidChildMessage(childNames, parentName));
+    }
+
+    /**
+     * compares without concatenating
+     * @param classname
+     * @param tagPrefix can be null, which matches &quot;null&quot; as when concatenating
+     * @param childName
+     * @return true if classname equals tagPrefix + childName
+     */
+    static private boolean matches(String classname, String tagPrefix, String childName) {
+	String prefix = String.valueOf(tagPrefix);
+	String name = String.valueOf(childName);
+	return classname.length() == prefix.length() + name.length() 
+		&& classname.startsWith(prefix) 
+		&& classname.endsWith(name);
     }
     
     /**
@@ -179,6 +164,12 @@ public class Utilities {
      * @throws SAXException in case none of the childnames is allowed, an exception is thrown with explanation text that lists the allowed children
      */
     public static void verifyChildType(XMLElement child, String tagPrefix ,String[] childNames, String parentName) throws SAXException {
+	if (childNames != null && child != null) {
+	    String classname = Utilities.getClassname(child.getClass());
+	    for (int i = 0; i < childNames.length; i++)
+		if (matches(classname, tagPrefix, childNames[i]))
+		    return;
+	}
 	String[] tagPrefixes = null;
 	if (childNames != null) {
 	    tagPrefixes = new String[childNames.length];
@@ -188,6 +179,57 @@ public class Utilities {
 	verifyChildType(child, tagPrefixes, childNames, parentName);
     }
     
+    /**
+     * a version of {@link #verifyChildType(XMLElement, String[], String[], String)} that uses the children declared with {@link XMLElementType} 
+     * on the class of parent : the class of the child is compared with the allowed classes, no class names are compared.
+     * @param parent the parent, its class must be in an {@link XMLElementRegistry}
+     * @param child the child
+     * @throws SAXException in case the child is not allowed, an exception is thrown with explanation text that lists the allowed children
+     * @throws IllegalArgumentException if the class of parent is not in a registry
+     */
+    public static void verifyChildType(XMLElement parent, XMLElement child) throws SAXException {
+	getBinding(parent).getChildTypeValidator().verify(child);
+    }
+
+    /**
+     * a version of {@link #getMandatoryAttributeValues(XMLElement, Attributes, String[])} that uses the mandatory attributes declared 
+     * with {@link XMLElementType} on the class of xmlElement
+     * @param xmlElement its class must be in an {@link XMLElementRegistry}
+     * @param attributes to be searched in
+     * @return the list of values in the same order as the names in {@link XMLElementType#mandatoryAttributes()}
+     * @throws SAXException in case a name is not found in the attributes
+     * @throws IllegalArgumentException if the class of xmlElement is not in a registry
+     */
+    static public String[] getMandatoryAttributeValues(XMLElement xmlElement, Attributes attributes) throws SAXException {
+	return getBinding(xmlElement).getMandatoryAttributeExtractor().extract(xmlElement, attributes, null);
+    }
+
+    /**
+     * a version of {@link #getOptionalAttributeValues(Attributes, String[], String[])} that uses the optional attributes declared 
+     * with {@link XMLElementType} on the class of xmlElement
+     * @param xmlElement its class must be in an {@link XMLElementRegistry}
+     * @param attributes to search in
+     * @param defaultValues the default values in the same order as in {@link XMLElementType#optionalAttributes()}
+     * @return if a qname is not found, returns the default value, if a qname is found, returns the corresponding value
+     * @throws IllegalArgumentException if the class of xmlElement is not in a registry
+     */
+    static public String[] getOptionalAttributeValues(XMLElement xmlElement, Attributes attributes, String[] defaultValues) {
+	return getOptionalAttributeValues(attributes, getBinding(xmlElement).optionalAttributes(), defaultValues);
+    }
+
+    /**
+     * @param xmlElement
+     * @return the binding of the class of xmlElement
+     * @throws IllegalArgumentException if the class is not in a registry
+     */
+    static private XMLElementBinding getBinding(XMLElement xmlElement) {
+	XMLElementBinding returnvalue = ElementRegistry.getInstance().forClass(xmlElement.getClass());
+	if (returnvalue == null)
+	    throw new IllegalArgumentException(xmlElement.getClass().getName() + 
+		    " is not annotated with XMLElementType, or the generated registry is not on the classpath");
+	return returnvalue;
+    }
+
     /**
      * create XML representation, does not include XML declaration
      * @param input
@@ -198,7 +240,8 @@ public class Utilities {
     }
     
     /**
-     * create XML representation, does not include XML declaration
+     * create XML representation, does not include XML declaration<br>
+     * To write the XML of a large tree to a file or stream without building it as one String, use {@link XMLElementWriter}.
      * @param input 
      * @param indent starting indentation 
      * @return one string with the XML representation
@@ -206,35 +249,12 @@ public class Utilities {
     public static String createXML(XMLElement input, int indent) {
 	if (input == null) return null;
 	StringBuilder returnvalue = new StringBuilder();
-	ArrayList<XMLElement> list;
-	
-	String attributes = (input.getAttributes() == null ? "": Utilities.attributesToString(input.getAttributes()));
-	returnvalue.append(Utilities.makeStartTag(input.getTagName() + attributes,indent));
-	if (input.getText() != null) {
-	    if(input.preserveSpaces())
-		//stripp off the '>' added by makeStartTag
-		returnvalue.deleteCharAt(returnvalue.length() -1);
-	    if(!input.preserveSpaces())
-		//shifting to the right, as far as the current value of the indentation
-		for (int i = 0;i < indent;i ++) 
-		    returnvalue.append(" ");
-	    if(!input.preserveSpaces())
-		//add three blanks, shifting the text to the right by three spaces
-		returnvalue.append("   ");
-	    returnvalue.append("<![CDATA[" + input.getText() + "]]>");
-	    if (!input.preserveSpaces())
-		returnvalue.append("\n");
-	}
-	list = input.getChildren();
-	if (list != null) {
-	    for (int i = 0;i < list.size();i++)
-		returnvalue.append(createXML(list.get(i),indent + 3));
+	try {
+	    new XMLElementWriter(returnvalue).write(input, indent);
+	} catch (IOException e) {
+	    //a StringBuilder does not throw IOException
+	    throw new RuntimeException(e);
 	}
-	if (!input.preserveSpaces())
-	    for (int i = 0;i < indent;i++) {
-		returnvalue.append(" ");
-	    }
-	returnvalue.append("</" + input.getTagName()  + ">\n");
 	return returnvalue.toString();
     }
 
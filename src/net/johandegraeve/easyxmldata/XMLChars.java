@@ -0,0 +1,135 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+/**
+ * The character classes of the XML specification, used by the parsers that do not use a SAX parser : {@link XMLFeedParser} and
+ * {@link LazyDocument}, so that they reject the same documents as {@link EasyXMLDataParser#parse(java.io.InputStream)}.
+ *
+ * @author Johan Degraeve
+ *
+ */
+final class XMLChars {
+
+    /**
+     * no instances
+     */
+    private XMLChars() {
+    }
+
+    /**
+     * checks a char of decoded text. Surrogates are accepted : the decoders report unpaired surrogates, and a String
+     * is parsed after encoding it, so a char is valid unless it is a control character or U+FFFE, U+FFFF
+     * @param c
+     * @return true if c can occur in an XML document
+     */
+    static boolean isChar(char c) {
+	return c >= 0x20 ? c < 0xFFFE : (c == '\t' || c == '\n' || c == '\r');
+    }
+
+    /**
+     * @param codePoint
+     * @return true if codePoint is a Char in the XML specification, as needed for character references
+     */
+    static boolean isChar(int codePoint) {
+	return codePoint == 0x9 || codePoint == 0xA || codePoint == 0xD || (codePoint >= 0x20 && codePoint <= 0xD7FF) || 
+		(codePoint >= 0xE000 && codePoint <= 0xFFFD) || (codePoint >= 0x10000 && codePoint <= Character.MAX_CODE_POINT);
+    }
+
+    /**
+     * @param c code point
+     * @return true if c is a NameStartChar in the XML specification
+     */
+    static boolean isNameStartChar(int c) {
+	if (c < 0x80)
+	    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':';
+	return (c >= 0xC0 && c <= 0xD6) || (c >= 0xD8 && c <= 0xF6) || (c >= 0xF8 && c <= 0x2FF) || (c >= 0x370 && c <= 0x37D) || 
+		(c >= 0x37F && c <= 0x1FFF) || c == 0x200C || c == 0x200D || (c >= 0x2070 && c <= 0x218F) || (c >= 0x2C00 && c <= 0x2FEF) || 
+		(c >= 0x3001 && c <= 0xD7FF) || (c >= 0xF900 && c <= 0xFDCF) || (c >= 0xFDF0 && c <= 0xFFFD) || (c >= 0x10000 && c <= 0xEFFFF);
+    }
+
+    /**
+     * @param c code point
+     * @return true if c is a NameChar in the XML specification, but not a NameStartChar
+     */
+    static boolean isNameChar(int c) {
+	return (c >= '0' && c <= '9') || c == '-' || c == '.' || c == 0xB7 || (c >= 0x300 && c <= 0x36F) || c == 0x203F || c == 0x2040;
+    }
+
+    /**
+     * @param chars
+     * @param from offset of the first character of the name
+     * @param to offset up to where the name can go
+     * @return the offset after the XML Name that starts at from, from if no name starts there
+     */
+    static int nameEnd(char[] chars, int from, int to) {
+	int pos = from;
+	while (pos < to) {
+	    int c = Character.codePointAt(chars, pos, to);
+	    if (!(isNameStartChar(c) || (pos > from && isNameChar(c))))
+		break;
+	    pos += Character.charCount(c);
+	}
+	return pos;
+    }
+
+    /**
+     * @param s
+     * @param from offset of the first character of the name
+     * @param to offset up to where the name can go
+     * @return the offset after the XML Name that starts at from, from if no name starts there
+     */
+    static int nameEnd(CharSequence s, int from, int to) {
+	int pos = from;
+	while (pos < to) {
+	    int c = Character.codePointAt(s, pos);
+	    if (!(isNameStartChar(c) || (pos > from && isNameChar(c))))
+		break;
+	    pos += Character.charCount(c);
+	}
+	return Math.min(pos, to);
+    }
+
+    /**
+     * parses the number of a character reference. Only ASCII digits are accepted, without sign.
+     * @param s
+     * @param from offset of the '#'
+     * @param to offset of the ';'
+     * @return the code point, a value larger than {@link Character#MAX_CODE_POINT} if it is too large, -1 if the reference 
+     * is not a decimal or hexadecimal number
+     */
+    static int characterReference(CharSequence s, int from, int to) {
+	int radix = (from + 1 < to && s.charAt(from + 1) == 'x') ? 16 : 10;
+	int digitsStart = from + (radix == 16 ? 2 : 1);
+	if (digitsStart >= to)
+	    return -1;
+	int returnvalue = 0;
+	for (int i = digitsStart; i < to; i++) {
+	    char c = s.charAt(i);
+	    int digit = c < 0x80 ? Character.digit(c, radix) : -1;
+	    if (digit < 0)
+		return -1;
+	    //stop accumulating beyond the largest code point, the value is rejected anyway
+	    if (returnvalue <= Character.MAX_CODE_POINT)
+		returnvalue = returnvalue * radix + digit;
+	}
+	return returnvalue;
+    }
+}
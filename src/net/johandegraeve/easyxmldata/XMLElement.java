@@ -58,7 +58,8 @@ public interface XMLElement {
     	/**
     	 * this method is always called by  as soon as the end element is reached, with the contents of the text found, if there
     	 * was no text between the start and end element, then the method is not called.<br> 
-    	 * Before calling the method, text is trimmed with String.trim()
+    	 * Before calling the method, text is trimmed with String.trim()<br>
+    	 * Not called for elements that implement {@link TextModeAware} with mode {@link TextMode#NONE} or {@link TextMode#UNTRIMMED}.
     	 * @param text
     	 * @throws SAXException
     	 */
@@ -67,7 +68,8 @@ public interface XMLElement {
     	/**
     	 * this method is always called by  as soon as the end element is reached, with the contents of the text found, if there
     	 * was no text between the start and end element, then the method is not called.<br>
-    	 * The text is not trimmed.
+    	 * The text is not trimmed.<br>
+    	 * Not called for elements that implement {@link TextModeAware} with mode {@link TextMode#NONE} or {@link TextMode#TRIMMED}.
     	 * @param text
     	 * @throws SAXException
     	 */
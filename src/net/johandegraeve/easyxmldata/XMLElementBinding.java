@@ -0,0 +1,161 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.function.Supplier;
+
+/**
+ * What is known at compile time about one {@link XMLElement} class : how to create it, which children it accepts and which
+ * attributes it reads, see {@link XMLElementType}.<br>
+ * Bindings are created by the code generated by the annotation processor, and handed over to the parser through an {@link XMLElementRegistry}.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public final class XMLElementBinding {
+
+    /**
+     * the class
+     */
+    private final Class<? extends XMLElement> elementClass;
+
+    /**
+     * creates instances of {@link #elementClass}
+     */
+    private final Supplier<? extends XMLElement> supplier;
+
+    /**
+     * the classes allowed as child
+     */
+    private final Class<?>[] childTypes;
+
+    /**
+     * names of the mandatory attributes
+     */
+    private final String[] mandatoryAttributes;
+
+    /**
+     * names of the optional attributes
+     */
+    private final String[] optionalAttributes;
+
+    /**
+     * verifies the child types, see {@link #getChildTypeValidator()}
+     */
+    private volatile ChildTypeValidator childTypeValidator;
+
+    /**
+     * extracts the mandatory attributes, see {@link #getMandatoryAttributeExtractor()}
+     */
+    private volatile AttributeExtractor mandatoryAttributeExtractor;
+
+    /**
+     * constructor
+     * @param elementClass the class, not null
+     * @param supplier creates instances of the class, typically a constructor reference, not null
+     * @param childTypes the classes allowed as child, null or empty if no children are allowed
+     * @param mandatoryAttributes names of the attributes that must be present, can be null
+     * @param optionalAttributes names of the attributes that may be present, can be null
+     */
+    public XMLElementBinding(Class<? extends XMLElement> elementClass, Supplier<? extends XMLElement> supplier, 
+	    Class<?>[] childTypes, String[] mandatoryAttributes, String[] optionalAttributes) {
+	if (elementClass == null || supplier == null)
+	    throw new NullPointerException("elementClass and supplier should not be null");
+	this.elementClass = elementClass;
+	this.supplier = supplier;
+	this.childTypes = (childTypes == null ? new Class<?>[0] : childTypes.clone());
+	this.mandatoryAttributes = (mandatoryAttributes == null ? new String[0] : mandatoryAttributes.clone());
+	this.optionalAttributes = (optionalAttributes == null ? new String[0] : optionalAttributes.clone());
+    }
+
+    /**
+     * @return the class
+     */
+    public Class<? extends XMLElement> getElementClass() {
+	return elementClass;
+    }
+
+    /**
+     * @return creates instances of the class
+     */
+    public Supplier<? extends XMLElement> getSupplier() {
+	return supplier;
+    }
+
+    /**
+     * @return the classes allowed as child, empty if no children are allowed
+     */
+    public Class<?>[] getChildTypes() {
+	return childTypes.clone();
+    }
+
+    /**
+     * @return names of the attributes that must be present, empty if none
+     */
+    public String[] getMandatoryAttributes() {
+	return mandatoryAttributes.clone();
+    }
+
+    /**
+     * @return names of the attributes that may be present, empty if none
+     */
+    public String[] getOptionalAttributes() {
+	return optionalAttributes.clone();
+    }
+
+    /**
+     * @return the validator for the child types, created at first call
+     */
+    ChildTypeValidator getChildTypeValidator() {
+	ChildTypeValidator returnvalue = childTypeValidator;
+	if (returnvalue == null) {
+	    returnvalue = ChildTypeValidator.ofClasses(Utilities.getClassname(elementClass), childTypes);
+	    childTypeValidator = returnvalue;
+	}
+	return returnvalue;
+    }
+
+    /**
+     * @return the extractor for the mandatory attributes, created at first call
+     */
+    AttributeExtractor getMandatoryAttributeExtractor() {
+	AttributeExtractor returnvalue = mandatoryAttributeExtractor;
+	if (returnvalue == null) {
+	    returnvalue = AttributeExtractor.of(mandatoryAttributes);
+	    mandatoryAttributeExtractor = returnvalue;
+	}
+	return returnvalue;
+    }
+
+    /**
+     * @return the optional attribute names without copying, not to be modified
+     */
+    String[] optionalAttributes() {
+	return optionalAttributes;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+	return "XMLElementBinding[" + elementClass.getName() + "]";
+    }
+}
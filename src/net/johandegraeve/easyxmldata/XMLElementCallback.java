@@ -0,0 +1,42 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Receives the elements selected by an {@link XMLElementSelector} while streaming, 
+ * see {@link EasyXMLDataParser#stream(java.net.URL, XMLElementSelector, XMLElementCallback)}.<br>
+ * An element handed over to the callback is not added to its parent, so the parser does not keep a reference to it anymore.
+ * 
+ * @author Johan Degraeve
+ *
+ */
+public interface XMLElementCallback {
+
+    	/**
+    	 * called for each selected element, as soon as its end tag is reached and {@link XMLElement#complete()} is called.
+    	 * @param element the completed element
+    	 * @param depth the depth of the element, the root element has depth 0
+    	 * @return true to continue parsing, false to stop parsing
+    	 * @throws SAXException stops the parsing, the parse method will throw a SAXParseException with the message of the exception
+    	 */
+    	public boolean elementParsed(XMLElement element, int depth) throws SAXException;
+}
@@ -0,0 +1,54 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes and reads the state of instances of one {@link XMLElement} class in an {@link XMLElementSnapshot}, 
+ * see {@link XMLElementSnapshot#registerCodec(Class, XMLElementCodec)}.<br>
+ * A codec handles the element itself, not its children : the children are written by the snapshot after the state of the element,
+ * and when reading they are added with {@link XMLElement#addChild(XMLElement)} to the element returned by {@link #read(DataInput)}, 
+ * after which {@link XMLElement#complete()} is called, as when parsing.
+ *
+ * @author Johan Degraeve
+ *
+ * @param <T> the class of the elements
+ */
+public interface XMLElementCodec<T extends XMLElement> {
+
+    	/**
+    	 * writes the state of the element, without its children
+    	 * @param element
+    	 * @param out
+    	 * @throws IOException
+    	 */
+    	public void write(T element, DataOutput out) throws IOException;
+
+    	/**
+    	 * creates an element with the state written by {@link #write(XMLElement, DataOutput)}
+    	 * @param in contains exactly the bytes written by {@link #write(XMLElement, DataOutput)}
+    	 * @return the element, without children
+    	 * @throws IOException
+    	 */
+    	public T read(DataInput in) throws IOException;
+}
@@ -0,0 +1,252 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Pulls the elements of a document one by one, see {@link EasyXMLDataParser#openCursor(java.io.InputStream)}.<br>
+ * {@link #next()} moves to the next start tag in document order. At a start tag, the caller can look at the tag name, depth and 
+ * attributes and decide to build the element with its subtree with {@link #readElement()}, to skip it with {@link #skipSubtree()}, 
+ * or to move on to its first child with {@link #next()}. Nothing is read before the caller asks for it, so parsing can stop at any
+ * point by closing the cursor, and can be interleaved with other work.<br>
+ * Elements are built by the same handler as with {@link EasyXMLDataParser#parse(java.io.InputStream)}, so each element returned
+ * by {@link #readElement()} is identical to the element in the tree that parse would return, with the same calls to the 
+ * {@link XMLElement} methods. Skipped elements are not created at all.<br>
+ * Example, reading the item elements of a large document and stopping after the first one that is needed :
+ * <pre>
+ * try (XMLElementCursor cursor = parser.openCursor(in)) {
+ *     while (cursor.next()) {
+ *         if (cursor.getTagName().equals("item"))
+ *             if (isNeeded(cursor.readElement()))
+ *                 break;
+ *     }
+ * }
+ * </pre>
+ * An XMLElementCursor is not thread safe. After an exception the cursor is closed.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public final class XMLElementCursor implements AutoCloseable {
+
+    /**
+     * the input, closed with the cursor
+     */
+    private final InputSource source;
+
+    /**
+     * the reader
+     */
+    private final XMLStreamReader reader;
+
+    /**
+     * builds the elements read with {@link #readElement()}
+     */
+    private final XMLElementHandler handler;
+
+    /**
+     * attributes of the current start tag
+     */
+    private final AttributesImpl attributes = new AttributesImpl();
+
+    /**
+     * number of open elements, including the current one
+     */
+    private int depth;
+
+    /**
+     * true if positioned at a start tag that is not yet read or skipped
+     */
+    private boolean atStartTag;
+
+    /**
+     * true after {@link #close()}
+     */
+    private boolean closed;
+
+    /**
+     * constructor
+     * @param configuration the parser that defines the classes to use
+     * @param source
+     * @throws SAXParseException if the reader can not be created
+     */
+    XMLElementCursor(EasyXMLDataParser configuration, InputSource source) throws SAXParseException {
+	this.source = source;
+	try {
+	    reader = StAXEngine.createReader(source);
+	} catch (XMLStreamException e) {
+	    EasyXMLDataParser.close(source);
+	    throw new SAXParseException("Exception : \n" + 
+		    e.toString() +  "\n", null);
+	}
+	handler = new XMLElementHandler(configuration);
+	handler.setDocumentLocator(StAXEngine.locatorOf(reader));
+    }
+
+    /**
+     * moves to the next start tag in document order, which is the first child of the current element if it is not read or skipped
+     * @return false if there are no more elements
+     * @throws SAXParseException if the document is not well formed
+     */
+    public boolean next() throws SAXParseException {
+	checkOpen();
+	atStartTag = false;
+	try {
+	    while (reader.hasNext()) {
+		int event = reader.next();
+		if (event == XMLStreamConstants.START_ELEMENT) {
+		    depth++;
+		    atStartTag = true;
+		    attributes.clear();
+		    return true;
+		}
+		if (event == XMLStreamConstants.END_ELEMENT)
+		    depth--;
+	    }
+	    return false;
+	} catch (XMLStreamException e) {
+	    throw error(e);
+	}
+    }
+
+    /**
+     * @return the tag name of the current start tag
+     * @throws IllegalStateException if not at a start tag
+     */
+    public String getTagName() {
+	checkStartTag();
+	return reader.getLocalName();
+    }
+
+    /**
+     * @return depth of the current element, 1 for the root element
+     */
+    public int getDepth() {
+	return depth;
+    }
+
+    /**
+     * @return the attributes of the current start tag, valid until the cursor moves
+     * @throws IllegalStateException if not at a start tag
+     */
+    public Attributes getAttributes() {
+	checkStartTag();
+	if (attributes.getLength() == 0 && reader.getAttributeCount() > 0)
+	    StAXEngine.getAttributes(reader, attributes);
+	return attributes;
+    }
+
+    /**
+     * builds the element at the current start tag and its subtree. The cursor is then positioned after the end tag of the element,
+     * {@link #next()} moves to the next sibling or the next start tag after it.
+     * @return the element
+     * @throws SAXParseException if the document is not well formed, or thrown by an element
+     * @throws IllegalStateException if not at a start tag
+     */
+    public XMLElement readElement() throws SAXParseException {
+	checkStartTag();
+	atStartTag = false;
+	try {
+	    handler.startDocument();
+	    StAXEngine.parseElement(reader, attributes, handler);
+	    handler.endDocument();
+	    depth--;
+	    return handler.getRoot();
+	} catch (Exception e) {
+	    throw error(e);
+	}
+    }
+
+    /**
+     * skips the current element and its subtree without creating any element. The cursor is then positioned after the end tag 
+     * of the element, {@link #next()} moves to the next sibling or the next start tag after it.
+     * @throws SAXParseException if the document is not well formed
+     * @throws IllegalStateException if not at a start tag
+     */
+    public void skipSubtree() throws SAXParseException {
+	checkStartTag();
+	atStartTag = false;
+	try {
+	    int open = 1;
+	    while (open > 0) {
+		int event = reader.next();
+		if (event == XMLStreamConstants.START_ELEMENT)
+		    open++;
+		else if (event == XMLStreamConstants.END_ELEMENT)
+		    open--;
+	    }
+	    depth--;
+	} catch (XMLStreamException e) {
+	    throw error(e);
+	}
+    }
+
+    /**
+     * closes the reader and the input, the rest of the document is not read
+     */
+    public void close() {
+	if (closed)
+	    return;
+	closed = true;
+	atStartTag = false;
+	try {
+	    reader.close();
+	} catch (XMLStreamException e) {
+	    //nothing to do
+	}
+	EasyXMLDataParser.close(source);
+    }
+
+    /**
+     * @throws IllegalStateException if the cursor is closed
+     */
+    private void checkOpen() {
+	if (closed)
+	    throw new IllegalStateException("the cursor is closed");
+    }
+
+    /**
+     * @throws IllegalStateException if not at a start tag
+     */
+    private void checkStartTag() {
+	checkOpen();
+	if (!atStartTag)
+	    throw new IllegalStateException("the cursor is not at a start tag");
+    }
+
+    /**
+     * closes the cursor, the position is not known anymore
+     * @param e
+     * @return the exception to throw, as thrown by {@link EasyXMLDataParser#parse(java.io.InputStream)}
+     */
+    private SAXParseException error(Exception e) {
+	close();
+	return new SAXParseException("Exception : \n" + 
+		e.toString() +  "\n", handler.getLocator());
+    }
+}
@@ -0,0 +1,563 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Stack;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Holds the state of the parsing of one XML document.<br>
+ * Extends {@link org.xml.sax.helpers.DefaultHandler} and overrides it methods to build the tree of {@link XMLElement}s.
+ * The configuration (which classes to create for which tags) comes from the {@link EasyXMLDataParser} that created the handler.<br>
+ * A new handler is created for each parse, so that one {@link EasyXMLDataParser} can be used by several threads at the same time.
+ *
+ * @author Johan Degraeve
+ *
+ */
+class XMLElementHandler extends DefaultHandler {
+
+    /**
+     * the configuration
+     */
+    private final EasyXMLDataParser configuration;
+
+    /**
+     * the root node retrieved from the XML page
+     */
+    private XMLElement rootFromXML = null;
+
+    /**
+     * Used to maintain the nodes being read from the XML file. As soon as a valid opening tag is encountered, a node will be added.<br>
+     * When an end tag is encountered, a node is removed.
+     */
+    private Stack<XMLElement> XMLObjectStack;
+
+    /**
+     * Used to keep the characters belonging to the open nodes.
+     */
+    private TextBuffer textBuffer;
+
+    /**
+     * whitespace-only text up to this length is interned in {@link #symbolTable}
+     */
+    static private final int MAX_INTERNED_WHITESPACE = 64;
+
+    /**
+     * the locate an event, see {@link org.xml.sax.Locator}
+     */
+    private Locator locator;
+
+    /**
+     * selects the elements to hand over to {@link #callback}, null if not streaming
+     */
+    private XMLElementSelector selector;
+
+    /**
+     * receives the selected elements, null if not streaming
+     */
+    private XMLElementCallback callback;
+
+    /**
+     * if true, the root element is a container for the parts of a document parsed in parallel, it is not resolved to a class
+     */
+    private boolean fragment;
+
+    /**
+     * children parsed separately, added to the root element when its end tag is reached, null if none
+     */
+    private XMLElement[] rootChildren;
+
+    /**
+     * interns tag names and attribute names of {@link CompactXMLElement}s
+     */
+    private final SymbolTable symbolTable = new SymbolTable();
+
+    /**
+     * counters of this parse, null if metrics are not collected
+     */
+    private ParseStatistics statistics;
+
+    /**
+     * selects the elements to build, null if all elements are built
+     */
+    private XMLPathSelection selection;
+
+    /**
+     * states of {@link #selection} of the open elements that are not built but can have selected descendants
+     */
+    private long[] selectionStates;
+
+    /**
+     * number of elements in {@link #selectionStates}
+     */
+    private int selectionDepth;
+
+    /**
+     * number of open elements that are skipped, ie that are not selected and can not have selected descendants
+     */
+    private int skipDepth;
+
+    /**
+     * skeletons of the open elements in {@link #selectionStates}, null if the selected elements are collected in {@link #matches}
+     */
+    private Stack<CompactXMLElement> skeletons;
+
+    /**
+     * the selected elements, null if a pruned tree is built
+     */
+    private ArrayList<XMLElement> matches;
+
+    /**
+     * builds an index on the elements, null if no index is needed
+     */
+    private XMLElementIndex.Builder index;
+
+    /**
+     * shares equal subtrees, null if not enabled
+     */
+    private XMLElementInterner interner;
+
+    /**
+     * constructor
+     * @param configuration the parser that defines which classes to create for which tags
+     */
+    XMLElementHandler(EasyXMLDataParser configuration) {
+	this.configuration = configuration;
+    }
+
+    /**
+     * streaming mode : completed elements selected by the selector are handed over to the callback instead of being added to their parent
+     * @param selector
+     * @param callback
+     */
+    void setStreaming(XMLElementSelector selector, XMLElementCallback callback) {
+	this.selector = selector;
+	this.callback = callback;
+    }
+
+    /**
+     * fragment mode : the root element is not resolved to a class but is a {@link DefaultXMLElement}, used to collect
+     * elements parsed in parallel
+     */
+    void setFragment() {
+	this.fragment = true;
+    }
+
+    /**
+     * sets children parsed separately, they are added to the root element in the given order, just before the root element's
+     * text is added and before its {@link XMLElement#complete()} is called
+     * @param rootChildren
+     */
+    void setRootChildren(XMLElement[] rootChildren) {
+	this.rootChildren = rootChildren;
+    }
+
+    /**
+     * selective mode : only the elements selected by selection and their descendants are built, other elements are skipped.
+     * @param selection
+     * @param flat if true, the selected elements are collected in a list, see {@link #getMatches()}, if false, a pruned tree is built :
+     * the selected elements are added to a {@link CompactXMLElement} for each of their ancestors, with the tag name and attributes 
+     * of the ancestor. Ancestors without selected descendants are not kept. 
+     */
+    void setSelection(XMLPathSelection selection, boolean flat) {
+	this.selection = selection;
+	this.matches = (flat ? new ArrayList<XMLElement>() : null);
+    }
+
+    /**
+     * builds an index on the elements while parsing
+     * @param index
+     */
+    void setIndex(XMLElementIndex.Builder index) {
+	this.index = index;
+    }
+
+    /**
+     * get the selected elements, in selective mode with a flat list
+     * @return the selected elements in document order
+     */
+    ArrayList<XMLElement> getMatches() {
+	return matches;
+    }
+
+    /**
+     * collect metrics for this parse
+     * @param statistics
+     */
+    void setStatistics(ParseStatistics statistics) {
+	this.statistics = statistics;
+    }
+
+    /**
+     * get the result of the parsing
+     * @return the root element, null if parsing is not finished
+     */
+    XMLElement getRoot() {
+	return rootFromXML;
+    }
+
+    /**
+     * @return true if an element is open, ie text can be received
+     */
+    boolean isInElement() {
+	return XMLObjectStack != null && !XMLObjectStack.empty();
+    }
+
+    /**
+     * get the locator received from the parser
+     * @return the locator, can be null
+     */
+    Locator getLocator() {
+	return locator;
+    }
+
+    /**
+     * @see org.xml.sax.helpers.DefaultHandler#characters(char[], int, int)
+     */
+    @Override
+    public void characters(char[] ch, int start, int length)
+            throws SAXException {
+        textBuffer.append(ch, start, length);
+        if (statistics != null)
+            statistics.textCharCount += length;
+    }
+
+    /**
+     * checks if end tag corresponds to current open element, if not throws SAXParseException<br>
+     * Calls  {@link XMLElement#addText}, {XMLElement#addUnTrimmedText}, {@link XMLElement#complete} and {@link XMLElement#addChild} of the corresponding
+     * open element.<br>
+     * In streaming mode, selected elements are handed over to the callback instead of added to the parent.<br>
+     * @see org.xml.sax.helpers.DefaultHandler#endElement(java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public void endElement(String uri, String localName, String name)
+            throws SAXException {
+	if (selection != null && XMLObjectStack.empty()) {
+	    endUnselectedElement();
+	    return;
+	}
+	try {
+	    long start = (statistics == null ? 0 : System.nanoTime());
+
+	    //add the children that were parsed separately
+	    if (rootChildren != null && XMLObjectStack.size() == 1) {
+		for (int i = 0; i < rootChildren.length; i++)
+		    XMLObjectStack.peek().addChild(rootChildren[i]);
+		rootChildren = null;
+	    }
+
+	    //add text from the buffer
+	    addText(XMLObjectStack.peek());
+
+	    //complete the object parsing
+	    XMLObjectStack.peek().complete();
+
+	    if (statistics != null)
+		statistics.addCallbackTime(XMLObjectStack.peek().getClass(), System.nanoTime() - start);
+
+	    //use an equal subtree completed before
+	    if (interner != null) {
+		XMLElement completed = XMLObjectStack.peek();
+		XMLElement shared = interner.intern(completed);
+		if (shared != completed) {
+		    XMLObjectStack.pop();
+		    XMLObjectStack.push(shared);
+		}
+	    }
+
+	    if (index != null)
+		index.end(XMLObjectStack.peek());
+
+	    //selective mode, the selected element is complete
+	    if (selection != null && XMLObjectStack.size() == 1) {
+		XMLElement selected = XMLObjectStack.pop();
+		textBuffer.endElement();
+		if (matches != null)
+		    matches.add(selected);
+		else if (skeletons.empty())
+		    rootFromXML = selected;
+		else
+		    skeletons.peek().addChild(selected);
+		return;
+	    }
+
+	    //hand over the element to the callback, it is removed from the stack and not added to the parent
+	    if (selector != null && selector.select(name == null || name.length() == 0 ? localName : name, XMLObjectStack.size() - 1)) {
+		XMLElement completed = XMLObjectStack.pop();
+		textBuffer.endElement();
+		if (!callback.elementParsed(completed, XMLObjectStack.size()))
+		    throw new ParsingStoppedException();
+		return;
+	    }
+
+	    //add the child to the parent
+	    if (!XMLObjectStack.empty()) {
+		if (XMLObjectStack.size() > 1) {
+		    XMLElement popped = XMLObjectStack.pop();
+		    if (statistics == null)
+			XMLObjectStack.peek().addChild(popped);
+		    else {
+			start = System.nanoTime();
+			XMLObjectStack.peek().addChild(popped);
+			statistics.addCallbackTime(XMLObjectStack.peek().getClass(), System.nanoTime() - start);
+		    }
+		}
+	    }
+
+	    //remove the text from the buffer
+	    textBuffer.endElement();
+
+	} catch (ParsingStoppedException e) {
+	    throw e;
+	} catch (SAXException e) {
+	    //instance of EasyXMLData class may throw an exception because it doesn't like the text, or because complete() failed
+	    //or maybe, because it doesn't like the child
+	    throw new SAXParseException(e.getMessage(), locator, e);
+	}
+    }
+
+    /**
+     * @see org.xml.sax.helpers.DefaultHandler#setDocumentLocator(org.xml.sax.Locator)
+     */
+    @Override
+    public void setDocumentLocator (Locator locator) {
+	this.locator = locator;
+    }
+
+    /**
+     * Start of document.
+     * @see org.xml.sax.helpers.DefaultHandler#startDocument()
+     */
+    @Override
+    public void startDocument() throws SAXException {
+	rootFromXML = null;
+	interner = configuration.getInterner();
+	XMLObjectStack = new Stack<XMLElement>();
+	textBuffer = new TextBuffer();
+	if (selection != null) {
+	    selectionStates = new long[16];
+	    selectionDepth = 0;
+	    skipDepth = 0;
+	    if (matches != null)
+		matches.clear();
+	    else
+		skeletons = new Stack<CompactXMLElement>();
+	}
+    }
+
+    /**
+     * Creates the element for the tag with {@link EasyXMLDataParser#newElement(String, Locator, SymbolTable, ParseStatistics)} and
+     * calls {@link XMLElement#addAttributes(Attributes)}<br>
+     * @see org.xml.sax.helpers.DefaultHandler#startElement(java.lang.String, java.lang.String, java.lang.String, org.xml.sax.Attributes)
+     * @throws SAXException will contain a {@link org.xml.sax.Locator}
+     */
+    @Override
+    public void startElement(String uri, String localName, String name,
+        Attributes attributes) throws SAXException {
+        String tagName = name;
+        if (tagName == null)
+            tagName = localName;
+        if (tagName.length() == 0)
+            tagName = localName;
+	if (statistics != null)
+	    statistics.elementStarted(tagName, XMLObjectStack.size() + 1 + selectionDepth + skipDepth);
+	if (selection != null && XMLObjectStack.empty() && !startUnselectedElement(tagName, attributes))
+	    return;
+	if (fragment && XMLObjectStack.empty()) {
+	    XMLObjectStack.push(new DefaultXMLElement(tagName));
+	    textBuffer.startElement(TextMode.NONE);
+	    return;
+	}
+
+	XMLElement element = configuration.newElement(tagName, locator, symbolTable, statistics);
+	XMLObjectStack.push(element);
+	textBuffer.startElement(element instanceof TextModeAware ? ((TextModeAware)element).getTextMode() : TextMode.BOTH);
+	if (index != null)
+	    index.start(tagName);
+
+	if (element instanceof CompactXMLElement) {
+	    ((CompactXMLElement)element).addAttributes(attributes, symbolTable);
+	    return;
+	}
+
+	try {
+	    if (statistics == null)
+		element.addAttributes(attributes);
+	    else {
+		long start = System.nanoTime();
+		element.addAttributes(attributes);
+		statistics.addCallbackTime(element.getClass(), System.nanoTime() - start);
+	    }
+	} catch (SAXException e) {
+	    //instance of EasyXMLData class may throw an exception because it doesn't like the attributes
+	    throw new SAXParseException(e.getMessage(), locator, e);
+	}
+    }
+
+    /**
+     * Here's where finally {@link #rootFromXML} is assigned to the XMLElement of on top of the stack
+     * {@link #XMLObjectStack}
+     * @see org.xml.sax.helpers.DefaultHandler#endDocument()
+     */
+    @Override
+    public void endDocument() {
+	if (XMLObjectStack.size() > 0) {
+	    rootFromXML = XMLObjectStack.peek();
+	}
+    }
+
+    /**
+     * overriding this because I'm interested in whitespace characters
+     * @see org.xml.sax.helpers.DefaultHandler#ignorableWhitespace(char[], int, int)
+     */
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length)
+            throws SAXException {
+        textBuffer.append(ch, start, length);
+        if (statistics != null)
+            statistics.textCharCount += length;
+    }
+
+    /**
+     * in selective mode, handles the start of an element outside the selected elements
+     * @param tagName
+     * @param attributes
+     * @return true if the element is selected and must be built
+     */
+    private boolean startUnselectedElement(String tagName, Attributes attributes) {
+	if (skipDepth > 0) {
+	    skipDepth++;
+	    return false;
+	}
+	long states = selection.next(selectionDepth == 0 ? selection.getInitialStates() : selectionStates[selectionDepth - 1], tagName);
+	if (selection.isMatch(states))
+	    return true;
+	//in a pruned tree the root element is kept, also if nothing can be selected
+	if (!selection.isViable(states) && (skeletons == null || selectionDepth > 0)) {
+	    skipDepth = 1;
+	    return false;
+	}
+	if (selectionDepth == selectionStates.length)
+	    selectionStates = Arrays.copyOf(selectionStates, 2 * selectionDepth);
+	selectionStates[selectionDepth++] = states;
+	if (skeletons != null) {
+	    CompactXMLElement skeleton = new CompactXMLElement(symbolTable.addSymbol(tagName));
+	    skeleton.addAttributes(attributes, symbolTable);
+	    skeletons.push(skeleton);
+	}
+	return false;
+    }
+
+    /**
+     * in selective mode, handles the end of an element outside the selected elements
+     * @throws SAXException
+     */
+    private void endUnselectedElement() throws SAXException {
+	if (skipDepth > 0) {
+	    skipDepth--;
+	    return;
+	}
+	selectionDepth--;
+	if (skeletons != null) {
+	    CompactXMLElement skeleton = skeletons.pop();
+	    if (skeletons.empty())
+		rootFromXML = skeleton;
+	    else if (skeleton.getSize() > 0)
+		skeletons.peek().addChild(skeleton);
+	}
+    }
+
+    /**
+     * calls {@link XMLElement#addUnTrimmedText(String)} and/or {@link XMLElement#addText(String)} with the text in {@link #textBuffer}, 
+     * depending on the text mode of the element. Only the Strings needed are created, whitespace-only text is interned.
+     * @param element the current element
+     * @throws SAXException
+     */
+    private void addText(XMLElement element) throws SAXException {
+	int start = textBuffer.getStart();
+	int end = textBuffer.getEnd();
+	if (start == end)
+	    return;
+	char[] chars = textBuffer.getChars();
+	int trimmedStart = start;
+	int trimmedEnd = end;
+	//same definition of whitespace as String.trim()
+	while (trimmedStart < trimmedEnd && chars[trimmedStart] <= ' ')
+	    trimmedStart++;
+	while (trimmedStart < trimmedEnd && chars[trimmedEnd - 1] <= ' ')
+	    trimmedEnd--;
+
+	switch (textBuffer.getMode()) {
+	case BOTH:
+	    element.addUnTrimmedText(newString(chars, start, end, trimmedStart == trimmedEnd));
+	    if (trimmedStart < trimmedEnd)
+		element.addText(new String(chars, trimmedStart, trimmedEnd - trimmedStart));
+	    break;
+	case UNTRIMMED:
+	    element.addUnTrimmedText(newString(chars, start, end, trimmedStart == trimmedEnd));
+	    break;
+	case TRIMMED:
+	    if (trimmedStart < trimmedEnd)
+		element.addText(new String(chars, trimmedStart, trimmedEnd - trimmedStart));
+	    break;
+	default:
+	    break;
+	}
+    }
+
+    /**
+     * creates a String from characters, short whitespace-only strings are taken from the symbol table
+     * @param chars
+     * @param start
+     * @param end
+     * @param whitespace true if all characters are whitespace
+     * @return the String
+     */
+    private String newString(char[] chars, int start, int end, boolean whitespace) {
+	if (whitespace && end - start <= MAX_INTERNED_WHITESPACE)
+	    return symbolTable.addSymbol(chars, start, end - start);
+	return new String(chars, start, end - start);
+    }
+
+    /**
+     * thrown to stop the parsing when the callback returns false
+     */
+    static final class ParsingStoppedException extends SAXException {
+
+	/**
+	 * serial version
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * constructor
+	 */
+	ParsingStoppedException() {
+	    super("parsing stopped by callback");
+	}
+    }
+}
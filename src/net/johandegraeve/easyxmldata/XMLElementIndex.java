@@ -0,0 +1,463 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An index on the elements of a tree, by tag name and by path, see {@link EasyXMLDataParser#parseIndexed(String)} and {@link #of(XMLElement)}.<br>
+ * The index is built while parsing, each element is added when its end tag is reached, after {@link XMLElement#complete()}. Lookups 
+ * do not walk the tree :
+ * <ul>
+ * <li>{@link #findAll(String)} with a tag name, for instance <code>price</code> or <code>//price</code>, returns all elements with that tag name</li>
+ * <li>{@link #findAll(String)} with a path, for instance <code>/catalog/book/price</code>, returns the elements at that path, each step is a tag name</li>
+ * <li>{@link #findFirst(String)} returns the first of those</li>
+ * <li>{@link #children(XMLElement, String)} returns the children of an element with a tag name</li>
+ * </ul>
+ * Results are in document order. The lists returned by findAll are read only views on the index, getting them costs a map lookup, 
+ * whatever the size of the document. The tag names are the ones in the document, also if an element's {@link XMLElement#getTagName()} 
+ * returns something else.<br>
+ * The index does not follow changes made to the tree after it was built. An XMLElementIndex can be used by several threads at the same time.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public final class XMLElementIndex {
+
+    /**
+     * the elements in document order, the root element first
+     */
+    private final XMLElement[] elements;
+
+    /**
+     * per element, the position in {@link #elements} of its last descendant, or itself if it has none
+     */
+    private final int[] ends;
+
+    /**
+     * per element, its depth, 0 for the root element
+     */
+    private final int[] depths;
+
+    /**
+     * per tag name, the positions of the elements with that tag name in increasing order
+     */
+    private final HashMap<String, Positions> byTag;
+
+    /**
+     * per path id, the positions of the elements at that path
+     */
+    private final Positions[] byPath;
+
+    /**
+     * per path id, the ids of the paths one step longer, per tag name. Path id 0 is the empty path, above the root element
+     */
+    private final HashMap<String, Integer>[] pathChildren;
+
+    /**
+     * positions per element, created the first time {@link #children(XMLElement, String)} is called
+     */
+    private IdentityHashMap<XMLElement, Integer> positions;
+
+    /**
+     * constructor
+     * @param builder
+     */
+    private XMLElementIndex(Builder builder) {
+	elements = Arrays.copyOf(builder.elements, builder.count);
+	ends = Arrays.copyOf(builder.ends, builder.count);
+	depths = Arrays.copyOf(builder.depths, builder.count);
+	byTag = builder.byTag;
+	byPath = builder.byPath.toArray(new Positions[builder.byPath.size()]);
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	HashMap<String, Integer>[] children = builder.pathChildren.toArray(new HashMap[builder.pathChildren.size()]);
+	pathChildren = children;
+    }
+
+    /**
+     * indexes an existing tree, with the tag names returned by {@link XMLElement#getTagName()}
+     * @param root the root element
+     * @return the index
+     */
+    public static XMLElementIndex of(XMLElement root) {
+	if (root == null)
+	    throw new NullPointerException("root should not be null");
+	Builder builder = new Builder();
+	//walk the tree without recursion, so that deep trees do not overflow the stack
+	XMLElement[] elementStack = new XMLElement[64];
+	int[] childStack = new int[64];
+	int depth = 0;
+	elementStack[0] = root;
+	builder.start(root.getTagName());
+	while (depth >= 0) {
+	    XMLElement element = elementStack[depth];
+	    ArrayList<XMLElement> children = element.getChildren();
+	    int next = childStack[depth];
+	    if (children != null && next < children.size()) {
+		childStack[depth]++;
+		XMLElement child = children.get(next);
+		depth++;
+		if (depth == elementStack.length) {
+		    elementStack = Arrays.copyOf(elementStack, 2 * depth);
+		    childStack = Arrays.copyOf(childStack, 2 * depth);
+		}
+		elementStack[depth] = child;
+		childStack[depth] = 0;
+		builder.start(child.getTagName());
+	    } else {
+		builder.end(element);
+		depth--;
+	    }
+	}
+	return builder.build();
+    }
+
+    /**
+     * @return the root element
+     */
+    public XMLElement getRoot() {
+	return elements[0];
+    }
+
+    /**
+     * @return number of elements in the index
+     */
+    public int getSize() {
+	return elements.length;
+    }
+
+    /**
+     * finds elements by tag name or by path
+     * @param tagOrPath a tag name, optionally preceded by //, or a path starting with / followed by tag names separated by /
+     * @return the elements in document order, empty if none, read only
+     * @throws IllegalArgumentException if tagOrPath is empty or contains // elsewhere than at the start
+     */
+    public List<XMLElement> findAll(String tagOrPath) {
+	Positions found = lookup(tagOrPath);
+	return found == null ? Collections.<XMLElement>emptyList() : new ElementList(elements, found.positions, found.size);
+    }
+
+    /**
+     * finds the first element by tag name or by path, see {@link #findAll(String)}
+     * @param tagOrPath
+     * @return the first element in document order, null if none
+     */
+    public XMLElement findFirst(String tagOrPath) {
+	Positions found = lookup(tagOrPath);
+	return found == null ? null : elements[found.positions[0]];
+    }
+
+    /**
+     * finds the children of an element with a tag name
+     * @param parent an element in the index
+     * @param tagName
+     * @return the children in document order, empty if none or if parent is not in the index
+     */
+    public List<XMLElement> children(XMLElement parent, String tagName) {
+	Integer position = getPositions().get(parent);
+	Positions found = byTag.get(tagName);
+	if (position == null || found == null)
+	    return Collections.<XMLElement>emptyList();
+	int parentPosition = position.intValue();
+	int childDepth = depths[parentPosition] + 1;
+	//the descendants with this tag name are consecutive in found, between the parent and its last descendant
+	int from = found.indexAfter(parentPosition);
+	int to = found.indexAfter(ends[parentPosition]);
+	ArrayList<XMLElement> returnvalue = new ArrayList<XMLElement>();
+	for (int i = from; i < to; i++) {
+	    int child = found.positions[i];
+	    if (depths[child] == childDepth)
+		returnvalue.add(elements[child]);
+	}
+	return returnvalue;
+    }
+
+    /**
+     * @param tagOrPath
+     * @return the positions, null if none
+     */
+    private Positions lookup(String tagOrPath) {
+	if (tagOrPath == null || tagOrPath.length() == 0 || tagOrPath.equals("/") || tagOrPath.equals("//"))
+	    throw new IllegalArgumentException("tag name or path expected");
+	if (tagOrPath.startsWith("//")) {
+	    if (tagOrPath.indexOf('/', 2) >= 0)
+		throw new IllegalArgumentException("only a tag name can follow // : " + tagOrPath);
+	    return byTag.get(tagOrPath.substring(2));
+	}
+	if (tagOrPath.charAt(0) != '/')
+	    return byTag.get(tagOrPath);
+	int path = 0;
+	int pos = 1;
+	while (pos <= tagOrPath.length()) {
+	    int end = tagOrPath.indexOf('/', pos);
+	    if (end < 0)
+		end = tagOrPath.length();
+	    if (end == pos)
+		throw new IllegalArgumentException("empty step in path : " + tagOrPath);
+	    HashMap<String, Integer> children = pathChildren[path];
+	    Integer next = (children == null ? null : children.get(tagOrPath.substring(pos, end)));
+	    if (next == null)
+		return null;
+	    path = next.intValue();
+	    pos = end + 1;
+	}
+	return byPath[path];
+    }
+
+    /**
+     * @return the position per element
+     */
+    private synchronized IdentityHashMap<XMLElement, Integer> getPositions() {
+	if (positions == null) {
+	    positions = new IdentityHashMap<XMLElement, Integer>(elements.length);
+	    for (int i = 0; i < elements.length; i++)
+		positions.put(elements[i], Integer.valueOf(i));
+	}
+	return positions;
+    }
+
+    /**
+     * a growable list of positions in increasing order
+     */
+    static private final class Positions {
+
+	/**
+	 * the positions
+	 */
+	private int[] positions = new int[4];
+
+	/**
+	 * number of positions
+	 */
+	private int size;
+
+	/**
+	 * @param position larger than all positions added before
+	 */
+	void add(int position) {
+	    if (size == positions.length)
+		positions = Arrays.copyOf(positions, 2 * size);
+	    positions[size++] = position;
+	}
+
+	/**
+	 * @param position
+	 * @return index of the first position larger than position
+	 */
+	int indexAfter(int position) {
+	    int low = 0;
+	    int high = size;
+	    while (low < high) {
+		int middle = (low + high) >>> 1;
+		if (positions[middle] <= position)
+		    low = middle + 1;
+		else
+		    high = middle;
+	    }
+	    return low;
+	}
+    }
+
+    /**
+     * read only view on elements at a list of positions
+     */
+    static private final class ElementList extends AbstractList<XMLElement> implements RandomAccess {
+
+	/**
+	 * all elements
+	 */
+	private final XMLElement[] elements;
+
+	/**
+	 * the positions in {@link #elements}
+	 */
+	private final int[] positions;
+
+	/**
+	 * number of positions
+	 */
+	private final int size;
+
+	/**
+	 * constructor
+	 * @param elements
+	 * @param positions
+	 * @param size
+	 */
+	ElementList(XMLElement[] elements, int[] positions, int size) {
+	    this.elements = elements;
+	    this.positions = positions;
+	    this.size = size;
+	}
+
+	/**
+	 * @see java.util.AbstractList#get(int)
+	 */
+	@Override
+	public XMLElement get(int index) {
+	    if (index < 0 || index >= size)
+		throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	    return elements[positions[index]];
+	}
+
+	/**
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+	    return size;
+	}
+    }
+
+    /**
+     * Builds an index : {@link #start(String)} is called for each start tag, {@link #end(XMLElement)} for each end tag.
+     * The position of an element is reserved at its start tag, so that the elements are in document order.
+     */
+    static final class Builder {
+
+	/**
+	 * the elements
+	 */
+	private XMLElement[] elements = new XMLElement[256];
+
+	/**
+	 * see {@link XMLElementIndex#ends}
+	 */
+	private int[] ends = new int[256];
+
+	/**
+	 * see {@link XMLElementIndex#depths}
+	 */
+	private int[] depths = new int[256];
+
+	/**
+	 * number of elements started
+	 */
+	private int count;
+
+	/**
+	 * see {@link XMLElementIndex#byTag}
+	 */
+	private final HashMap<String, Positions> byTag = new HashMap<String, Positions>();
+
+	/**
+	 * see {@link XMLElementIndex#byPath}
+	 */
+	private final ArrayList<Positions> byPath = new ArrayList<Positions>();
+
+	/**
+	 * see {@link XMLElementIndex#pathChildren}
+	 */
+	private final ArrayList<HashMap<String, Integer>> pathChildren = new ArrayList<HashMap<String, Integer>>();
+
+	/**
+	 * positions of the open elements
+	 */
+	private int[] open = new int[64];
+
+	/**
+	 * path ids of the open elements
+	 */
+	private int[] openPaths = new int[64];
+
+	/**
+	 * number of open elements
+	 */
+	private int depth;
+
+	/**
+	 * constructor
+	 */
+	Builder() {
+	    //path id 0, the empty path
+	    byPath.add(null);
+	    pathChildren.add(null);
+	}
+
+	/**
+	 * reserves the position of an element
+	 * @param tagName
+	 */
+	void start(String tagName) {
+	    if (count == elements.length) {
+		elements = Arrays.copyOf(elements, 2 * count);
+		ends = Arrays.copyOf(ends, 2 * count);
+		depths = Arrays.copyOf(depths, 2 * count);
+	    }
+	    int position = count++;
+	    depths[position] = depth;
+
+	    Positions positions = byTag.get(tagName);
+	    if (positions == null) {
+		positions = new Positions();
+		byTag.put(tagName, positions);
+	    }
+	    positions.add(position);
+
+	    int parentPath = (depth == 0 ? 0 : openPaths[depth - 1]);
+	    HashMap<String, Integer> children = pathChildren.get(parentPath);
+	    if (children == null) {
+		children = new HashMap<String, Integer>(4);
+		pathChildren.set(parentPath, children);
+	    }
+	    Integer path = children.get(tagName);
+	    if (path == null) {
+		path = Integer.valueOf(byPath.size());
+		children.put(tagName, path);
+		byPath.add(new Positions());
+		pathChildren.add(null);
+	    }
+	    byPath.get(path.intValue()).add(position);
+
+	    if (depth == open.length) {
+		open = Arrays.copyOf(open, 2 * depth);
+		openPaths = Arrays.copyOf(openPaths, 2 * depth);
+	    }
+	    open[depth] = position;
+	    openPaths[depth] = path.intValue();
+	    depth++;
+	}
+
+	/**
+	 * adds the element of the last started element that is not yet ended
+	 * @param element
+	 */
+	void end(XMLElement element) {
+	    depth--;
+	    int position = open[depth];
+	    elements[position] = element;
+	    ends[position] = count - 1;
+	}
+
+	/**
+	 * @return the index, null if no element was added
+	 */
+	XMLElementIndex build() {
+	    return count == 0 ? null : new XMLElementIndex(this);
+	}
+    }
+}
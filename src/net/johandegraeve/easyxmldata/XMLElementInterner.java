@@ -0,0 +1,326 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xml.sax.Attributes;
+
+/**
+ * Shares structurally equal subtrees, see {@link EasyXMLDataParser#setInterner(XMLElementInterner)}.<br>
+ * When an element is completed, the interner looks for an element completed before with the same class, tag name, attributes 
+ * (in the same order), text and children. If there is one, that element is used instead, so that a subtree repeated many times
+ * in a document, or in several documents parsed with the same interner, is kept in memory once. As the children of an element 
+ * are interned before the element itself, children are compared by reference, which makes the comparison cost independent of 
+ * the size of the subtree.<br>
+ * Only elements that can not be told apart are shared : {@link CompactXMLElement}, created for unknown tags, and classes that 
+ * implement {@link ImmutableXMLElement}. Elements that have other children are never shared.<br>
+ * A shared element has several parents, so it must not be modified after parsing, a modification would be seen at each place it 
+ * occurs.<br>
+ * The number of elements remembered is limited, elements completed when the limit is reached are still shared with elements
+ * remembered before, but not remembered themselves. An interner can be used by several threads at the same time.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public final class XMLElementInterner {
+
+    /**
+     * maximum number of elements remembered by an interner created with {@link #XMLElementInterner()}
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    /**
+     * estimated size of an object header, with compressed references
+     */
+    static private final int OBJECT_HEADER = 12;
+
+    /**
+     * estimated size of a reference, with compressed references
+     */
+    static private final int REFERENCE = 4;
+
+    /**
+     * estimated size of an empty String, the String object and its array header
+     */
+    static private final int STRING = 24 + 16;
+
+    /**
+     * the elements remembered, the key refers to the element itself
+     */
+    private final ConcurrentMap<SubtreeKey, XMLElement> elements = new ConcurrentHashMap<SubtreeKey, XMLElement>();
+
+    /**
+     * maximum number of elements remembered
+     */
+    private final int maxEntries;
+
+    /**
+     * number of elements looked up
+     */
+    private final AtomicLong lookupCount = new AtomicLong();
+
+    /**
+     * number of elements replaced by an equal element
+     */
+    private final AtomicLong sharedCount = new AtomicLong();
+
+    /**
+     * estimated number of bytes of the elements replaced
+     */
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    /**
+     * creates an interner that remembers at most {@link #DEFAULT_MAX_ENTRIES} elements
+     */
+    public XMLElementInterner() {
+	this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * creates an interner
+     * @param maxEntries maximum number of elements remembered
+     * @throws IllegalArgumentException if maxEntries is negative
+     */
+    public XMLElementInterner(int maxEntries) {
+	if (maxEntries < 0)
+	    throw new IllegalArgumentException("maxEntries should not be negative : " + maxEntries);
+	this.maxEntries = maxEntries;
+    }
+
+    /**
+     * get the element to use for a completed element : an equal element interned before, or else the element itself.<br>
+     * The children of the element must have been interned before.
+     * @param element a completed element
+     * @return the element to use instead of element
+     */
+    public XMLElement intern(XMLElement element) {
+	if (!isShareable(element))
+	    return element;
+	ArrayList<XMLElement> children = element.getChildren();
+	if (children != null)
+	    for (int i = 0; i < children.size(); i++)
+		if (!isShareable(children.get(i)))
+		    return element;
+
+	lookupCount.incrementAndGet();
+	SubtreeKey key = new SubtreeKey(element);
+	XMLElement returnvalue = elements.get(key);
+	if (returnvalue == null && elements.size() < maxEntries)
+	    returnvalue = elements.putIfAbsent(key, element);
+	if (returnvalue == null)
+	    return element;
+	sharedCount.incrementAndGet();
+	savedBytes.addAndGet(estimateSize(element));
+	return returnvalue;
+    }
+
+    /**
+     * get the number of elements replaced by an equal element, since creation or since the last call to {@link #clear()}.<br>
+     * A subtree of n elements that occurs a second time counts as n : each of its elements is replaced.
+     * @return the number of elements shared
+     */
+    public long getSharedCount() {
+	return sharedCount.get();
+    }
+
+    /**
+     * get the estimated number of bytes of the elements replaced by an equal element, since creation or since the last 
+     * call to {@link #clear()}. The estimate assumes compressed references and Latin-1 strings, and counts the element, 
+     * its attributes, its text and its list of children, but not the tag and attribute names, which are already shared.
+     * @return the estimated bytes saved
+     */
+    public long getSavedBytes() {
+	return savedBytes.get();
+    }
+
+    /**
+     * get the number of elements looked up, since creation or since the last call to {@link #clear()}
+     * @return the number of lookups
+     */
+    public long getLookupCount() {
+	return lookupCount.get();
+    }
+
+    /**
+     * get the number of elements currently remembered
+     * @return the size
+     */
+    public int getSize() {
+	return elements.size();
+    }
+
+    /**
+     * @return the maximum number of elements remembered
+     */
+    public int getMaxEntries() {
+	return maxEntries;
+    }
+
+    /**
+     * forgets all elements and resets the counters. Trees parsed before keep sharing the elements they share.
+     */
+    public void clear() {
+	elements.clear();
+	lookupCount.set(0);
+	sharedCount.set(0);
+	savedBytes.set(0);
+    }
+
+    /**
+     * @param element
+     * @return true if element can be shared
+     */
+    static private boolean isShareable(XMLElement element) {
+	return element.getClass() == CompactXMLElement.class || element instanceof ImmutableXMLElement;
+    }
+
+    /**
+     * @param element
+     * @return estimated number of bytes of element without its children
+     */
+    static private long estimateSize(XMLElement element) {
+	//the element, with 4 fields as DefaultXMLElement
+	long returnvalue = align(OBJECT_HEADER + 4 * REFERENCE);
+	Attributes attributes = element.getAttributes();
+	if (attributes != null && attributes.getLength() > 0) {
+	    //object and array of names and values, the names are interned
+	    returnvalue += align(OBJECT_HEADER + 2 * REFERENCE) + align(16 + 2 * attributes.getLength() * REFERENCE);
+	    for (int i = 0; i < attributes.getLength(); i++)
+		returnvalue += align(STRING + attributes.getValue(i).length());
+	}
+	String text = element.getText();
+	if (text != null)
+	    returnvalue += align(STRING + text.length());
+	ArrayList<XMLElement> children = element.getChildren();
+	if (children != null)
+	    returnvalue += align(OBJECT_HEADER + 2 * 4 + REFERENCE) + align(16 + children.size() * REFERENCE);
+	return returnvalue;
+    }
+
+    /**
+     * @param size
+     * @return size rounded up to a multiple of 8
+     */
+    static private long align(long size) {
+	return (size + 7) & ~7L;
+    }
+
+    /**
+     * key in {@link XMLElementInterner#elements}, compares the structure of the element
+     */
+    static private final class SubtreeKey {
+
+	/**
+	 * the element
+	 */
+	private final XMLElement element;
+
+	/**
+	 * the hash code
+	 */
+	private final int hash;
+
+	/**
+	 * constructor
+	 * @param element
+	 */
+	SubtreeKey(XMLElement element) {
+	    this.element = element;
+	    int h = element.getClass().hashCode();
+	    h = 31 * h + hashCode(element.getTagName());
+	    h = 31 * h + hashCode(element.getText());
+	    Attributes attributes = element.getAttributes();
+	    if (attributes != null)
+		for (int i = 0; i < attributes.getLength(); i++) {
+		    h = 31 * h + hashCode(attributes.getQName(i));
+		    h = 31 * h + hashCode(attributes.getValue(i));
+		}
+	    ArrayList<XMLElement> children = element.getChildren();
+	    if (children != null)
+		for (int i = 0; i < children.size(); i++)
+		    h = 31 * h + System.identityHashCode(children.get(i));
+	    hash = h;
+	}
+
+	/**
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+	    return hash;
+	}
+
+	/**
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+	    if (!(obj instanceof SubtreeKey))
+		return false;
+	    SubtreeKey other = (SubtreeKey)obj;
+	    if (hash != other.hash)
+		return false;
+	    XMLElement otherElement = other.element;
+	    if (element.getClass() != otherElement.getClass() || !equals(element.getTagName(), otherElement.getTagName()) 
+		    || !equals(element.getText(), otherElement.getText()))
+		return false;
+
+	    Attributes attributes = element.getAttributes();
+	    Attributes otherAttributes = otherElement.getAttributes();
+	    int length = (attributes == null ? 0 : attributes.getLength());
+	    if (length != (otherAttributes == null ? 0 : otherAttributes.getLength()))
+		return false;
+	    for (int i = 0; i < length; i++)
+		if (!equals(attributes.getQName(i), otherAttributes.getQName(i)) || !equals(attributes.getValue(i), otherAttributes.getValue(i)))
+		    return false;
+
+	    ArrayList<XMLElement> children = element.getChildren();
+	    ArrayList<XMLElement> otherChildren = otherElement.getChildren();
+	    int size = (children == null ? 0 : children.size());
+	    if (size != (otherChildren == null ? 0 : otherChildren.size()))
+		return false;
+	    for (int i = 0; i < size; i++)
+		if (children.get(i) != otherChildren.get(i))
+		    return false;
+	    return true;
+	}
+
+	/**
+	 * @param s
+	 * @return hash code of s, 0 if null
+	 */
+	static private int hashCode(String s) {
+	    return s == null ? 0 : s.hashCode();
+	}
+
+	/**
+	 * @param s1
+	 * @param s2
+	 * @return true if both are null or equal
+	 */
+	static private boolean equals(String s1, String s2) {
+	    return s1 == null ? s2 == null : s1.equals(s2);
+	}
+    }
+}
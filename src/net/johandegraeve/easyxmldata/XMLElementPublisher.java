@@ -0,0 +1,242 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Publishes the elements selected while streaming a document, see {@link EasyXMLDataParser#publish(java.io.InputStream, int)}.<br>
+ * Parsing starts when a subscriber subscribes, on a thread of the executor given when the publisher was created. Each selected element
+ * is handed over to {@link Flow.Subscriber#onNext(Object)} as soon as its end tag is reached and {@link XMLElement#complete()} is called,
+ * as with {@link EasyXMLDataParser#stream(java.io.InputStream, XMLElementSelector, XMLElementCallback)}.<br>
+ * The parser only continues when the subscriber has requested more elements : when there is no outstanding demand, the parsing thread
+ * waits in the end tag of the next selected element. So no more than one selected element is held by the publisher, whatever the
+ * speed of the subscriber. Because the parsing thread blocks, the executor should be one where waiting is acceptable.<br>
+ * When the document is parsed, {@link Flow.Subscriber#onComplete()} is called, if parsing fails {@link Flow.Subscriber#onError(Throwable)} 
+ * with the SAXParseException. {@link Flow.Subscription#cancel()} stops the parsing at the next selected element.<br>
+ * The document can be parsed only once, so a publisher accepts one subscriber, later subscribers receive an IllegalStateException 
+ * with onError.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public final class XMLElementPublisher implements Flow.Publisher<XMLElement> {
+
+    /**
+     * parses the document, with a callback that receives the selected elements
+     */
+    interface Source {
+
+	/**
+	 * parses the document
+	 * @param callback receives the selected elements
+	 * @throws SAXParseException
+	 */
+	void parse(XMLElementCallback callback) throws SAXParseException;
+    }
+
+    /**
+     * runs the parsing
+     */
+    private final Executor executor;
+
+    /**
+     * the document
+     */
+    private final Source source;
+
+    /**
+     * true when a subscriber has subscribed
+     */
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * constructor
+     * @param executor
+     * @param source
+     */
+    XMLElementPublisher(Executor executor, Source source) {
+	if (executor == null)
+	    throw new NullPointerException("executor should not be null");
+	this.executor = executor;
+	this.source = source;
+    }
+
+    /**
+     * @see java.util.concurrent.Flow.Publisher#subscribe(java.util.concurrent.Flow.Subscriber)
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super XMLElement> subscriber) {
+	if (subscriber == null)
+	    throw new NullPointerException("subscriber should not be null");
+	if (!subscribed.compareAndSet(false, true)) {
+	    subscriber.onSubscribe(new ElementSubscription(null));
+	    subscriber.onError(new IllegalStateException("XMLElementPublisher accepts only one subscriber"));
+	    return;
+	}
+	ElementSubscription subscription = new ElementSubscription(subscriber);
+	subscriber.onSubscribe(subscription);
+	try {
+	    executor.execute(subscription);
+	} catch (RuntimeException e) {
+	    //for instance RejectedExecutionException
+	    subscriber.onError(e);
+	}
+    }
+
+    /**
+     * the subscription, also parses the document and hands over the selected elements
+     */
+    private final class ElementSubscription implements Flow.Subscription, XMLElementCallback, Runnable {
+
+	/**
+	 * the subscriber, null for a subscription that is refused
+	 */
+	private final Flow.Subscriber<? super XMLElement> subscriber;
+
+	/**
+	 * guards {@link #demand}, {@link #cancelled} and {@link #requestError}
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * signalled when demand is added or the subscription is cancelled
+	 */
+	private final Condition changed = lock.newCondition();
+
+	/**
+	 * number of elements requested and not yet handed over, Long.MAX_VALUE means unbounded
+	 */
+	private long demand;
+
+	/**
+	 * true if cancelled by the subscriber
+	 */
+	private boolean cancelled;
+
+	/**
+	 * error caused by a call to {@link #request(long)} with a non-positive number, reported with onError
+	 */
+	private IllegalArgumentException requestError;
+
+	/**
+	 * constructor
+	 * @param subscriber
+	 */
+	ElementSubscription(Flow.Subscriber<? super XMLElement> subscriber) {
+	    this.subscriber = subscriber;
+	}
+
+	/**
+	 * @see java.util.concurrent.Flow.Subscription#request(long)
+	 */
+	@Override
+	public void request(long n) {
+	    lock.lock();
+	    try {
+		if (n <= 0) {
+		    if (requestError == null)
+			requestError = new IllegalArgumentException("number of elements requested should be positive : " + n);
+		} else {
+		    demand += n;
+		    if (demand < 0)
+			demand = Long.MAX_VALUE;
+		}
+		changed.signal();
+	    } finally {
+		lock.unlock();
+	    }
+	}
+
+	/**
+	 * @see java.util.concurrent.Flow.Subscription#cancel()
+	 */
+	@Override
+	public void cancel() {
+	    lock.lock();
+	    try {
+		cancelled = true;
+		changed.signal();
+	    } finally {
+		lock.unlock();
+	    }
+	}
+
+	/**
+	 * waits for demand and hands over the element
+	 * @see net.johandegraeve.easyxmldata.XMLElementCallback#elementParsed(net.johandegraeve.easyxmldata.XMLElement, int)
+	 */
+	@Override
+	public boolean elementParsed(XMLElement element, int depth) throws SAXException {
+	    lock.lock();
+	    try {
+		while (demand == 0 && !cancelled && requestError == null)
+		    changed.await();
+		if (cancelled || requestError != null)
+		    return false;
+		if (demand != Long.MAX_VALUE)
+		    demand--;
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new SAXException(e);
+	    } finally {
+		lock.unlock();
+	    }
+	    subscriber.onNext(element);
+	    return true;
+	}
+
+	/**
+	 * parses the document and sends the final signal
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+	    Throwable error = null;
+	    try {
+		source.parse(this);
+	    } catch (SAXParseException e) {
+		error = e;
+	    } catch (RuntimeException e) {
+		error = e;
+	    }
+	    lock.lock();
+	    try {
+		if (requestError != null)
+		    error = requestError;
+		else if (cancelled)
+		    return;
+	    } finally {
+		lock.unlock();
+	    }
+	    if (error != null)
+		subscriber.onError(error);
+	    else
+		subscriber.onComplete();
+	}
+    }
+}
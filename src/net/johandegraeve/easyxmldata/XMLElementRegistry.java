@@ -0,0 +1,40 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.List;
+
+/**
+ * A list of {@link XMLElementBinding}s, found with {@link java.util.ServiceLoader}.<br>
+ * Implementations are normally generated by the annotation processor for classes annotated with {@link XMLElementType}, 
+ * together with the file META-INF/services/net.johandegraeve.easyxmldata.XMLElementRegistry that registers them. The registries
+ * are loaded once, the first time the parser searches a class for a tag name, with the context class loader of that thread.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public interface XMLElementRegistry {
+
+    	/**
+    	 * called once, when the registries are loaded
+    	 * @return the bindings of this registry
+    	 */
+    	public List<XMLElementBinding> getBindings();
+}
@@ -0,0 +1,64 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+/**
+ * Selects the elements that are handed over to an {@link XMLElementCallback} while streaming, 
+ * see {@link EasyXMLDataParser#stream(java.net.URL, XMLElementSelector, XMLElementCallback)}.<br>
+ * 
+ * @author Johan Degraeve
+ *
+ */
+public interface XMLElementSelector {
+
+    	/**
+    	 * called when the end tag of an element is reached, after {@link XMLElement#complete()}.
+    	 * @param tagName the name of the tag as found in the XML document
+    	 * @param depth the depth of the element, the root element has depth 0, its children depth 1, ..
+    	 * @return true if the element must be handed over to the callback instead of being added to its parent
+    	 */
+    	public boolean select(String tagName, int depth);
+
+    	/**
+    	 * creates a selector that selects all elements at a depth
+    	 * @param depth the depth, the root element has depth 0, its children depth 1, ..
+    	 * @return the selector
+    	 */
+    	public static XMLElementSelector forDepth(final int depth) {
+    	    return new XMLElementSelector() {
+    		public boolean select(String tagName, int elementDepth) {
+    		    return elementDepth == depth;
+    		}
+    	    };
+    	}
+
+    	/**
+    	 * creates a selector that selects all elements with a tag name, at any depth
+    	 * @param tagName the tag name
+    	 * @return the selector
+    	 */
+    	public static XMLElementSelector forTagName(final String tagName) {
+    	    return new XMLElementSelector() {
+    		public boolean select(String elementTagName, int depth) {
+    		    return tagName.equals(elementTagName);
+    		}
+    	    };
+    	}
+}
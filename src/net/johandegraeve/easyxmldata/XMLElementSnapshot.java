@@ -0,0 +1,175 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes {@link XMLElement} trees in a compact binary format and reads them back, so that a document parsed once can be
+ * stored and reloaded much faster than parsing the XML again.<br>
+ * <br>
+ * The format consists of a header, a table of all tag names, attribute names and class names, a table of classes and the tree
+ * in document order. Names are written once and referred to by their index, numbers are written as variable length integers and
+ * strings as UTF-8. Elements are written per class :
+ * <ul>
+ * <li>{@link DefaultXMLElement} and {@link CompactXMLElement} : tag name, attributes, text and children, read back as the same class</li>
+ * <li>classes with a codec registered with {@link #registerCodec(Class, XMLElementCodec)} : the bytes written by the codec, and the children</li>
+ * <li>other classes with a no-argument constructor : attributes, text and children, as returned by the methods of {@link XMLElement}.
+ * When reading, an instance is created and the methods of {@link XMLElement} are called as when parsing : 
+ * {@link XMLElement#addAttributes(org.xml.sax.Attributes)}, {@link XMLElement#addChild(XMLElement)} for each child, 
+ * {@link XMLElement#addUnTrimmedText(String)} and/or {@link XMLElement#addText(String)}, and {@link XMLElement#complete()}.
+ * This works for classes that return the attributes and text they received.</li>
+ * <li>other classes, like {@link LazyXMLElement} : tag name, attributes, text and children, read back as a {@link CompactXMLElement}</li>
+ * </ul>
+ * Attribute types are not kept, all attributes are read back as CDATA.<br>
+ * An XMLElementSnapshot can be used by several threads at the same time, once the codecs are registered.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public class XMLElementSnapshot {
+
+    /**
+     * first bytes of a snapshot, the last one is the version of the format
+     */
+    static final byte[] MAGIC = {'E', 'X', 'D', 'S', 1};
+
+    /**
+     * the codecs, per class
+     */
+    private final ConcurrentMap<Class<?>, XMLElementCodec<?>> codecs = new ConcurrentHashMap<Class<?>, XMLElementCodec<?>>();
+
+    /**
+     * the codecs, per class name
+     */
+    private final ConcurrentMap<String, XMLElementCodec<?>> codecsByName = new ConcurrentHashMap<String, XMLElementCodec<?>>();
+
+    /**
+     * registers a codec for a class, the codec is used for instances of exactly this class, not for subclasses.<br>
+     * The same codec must be registered when reading the snapshot.
+     * @param elementClass
+     * @param codec
+     */
+    public <T extends XMLElement> void registerCodec(Class<T> elementClass, XMLElementCodec<T> codec) {
+	if (elementClass == null || codec == null)
+	    throw new NullPointerException("elementClass and codec should not be null");
+	codecs.put(elementClass, codec);
+	codecsByName.put(elementClass.getName(), codec);
+    }
+
+    /**
+     * get the codec for a class
+     * @param elementClass
+     * @return the codec, null if none registered
+     */
+    XMLElementCodec<?> getCodec(Class<?> elementClass) {
+	return codecs.isEmpty() ? null : codecs.get(elementClass);
+    }
+
+    /**
+     * get the codec for a class name
+     * @param className
+     * @return the codec, null if none registered
+     */
+    XMLElementCodec<?> getCodec(String className) {
+	return codecsByName.isEmpty() ? null : codecsByName.get(className);
+    }
+
+    /**
+     * creates the snapshot of a tree
+     * @param root
+     * @return the snapshot
+     * @throws IOException if a codec fails
+     */
+    public byte[] toBytes(XMLElement root) throws IOException {
+	return new SnapshotEncoder(this).encode(root);
+    }
+
+    /**
+     * writes the snapshot of a tree, the stream is not closed
+     * @param root
+     * @param out
+     * @throws IOException
+     */
+    public void write(XMLElement root, OutputStream out) throws IOException {
+	out.write(toBytes(root));
+	out.flush();
+    }
+
+    /**
+     * writes the snapshot of a tree to a file, the file is created or replaced
+     * @param root
+     * @param path
+     * @throws IOException
+     */
+    public void write(XMLElement root, Path path) throws IOException {
+	byte[] bytes = toBytes(root);
+	try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+	    out.write(bytes);
+	}
+    }
+
+    /**
+     * reads a tree from the remaining bytes of a buffer, the position of the buffer is not changed
+     * @param buffer a heap, direct or mapped buffer
+     * @return the root element
+     * @throws IOException if the buffer does not contain a valid snapshot, if a class is not found or if an element refuses 
+     * its attributes, text or children
+     */
+    public XMLElement read(ByteBuffer buffer) throws IOException {
+	return new SnapshotDecoder(this, buffer.slice()).decode();
+    }
+
+    /**
+     * reads a tree from a snapshot, the stream is read until its end and closed
+     * @param in
+     * @return the root element
+     * @throws IOException see {@link #read(ByteBuffer)}
+     */
+    public XMLElement read(InputStream in) throws IOException {
+	try (InputStream input = in) {
+	    return read(ByteBuffer.wrap(input.readAllBytes()));
+	}
+    }
+
+    /**
+     * reads a tree from a snapshot file, which is mapped in memory
+     * @param path
+     * @return the root element
+     * @throws IOException see {@link #read(ByteBuffer)}, also if the file is larger than 2 GB
+     */
+    public XMLElement read(Path path) throws IOException {
+	try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+	    if (channel.size() > Integer.MAX_VALUE)
+		throw new IOException("snapshot " + path + " is larger than 2 GB");
+	    return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+	}
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.List;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Computes a result per element from the results of its children, see {@link ParallelTreeWalker#transform(XMLElement, XMLElementTransformer)}.<br>
+ * The children are transformed before their parent, so the result of the element the walk starts from is built bottom-up, 
+ * for instance a new tree of other classes or a serialized form of the tree.<br>
+ * The method is called concurrently on several threads, for different elements.
+ * 
+ * @author Johan Degraeve
+ *
+ * @param <R> type of the result
+ */
+public interface XMLElementTransformer<R> {
+
+    	/**
+    	 * computes the result for an element
+    	 * @param element the element
+    	 * @param depth the depth of the element, the element the walk starts from has depth 0
+    	 * @param children the results of the children of element, in document order, empty if element has no children, read only
+    	 * @return the result
+    	 * @throws SAXException stops the walk, the walker throws the exception
+    	 */
+    	public R transform(XMLElement element, int depth, List<R> children) throws SAXException;
+}
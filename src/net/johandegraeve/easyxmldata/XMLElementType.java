@@ -0,0 +1,61 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an {@link XMLElement} class for the annotation processor <code>net.johandegraeve.easyxmldata.processor.XMLElementProcessor</code>, 
+ * in the artifact easyxmldata-processor.<br>
+ * The processor generates a class GeneratedXMLElementRegistry in the package of the annotated classes, which implements 
+ * {@link XMLElementRegistry} and is registered as a service provider. When it is on the classpath, {@link EasyXMLDataParser} creates the 
+ * annotated classes through the registry, without Class.forName and without reflection, and {@link Utilities#verifyChildType(XMLElement, XMLElement)}, 
+ * {@link Utilities#getMandatoryAttributeValues(XMLElement, org.xml.sax.Attributes)} and {@link Utilities#getOptionalAttributeValues(XMLElement, org.xml.sax.Attributes, String[])}
+ * use the children and attributes declared here.<br>
+ * The tag name of the class is still found as configured in the parser : package name + prefix name + tag name.<br>
+ * The annotated class must be public or package private, not abstract, not an inner class, and have a no-argument constructor that is not private.
+ *
+ * @author Johan Degraeve
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface XMLElementType {
+
+    	/**
+    	 * @return the classes allowed as child, empty if no children are allowed
+    	 */
+    	Class<? extends XMLElement>[] children() default {};
+
+    	/**
+    	 * @return the names of the attributes that must be present
+    	 */
+    	String[] mandatoryAttributes() default {};
+
+    	/**
+    	 * @return the names of the attributes that may be present
+    	 */
+    	String[] optionalAttributes() default {};
+}
@@ -0,0 +1,54 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Computes a result per element, and combines the results of a tree in document order, see {@link ParallelTreeWalker#visit(XMLElement, XMLElementVisitor)}.<br>
+ * For an element with children c1, c2, .. the result of the subtree is
+ * <code>combine(visit(element), combine(combine(result of c1, result of c2), ..))</code>, the results of subtrees next to each other
+ * may be combined in any grouping, but never in another order. So combine must be associative, for instance adding up counts or 
+ * concatenating strings, but it does not need to be commutative.<br>
+ * The methods are called concurrently on several threads, for different elements.
+ * 
+ * @author Johan Degraeve
+ *
+ * @param <R> type of the result
+ */
+public interface XMLElementVisitor<R> {
+
+    	/**
+    	 * computes the result for one element, without its children
+    	 * @param element the element
+    	 * @param depth the depth of the element, the element the walk starts from has depth 0
+    	 * @return the result
+    	 * @throws SAXException stops the walk, the walker throws the exception
+    	 */
+    	public R visit(XMLElement element, int depth) throws SAXException;
+
+    	/**
+    	 * combines the results of two parts of the tree, first comes before second in document order
+    	 * @param first
+    	 * @param second
+    	 * @return the combined result
+    	 */
+    	public R combine(R first, R second);
+}
@@ -0,0 +1,371 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.xml.sax.Attributes;
+
+/**
+ * Writes the XML representation of an {@link XMLElement} tree directly to an {@link Appendable}, {@link Writer},
+ * {@link OutputStream} or {@link WritableByteChannel}, without creating a String per element.<br>
+ * The output is the same as the one of {@link Utilities#createXML(XMLElement, int)}, it does not include the XML declaration.
+ * OutputStreams and channels receive the output encoded in UTF-8.<br>
+ * Characters are collected in one buffer that is reused for the whole tree, so the memory needed does not depend on the size of the tree.
+ * Call {@link #flush()} when done, the writer does not close the underlying output.<br>
+ * An XMLElementWriter is not thread safe.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public class XMLElementWriter {
+
+    /**
+     * size of the character buffer
+     */
+    static private final int BUFFER_SIZE = 8192;
+
+    /**
+     * number of spaces added per level
+     */
+    static private final int INDENT_STEP = 3;
+
+    /**
+     * spaces used for indentation, grown when needed
+     */
+    static private volatile char[] spaces = createSpaces(64);
+
+    /**
+     * the output if it is a StringBuilder, characters are then appended directly without buffering
+     */
+    private final StringBuilder stringBuilder;
+
+    /**
+     * the output if it is a Writer
+     */
+    private final Writer writer;
+
+    /**
+     * the output if it is an Appendable that is not a Writer or a StringBuilder
+     */
+    private final Appendable appendable;
+
+    /**
+     * the output if it is an OutputStream
+     */
+    private final OutputStream outputStream;
+
+    /**
+     * the output if it is a channel
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * the characters not yet written
+     */
+    private final char[] buffer;
+
+    /**
+     * number of characters in {@link #buffer}
+     */
+    private int count;
+
+    /**
+     * UTF-8 encoder, only for OutputStream and channel
+     */
+    private final CharsetEncoder encoder;
+
+    /**
+     * buffer for the encoded bytes, only for OutputStream and channel
+     */
+    private final ByteBuffer byteBuffer;
+
+    /**
+     * constructor, the XML will be appended to out
+     * @param out
+     */
+    public XMLElementWriter(Appendable out) {
+	if (out == null)
+	    throw new NullPointerException("out should not be null");
+	stringBuilder = (out instanceof StringBuilder ? (StringBuilder)out : null);
+	writer = (out instanceof Writer ? (Writer)out : null);
+	appendable = (stringBuilder == null && writer == null ? out : null);
+	outputStream = null;
+	channel = null;
+	buffer = (stringBuilder == null ? new char[BUFFER_SIZE] : null);
+	encoder = null;
+	byteBuffer = null;
+    }
+
+    /**
+     * constructor, the XML will be written to out encoded in UTF-8
+     * @param out
+     */
+    public XMLElementWriter(OutputStream out) {
+	this(out, null);
+    }
+
+    /**
+     * constructor, the XML will be written to channel encoded in UTF-8
+     * @param channel
+     */
+    public XMLElementWriter(WritableByteChannel channel) {
+	this(null, channel);
+    }
+
+    /**
+     * constructor for byte output, one of both must be non null
+     * @param out
+     * @param channel
+     */
+    private XMLElementWriter(OutputStream out, WritableByteChannel channel) {
+	if (out == null && channel == null)
+	    throw new NullPointerException("out should not be null");
+	stringBuilder = null;
+	writer = null;
+	appendable = null;
+	outputStream = out;
+	this.channel = channel;
+	buffer = new char[BUFFER_SIZE];
+	encoder = StandardCharsets.UTF_8.newEncoder()
+		.onMalformedInput(CodingErrorAction.REPLACE)
+		.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	byteBuffer = ByteBuffer.allocate((int)(BUFFER_SIZE * encoder.maxBytesPerChar()));
+    }
+
+    /**
+     * writes the XML representation of input, without indentation
+     * @param input if null nothing is written
+     * @throws IOException
+     */
+    public void write(XMLElement input) throws IOException {
+	write(input, 0);
+    }
+
+    /**
+     * writes the XML representation of input
+     * @param input if null nothing is written
+     * @param indent starting indentation
+     * @throws IOException
+     */
+    public void write(XMLElement input, int indent) throws IOException {
+	if (input == null) return;
+	boolean preserveSpaces = input.preserveSpaces();
+	String text = input.getText();
+
+	indent(indent);
+	append('<');
+	append(input.getTagName());
+	Attributes attributes = input.getAttributes();
+	if (attributes != null)
+	    for (int i = 0; i < attributes.getLength(); i++) {
+		append(' ');
+		append(attributes.getQName(i));
+		append('=');
+		append('"');
+		append(attributes.getValue(i));
+		append('"');
+	    }
+	append('>');
+	if (text == null || !preserveSpaces)
+	    append('\n');
+
+	if (text != null) {
+	    if (!preserveSpaces)
+		//shifting to the right, as far as the current value of the indentation, plus three blanks
+		indent(indent + INDENT_STEP);
+	    append("<![CDATA[");
+	    append(text);
+	    append("]]>");
+	    if (!preserveSpaces)
+		append('\n');
+	}
+
+	ArrayList<XMLElement> list = input.getChildren();
+	if (list != null) {
+	    for (int i = 0; i < list.size(); i++)
+		write(list.get(i), indent + INDENT_STEP);
+	}
+
+	if (!preserveSpaces)
+	    indent(indent);
+	append("</");
+	append(input.getTagName());
+	append(">\n");
+    }
+
+    /**
+     * writes all buffered characters to the output, and flushes the output if it is a Writer or an OutputStream
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+	flushBuffer(true);
+	if (writer != null)
+	    writer.flush();
+	if (outputStream != null)
+	    outputStream.flush();
+    }
+
+    /**
+     * creates an array of spaces
+     * @param length
+     * @return the array
+     */
+    static private char[] createSpaces(int length) {
+	char[] returnvalue = new char[length];
+	Arrays.fill(returnvalue, ' ');
+	return returnvalue;
+    }
+
+    /**
+     * appends spaces
+     * @param indent number of spaces
+     * @throws IOException
+     */
+    private void indent(int indent) throws IOException {
+	if (indent <= 0) return;
+	char[] available = spaces;
+	if (available.length < indent) {
+	    available = createSpaces(Math.max(indent, 2 * available.length));
+	    spaces = available;
+	}
+	append(available, 0, indent);
+    }
+
+    /**
+     * appends one character
+     * @param c
+     * @throws IOException
+     */
+    private void append(char c) throws IOException {
+	if (stringBuilder != null) {
+	    stringBuilder.append(c);
+	    return;
+	}
+	if (count == buffer.length)
+	    flushBuffer(false);
+	buffer[count++] = c;
+    }
+
+    /**
+     * appends a string, &quot;null&quot; if s is null
+     * @param s
+     * @throws IOException
+     */
+    private void append(String s) throws IOException {
+	if (s == null)
+	    s = "null";
+	if (stringBuilder != null) {
+	    stringBuilder.append(s);
+	    return;
+	}
+	int offset = 0;
+	int length = s.length();
+	while (offset < length) {
+	    if (count == buffer.length)
+		flushBuffer(false);
+	    int chunk = Math.min(length - offset, buffer.length - count);
+	    s.getChars(offset, offset + chunk, buffer, count);
+	    count += chunk;
+	    offset += chunk;
+	}
+    }
+
+    /**
+     * appends characters
+     * @param chars
+     * @param offset
+     * @param length
+     * @throws IOException
+     */
+    private void append(char[] chars, int offset, int length) throws IOException {
+	if (stringBuilder != null) {
+	    stringBuilder.append(chars, offset, length);
+	    return;
+	}
+	while (length > 0) {
+	    if (count == buffer.length)
+		flushBuffer(false);
+	    int chunk = Math.min(length, buffer.length - count);
+	    System.arraycopy(chars, offset, buffer, count, chunk);
+	    count += chunk;
+	    offset += chunk;
+	    length -= chunk;
+	}
+    }
+
+    /**
+     * writes the buffered characters to the output
+     * @param endOfInput true if no more characters will follow, only relevant for encoding a surrogate pair split over two calls
+     * @throws IOException
+     */
+    private void flushBuffer(boolean endOfInput) throws IOException {
+	if (buffer == null || count == 0) return;
+	if (writer != null) {
+	    writer.write(buffer, 0, count);
+	    count = 0;
+	} else if (appendable != null) {
+	    appendable.append(CharBuffer.wrap(buffer, 0, count));
+	    count = 0;
+	} else {
+	    CharBuffer chars = CharBuffer.wrap(buffer, 0, count);
+	    CoderResult result;
+	    do {
+		result = encoder.encode(chars, byteBuffer, endOfInput);
+		writeBytes();
+	    } while (result.isOverflow());
+	    if (endOfInput) {
+		encoder.flush(byteBuffer);
+		writeBytes();
+		encoder.reset();
+	    }
+	    //keep a high surrogate waiting for its low surrogate
+	    count = chars.remaining();
+	    if (count > 0)
+		System.arraycopy(buffer, chars.position(), buffer, 0, count);
+	}
+    }
+
+    /**
+     * writes the content of {@link #byteBuffer} to the output stream or channel, and clears it
+     * @throws IOException
+     */
+    private void writeBytes() throws IOException {
+	byteBuffer.flip();
+	if (outputStream != null) {
+	    outputStream.write(byteBuffer.array(), 0, byteBuffer.limit());
+	} else {
+	    while (byteBuffer.hasRemaining())
+		channel.write(byteBuffer);
+	}
+	byteBuffer.clear();
+    }
+}
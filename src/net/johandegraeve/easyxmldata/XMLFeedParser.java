@@ -0,0 +1,910 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.LocatorImpl;
+
+/**
+ * Parses a document that arrives in chunks, for instance from a non-blocking channel, see {@link EasyXMLDataParser#newFeedParser()}.<br>
+ * Each chunk is handed over with {@link #feed(ByteBuffer)}, which parses as far as the data allows and returns without waiting for
+ * more data : elements whose end tag has arrived are created and completed, text is added to the open element as it arrives. 
+ * {@link #endOfInput()} parses the rest and returns the root element.<br>
+ * The elements are created and completed by the same handler as with {@link EasyXMLDataParser#parse(java.io.InputStream)}, so the
+ * tree and the calls to the {@link XMLElement} methods are identical.<br>
+ * The encoding is taken from the byte order mark or the XML declaration, UTF-8 if there is none. Like {@link LazyXMLElement}, the feed
+ * parser does not support document type declarations, so the only entities are the predefined ones and character references.<br>
+ * An XMLFeedParser parses one document, and is not thread safe. After an exception, all calls throw the same exception.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public final class XMLFeedParser {
+
+    /**
+     * maximum number of bytes of an XML declaration, longer declarations are not searched for an encoding
+     */
+    static private final int MAX_DECLARATION_LENGTH = 1024;
+
+    /**
+     * before the root element
+     */
+    static private final int PROLOG = 0;
+
+    /**
+     * inside the root element
+     */
+    static private final int CONTENT = 1;
+
+    /**
+     * after the root element
+     */
+    static private final int EPILOG = 2;
+
+    /**
+     * after {@link #endOfInput()}
+     */
+    static private final int DONE = 3;
+
+    /**
+     * creates the elements
+     */
+    private final XMLElementHandler handler;
+
+    /**
+     * tag names and attribute names
+     */
+    private final SymbolTable symbols = new SymbolTable();
+
+    /**
+     * attributes of the start tag being parsed
+     */
+    private final AttributesImpl attributes = new AttributesImpl();
+
+    /**
+     * the first bytes, until the encoding is known
+     */
+    private byte[] head = new byte[64];
+
+    /**
+     * number of bytes in {@link #head}
+     */
+    private int headLength;
+
+    /**
+     * decodes the bytes, null until the encoding is known
+     */
+    private CharsetDecoder decoder;
+
+    /**
+     * bytes that are not yet decoded, for instance the first bytes of a character that is split over two chunks
+     */
+    private ByteBuffer undecoded = ByteBuffer.allocate(16);
+
+    /**
+     * decoded characters, from {@link #start} to {@link #end} not yet parsed
+     */
+    private char[] chars = new char[8192];
+
+    /**
+     * offset in {@link #chars} of the first character not yet parsed
+     */
+    private int start;
+
+    /**
+     * offset in {@link #chars} after the last decoded character
+     */
+    private int end;
+
+    /**
+     * offset in {@link #chars} from which to continue searching the end of the construct at {@link #start}, so that a long 
+     * construct which arrives in many chunks is not searched from the start each time
+     */
+    private int searchFrom;
+
+    /**
+     * the quote in which {@link #searchFrom} is, while searching the end of a start tag, 0 if none
+     */
+    private char searchQuote;
+
+    /**
+     * {@link #PROLOG}, {@link #CONTENT}, {@link #EPILOG} or {@link #DONE}
+     */
+    private int state = PROLOG;
+
+    /**
+     * names of the open elements
+     */
+    private String[] open = new String[16];
+
+    /**
+     * number of open elements
+     */
+    private int depth;
+
+    /**
+     * for decoding text and attribute values that contain references or carriage returns
+     */
+    private StringBuilder decoded = new StringBuilder();
+
+    /**
+     * line of {@link #start}
+     */
+    private int line = 1;
+
+    /**
+     * column of {@link #start}
+     */
+    private int column = 1;
+
+    /**
+     * the exception that stopped the parsing, thrown again by all calls
+     */
+    private SAXParseException failure;
+
+    /**
+     * constructor
+     * @param configuration the parser that defines the classes to use
+     * @throws SAXParseException
+     */
+    XMLFeedParser(EasyXMLDataParser configuration) throws SAXParseException {
+	handler = new XMLElementHandler(configuration);
+	handler.setDocumentLocator(new Locator() {
+	    public String getPublicId() {
+		return null;
+	    }
+	    public String getSystemId() {
+		return null;
+	    }
+	    public int getLineNumber() {
+		return line;
+	    }
+	    public int getColumnNumber() {
+		return column;
+	    }
+	});
+	try {
+	    handler.startDocument();
+	} catch (Exception e) {
+	    throw fail(e);
+	}
+    }
+
+    /**
+     * parses a chunk of the document, as far as possible. Returns without waiting for more data.
+     * @param chunk the bytes from position to limit, all of them are consumed
+     * @throws SAXParseException if the document is not well formed, or thrown by an element
+     * @throws IllegalStateException if called after {@link #endOfInput()}
+     */
+    public void feed(ByteBuffer chunk) throws SAXParseException {
+	check();
+	if (chunk == null)
+	    throw new NullPointerException("chunk should not be null");
+	try {
+	    if (decoder == null) {
+		addHead(chunk);
+		if (!detectEncoding(false))
+		    return;
+	    } else
+		addUndecoded(chunk);
+	    decode(false);
+	    parse(false);
+	} catch (Exception e) {
+	    throw fail(e);
+	}
+    }
+
+    /**
+     * parses a chunk of the document, as far as possible, see {@link #feed(ByteBuffer)}
+     * @param bytes
+     * @param offset
+     * @param length
+     * @throws SAXParseException
+     */
+    public void feed(byte[] bytes, int offset, int length) throws SAXParseException {
+	feed(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * parses the rest of the document, after the last chunk
+     * @return the root element
+     * @throws SAXParseException if the document is not well formed or not complete, or thrown by an element
+     * @throws IllegalStateException if called twice
+     */
+    public XMLElement endOfInput() throws SAXParseException {
+	check();
+	try {
+	    if (decoder == null)
+		detectEncoding(true);
+	    decode(true);
+	    parse(true);
+	    if (state == PROLOG)
+		throw error("Premature end of file.");
+	    if (state == CONTENT)
+		throw error("XML document structures must start and end within the same entity.");
+	    state = DONE;
+	    handler.endDocument();
+	    return handler.getRoot();
+	} catch (Exception e) {
+	    throw fail(e);
+	}
+    }
+
+    /**
+     * @return true after {@link #endOfInput()} has returned the root element
+     */
+    public boolean isDone() {
+	return state == DONE;
+    }
+
+    /**
+     * @return number of elements started and not yet ended
+     */
+    public int getDepth() {
+	return depth;
+    }
+
+    /**
+     * throws the exception that stopped the parsing, if any
+     * @throws SAXParseException
+     */
+    private void check() throws SAXParseException {
+	if (failure != null)
+	    throw failure;
+	if (state == DONE)
+	    throw new IllegalStateException("endOfInput has already been called");
+    }
+
+    /**
+     * remembers the exception that stopped the parsing
+     * @param e
+     * @return the exception to throw, as thrown by {@link EasyXMLDataParser#parse(java.io.InputStream)}
+     */
+    private SAXParseException fail(Exception e) {
+	if (failure == null)
+	    failure = new SAXParseException("Exception : \n" + 
+		    e.toString() +  "\n", new LocatorImpl(handler.getLocator()));
+	return failure;
+    }
+
+    /**
+     * @param message
+     * @return an exception for a document that is not well formed, at {@link #start}
+     */
+    private SAXParseException error(String message) {
+	LocatorImpl locator = new LocatorImpl();
+	locator.setLineNumber(line);
+	locator.setColumnNumber(column);
+	return new SAXParseException(message, locator);
+    }
+
+    /**
+     * adds bytes to {@link #head}
+     * @param chunk
+     */
+    private void addHead(ByteBuffer chunk) {
+	int length = chunk.remaining();
+	if (headLength + length > head.length)
+	    head = Arrays.copyOf(head, Math.max(2 * head.length, headLength + length));
+	chunk.get(head, headLength, length);
+	headLength += length;
+    }
+
+    /**
+     * adds bytes to {@link #undecoded}
+     * @param chunk
+     */
+    private void addUndecoded(ByteBuffer chunk) {
+	if (undecoded.remaining() < chunk.remaining()) {
+	    ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * undecoded.capacity(), undecoded.position() + chunk.remaining()));
+	    undecoded.flip();
+	    larger.put(undecoded);
+	    undecoded = larger;
+	}
+	undecoded.put(chunk);
+    }
+
+    /**
+     * creates the decoder when the bytes in {@link #head} tell the encoding
+     * @param last true if there are no more bytes
+     * @return true if the decoder is created
+     * @throws SAXParseException if the encoding in the XML declaration is not supported
+     */
+    private boolean detectEncoding(boolean last) throws SAXParseException {
+	//enough bytes for a byte order mark or the start of an XML declaration
+	if (headLength < 5 && !last)
+	    return false;
+	Charset charset = StandardCharsets.UTF_8;
+	if (startsWith(0xFE, 0xFF) || startsWith(0xFF, 0xFE)) {
+	    charset = StandardCharsets.UTF_16;
+	} else if (startsWith(0x3C, 0x3F, 0x78, 0x6D, 0x6C)) {
+	    //<?xml, the encoding is in the declaration
+	    int declarationEnd = -1;
+	    for (int i = 5; i + 1 < headLength && i < MAX_DECLARATION_LENGTH && declarationEnd < 0; i++)
+		if (head[i] == '?' && head[i + 1] == '>')
+		    declarationEnd = i;
+	    if (declarationEnd < 0 && !last && headLength < MAX_DECLARATION_LENGTH)
+		return false;
+	    String encoding = declarationEnd < 0 ? null : encodingOf(new String(head, 0, declarationEnd, StandardCharsets.ISO_8859_1));
+	    if (encoding != null) {
+		try {
+		    charset = Charset.forName(encoding);
+		} catch (IllegalArgumentException e) {
+		    throw error("Invalid encoding name \"" + encoding + "\".");
+		}
+	    }
+	}
+	decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT);
+	addUndecoded(ByteBuffer.wrap(head, 0, headLength));
+	head = null;
+	return true;
+    }
+
+    /**
+     * @param bytes
+     * @return true if {@link #head} starts with the bytes
+     */
+    private boolean startsWith(int... bytes) {
+	if (headLength < bytes.length)
+	    return false;
+	for (int i = 0; i < bytes.length; i++)
+	    if ((head[i] & 0xFF) != bytes[i])
+		return false;
+	return true;
+    }
+
+    /**
+     * @param declaration the XML declaration
+     * @return the value of the encoding pseudo attribute, null if none
+     */
+    static private String encodingOf(String declaration) {
+	int index = declaration.indexOf("encoding");
+	if (index < 0)
+	    return null;
+	index = declaration.indexOf('=', index);
+	if (index < 0)
+	    return null;
+	index++;
+	while (index < declaration.length() && isWhitespace(declaration.charAt(index)))
+	    index++;
+	if (index >= declaration.length())
+	    return null;
+	char quote = declaration.charAt(index);
+	int valueEnd = declaration.indexOf(quote, index + 1);
+	if ((quote != '"' && quote != '\'') || valueEnd < 0)
+	    return null;
+	return declaration.substring(index + 1, valueEnd);
+    }
+
+    /**
+     * decodes {@link #undecoded} into {@link #chars}
+     * @param last true if there are no more bytes
+     * @throws SAXParseException if the bytes are not valid in the encoding
+     */
+    private void decode(boolean last) throws SAXParseException {
+	//keep the characters not yet parsed at the start of the array
+	if (start > 0) {
+	    System.arraycopy(chars, start, chars, 0, end - start);
+	    end -= start;
+	    searchFrom -= start;
+	    start = 0;
+	}
+	undecoded.flip();
+	while (true) {
+	    CharBuffer out = CharBuffer.wrap(chars, end, chars.length - end);
+	    CoderResult result = decoder.decode(undecoded, out, last);
+	    if (last && result.isUnderflow())
+		result = decoder.flush(out);
+	    end = out.position();
+	    if (result.isError())
+		throw error("Invalid byte " + (undecoded.position() + 1) + " of " + result.length() + "-byte " + 
+			decoder.charset().name() + " sequence.");
+	    if (result.isUnderflow())
+		break;
+	    chars = Arrays.copyOf(chars, 2 * chars.length);
+	}
+	undecoded.compact();
+	if (last && undecoded.position() > 0)
+	    throw error("Invalid byte 1 of " + undecoded.position() + "-byte " + decoder.charset().name() + " sequence.");
+    }
+
+    /**
+     * parses the decoded characters as far as possible
+     * @param last true if there are no more characters
+     * @throws SAXException
+     */
+    private void parse(boolean last) throws SAXException {
+	if (line == 1 && column == 1 && start < end && chars[start] == '\uFEFF')
+	    start++;
+	while (start < end) {
+	    if (chars[start] != '<') {
+		if (state == CONTENT) {
+		    if (!text(last))
+			return;
+		} else {
+		    int pos = start;
+		    while (pos < end && isWhitespace(chars[pos]))
+			pos++;
+		    consume(pos);
+		    if (pos < end && chars[pos] != '<')
+			throw error(state == PROLOG ? "Content is not allowed in prolog." : "Content is not allowed in trailing section.");
+		}
+		continue;
+	    }
+	    //need enough characters to know what construct starts here
+	    if (end - start < 2 || (chars[start + 1] == '!' && end - start < 9)) {
+		if (!last)
+		    return;
+		if (end - start < 2)
+		    throw error("XML document structures must start and end within the same entity.");
+	    }
+	    boolean complete;
+	    char next = chars[start + 1];
+	    if (next == '/')
+		complete = endTag();
+	    else if (next == '?')
+		complete = processingInstruction();
+	    else if (startsWith("<!--"))
+		complete = comment();
+	    else if (startsWith("<![CDATA[")) {
+		if (state != CONTENT)
+		    throw error("The markup in the document " + (state == PROLOG ? "preceding" : "following") + " the root element must be well-formed.");
+		complete = cdata();
+	    } else if (next == '!') {
+		if (startsWith("<!DOCTYPE"))
+		    throw error("Document type declarations are not supported when parsing incrementally.");
+		throw error("The markup in the document " + (state == EPILOG ? "following" : "preceding") + " the root element must be well-formed.");
+	    } else
+		complete = startTag();
+	    if (!complete) {
+		if (last)
+		    throw error("XML document structures must start and end within the same entity.");
+		return;
+	    }
+	}
+    }
+
+    /**
+     * parses text in an element, up to the next '&lt;' or as far as the characters allow
+     * @param last
+     * @return false if more characters are needed
+     * @throws SAXException
+     */
+    private boolean text(boolean last) throws SAXException {
+	int pos = Math.max(start, searchFrom);
+	while (pos < end && chars[pos] != '<')
+	    pos++;
+	int textEnd = pos;
+	if (pos == end) {
+	    if (last)
+		throw error("XML document structures must start and end within the same entity.");
+	    //keep an incomplete reference, a carriage return that may be followed by a line feed and ']' that may start "]]>" for later
+	    for (int i = end - 1; i >= start && i >= end - 16; i--) {
+		if (chars[i] == ';')
+		    break;
+		if (chars[i] == '&') {
+		    textEnd = i;
+		    break;
+		}
+	    }
+	    if (textEnd > start && chars[textEnd - 1] == '\r')
+		textEnd--;
+	    else if (textEnd == end)
+		while (textEnd > start && textEnd > end - 2 && chars[textEnd - 1] == ']')
+		    textEnd--;
+	    if (textEnd == start) {
+		searchFrom = end;
+		return false;
+	    }
+	}
+	boolean plain = true;
+	for (int i = start; i < textEnd; i++) {
+	    char c = chars[i];
+	    if (c == '&' || c == '\r')
+		plain = false;
+	    else if (c == ']' && i + 2 < end && chars[i + 1] == ']' && chars[i + 2] == '>')
+		throw error("The character sequence \"]]>\" must not appear in content unless used to mark the end of a CDATA section.");
+	    else if (!XMLChars.isChar(c))
+		throw invalidChar(c, "the element content of the document");
+	}
+	if (plain)
+	    handler.characters(chars, start, textEnd - start);
+	else {
+	    decoded.setLength(0);
+	    decode(start, textEnd, false);
+	    char[] text = new char[decoded.length()];
+	    decoded.getChars(0, text.length, text, 0);
+	    handler.characters(text, 0, text.length);
+	}
+	consume(textEnd);
+	return true;
+    }
+
+    /**
+     * parses a CDATA section
+     * @return false if more characters are needed
+     * @throws SAXException
+     */
+    private boolean cdata() throws SAXException {
+	int sectionEnd = indexOf("]]>", start + 9);
+	if (sectionEnd < 0)
+	    return false;
+	checkChars(start + 9, sectionEnd, "the CDATA section");
+	int from = start + 9;
+	for (int i = from; i < sectionEnd; i++) {
+	    if (chars[i] == '\r') {
+		//line ends are normalized to a line feed
+		handler.characters(chars, from, i - from);
+		handler.characters(new char[] {'\n'}, 0, 1);
+		from = (i + 1 < sectionEnd && chars[i + 1] == '\n') ? i + 2 : i + 1;
+		i = from - 1;
+	    }
+	}
+	if (sectionEnd > from)
+	    handler.characters(chars, from, sectionEnd - from);
+	consume(sectionEnd + 3);
+	return true;
+    }
+
+    /**
+     * parses an end tag
+     * @return false if more characters are needed
+     * @throws SAXException
+     */
+    private boolean endTag() throws SAXException {
+	int tagEnd = indexOf(">", start + 2);
+	if (tagEnd < 0)
+	    return false;
+	if (state != CONTENT)
+	    throw error("The markup in the document " + (state == PROLOG ? "preceding" : "following") + " the root element must be well-formed.");
+	String tag = open[depth - 1];
+	int nameEnd = start + 2 + tag.length();
+	if (nameEnd > tagEnd || !regionMatches(start + 2, tag) || (nameEnd < tagEnd && !isWhitespace(chars[nameEnd])))
+	    throw error("The element type \"" + tag + "\" must be terminated by the matching end-tag \"</" + tag + ">\".");
+	for (int i = nameEnd; i < tagEnd; i++)
+	    if (!isWhitespace(chars[i]))
+		throw error("The end-tag for element type \"" + tag + "\" must end with a '>' delimiter.");
+	open[--depth] = null;
+	if (depth == 0)
+	    state = EPILOG;
+	consume(tagEnd + 1);
+	handler.endElement("", "", tag);
+	return true;
+    }
+
+    /**
+     * parses a start tag
+     * @return false if more characters are needed
+     * @throws SAXException
+     */
+    private boolean startTag() throws SAXException {
+	//search the '>', outside quoted attribute values
+	int pos = Math.max(start + 1, searchFrom);
+	char quote = searchQuote;
+	while (pos < end) {
+	    char c = chars[pos];
+	    if (quote != 0) {
+		if (c == quote)
+		    quote = 0;
+		else if (c == '<')
+		    throw error("The value of an attribute must not contain the '<' character.");
+	    } else if (c == '"' || c == '\'') {
+		quote = c;
+	    } else if (c == '>') {
+		break;
+	    } else if (c == '<') {
+		throw error("Element type must be followed by either attribute specifications, \">\" or \"/>\".");
+	    }
+	    pos++;
+	}
+	if (pos == end) {
+	    searchFrom = end;
+	    searchQuote = quote;
+	    return false;
+	}
+	int tagEnd = pos;
+	if (state == EPILOG)
+	    throw error("The markup in the document following the root element must be well-formed.");
+
+	pos = XMLChars.nameEnd(chars, start + 1, tagEnd);
+	if (pos == start + 1)
+	    throw error("The content of elements must consist of well-formed character data or markup.");
+	String tag = symbols.addSymbol(chars, start + 1, pos - start - 1);
+
+	attributes.clear();
+	boolean empty = false;
+	while (true) {
+	    boolean separated = pos < tagEnd && isWhitespace(chars[pos]);
+	    while (pos < tagEnd && isWhitespace(chars[pos]))
+		pos++;
+	    if (pos == tagEnd)
+		break;
+	    if (chars[pos] == '/') {
+		if (pos + 1 != tagEnd)
+		    throw error("Element type \"" + tag + "\" must be followed by either attribute specifications, \">\" or \"/>\".");
+		empty = true;
+		break;
+	    }
+	    if (!separated)
+		throw error("Element type \"" + tag + "\" must be followed by either attribute specifications, \">\" or \"/>\".");
+	    int nameStart = pos;
+	    pos = XMLChars.nameEnd(chars, pos, tagEnd);
+	    if (pos == nameStart)
+		throw error("Element type \"" + tag + "\" must be followed by either attribute specifications, \">\" or \"/>\".");
+	    String name = symbols.addSymbol(chars, nameStart, pos - nameStart);
+	    while (pos < tagEnd && isWhitespace(chars[pos]))
+		pos++;
+	    if (pos == tagEnd || chars[pos] != '=')
+		throw error("Attribute name \"" + name + "\" associated with an element type \"" + tag + "\" must be followed by the ' = ' character.");
+	    pos++;
+	    while (pos < tagEnd && isWhitespace(chars[pos]))
+		pos++;
+	    if (pos == tagEnd || (chars[pos] != '"' && chars[pos] != '\''))
+		throw error("Open quote is expected for attribute \"" + name + "\" associated with an  element type  \"" + tag + "\".");
+	    char valueQuote = chars[pos];
+	    int valueStart = pos + 1;
+	    pos = valueStart;
+	    while (pos < tagEnd && chars[pos] != valueQuote)
+		pos++;
+	    if (pos == tagEnd)
+		throw error("The value of attribute \"" + name + "\" associated with an element type \"" + tag + "\" must end with the matching quote character.");
+	    if (attributes.getIndex(name) >= 0)
+		throw error("Attribute \"" + name + "\" was already specified for element \"" + tag + "\".");
+	    attributes.addAttribute("", name, name, "CDATA", attributeValue(valueStart, pos, name, tag));
+	    pos++;
+	}
+
+	if (state == PROLOG)
+	    state = CONTENT;
+	if (!empty) {
+	    if (depth == open.length)
+		open = Arrays.copyOf(open, 2 * depth);
+	    open[depth++] = tag;
+	}
+	consume(tagEnd + 1);
+	handler.startElement("", "", tag, attributes);
+	if (empty) {
+	    if (depth == 0)
+		state = EPILOG;
+	    handler.endElement("", "", tag);
+	}
+	return true;
+    }
+
+    /**
+     * @param from offset after the opening quote
+     * @param to offset of the closing quote
+     * @param name
+     * @param tag
+     * @return the normalized value
+     * @throws SAXParseException
+     */
+    private String attributeValue(int from, int to, String name, String tag) throws SAXParseException {
+	boolean plain = true;
+	for (int i = from; i < to; i++) {
+	    char c = chars[i];
+	    if (c == '<')
+		throw error("The value of attribute \"" + name + "\" associated with an element type \"" + tag + "\" must not contain the '<' character.");
+	    if (c == '&' || c == '\r' || c == '\n' || c == '\t')
+		plain = false;
+	    else if (!XMLChars.isChar(c))
+		throw invalidChar(c, "the value of attribute \"" + name + "\" and element is \"" + tag + "\"");
+	}
+	if (plain)
+	    return new String(chars, from, to - from);
+	decoded.setLength(0);
+	decode(from, to, true);
+	return decoded.toString();
+    }
+
+    /**
+     * decodes references and line ends into {@link #decoded}
+     * @param from
+     * @param to
+     * @param attribute true for an attribute value : whitespace characters are replaced by a space
+     * @throws SAXParseException if a reference is not valid
+     */
+    private void decode(int from, int to, boolean attribute) throws SAXParseException {
+	int i = from;
+	while (i < to) {
+	    char c = chars[i];
+	    if (c == '&') {
+		int referenceEnd = i + 1;
+		while (referenceEnd < to && chars[referenceEnd] != ';')
+		    referenceEnd++;
+		if (referenceEnd == to)
+		    throw error("The entity reference must end with the ';' delimiter.");
+		appendReference(i + 1, referenceEnd);
+		i = referenceEnd + 1;
+	    } else if (c == '\r') {
+		decoded.append(attribute ? ' ' : '\n');
+		i += (i + 1 < to && chars[i + 1] == '\n') ? 2 : 1;
+	    } else {
+		decoded.append(attribute && (c == '\n' || c == '\t') ? ' ' : c);
+		i++;
+	    }
+	}
+    }
+
+    /**
+     * appends the character of an entity or character reference to {@link #decoded}
+     * @param from offset after the '&amp;'
+     * @param to offset of the ';'
+     * @throws SAXParseException if the reference is not valid
+     */
+    private void appendReference(int from, int to) throws SAXParseException {
+	String reference = new String(chars, from, to - from);
+	if (reference.startsWith("#")) {
+	    int codePoint = XMLChars.characterReference(reference, 0, reference.length());
+	    if (codePoint < 0)
+		throw error("Invalid character reference.");
+	    if (!XMLChars.isChar(codePoint))
+		throw error("Character reference \"&" + reference + "\" is an invalid XML character.");
+	    decoded.appendCodePoint(codePoint);
+	    return;
+	}
+	switch (reference) {
+	case "amp": decoded.append('&'); break;
+	case "lt": decoded.append('<'); break;
+	case "gt": decoded.append('>'); break;
+	case "quot": decoded.append('"'); break;
+	case "apos": decoded.append('\''); break;
+	default:
+	    throw error("The entity \"" + reference + "\" was referenced, but not declared.");
+	}
+    }
+
+    /**
+     * skips a comment
+     * @return false if more characters are needed
+     * @throws SAXParseException if the comment contains "--" or a character that is not allowed
+     */
+    private boolean comment() throws SAXParseException {
+	int commentEnd = indexOf("-->", start + 4);
+	if (commentEnd < 0)
+	    return false;
+	for (int i = start + 4; i < commentEnd; i++) {
+	    char c = chars[i];
+	    //a '-' before the "-->" makes "--" as well
+	    if (c == '-' && (i + 1 == commentEnd || chars[i + 1] == '-'))
+		throw error("The string \"--\" is not permitted within comments.");
+	    if (!XMLChars.isChar(c))
+		throw invalidChar(c, "the comment");
+	}
+	consume(commentEnd + 3);
+	return true;
+    }
+
+    /**
+     * skips a processing instruction or the XML declaration
+     * @return false if more characters are needed
+     * @throws SAXParseException if the target is not a name, or a character is not allowed
+     */
+    private boolean processingInstruction() throws SAXParseException {
+	int instructionEnd = indexOf("?>", start + 2);
+	if (instructionEnd < 0)
+	    return false;
+	int targetEnd = XMLChars.nameEnd(chars, start + 2, instructionEnd);
+	if (targetEnd == start + 2)
+	    throw error("The processing instruction must begin with the name of the target.");
+	if (targetEnd < instructionEnd && !isWhitespace(chars[targetEnd]))
+	    throw error("White space is required between the processing instruction target and data.");
+	//only the XML declaration, at the very start, may have target xml
+	if (targetEnd - start == 5 && (line != 1 || column != 1) && new String(chars, start + 2, 3).equalsIgnoreCase("xml"))
+	    throw error("The processing instruction target matching \"[xX][mM][lL]\" is not allowed.");
+	checkChars(targetEnd, instructionEnd, "the processing instruction");
+	consume(instructionEnd + 2);
+	return true;
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @param where description of the construct, for the message
+     * @throws SAXParseException if a character between from and to is not allowed in XML
+     */
+    private void checkChars(int from, int to, String where) throws SAXParseException {
+	for (int i = from; i < to; i++)
+	    if (!XMLChars.isChar(chars[i]))
+		throw invalidChar(chars[i], where);
+    }
+
+    /**
+     * @param c
+     * @param where
+     * @return the exception for a character that is not allowed in XML
+     */
+    private SAXParseException invalidChar(char c, String where) {
+	return error("An invalid XML character (Unicode: 0x" + Integer.toHexString(c) + ") was found in " + where + ".");
+    }
+
+    /**
+     * searches a string in the characters not yet parsed, from searchFrom if that is further. 
+     * If not found, searchFrom is set so that the next search continues where this one ended.
+     * @param s
+     * @param from
+     * @return the offset, -1 if not found
+     */
+    private int indexOf(String s, int from) {
+	int last = end - s.length();
+	for (int i = Math.max(from, searchFrom); i <= last; i++)
+	    if (chars[i] == s.charAt(0) && regionMatches(i, s))
+		return i;
+	searchFrom = Math.max(from, last + 1);
+	return -1;
+    }
+
+    /**
+     * @param s
+     * @return true if the characters at {@link #start} start with s
+     */
+    private boolean startsWith(String s) {
+	return end - start >= s.length() && regionMatches(start, s);
+    }
+
+    /**
+     * @param offset
+     * @param s
+     * @return true if the characters at offset are s
+     */
+    private boolean regionMatches(int offset, String s) {
+	for (int i = 0; i < s.length(); i++)
+	    if (chars[offset + i] != s.charAt(i))
+		return false;
+	return true;
+    }
+
+    /**
+     * marks the characters up to an offset as parsed and updates the line and column
+     * @param to
+     */
+    private void consume(int to) {
+	for (int i = start; i < to; i++) {
+	    if (chars[i] == '\n') {
+		line++;
+		column = 1;
+	    } else
+		column++;
+	}
+	start = to;
+	searchFrom = to;
+	searchQuote = 0;
+    }
+
+    /**
+     * @param c
+     * @return true if c is XML whitespace
+     */
+    static private boolean isWhitespace(char c) {
+	return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A set of path expressions that selects the elements to parse, see {@link EasyXMLDataParser#parseSelected(String, XMLPathSelection)}
+ * and {@link EasyXMLDataParser#parseMatches(String, XMLPathSelection)}.<br>
+ * The expressions are a subset of XPath : a sequence of steps, each step preceded by / (child) or // (descendant), and each step 
+ * a tag name or * for any tag. For example
+ * <ul>
+ * <li>/catalog/book/price : the price elements in the book elements in the root element catalog</li>
+ * <li>//price : all price elements</li>
+ * <li>/catalog//price : all price elements in the root element catalog</li>
+ * <li>/catalog/&#42;/price : the price elements in any child of the root element catalog</li>
+ * </ul>
+ * Predicates, attributes and axes are not supported. The expressions are compiled into one state machine, so the cost per 
+ * element does not depend on the depth of the document. The total number of steps of all expressions plus the number of 
+ * expressions can be at most 64.<br>
+ * An XMLPathSelection is immutable and can be used by several threads at the same time.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public final class XMLPathSelection {
+
+    /**
+     * maximum number of states, one per step plus one per expression
+     */
+    static private final int MAX_STATES = 64;
+
+    /**
+     * the expressions as given
+     */
+    private final String[] expressions;
+
+    /**
+     * the tag name to match per state, null for any tag or for an accepting state
+     */
+    private final String[] names;
+
+    /**
+     * per state, true if the step is preceded by //, the state then stays active for descendants
+     */
+    private final boolean[] descendant;
+
+    /**
+     * the states at the start of each expression
+     */
+    private final long initialStates;
+
+    /**
+     * the states reached when a complete expression is matched
+     */
+    private final long acceptStates;
+
+    /**
+     * constructor
+     * @param expressions
+     * @param names
+     * @param descendant
+     * @param initialStates
+     * @param acceptStates
+     */
+    private XMLPathSelection(String[] expressions, String[] names, boolean[] descendant, long initialStates, long acceptStates) {
+	this.expressions = expressions;
+	this.names = names;
+	this.descendant = descendant;
+	this.initialStates = initialStates;
+	this.acceptStates = acceptStates;
+    }
+
+    /**
+     * compiles path expressions
+     * @param expressions one or more expressions, an element is selected if it matches any of them
+     * @return the selection
+     * @throws IllegalArgumentException if an expression is not supported or if there are too many steps
+     */
+    public static XMLPathSelection compile(String... expressions) {
+	if (expressions == null || expressions.length == 0)
+	    throw new IllegalArgumentException("at least one expression is needed");
+	ArrayList<String> names = new ArrayList<String>();
+	ArrayList<Boolean> descendant = new ArrayList<Boolean>();
+	long initialStates = 0;
+	long acceptStates = 0;
+	for (String expression : expressions) {
+	    if (expression == null || !expression.startsWith("/") || expression.endsWith("/"))
+		throw new IllegalArgumentException("expression should start with / or // and end with a step : " + expression);
+	    if (names.size() >= MAX_STATES)
+		throw new IllegalArgumentException("too many steps, at most " + MAX_STATES + " steps and expressions in total");
+	    initialStates |= 1L << names.size();
+	    int pos = 0;
+	    while (pos < expression.length()) {
+		boolean isDescendant = expression.startsWith("//", pos);
+		pos += isDescendant ? 2 : 1;
+		int end = expression.indexOf('/', pos);
+		if (end < 0)
+		    end = expression.length();
+		String step = expression.substring(pos, end);
+		if (!isValidStep(step))
+		    throw new IllegalArgumentException("unsupported step \"" + step + "\" in expression : " + expression);
+		names.add(step.equals("*") ? null : step);
+		descendant.add(isDescendant);
+		pos = end;
+	    }
+	    if (names.size() >= MAX_STATES)
+		throw new IllegalArgumentException("too many steps, at most " + MAX_STATES + " steps and expressions in total");
+	    acceptStates |= 1L << names.size();
+	    names.add(null);
+	    descendant.add(false);
+	}
+	boolean[] descendantArray = new boolean[descendant.size()];
+	for (int i = 0; i < descendantArray.length; i++)
+	    descendantArray[i] = descendant.get(i);
+	return new XMLPathSelection(expressions.clone(), names.toArray(new String[names.size()]), descendantArray, initialStates, acceptStates);
+    }
+
+    /**
+     * @param step
+     * @return true if step is * or a name without characters used in XPath predicates, axes or functions
+     */
+    static private boolean isValidStep(String step) {
+	if (step.equals("*"))
+	    return true;
+	if (step.length() == 0)
+	    return false;
+	for (int i = 0; i < step.length(); i++) {
+	    char c = step.charAt(i);
+	    if (c == '[' || c == ']' || c == '@' || c == '(' || c == ')' || c == '*' || c == '/' || c == '=' || c == '\'' || c == '"' || 
+		    Character.isWhitespace(c) || (c == ':' && i + 1 < step.length() && step.charAt(i + 1) == ':'))
+		return false;
+	}
+	return true;
+    }
+
+    /**
+     * @return the states before the root element
+     */
+    long getInitialStates() {
+	return initialStates;
+    }
+
+    /**
+     * computes the states of an element from the states of its parent
+     * @param states states of the parent
+     * @param tagName tag name of the element
+     * @return states of the element
+     */
+    long next(long states, String tagName) {
+	long returnvalue = 0;
+	for (long remaining = states & ~acceptStates; remaining != 0; remaining &= remaining - 1) {
+	    int state = Long.numberOfTrailingZeros(remaining);
+	    if (descendant[state])
+		returnvalue |= 1L << state;
+	    if (names[state] == null || names[state].equals(tagName))
+		returnvalue |= 1L << (state + 1);
+	}
+	return returnvalue;
+    }
+
+    /**
+     * @param states
+     * @return true if the element with these states is selected
+     */
+    boolean isMatch(long states) {
+	return (states & acceptStates) != 0;
+    }
+
+    /**
+     * @param states
+     * @return true if descendants of the element with these states can be selected
+     */
+    boolean isViable(long states) {
+	return (states & ~acceptStates) != 0;
+    }
+
+    /**
+     * @return the expressions
+     */
+    public String[] getExpressions() {
+	return expressions.clone();
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+	return "XMLPathSelection" + Arrays.toString(expressions);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that registries that fail when their bindings are asked are ignored. The registries are declared in
+ * META-INF/services/net.johandegraeve.easyxmldata.XMLElementRegistry of the tests.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public class ElementRegistryTest {
+
+    /**
+     * class found for the tag Book, with Class.forName as the registries fail
+     */
+    public static class Book extends DefaultXMLElement {
+	public Book() {
+	    super("Book");
+	}
+    }
+
+    /**
+     * throws a RuntimeException
+     */
+    public static class ThrowingRegistry implements XMLElementRegistry {
+	public List<XMLElementBinding> getBindings() {
+	    throw new IllegalStateException("generated registry is broken");
+	}
+    }
+
+    /**
+     * throws a LinkageError, as when a class of the registry is missing
+     */
+    public static class UnlinkedRegistry implements XMLElementRegistry {
+	public List<XMLElementBinding> getBindings() {
+	    throw new NoClassDefFoundError("net/johandegraeve/easyxmldata/Missing");
+	}
+    }
+
+    @Test
+    public void failingRegistriesAreIgnored() throws Exception {
+	assertNull(ElementRegistry.getInstance().forClassName(Book.class.getName()));
+	EasyXMLDataParser parser = new EasyXMLDataParser(new String[] {Book.class.getPackage().getName()}, 
+		new String[] {ElementRegistryTest.class.getSimpleName() + "$"}, false);
+	XMLElement root = parser.parse("<Book><Book/></Book>");
+	assertSame(Book.class, root.getClass());
+	assertSame(Book.class, root.getChildren().get(0).getClass());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Checks that {@link LazyXMLElement} decodes attributes as parse does, and rejects the attributes parse rejects when they are read.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public class LazyXMLElementTest {
+
+    @Test
+    public void attributes() throws Exception {
+	String document = "<a x=\"1 &amp; 2\" y='&#65;\tb' z=\"\"><b c=\"d\"/></a>";
+	XMLElement expected = new EasyXMLDataParser(null, null).parse(document, "UTF-8");
+	LazyXMLElement lazy = new EasyXMLDataParser(null, null).parseLazy(document);
+	for (XMLElement[] pair : new XMLElement[][] {{expected, lazy}, {expected.getChildren().get(0), lazy.getChildren().get(0)}}) {
+	    assertEquals(pair[0].getAttributes().getLength(), pair[1].getAttributes().getLength());
+	    for (int i = 0; i < pair[0].getAttributes().getLength(); i++) {
+		assertEquals(pair[0].getAttributes().getQName(i), pair[1].getAttributes().getQName(i));
+		assertEquals(pair[0].getAttributes().getValue(i), pair[1].getAttributes().getValue(i));
+	    }
+	}
+    }
+
+    @Test
+    public void duplicateAttribute() throws Exception {
+	String document = "<a><b c=\"1\" d=\"2\" c=\"3\"/></a>";
+	assertThrows(SAXParseException.class, () -> new EasyXMLDataParser(null, null).parse(document, "UTF-8"));
+	LazyXMLElement lazy = new EasyXMLDataParser(null, null).parseLazy(document);
+	XMLElement child = lazy.getChildren().get(0);
+	IllegalStateException e = assertThrows(IllegalStateException.class, () -> child.getAttributes());
+	assertTrue(e.getCause() instanceof SAXParseException);
+	assertTrue(e.getMessage().contains("Attribute \"c\" was already specified for element \"b\"."));
+    }
+
+    @Test
+    public void notWellFormed() {
+	String[] documents = {
+		"<a>\u0001</a>",
+		"<a>\uFFFF</a>",
+		"<a b=\"\u0002\"/>",
+		"<a><![CDATA[\u0003]]></a>",
+		"<1a/>",
+		"<a><-b/></a>",
+		"<a$/>",
+		"<a><!-- x -- y --></a>",
+		"<a><!-- x ---></a>",
+		"<!-- x -- y --><a/>",
+		"<a><!-- \u0004 --></a>",
+		"<a>]]></a>",
+		"<a><b/>x]]>y</a>",
+		"<a><?xml x?></a>",
+		"<a/><?XML x?>",
+		"<a><? x?></a>",
+		"<a><?x\u0005?></a>",
+	};
+	for (String document : documents) {
+	    assertThrows(SAXParseException.class, () -> new EasyXMLDataParser(null, null).parse(document, "UTF-8"), "parse accepts " + document);
+	    assertThrows(SAXParseException.class, () -> new EasyXMLDataParser(null, null).parseLazy(document), "parseLazy accepts " + document);
+	}
+    }
+
+    @Test
+    public void invalidReferences() throws Exception {
+	String[] texts = {"<a>&#0;</a>", "<a>&#xD800;</a>", "<a>&#x110000;</a>", "<a>&#99999999999;</a>", "<a>&#+65;</a>", "<a>&#;</a>", "<a>&#x;</a>"};
+	for (String document : texts) {
+	    assertThrows(SAXParseException.class, () -> new EasyXMLDataParser(null, null).parse(document, "UTF-8"), "parse accepts " + document);
+	    LazyXMLElement lazy = new EasyXMLDataParser(null, null).parseLazy(document);
+	    assertThrows(IllegalStateException.class, () -> lazy.getText(), "getText accepts " + document);
+	}
+	String[] attributes = {"<a b='&#0;'/>", "<a b='&#xFFFE;'/>", "<a 1b='x'/>"};
+	for (String document : attributes) {
+	    assertThrows(SAXParseException.class, () -> new EasyXMLDataParser(null, null).parse(document, "UTF-8"), "parse accepts " + document);
+	    LazyXMLElement lazy = new EasyXMLDataParser(null, null).parseLazy(document);
+	    assertThrows(IllegalStateException.class, () -> lazy.getAttributes(), "getAttributes accepts " + document);
+	}
+    }
+
+    @Test
+    public void wellFormed() throws Exception {
+	String document = "<?xml version=\"1.0\"?><?xml-stylesheet href=\"x\"?><a>\u00e9\ud83d\ude00 ]] > &#x1F600;<!---->" + 
+		"<b:c d.e-f=\"&#9;\">]]</b:c><![CDATA[]]]]><?p?>></a><!-- - -->";
+	XMLElement expected = new EasyXMLDataParser(null, null).parse(document, "UTF-8");
+	LazyXMLElement lazy = new EasyXMLDataParser(null, null).parseLazy(document);
+	assertEquals(expected.getText(), lazy.getText());
+	XMLElement child = lazy.getChildren().get(0);
+	assertEquals("b:c", child.getTagName());
+	assertEquals(expected.getChildren().get(0).getText(), child.getText());
+	assertEquals(expected.getChildren().get(0).getAttributes().getValue("d.e-f"), child.getAttributes().getValue("d.e-f"));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Checks that {@link EasyXMLDataParser#parseParallel(String)} gives the same tree as {@link EasyXMLDataParser#parse(String)},
+ * and rejects the same documents.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public class ParallelParseTest {
+
+    /**
+     * pieces of text put around and inside the children, with line ends and parts of "]]>" that must not merge
+     */
+    static private final String[] TEXT = {"\r", "\n", "\r\n", "]", "]]", ">", " ", "x", "&amp;", "&#13;", "<![CDATA[c]]>", "<!-- c -->", "<?p d?>"};
+
+    /**
+     * root element that records the order of the calls
+     */
+    public static class OrderedRoot extends DefaultXMLElement {
+
+	/**
+	 * the id attribute of the children, in the order they were added
+	 */
+	final List<String> ids = new ArrayList<String>();
+
+	/**
+	 * number of children when {@link #complete()} was called, -1 if not called
+	 */
+	int childrenAtComplete = -1;
+
+	public OrderedRoot() {
+	    super("r");
+	}
+
+	@Override
+	public void addChild(XMLElement child) throws SAXException {
+	    super.addChild(child);
+	    ids.add(child.getAttributes().getValue("id"));
+	}
+
+	@Override
+	public void complete() throws SAXException {
+	    childrenAtComplete = ids.size();
+	}
+    }
+
+    @Test
+    public void textAroundChildren() throws Exception {
+	String[] documents = {
+		"<r>\r<a/><b/>\n</r>",
+		"<r>\r<a/>\n<b/>\r</r>",
+		"<r>]]<a/><b/>></r>",
+		"<r>]<a/>]<b/>></r>",
+		"<r>x<a>\r</a>\n<b>]]</b>></r>",
+		"<?xml version=\"1.0\"?>\r\n<r>\r<a/><b></b>\r\n</r>\r\n",
+	};
+	for (String document : documents)
+	    assertSameResult(document);
+    }
+
+    @Test
+    public void randomDocuments() throws Exception {
+	Random random = new Random(1);
+	for (int i = 0; i < 3000; i++) {
+	    StringBuilder document = new StringBuilder("<r>");
+	    int children = 2 + random.nextInt(6);
+	    for (int j = 0; j < children; j++) {
+		appendText(document, random);
+		document.append("<c").append(j % 3).append(" id=\"").append(j).append("\">");
+		appendText(document, random);
+		if (random.nextBoolean())
+		    document.append("<c0>").append(TEXT[random.nextInt(TEXT.length)]).append("</c0>");
+		document.append("</c").append(j % 3).append('>');
+	    }
+	    appendText(document, random);
+	    assertSameResult(document.append("</r>").toString());
+	}
+    }
+
+    @Test
+    public void childrenInDocumentOrder() throws Exception {
+	StringBuilder document = new StringBuilder("<r>");
+	for (int i = 0; i < 2000; i++)
+	    document.append("<c id=\"").append(i).append("\"><d>").append(i).append("</d></c>\n");
+	document.append("</r>");
+	EasyXMLDataParser parser = new EasyXMLDataParser(null, null);
+	parser.registerFactory("r", OrderedRoot::new);
+	OrderedRoot root = (OrderedRoot)parser.parseParallel(document.toString(), new ForkJoinPool(4));
+	assertEquals(2000, root.ids.size());
+	for (int i = 0; i < root.ids.size(); i++)
+	    assertEquals(Integer.toString(i), root.ids.get(i));
+	//all children are added before complete
+	assertEquals(2000, root.childrenAtComplete);
+	XMLElementSnapshotTest.assertSameTree(parser.parse(document.toString()), root);
+    }
+
+    @Test
+    public void notWellFormed() {
+	String[] documents = {
+		"text<r><a/><b/></r>",
+		"<r><a/><b/></r>text",
+		"<r><a/><b/></r><r/>",
+		"<r>]]><a/><b/></r>",
+		"<r><a/><b/>]]></r>",
+		"<r><a/><b></r>",
+		"<r><a/><b/>",
+	};
+	for (String document : documents) {
+	    assertThrows(SAXParseException.class, () -> new EasyXMLDataParser(null, null).parse(document), "parse accepts " + document);
+	    assertThrows(SAXParseException.class, () -> new EasyXMLDataParser(null, null).parseParallel(document), "parseParallel accepts " + document);
+	}
+    }
+
+    /**
+     * @param document
+     * @param random
+     */
+    static private void appendText(StringBuilder document, Random random) {
+	int pieces = random.nextInt(3);
+	for (int i = 0; i < pieces; i++)
+	    document.append(TEXT[random.nextInt(TEXT.length)]);
+    }
+
+    /**
+     * checks that parse and parseParallel give the same tree, or both throw an exception
+     * @param document
+     * @throws Exception
+     */
+    static private void assertSameResult(String document) throws Exception {
+	XMLElement expected;
+	try {
+	    expected = new EasyXMLDataParser(null, null).parse(document);
+	} catch (SAXParseException e) {
+	    assertThrows(SAXParseException.class, () -> new EasyXMLDataParser(null, null).parseParallel(document), 
+		    "parseParallel accepts " + document);
+	    return;
+	}
+	XMLElement actual = new EasyXMLDataParser(null, null).parseParallel(document);
+	assertTrue(actual != null);
+	try {
+	    XMLElementSnapshotTest.assertSameTree(expected, actual);
+	} catch (AssertionError e) {
+	    throw new AssertionError("different trees for " + document.replace("\r", "\\r").replace("\n", "\\n"), e);
+	}
+    }
+}
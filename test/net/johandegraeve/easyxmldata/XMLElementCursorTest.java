@@ -0,0 +1,140 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Checks that the elements pulled with an {@link XMLElementCursor} are identical to the elements of the tree returned by parse.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public class XMLElementCursorTest {
+
+    /**
+     * a document with nested elements, attributes, text and CDATA
+     */
+    static private final String DOCUMENT = "<?xml version=\"1.0\"?>\n<!-- c --><lib n=\"1\">\n  <item id=\"a\">one &amp; <b>two</b></item>\n" +
+	    "  <skip><item id=\"nested\"/></skip>\n  <item id=\"b\"><![CDATA[<three>]]></item>\n</lib>\n";
+
+    @Test
+    public void readEqualsParse() throws Exception {
+	XMLElement root = new EasyXMLDataParser(null, null).parse(DOCUMENT);
+	List<String> tags = new ArrayList<String>();
+	List<Integer> depths = new ArrayList<Integer>();
+	try (XMLElementCursor cursor = new EasyXMLDataParser(null, null).openCursor(stream(DOCUMENT))) {
+	    assertTrue(cursor.next());
+	    assertEquals("lib", cursor.getTagName());
+	    assertEquals("1", cursor.getAttributes().getValue("n"));
+	    int i = 0;
+	    while (cursor.next()) {
+		tags.add(cursor.getTagName());
+		depths.add(cursor.getDepth());
+		XMLElementSnapshotTest.assertSameTree(root.getChildren().get(i++), cursor.readElement());
+	    }
+	    assertEquals(3, i);
+	}
+	assertEquals(List.of("item", "skip", "item"), tags);
+	assertEquals(List.of(2, 2, 2), depths);
+	//the whole document
+	try (XMLElementCursor cursor = new EasyXMLDataParser(null, null).openCursor(stream(DOCUMENT))) {
+	    assertTrue(cursor.next());
+	    XMLElementSnapshotTest.assertSameTree(root, cursor.readElement());
+	    assertFalse(cursor.next());
+	}
+    }
+
+    @Test
+    public void skipSubtree() throws Exception {
+	List<String> ids = new ArrayList<String>();
+	try (XMLElementCursor cursor = new EasyXMLDataParser(null, null).openCursor(stream(DOCUMENT))) {
+	    while (cursor.next()) {
+		if (cursor.getTagName().equals("skip"))
+		    cursor.skipSubtree();
+		else if (cursor.getTagName().equals("item"))
+		    ids.add(cursor.getAttributes().getValue("id"));
+	    }
+	    assertEquals(0, cursor.getDepth());
+	}
+	//b is visited as a child of the first item, which is not read or skipped
+	assertEquals(List.of("a", "b"), ids);
+    }
+
+    @Test
+    public void stopEarly(@TempDir Path directory) throws Exception {
+	Path file = directory.resolve("doc.xml");
+	//not well formed after the first item, which is never read
+	Files.write(file, "<lib><item id=\"a\"/><item></lib>".getBytes(StandardCharsets.UTF_8));
+	try (XMLElementCursor cursor = new EasyXMLDataParser(null, null).openCursor(file)) {
+	    assertTrue(cursor.next());
+	    assertTrue(cursor.next());
+	    assertEquals("a", cursor.readElement().getAttributes().getValue("id"));
+	}
+	XMLElementCursor cursor = new EasyXMLDataParser(null, null).openCursor(Files.newInputStream(file));
+	assertThrows(SAXParseException.class, () -> {
+	    while (cursor.next())
+		;
+	});
+	//closed after the exception
+	assertThrows(IllegalStateException.class, () -> cursor.next());
+    }
+
+    @Test
+    public void streamIsClosed() throws Exception {
+	boolean[] closed = new boolean[1];
+	InputStream in = new ByteArrayInputStream(DOCUMENT.getBytes(StandardCharsets.UTF_8)) {
+	    @Override
+	    public void close() throws IOException {
+		closed[0] = true;
+	    }
+	};
+	XMLElementCursor cursor = new EasyXMLDataParser(null, null).openCursor(in);
+	//not yet at a start tag
+	assertThrows(IllegalStateException.class, () -> cursor.getTagName());
+	assertTrue(cursor.next());
+	cursor.close();
+	assertTrue(closed[0]);
+    }
+
+    /**
+     * @param document
+     * @return the document as a UTF-8 stream
+     */
+    static private InputStream stream(String document) {
+	return new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+/**
+ * Round trips of trees through {@link XMLElementSnapshot}, for each kind of element : {@link DefaultXMLElement}, 
+ * {@link CompactXMLElement}, classes with a codec and classes rebuilt by replaying the parser calls.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public class XMLElementSnapshotTest {
+
+    /**
+     * a document with attributes, references, CDATA, non-ASCII text and nested elements
+     */
+    static private final String DOCUMENT = "<?xml version=\"1.0\"?>\n<lib a=\"1 &amp; 2\" b=\"\">\n" +
+	    "  <Book title=\"x\" lang=\"fr\">hello &amp; bye é€😀 <![CDATA[<raw>]]></Book>\n" +
+	    "  <other><Book title=\"y\"/>  <empty/></other>\n  <Book title=\"z\">  spaced  </Book>\n</lib>";
+
+    /**
+     * set when {@link NotElement} is initialized
+     */
+    static boolean tripwireInitialized;
+
+    /**
+     * element rebuilt by replaying the parser calls, records the calls it receives
+     */
+    public static class ReplayBook implements XMLElement {
+
+	/**
+	 * the attributes
+	 */
+	private Attributes attributes;
+
+	/**
+	 * the children
+	 */
+	private ArrayList<XMLElement> children;
+
+	/**
+	 * trimmed text
+	 */
+	private String text;
+
+	/**
+	 * untrimmed text
+	 */
+	private String untrimmedText;
+
+	/**
+	 * number of calls to {@link #complete()}
+	 */
+	int completeCount;
+
+	public void addAttributes(Attributes attributes) throws SAXException {
+	    this.attributes = PackedAttributes.copyOf(attributes, null);
+	}
+
+	public void addChild(XMLElement child) throws SAXException {
+	    if (children == null)
+		children = new ArrayList<XMLElement>();
+	    children.add(child);
+	}
+
+	public void addText(String text) throws SAXException {
+	    this.text = text;
+	}
+
+	public void addUnTrimmedText(String text) throws SAXException {
+	    untrimmedText = text;
+	}
+
+	public boolean preserveSpaces() {
+	    return true;
+	}
+
+	public void complete() throws SAXException {
+	    completeCount++;
+	}
+
+	public ArrayList<XMLElement> getChildren() {
+	    return children;
+	}
+
+	public String getText() {
+	    return untrimmedText;
+	}
+
+	public Attributes getAttributes() {
+	    return attributes;
+	}
+
+	public String getTagName() {
+	    return "Book";
+	}
+    }
+
+    /**
+     * element written with a codec
+     */
+    public static class CodecNote extends DefaultXMLElement {
+
+	/**
+	 * state only known to the codec
+	 */
+	int number;
+
+	/**
+	 * number of calls to {@link #complete()}
+	 */
+	int completeCount;
+
+	public CodecNote() {
+	    super("Note");
+	}
+
+	CodecNote(int number) {
+	    this();
+	    this.number = number;
+	}
+
+	@Override
+	public void complete() throws SAXException {
+	    completeCount++;
+	}
+    }
+
+    /**
+     * a class that is not an XMLElement, with a static initializer
+     */
+    public static class NotElement {
+	static {
+	    tripwireInitialized = true;
+	}
+    }
+
+    /**
+     * codec for {@link CodecNote}
+     */
+    static private final XMLElementCodec<CodecNote> NOTE_CODEC = new XMLElementCodec<CodecNote>() {
+	public void write(CodecNote element, DataOutput out) throws IOException {
+	    out.writeInt(element.number);
+	}
+
+	public CodecNote read(DataInput in) throws IOException {
+	    return new CodecNote(in.readInt());
+	}
+    };
+
+    @Test
+    public void compactRoundTrip() throws Exception {
+	XMLElement root = new EasyXMLDataParser(null, null).parse(DOCUMENT);
+	assertSame(CompactXMLElement.class, root.getClass());
+	XMLElementSnapshot snapshot = new XMLElementSnapshot();
+	XMLElement back = snapshot.read(ByteBuffer.wrap(snapshot.toBytes(root)));
+	assertSameTree(root, back);
+	assertEquals(Utilities.createXML(root), Utilities.createXML(back));
+    }
+
+    @Test
+    public void defaultRoundTrip() throws Exception {
+	DefaultXMLElement root = new DefaultXMLElement("root");
+	root.addAttributes(PackedAttributes.of(new String[] {"x", "1", "y", "ü"}));
+	root.addUnTrimmedText(" text ");
+	DefaultXMLElement child = new DefaultXMLElement("child");
+	child.addAttributes(PackedAttributes.EMPTY);
+	root.addChild(child);
+	root.addChild(new DefaultXMLElement("leaf"));
+	XMLElementSnapshot snapshot = new XMLElementSnapshot();
+	XMLElement back = snapshot.read(ByteBuffer.wrap(snapshot.toBytes(root)));
+	assertSameTree(root, back);
+	assertNull(back.getChildren().get(1).getAttributes());
+	assertNull(back.getChildren().get(1).getText());
+    }
+
+    @Test
+    public void replayRoundTrip() throws Exception {
+	EasyXMLDataParser parser = new EasyXMLDataParser(null, null);
+	parser.registerFactory("Book", ReplayBook::new);
+	XMLElement root = parser.parse(DOCUMENT);
+	XMLElementSnapshot snapshot = new XMLElementSnapshot();
+	XMLElement back = snapshot.read(ByteBuffer.wrap(snapshot.toBytes(root)));
+	assertSameTree(root, back);
+	ReplayBook book = (ReplayBook)back.getChildren().get(2);
+	//the text is given trimmed and untrimmed, as by the parser
+	assertEquals("  spaced  ", book.untrimmedText);
+	assertEquals("spaced", book.text);
+	assertEquals(1, book.completeCount);
+    }
+
+    @Test
+    public void codecRoundTrip() throws Exception {
+	XMLElementSnapshot snapshot = new XMLElementSnapshot();
+	snapshot.registerCodec(CodecNote.class, NOTE_CODEC);
+	DefaultXMLElement root = new DefaultXMLElement("root");
+	CodecNote note = new CodecNote(42);
+	note.addChild(new CodecNote(7));
+	note.addChild(new DefaultXMLElement("plain"));
+	root.addChild(note);
+
+	ByteBuffer direct = ByteBuffer.allocateDirect(1024);
+	direct.put(snapshot.toBytes(root));
+	direct.flip();
+	XMLElement back = snapshot.read(direct);
+	CodecNote backNote = (CodecNote)back.getChildren().get(0);
+	assertEquals(42, backNote.number);
+	assertEquals(7, ((CodecNote)backNote.getChildren().get(0)).number);
+	assertEquals("plain", backNote.getChildren().get(1).getTagName());
+	assertEquals(1, backNote.completeCount);
+
+	//without the codec the snapshot can not be read
+	IOException e = assertThrows(IOException.class, () -> new XMLElementSnapshot().read(ByteBuffer.wrap(snapshot.toBytes(root))));
+	assertTrue(e.getMessage().contains("no codec"));
+    }
+
+    @Test
+    public void streamAndMappedFile(@TempDir Path directory) throws Exception {
+	XMLElement root = new EasyXMLDataParser(null, null).parse(DOCUMENT);
+	XMLElementSnapshot snapshot = new XMLElementSnapshot();
+	Path file = directory.resolve("tree.snapshot");
+	snapshot.write(root, file);
+	assertSameTree(root, snapshot.read(file));
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	snapshot.write(root, out);
+	assertSameTree(root, snapshot.read(new ByteArrayInputStream(out.toByteArray())));
+	assertTrue(Arrays.equals(Files.readAllBytes(file), out.toByteArray()));
+    }
+
+    @Test
+    public void largeTree() throws Exception {
+	StringBuilder document = new StringBuilder("<r>");
+	for (int i = 0; i < 5000; i++)
+	    document.append("<n").append(i % 7).append(" k=\"").append(i).append("\">t").append(i).append("<m/></n").append(i % 7).append('>');
+	XMLElement root = new EasyXMLDataParser(null, null).parse(document.append("</r>").toString());
+	XMLElementSnapshot snapshot = new XMLElementSnapshot();
+	assertSameTree(root, snapshot.read(ByteBuffer.wrap(snapshot.toBytes(root))));
+    }
+
+    @Test
+    public void invalidLengthIsIOException() {
+	XMLElementSnapshot snapshot = new XMLElementSnapshot();
+	byte[] negative = {'E', 'X', 'D', 'S', 1, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x0F};
+	assertThrows(IOException.class, () -> snapshot.read(ByteBuffer.wrap(negative)));
+	byte[] huge = {'E', 'X', 'D', 'S', 1, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x7F};
+	assertThrows(IOException.class, () -> snapshot.read(ByteBuffer.wrap(huge)));
+	assertThrows(IOException.class, () -> snapshot.read(ByteBuffer.wrap(new byte[] {'X', 'M', 'L'})));
+    }
+
+    @Test
+    public void corruptSnapshotIsIOException() throws Exception {
+	XMLElementSnapshot snapshot = new XMLElementSnapshot();
+	byte[] bytes = snapshot.toBytes(new EasyXMLDataParser(null, null).parse(DOCUMENT));
+	Random random = new Random(1);
+	for (int i = 0; i < 5000; i++) {
+	    byte[] corrupt = bytes.clone();
+	    corrupt[5 + random.nextInt(corrupt.length - 5)] = (byte)random.nextInt();
+	    if (random.nextBoolean())
+		corrupt = Arrays.copyOf(corrupt, 5 + random.nextInt(corrupt.length - 5));
+	    try {
+		snapshot.read(ByteBuffer.wrap(corrupt));
+	    } catch (IOException e) {
+		//expected for most corruptions, any other exception fails the test
+	    }
+	}
+    }
+
+    @Test
+    public void namedClassIsNotInitialized() throws Exception {
+	EasyXMLDataParser parser = new EasyXMLDataParser(null, null);
+	parser.registerFactory("Book", ReplayBook::new);
+	byte[] bytes = new XMLElementSnapshot().toBytes(parser.parse("<r><Book/></r>"));
+	//replace the name of the replayed class by the name of a class that is not an XMLElement, of the same length
+	byte[] from = ReplayBook.class.getName().getBytes(StandardCharsets.UTF_8);
+	byte[] to = (XMLElementSnapshotTest.class.getName() + "$NotElement").getBytes(StandardCharsets.UTF_8);
+	assertEquals(from.length, to.length);
+	int index = indexOf(bytes, from);
+	assertTrue(index > 0);
+	System.arraycopy(to, 0, bytes, index, to.length);
+
+	IOException e = assertThrows(IOException.class, () -> new XMLElementSnapshot().read(ByteBuffer.wrap(bytes)));
+	assertTrue(e.getMessage().contains("not an XMLElement"));
+	assertFalse(tripwireInitialized);
+    }
+
+    /**
+     * @param bytes
+     * @param part
+     * @return index of part in bytes, -1 if not found
+     */
+    static private int indexOf(byte[] bytes, byte[] part) {
+	for (int i = 0; i + part.length <= bytes.length; i++)
+	    if (Arrays.equals(bytes, i, i + part.length, part, 0, part.length))
+		return i;
+	return -1;
+    }
+
+    /**
+     * compares two trees : classes, tag names, attributes, text and children
+     * @param expected
+     * @param actual
+     */
+    static void assertSameTree(XMLElement expected, XMLElement actual) {
+	assertSame(expected.getClass(), actual.getClass());
+	assertEquals(expected.getTagName(), actual.getTagName());
+	assertEquals(expected.getText(), actual.getText());
+	Attributes expectedAttributes = expected.getAttributes();
+	Attributes actualAttributes = actual.getAttributes();
+	int length = (expectedAttributes == null ? 0 : expectedAttributes.getLength());
+	assertEquals(length, actualAttributes == null ? 0 : actualAttributes.getLength());
+	for (int i = 0; i < length; i++) {
+	    assertEquals(expectedAttributes.getQName(i), actualAttributes.getQName(i));
+	    assertEquals(expectedAttributes.getValue(i), actualAttributes.getValue(i));
+	}
+	ArrayList<XMLElement> expectedChildren = expected.getChildren();
+	ArrayList<XMLElement> actualChildren = actual.getChildren();
+	int size = (expectedChildren == null ? 0 : expectedChildren.size());
+	assertEquals(size, actualChildren == null ? 0 : actualChildren.size());
+	for (int i = 0; i < size; i++)
+	    assertSameTree(expectedChildren.get(i), actualChildren.get(i));
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ *  Copyright (C) 2010  Johan Degraeve
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/gpl.txt>.
+ *
+ *  Please contact Johan Degraeve at johan.degraeve@johandegraeve.net if you need
+ *  additional information or have any questions.
+ */
+package net.johandegraeve.easyxmldata;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Checks that {@link XMLFeedParser} gives the same tree as {@link EasyXMLDataParser#parse(java.io.InputStream)} whatever the
+ * size of the chunks, and rejects the documents that parse rejects.
+ *
+ * @author Johan Degraeve
+ *
+ */
+public class XMLFeedParserTest {
+
+    /**
+     * chunk sizes to feed, 0 for the whole document in one chunk
+     */
+    static private final int[] CHUNK_SIZES = {1, 2, 3, 7, 64, 0};
+
+    /**
+     * a document with line ends, references, CDATA, comments, processing instructions and multibyte characters
+     */
+    static private final String DOCUMENT = "<?xml version=\"1.0\"?>\r\n<!-- start --><a x=\"1\r\n2\"\tb='&lt;&#65;&#x1F600;&gt;'>t\r\nu\ru]]x ] ]" +
+	    "&amp;&quot;&apos;<![CDATA[c\r\nd]]]]><!-- c - d --><?pi data?>]]<b/>é€😀<c>  </c><d:e f.g-h=\"\"/>\n</a>\r\n<!-- end --><?end?>\n";
+
+    @Test
+    public void utf8() throws Exception {
+	assertChunkedEquivalent(DOCUMENT.getBytes(StandardCharsets.UTF_8));
+	assertChunkedEquivalent(withBom(new byte[] {(byte)0xEF, (byte)0xBB, (byte)0xBF}, DOCUMENT, StandardCharsets.UTF_8));
+	assertChunkedEquivalent("<a/>".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void utf16() throws Exception {
+	String document = DOCUMENT.replace("version=\"1.0\"", "version=\"1.0\" encoding=\"UTF-16\"");
+	assertChunkedEquivalent(document.getBytes(StandardCharsets.UTF_16));
+	assertChunkedEquivalent(withBom(new byte[] {(byte)0xFF, (byte)0xFE}, document, StandardCharsets.UTF_16LE));
+    }
+
+    @Test
+    public void iso88591() throws Exception {
+	assertChunkedEquivalent("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<a b=\"ÿ\">café &#233;</a>".getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void largeDocument() throws Exception {
+	StringBuilder document = new StringBuilder("<root>");
+	for (int i = 0; i < 2000; i++)
+	    document.append("<e i=\"").append(i).append("\">text &amp; é ").append(i).append("<![CDATA[<x>]]></e>\r\n");
+	StringBuilder deep = new StringBuilder();
+	for (int i = 0; i < 100; i++)
+	    deep.append("<n>");
+	for (int i = 0; i < 100; i++)
+	    deep.append("</n>");
+	assertChunkedEquivalent(document.append(deep).append("</root>").toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void notWellFormed() throws Exception {
+	String[] documents = {
+		"",
+		"text<a/>",
+		"<a>",
+		"<a></b>",
+		"<a/><a/>",
+		"<a/>text",
+		"<1a/>",
+		"<-a/>",
+		"<a 1b=\"x\"/>",
+		"<a b=\"1\"c=\"2\"/>",
+		"<a b=\"1\" b=\"2\"/>",
+		"<a b=\"<\"/>",
+		"<a b=c/>",
+		"<a>]]></a>",
+		"<a>x]]>y</a>",
+		"<a><!-- a -- b --></a>",
+		"<a><!-- a ---></a>",
+		"<!-- a -- b --><a/>",
+		"<a>&#0;</a>",
+		"<a>&#xD800;</a>",
+		"<a>&#x110000;</a>",
+		"<a>&#99999999999;</a>",
+		"<a>&#+65;</a>",
+		"<a>&#;</a>",
+		"<a>&#x;</a>",
+		"<a b=\"&#1;\"/>",
+		"<a>&foo;</a>",
+		"<a>&amp</a>",
+		"<a>\u0001</a>",
+		"<a b=\"\u0002\"/>",
+		"<a><![CDATA[\u0003]]></a>",
+		"<a><!-- \u0004 --></a>",
+		"<a>￿</a>",
+		"<a><?xml version=\"1.0\"?></a>",
+		"<a><? x?></a>",
+		"<a><![CDATA[x</a>",
+	};
+	for (String document : documents) {
+	    byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+	    assertThrows(SAXParseException.class, () -> new EasyXMLDataParser(null, null).parse(new ByteArrayInputStream(bytes)), 
+		    "parse accepts " + document);
+	    for (int chunkSize : CHUNK_SIZES)
+		assertThrows(SAXParseException.class, () -> feed(bytes, chunkSize), "chunks of " + chunkSize + " accept " + document);
+	}
+	//malformed UTF-8
+	byte[] malformed = {'<', 'a', '>', (byte)0xC3, '<', '/', 'a', '>'};
+	for (int chunkSize : CHUNK_SIZES)
+	    assertThrows(SAXParseException.class, () -> feed(malformed, chunkSize));
+	//document type declarations are not supported
+	byte[] doctype = "<!DOCTYPE a><a/>".getBytes(StandardCharsets.UTF_8);
+	for (int chunkSize : CHUNK_SIZES)
+	    assertThrows(SAXParseException.class, () -> feed(doctype, chunkSize));
+    }
+
+    @Test
+    public void failureIsRemembered() throws Exception {
+	XMLFeedParser parser = new EasyXMLDataParser(null, null).newFeedParser();
+	byte[] bytes = "<a><1b/>".getBytes(StandardCharsets.UTF_8);
+	SAXParseException e = assertThrows(SAXParseException.class, () -> parser.feed(bytes, 0, bytes.length));
+	SAXParseException again = assertThrows(SAXParseException.class, () -> parser.endOfInput());
+	assertTrue(e == again);
+    }
+
+    /**
+     * @param bom
+     * @param document
+     * @param charset
+     * @return the byte order mark followed by the document in charset
+     */
+    static private byte[] withBom(byte[] bom, String document, Charset charset) {
+	byte[] bytes = document.getBytes(charset);
+	byte[] returnvalue = new byte[bom.length + bytes.length];
+	System.arraycopy(bom, 0, returnvalue, 0, bom.length);
+	System.arraycopy(bytes, 0, returnvalue, bom.length, bytes.length);
+	return returnvalue;
+    }
+
+    /**
+     * @param bytes
+     * @param chunkSize 0 for one chunk
+     * @return the root element, after feeding the bytes in chunks of chunkSize
+     * @throws SAXParseException
+     */
+    static private XMLElement feed(byte[] bytes, int chunkSize) throws SAXParseException {
+	XMLFeedParser parser = new EasyXMLDataParser(null, null).newFeedParser();
+	int size = chunkSize == 0 ? Math.max(1, bytes.length) : chunkSize;
+	for (int offset = 0; offset < bytes.length; offset += size) {
+	    //copy, the parser must not rely on the chunk after feed returns
+	    ByteBuffer chunk = ByteBuffer.allocate(Math.min(size, bytes.length - offset));
+	    chunk.put(bytes, offset, chunk.capacity()).flip();
+	    parser.feed(chunk);
+	    assertTrue(!chunk.hasRemaining());
+	}
+	return parser.endOfInput();
+    }
+
+    /**
+     * checks that feeding the bytes in chunks of each size gives the same tree as parsing them
+     * @param bytes
+     * @throws Exception
+     */
+    static private void assertChunkedEquivalent(byte[] bytes) throws Exception {
+	XMLElement expected = new EasyXMLDataParser(null, null).parse(new ByteArrayInputStream(bytes));
+	for (int chunkSize : CHUNK_SIZES)
+	    XMLElementSnapshotTest.assertSameTree(expected, feed(bytes, chunkSize));
+    }
+}